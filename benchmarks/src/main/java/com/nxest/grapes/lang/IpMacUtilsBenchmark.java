@@ -0,0 +1,219 @@
+package com.nxest.grapes.lang;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the {@link IpMacUtils} hot paths. Every invocation runs over {@link #SIZE} inputs,
+ * one in {@link #INVALID_EVERY} is an invalid address, so scores are per input and both the
+ * success and the failure paths are measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IpMacUtilsBenchmark {
+
+    static final int SIZE = 1024;
+    static final int INVALID_EVERY = 8;
+    static final int RULES = 256;
+
+    private static final String[] INVALID_IPV4 = {
+        "256.1.2.3", "a.b.d.e", "192.0.", "192.168.0.1.1", "", "example.com", "192.168.01.1", "ff06::c3"
+    };
+    private static final String[] INVALID_IPV6 = {
+        "2001:0:3238:DFE1:63:::FEFB", "GFEA:0:3238:DFE1:63::FEFB", "example.com", "192.168.0.1", "", "1:2:3"
+    };
+    private static final String[] INVALID_MAC = {
+        "12:34::", "GG:a0:10:50:d0:30", "60:a0:10:50:d0", "", "60a0.1050.d03"
+    };
+
+    String[] ipV4s;
+    long[] ipV4Longs;
+    String[] ipV6s;
+    BigInteger[] ipV6BigIntegers;
+    String[] macs;
+    long[] macLongs;
+    String[] ipV4Sections;
+    String[] macArray;
+    int[] batchInts = new int[SIZE];
+    long[] batchValidity = IpBatchUtils.newValidity(SIZE);
+    StringBuilder line = new StringBuilder();
+    AddressCache cache = new AddressCache(SIZE * 2);
+
+    @Setup
+    public void setup() {
+        Random random = new Random(20181120L);
+        ipV4s = new String[SIZE];
+        ipV4Longs = new long[SIZE];
+        ipV6s = new String[SIZE];
+        ipV6BigIntegers = new BigInteger[SIZE];
+        macs = new String[SIZE];
+        macLongs = new long[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            long ipV4 = random.nextInt() & 0xFFFFFFFFL;
+            long high = random.nextLong();
+            long low = random.nextLong();
+            long mac = random.nextLong() & 0xFFFFFFFFFFFFL;
+            ipV4Longs[i] = ipV4;
+            ipV6BigIntegers[i] = IpV6Address.of(high, low).toBigInteger();
+            macLongs[i] = mac;
+            if (i % INVALID_EVERY == INVALID_EVERY - 1) {
+                ipV4s[i] = INVALID_IPV4[random.nextInt(INVALID_IPV4.length)];
+                ipV6s[i] = INVALID_IPV6[random.nextInt(INVALID_IPV6.length)];
+                macs[i] = INVALID_MAC[random.nextInt(INVALID_MAC.length)];
+            } else {
+                ipV4s[i] = IpMacUtils.longToIpV4(ipV4);
+                // both compressed and full forms
+                ipV6s[i] = random.nextBoolean() ? IpMacUtils.bigIntegerToIpV6(ipV6BigIntegers[i])
+                    : IpMacUtils.bigIntegerToIpV6(IpV6Address.of(high, low & 0xFFFFFFFFL).toBigInteger());
+                String dashed = IpMacUtils.longToMac(mac);
+                macs[i] = random.nextBoolean() ? dashed : dashed.replace('-', ':').toUpperCase();
+            }
+        }
+        ipV4Sections = new String[RULES];
+        for (int i = 0; i < RULES; i++) {
+            long begin = random.nextInt() & 0xFFFFFFFFL;
+            long end = Math.min(0xFFFFFFFFL, begin + random.nextInt(1 << 16));
+            ipV4Sections[i] = IpMacUtils.longToIpV4(begin) + "-" + IpMacUtils.longToIpV4(end);
+        }
+        macArray = new String[RULES];
+        for (int i = 0; i < RULES; i++) {
+            macArray[i] = IpMacUtils.longToMac(random.nextLong() & 0xFFFFFFFFFFFFL);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void ipV4ToLong(Blackhole bh) {
+        for (String ip : ipV4s) {
+            bh.consume(IpMacUtils.ipV4ToLong(ip));
+        }
+    }
+
+    /**
+     * {@link #ipV4ToLong(Blackhole)} through a cache that holds every input, the all hits case.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void ipV4ToLongCached(Blackhole bh) {
+        for (String ip : ipV4s) {
+            bh.consume(cache.ipV4ToLong(ip));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int[] ipV4ToIntBatch() {
+        IpBatchUtils.ipV4ToInt(ipV4s, batchInts, batchValidity);
+        return batchInts;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void longToIpV4(Blackhole bh) {
+        for (long ip : ipV4Longs) {
+            bh.consume(IpMacUtils.longToIpV4(ip));
+        }
+    }
+
+    /**
+     * {@link #longToIpV4(Blackhole)} into a reused builder, such as a log line.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public StringBuilder longToIpV4Append() {
+        line.setLength(0);
+        for (long ip : ipV4Longs) {
+            IpMacUtils.longToIpV4(ip, line.append(' '));
+        }
+        return line;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void isLegalIpV4(Blackhole bh) {
+        for (String ip : ipV4s) {
+            bh.consume(IpMacUtils.isLegalIpV4(ip));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void isLegalIpV6(Blackhole bh) {
+        for (String ip : ipV6s) {
+            bh.consume(IpMacUtils.isLegalIpV6(ip));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void ipV6toBigInteger(Blackhole bh) {
+        for (String ip : ipV6s) {
+            bh.consume(IpMacUtils.ipV6toBigInteger(ip));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void bigIntegerToIpV6(Blackhole bh) {
+        for (BigInteger ip : ipV6BigIntegers) {
+            bh.consume(IpMacUtils.bigIntegerToIpV6(ip));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void macToLong(Blackhole bh) {
+        for (String mac : macs) {
+            bh.consume(IpMacUtils.macToLong(mac));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void longToMac(Blackhole bh) {
+        for (long mac : macLongs) {
+            bh.consume(IpMacUtils.longToMac(mac));
+        }
+    }
+
+    /**
+     * One ip against one section, see {@link IpRangeSetBenchmark} for many sections.
+     * An invalid ip is false, not an exception.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void ipExistsInRange(Blackhole bh) {
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(IpMacUtils.ipExistsInRange(ipV4s[i], ipV4Sections[i % RULES]));
+        }
+    }
+
+    /**
+     * One mac against {@link #RULES} macs, most are misses.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void macExistsInArray(Blackhole bh) {
+        for (String mac : macs) {
+            bh.consume(IpMacUtils.macExistsInArray(mac, macArray));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.nxest.grapes.lang;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ACL style checks, one ip against {@link IpMacUtilsBenchmark#RULES} sections and one mac against as many macs,
+ * the loop over {@link IpMacUtils} next to the compiled {@link IpRangeSet} and {@link MacSet}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IpRangeSetBenchmark {
+
+    private final IpMacUtilsBenchmark inputs = new IpMacUtilsBenchmark();
+    private IpRangeSet rangeSet;
+    private MacSet macSet;
+
+    @Setup
+    public void setup() {
+        inputs.setup();
+        rangeSet = IpRangeSet.of(inputs.ipV4Sections);
+        macSet = MacSet.of(Arrays.asList(inputs.macArray));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IpMacUtilsBenchmark.SIZE)
+    public void ipExistsInRangeLoop(Blackhole bh) {
+        for (String ip : inputs.ipV4s) {
+            boolean exists = false;
+            if (IpMacUtils.isLegalIpV4(ip)) {
+                for (String section : inputs.ipV4Sections) {
+                    if (IpMacUtils.ipExistsInRange(ip, section)) {
+                        exists = true;
+                        break;
+                    }
+                }
+            }
+            bh.consume(exists);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IpMacUtilsBenchmark.SIZE)
+    public void ipRangeSetContains(Blackhole bh) {
+        for (String ip : inputs.ipV4s) {
+            bh.consume(rangeSet.contains(ip));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IpMacUtilsBenchmark.SIZE)
+    public void macSetContains(Blackhole bh) {
+        for (String mac : inputs.macs) {
+            bh.consume(macSet.contains(mac));
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.nxest.grapes.lang;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * IP and MAC access lists that change while many threads check them. Checks read an immutable
+ * {@link Snapshot} through one volatile read, they never lock or wait. Changes compile a new snapshot
+ * and publish it with one atomic swap, a check sees either the old or the new lists, never a mix.
+ *
+ * <pre>
+ * AclMatcher acl = new AclMatcher(IpRangeSet.of("10.0.0.0/8"), MacSet.of("60:a0:10:50:d0:30"));
+ * assertTrue(acl.containsIp("10.1.2.3"));
+ * acl.update().removeIp("10.1.0.0/16").addMac("60:a0:10:50:d0:31").apply();
+ * assertFalse(acl.containsIp("10.1.2.3"));
+ * </pre>
+ * <p>
+ * A {@link Delta} only merges its own rules into the current snapshot, in linear sweeps over the sorted
+ * ranges and one copy of the MAC table, so changing one rule does not parse every rule again.
+ *
+ * @author l10178
+ */
+public final class AclMatcher {
+
+    private final AtomicReference<Snapshot> snapshot;
+
+    /**
+     * An empty matcher.
+     */
+    public AclMatcher() {
+        this(IpRangeSet.of(), new MacSet());
+    }
+
+    /**
+     * @param ips  IP ranges
+     * @param macs MACs, copied so later changes to it are not seen
+     */
+    public AclMatcher(final IpRangeSet ips, final MacSet macs) {
+        Objects.requireNonNull(ips, "ips");
+        this.snapshot = new AtomicReference<>(new Snapshot(ips, new MacSet(macs), 0L));
+    }
+
+    /**
+     * @param ip IPV4 or IPV6, may be null
+     * @return true if ip in the current IP ranges
+     */
+    public boolean containsIp(final CharSequence ip) {
+        return snapshot.get().ips.contains(ip);
+    }
+
+    /**
+     * @param ipV4 IPV4 long value
+     * @return true if ip in the current IP ranges
+     */
+    public boolean containsIpV4(long ipV4) {
+        return snapshot.get().ips.containsIpV4(ipV4);
+    }
+
+    /**
+     * @param high the high 64 bits of the IPV6
+     * @param low  the low 64 bits of the IPV6
+     * @return true if ip in the current IP ranges
+     */
+    public boolean containsIpV6(long high, long low) {
+        return snapshot.get().ips.containsIpV6(high, low);
+    }
+
+    /**
+     * @param mac MAC string, may be null
+     * @return true if mac in the current MACs
+     */
+    public boolean containsMac(final CharSequence mac) {
+        return snapshot.get().macs.contains(mac);
+    }
+
+    /**
+     * @param mac MAC long value
+     * @return true if mac in the current MACs
+     */
+    public boolean containsMac(long mac) {
+        return snapshot.get().macs.contains(mac);
+    }
+
+    /**
+     * @return the current lists, checks on it are consistent with each other
+     */
+    public Snapshot snapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Publish new lists, replacing all rules.
+     *
+     * @param ips  IP ranges
+     * @param macs MACs, copied so later changes to it are not seen
+     * @return the published snapshot
+     */
+    public Snapshot replace(final IpRangeSet ips, final MacSet macs) {
+        Objects.requireNonNull(ips, "ips");
+        MacSet copy = new MacSet(macs);
+        while (true) {
+            Snapshot current = snapshot.get();
+            Snapshot next = new Snapshot(ips, copy, current.version + 1);
+            if (snapshot.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Compile new lists on executor and publish them when done, checks go on against the old lists meanwhile.
+     *
+     * @param ipSections IP sections or CIDRs, see {@link IpRangeSet.Builder#add(String)}
+     * @param macs       MAC strings
+     * @param executor   where to compile
+     * @return the published snapshot, or an IllegalArgumentException for a bad rule, then nothing is published
+     */
+    public CompletableFuture<Snapshot> reloadAsync(final Collection<String> ipSections, final Collection<String> macs,
+                                                   final Executor executor) {
+        List<String> ipCopy = new ArrayList<>(ipSections);
+        List<String> macCopy = new ArrayList<>(macs);
+        return CompletableFuture.supplyAsync(() -> replace(IpRangeSet.of(ipCopy), MacSet.of(macCopy)), executor);
+    }
+
+    /**
+     * @return a new change to the current lists, see {@link Delta#apply()}
+     */
+    public Delta update() {
+        return new Delta();
+    }
+
+    /**
+     * Immutable compiled lists.
+     */
+    public static final class Snapshot {
+
+        private final IpRangeSet ips;
+        /**
+         * never changed once published
+         */
+        private final MacSet macs;
+        private final long version;
+
+        private Snapshot(IpRangeSet ips, MacSet macs, long version) {
+            this.ips = ips;
+            this.macs = macs;
+            this.version = version;
+        }
+
+        public IpRangeSet getIps() {
+            return ips;
+        }
+
+        public boolean containsIp(final CharSequence ip) {
+            return ips.contains(ip);
+        }
+
+        public boolean containsMac(final CharSequence mac) {
+            return macs.contains(mac);
+        }
+
+        public boolean containsMac(long mac) {
+            return macs.contains(mac);
+        }
+
+        /**
+         * @return the count of MACs
+         */
+        public int sizeMac() {
+            return macs.size();
+        }
+
+        /**
+         * @return 0 for the first lists, plus one for each publish
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{version=" + version + ", ips=" + ips + ", macs=" + macs.size() + '}';
+        }
+    }
+
+    /**
+     * Rules to add and remove, removals win over additions of the same delta. Not thread-safe.
+     */
+    public final class Delta {
+
+        private final IpRangeSet.Builder addIps = IpRangeSet.builder();
+        private final IpRangeSet.Builder removeIps = IpRangeSet.builder();
+        private final MacSet addMacs = new MacSet();
+        private final MacSet removeMacs = new MacSet();
+
+        private Delta() {
+        }
+
+        /**
+         * @param section IP section or CIDR, see {@link IpRangeSet.Builder#add(String)}
+         * @return this delta
+         * @throws IllegalArgumentException throw if the section is not legal
+         */
+        public Delta addIp(final String section) throws IllegalArgumentException {
+            addIps.add(section);
+            return this;
+        }
+
+        /**
+         * @param section IP section or CIDR, see {@link IpRangeSet.Builder#add(String)}
+         * @return this delta
+         * @throws IllegalArgumentException throw if the section is not legal
+         */
+        public Delta removeIp(final String section) throws IllegalArgumentException {
+            removeIps.add(section);
+            return this;
+        }
+
+        /**
+         * @param mac MAC string
+         * @return this delta
+         * @throws IllegalArgumentException throw if not legal MAC
+         */
+        public Delta addMac(final String mac) throws IllegalArgumentException {
+            addMacs.add(mac);
+            return this;
+        }
+
+        /**
+         * @param mac MAC string
+         * @return this delta
+         * @throws IllegalArgumentException throw if not legal MAC
+         */
+        public Delta removeMac(final String mac) throws IllegalArgumentException {
+            removeMacs.add(mac);
+            return this;
+        }
+
+        /**
+         * Merge into the current lists and publish, retried on top of a snapshot published meanwhile,
+         * so concurrent deltas are not lost.
+         *
+         * @return the published snapshot
+         */
+        public Snapshot apply() {
+            IpRangeSet adds = addIps.build();
+            IpRangeSet removes = removeIps.build();
+            long[] macAdds = addMacs.toArray();
+            long[] macRemoves = removeMacs.toArray();
+            while (true) {
+                Snapshot current = snapshot.get();
+                IpRangeSet ips = current.ips;
+                if (!adds.isEmpty()) {
+                    ips = ips.union(adds);
+                }
+                if (!removes.isEmpty()) {
+                    ips = ips.subtract(removes);
+                }
+                MacSet macs = current.macs;
+                if (macAdds.length > 0 || macRemoves.length > 0) {
+                    macs = new MacSet(macs);
+                    macs.addAll(macAdds);
+                    macs.removeAll(macRemoves);
+                }
+                Snapshot next = new Snapshot(ips, macs, current.version + 1);
+                if (snapshot.compareAndSet(current, next)) {
+                    return next;
+                }
+            }
+        }
+    }
+}
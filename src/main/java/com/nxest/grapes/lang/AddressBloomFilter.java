@@ -0,0 +1,351 @@
+package com.nxest.grapes.lang;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A blocked Bloom filter of IPV4, IPV6 and MAC values, for a large blocklist in front of an exact
+ * check: a miss is certain, a hit is probably in and worth the exact check. All bits of a key are in
+ * one 512-bit block, one cache line, so a lookup costs one cache miss whatever the hash count.
+ * Keys spread unevenly over blocks, so a blocked filter needs more bits than a classic one for the
+ * same false positive probability, about 9.9 bits per key at 1% and 15.5 at 0.1%, and is sized for that.
+ * <p>
+ * Thread-safe, adds set bits with compare-and-set and take no lock, lookups concurrent with adds see
+ * each key either absent or present. Keys can not be removed, see {@link AddressCuckooFilter}.
+ *
+ * <pre>
+ * AddressBloomFilter filter = new AddressBloomFilter(1_000_000, 0.01);
+ * filter.addIp("192.168.0.1");
+ * filter.addMac("60:a0:10:50:d0:30");
+ * assertTrue(filter.mightContainIpV4(3232235521L));
+ * assertTrue(filter.mightContainMac(106240584765488L));
+ * </pre>
+ *
+ * @author l10178
+ */
+public final class AddressBloomFilter {
+
+    static final int MAGIC = 0x47524246;
+    static final int VERSION = 2;
+
+    private static final int BLOCK_LONGS = 8;
+    private static final int BLOCK_BITS = BLOCK_LONGS * Long.SIZE;
+    private static final int MAX_HASHES = 16;
+    private static final int MAX_BLOCKS = Integer.MAX_VALUE / BLOCK_LONGS;
+    /**
+     * a 64-bit hash gives 7 positions of 9 bits in a block
+     */
+    private static final int POSITIONS_PER_HASH = 7;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final AtomicLongArray bits;
+    private final int blocks;
+    private final int hashes;
+
+    /**
+     * @param expectedInsertions the expected count of keys
+     * @param fpp                the wanted false positive probability at that count, in (0, 1)
+     * @throws IllegalArgumentException throw if expectedInsertions is negative, fpp not in (0, 1),
+     *                                  or the filter would be too large
+     */
+    public AddressBloomFilter(long expectedInsertions, double fpp) throws IllegalArgumentException {
+        if (expectedInsertions < 0) {
+            throw new IllegalArgumentException("Illegal arguments : " + expectedInsertions);
+        }
+        if (!(fpp > 0 && fpp < 1)) {
+            throw new IllegalArgumentException("Illegal arguments : " + fpp);
+        }
+        long n = Math.max(1L, expectedInsertions);
+        double bitsPerKey = bitsPerKey(fpp);
+        double blockCount = Math.ceil(n * bitsPerKey / BLOCK_BITS);
+        if (blockCount > MAX_BLOCKS) {
+            throw new IllegalArgumentException("Too many insertions : " + expectedInsertions);
+        }
+        this.blocks = (int) blockCount;
+        this.hashes = bestHashCount(bitsPerKey);
+        this.bits = new AtomicLongArray(blocks * BLOCK_LONGS);
+    }
+
+    private AddressBloomFilter(int blocks, int hashes) {
+        this.blocks = blocks;
+        this.hashes = hashes;
+        this.bits = new AtomicLongArray(blocks * BLOCK_LONGS);
+    }
+
+    /**
+     * @param ip IPV4 long value
+     * @return {@code true} if a bit changed, so ip was not in before
+     * @throws IllegalArgumentException throw if not 0 - 0xFFFFFFFF
+     */
+    public boolean addIpV4(long ip) throws IllegalArgumentException {
+        return put(AddressHash.hashIpV4(ip));
+    }
+
+    /**
+     * @param high the high 64 bits of the IPV6
+     * @param low  the low 64 bits of the IPV6
+     * @return {@code true} if a bit changed, so the ip was not in before
+     */
+    public boolean addIpV6(long high, long low) {
+        return put(AddressHash.hashIpV6(high, low));
+    }
+
+    /**
+     * @param ip IPV4 or IPV6 string, see {@link ParsedIp#parse(CharSequence)}
+     * @return {@code true} if a bit changed, so ip was not in before
+     * @throws IllegalArgumentException throw if not legal IP
+     */
+    public boolean addIp(final CharSequence ip) throws IllegalArgumentException {
+        ParsedIp parsed = AddressHash.parseIp(ip);
+        if (parsed == null) {
+            throw new IllegalArgumentException("Illegal arguments : " + ip);
+        }
+        return put(AddressHash.hashIp(parsed));
+    }
+
+    /**
+     * @param mac MAC long value
+     * @return {@code true} if a bit changed, so mac was not in before
+     * @throws IllegalArgumentException throw if not 0 - 0xFFFFFFFFFFFF
+     */
+    public boolean addMac(long mac) throws IllegalArgumentException {
+        return put(AddressHash.hashMac(mac));
+    }
+
+    /**
+     * @param mac MAC string, see {@link IpMacUtils#isLegalMac(String)}
+     * @return {@code true} if a bit changed, so mac was not in before
+     * @throws IllegalArgumentException throw if not legal MAC
+     */
+    public boolean addMac(final CharSequence mac) throws IllegalArgumentException {
+        long value = AddressHash.parseMac(mac);
+        if (value == IpMacUtils.INVALID_VALUE) {
+            throw new IllegalArgumentException("Illegal arguments : " + mac);
+        }
+        return put(AddressHash.hashMac(value));
+    }
+
+    /**
+     * @param ip IPV4 long value
+     * @return {@code false} if ip is certainly not in
+     * @throws IllegalArgumentException throw if not 0 - 0xFFFFFFFF
+     */
+    public boolean mightContainIpV4(long ip) throws IllegalArgumentException {
+        return mightContain(AddressHash.hashIpV4(ip));
+    }
+
+    /**
+     * @param high the high 64 bits of the IPV6
+     * @param low  the low 64 bits of the IPV6
+     * @return {@code false} if the ip is certainly not in
+     */
+    public boolean mightContainIpV6(long high, long low) {
+        return mightContain(AddressHash.hashIpV6(high, low));
+    }
+
+    /**
+     * @param ip IPV4 or IPV6 chars, may be null
+     * @return {@code false} if ip is certainly not in, or not legal
+     */
+    public boolean mightContainIp(final CharSequence ip) {
+        ParsedIp parsed = AddressHash.parseIp(ip);
+        return parsed != null && mightContain(AddressHash.hashIp(parsed));
+    }
+
+    /**
+     * @param mac MAC long value
+     * @return {@code false} if mac is certainly not in
+     * @throws IllegalArgumentException throw if not 0 - 0xFFFFFFFFFFFF
+     */
+    public boolean mightContainMac(long mac) throws IllegalArgumentException {
+        return mightContain(AddressHash.hashMac(mac));
+    }
+
+    /**
+     * @param mac MAC chars, may be null
+     * @return {@code false} if mac is certainly not in, or not legal
+     */
+    public boolean mightContainMac(final CharSequence mac) {
+        long value = AddressHash.parseMac(mac);
+        return value != IpMacUtils.INVALID_VALUE && mightContain(AddressHash.hashMac(value));
+    }
+
+    /**
+     * @return the count of bits
+     */
+    public long bitSize() {
+        return (long) blocks * BLOCK_BITS;
+    }
+
+    /**
+     * @return the count of bits set for each key
+     */
+    public int hashCount() {
+        return hashes;
+    }
+
+    /**
+     * @return the count of bytes {@link #writeTo(DataOutput)} writes
+     */
+    public long serializedSize() {
+        return 16 + bitSize() / Byte.SIZE;
+    }
+
+    /**
+     * Write the filter, big-endian: magic, version, block count and hash count as ints, then the bits as longs.
+     * Adds concurrent with the write may or may not be written.
+     *
+     * @param out where to write
+     * @throws IOException throw if out can not be written
+     */
+    public void writeTo(final DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(blocks);
+        out.writeInt(hashes);
+        for (int i = 0; i < bits.length(); i++) {
+            out.writeLong(bits.get(i));
+        }
+    }
+
+    /**
+     * Read a filter written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in where to read
+     * @return the filter
+     * @throws IOException throw if in can not be read or is not a valid filter
+     */
+    public static AddressBloomFilter readFrom(final DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an address bloom filter.");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported address bloom filter version : " + version);
+        }
+        int blocks = in.readInt();
+        int hashes = in.readInt();
+        if (blocks <= 0 || blocks > MAX_BLOCKS || hashes <= 0 || hashes > MAX_HASHES) {
+            throw new IOException("Corrupted address bloom filter.");
+        }
+        AddressBloomFilter filter = new AddressBloomFilter(blocks, hashes);
+        for (int i = 0; i < filter.bits.length(); i++) {
+            filter.bits.lazySet(i, in.readLong());
+        }
+        return filter;
+    }
+
+    private boolean put(long hash) {
+        int block = block(hash) * BLOCK_LONGS;
+        long state = hash;
+        long positions = 0;
+        boolean changed = false;
+        for (int i = 0; i < hashes; i++) {
+            if (i % POSITIONS_PER_HASH == 0) {
+                state += GOLDEN_GAMMA;
+                positions = AddressHash.mix(state);
+            }
+            int bit = (int) positions & (BLOCK_BITS - 1);
+            positions >>>= 9;
+            int index = block + (bit >>> 6);
+            long mask = 1L << bit;
+            long word;
+            while (((word = bits.get(index)) & mask) == 0) {
+                if (bits.compareAndSet(index, word, word | mask)) {
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private boolean mightContain(long hash) {
+        int block = block(hash) * BLOCK_LONGS;
+        long state = hash;
+        long positions = 0;
+        for (int i = 0; i < hashes; i++) {
+            if (i % POSITIONS_PER_HASH == 0) {
+                state += GOLDEN_GAMMA;
+                positions = AddressHash.mix(state);
+            }
+            int bit = (int) positions & (BLOCK_BITS - 1);
+            positions >>>= 9;
+            if ((bits.get(block + (bit >>> 6)) & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the fewest bits per key whose blocked false positive probability is at most fpp
+     */
+    private static double bitsPerKey(double fpp) {
+        // the classic filter is the lower bound
+        double low = -Math.log(fpp) / (Math.log(2) * Math.log(2));
+        double high = low;
+        while (falsePositive(high, bestHashCount(high)) > fpp && high < BLOCK_BITS) {
+            low = high;
+            high *= 1.5;
+        }
+        for (int i = 0; i < 32; i++) {
+            double middle = (low + high) / 2;
+            if (falsePositive(middle, bestHashCount(middle)) > fpp) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return high;
+    }
+
+    private static int bestHashCount(double bitsPerKey) {
+        int best = 1;
+        for (int k = 2; k <= MAX_HASHES; k++) {
+            if (falsePositive(bitsPerKey, k) < falsePositive(bitsPerKey, best)) {
+                best = k;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The keys in one block are Poisson with mean {@code BLOCK_BITS / bitsPerKey}, each block is a classic
+     * filter of {@code BLOCK_BITS} bits, so the rate is the Poisson mean of the classic rates
+     * (Putze, Sanders and Singler, 2007).
+     */
+    static double falsePositive(double bitsPerKey, int hashes) {
+        double mean = BLOCK_BITS / bitsPerKey;
+        double logMean = Math.log(mean);
+        double logUnset = Math.log1p(-1.0 / BLOCK_BITS);
+        double logProbability = -mean;
+        double rate = 0;
+        int last = (int) (mean + 12 * Math.sqrt(mean) + 20);
+        for (int i = 0; i <= last; i++) {
+            if (i > 0) {
+                logProbability += logMean - Math.log(i);
+            }
+            rate += Math.exp(logProbability) * Math.pow(-Math.expm1(hashes * i * logUnset), hashes);
+        }
+        return rate;
+    }
+
+    /**
+     * the high 32 bits scaled to the block count, the bits in the block are from independent remixes
+     * of the hash, as the sizing assumes
+     */
+    private int block(long hash) {
+        return (int) ((hash >>> 32) * blocks >>> 32);
+    }
+
+    @Override
+    public String toString() {
+        return "AddressBloomFilter{" +
+            "bitSize=" + bitSize() +
+            ", hashCount=" + hashes +
+            '}';
+    }
+}
@@ -0,0 +1,258 @@
+package com.nxest.grapes.lang;
+
+import java.math.BigInteger;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe cache in front of the {@link IpMacUtils} conversions, for traffic where a few
+ * addresses repeat again and again. Results are the same as the uncached methods.
+ * <p>
+ * Each conversion has a table of at most capacity entries, split into sets of 8 ways. A lookup reads only
+ * one set and takes no lock. A miss converts and replaces a way of that set picked by CLOCK, so an
+ * address seen once is evicted before one that hits. Strings longer than any address are not cached.
+ *
+ * <pre>
+ * AddressCache cache = new AddressCache(4096);
+ * assertEquals(3232235521L, cache.ipV4ToLong("192.168.0.1"));
+ * assertEquals(3232235521L, cache.ipV4ToLong("192.168.0.1"));
+ * assertEquals(1L, cache.hitCount());
+ * </pre>
+ *
+ * @author l10178
+ */
+public final class AddressCache {
+
+    private static final int WAYS = 8;
+    /**
+     * the longest IPV6 with a zone and brackets that is worth caching
+     */
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private final Table ipV4ToLong;
+    private final Table ipV6toBigInteger;
+    private final Table longToIpV4;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity the most entries of each conversion, rounded up to a power of two of at least 8
+     * @throws IllegalArgumentException throw if capacity is not positive
+     */
+    public AddressCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Illegal arguments : " + capacity);
+        }
+        int wanted = (capacity + WAYS - 1) / WAYS;
+        int sets = wanted == 1 ? 1 : Integer.highestOneBit(wanted - 1) << 1;
+        this.ipV4ToLong = new Table(sets);
+        this.ipV6toBigInteger = new Table(sets);
+        this.longToIpV4 = new Table(sets);
+    }
+
+    /**
+     * Cached {@link IpMacUtils#ipV4ToLong(String)}.
+     *
+     * @param hostIp host ip
+     * @return ip long value, {@link IpMacUtils#INVALID_VALUE} if illegal
+     */
+    public long ipV4ToLong(final String hostIp) {
+        if (Objects.isNull(hostIp) || hostIp.length() > MAX_KEY_LENGTH) {
+            return IpMacUtils.ipV4ToLong(hostIp);
+        }
+        int hash = hostIp.hashCode();
+        Entry entry = ipV4ToLong.get(hostIp, hash);
+        if (Objects.nonNull(entry)) {
+            hits.increment();
+            return entry.number;
+        }
+        misses.increment();
+        long ip = IpMacUtils.ipV4ToLong(hostIp);
+        ipV4ToLong.put(new Entry(hash, hostIp, ip, null));
+        return ip;
+    }
+
+    /**
+     * Cached {@link IpMacUtils#ipV6toBigInteger(String)}.
+     *
+     * @param ipv6 IPV6 string
+     * @return BigInteger value, {@link IpMacUtils#INVALID_VALUE} if illegal
+     */
+    public BigInteger ipV6toBigInteger(final String ipv6) {
+        if (Objects.isNull(ipv6) || ipv6.length() > MAX_KEY_LENGTH) {
+            return IpMacUtils.ipV6toBigInteger(ipv6);
+        }
+        int hash = ipv6.hashCode();
+        Entry entry = ipV6toBigInteger.get(ipv6, hash);
+        if (Objects.nonNull(entry)) {
+            hits.increment();
+            return (BigInteger) entry.value;
+        }
+        misses.increment();
+        BigInteger ip = IpMacUtils.ipV6toBigInteger(ipv6);
+        ipV6toBigInteger.put(new Entry(hash, ipv6, 0L, ip));
+        return ip;
+    }
+
+    /**
+     * Cached {@link IpMacUtils#longToIpV4(long)}.
+     *
+     * @param longIp IP long value
+     * @return IP string value
+     */
+    public String longToIpV4(long longIp) {
+        int hash = Long.hashCode(longIp * 0x9E3779B97F4A7C15L);
+        Entry entry = longToIpV4.get(longIp, hash);
+        if (Objects.nonNull(entry)) {
+            hits.increment();
+            return entry.text;
+        }
+        misses.increment();
+        String ip = IpMacUtils.longToIpV4(longIp);
+        longToIpV4.put(new Entry(hash, ip, longIp, null));
+        return ip;
+    }
+
+    /**
+     * @return the most entries of each conversion
+     */
+    public int capacity() {
+        return ipV4ToLong.ways.length();
+    }
+
+    /**
+     * @return the count of lookups answered from the cache
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the count of lookups that had to convert
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return hits / lookups, 0 before the first lookup
+     */
+    public double hitRate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0.0 : (double) hit / total;
+    }
+
+    /**
+     * Remove all entries and reset the counters.
+     */
+    public void clear() {
+        ipV4ToLong.clear();
+        ipV6toBigInteger.clear();
+        longToIpV4.clear();
+        hits.reset();
+        misses.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "AddressCache{hits=" + hitCount() + ", misses=" + missCount() + '}';
+    }
+
+    /**
+     * An immutable key and value, only the CLOCK bit changes.
+     */
+    private static final class Entry {
+
+        final int hash;
+        final String text;
+        final long number;
+        final Object value;
+        /**
+         * hit since the clock hand last passed, races only make eviction a little less exact
+         */
+        boolean referenced;
+
+        Entry(int hash, String text, long number, Object value) {
+            this.hash = hash;
+            this.text = text;
+            this.number = number;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Sets of {@link #WAYS} entries, a key lives only in the set picked by its hash.
+     * Writers do not lock either, two misses racing on one way just leave one of them cached.
+     */
+    private static final class Table {
+
+        private final AtomicReferenceArray<Entry> ways;
+        private final int[] hands;
+        private final int mask;
+
+        Table(int sets) {
+            this.ways = new AtomicReferenceArray<>(sets * WAYS);
+            this.hands = new int[sets];
+            this.mask = sets - 1;
+        }
+
+        Entry get(String key, int hash) {
+            int base = set(hash) * WAYS;
+            for (int i = base; i < base + WAYS; i++) {
+                Entry entry = ways.get(i);
+                if (Objects.nonNull(entry) && entry.hash == hash && key.equals(entry.text)) {
+                    return hit(entry);
+                }
+            }
+            return null;
+        }
+
+        Entry get(long key, int hash) {
+            int base = set(hash) * WAYS;
+            for (int i = base; i < base + WAYS; i++) {
+                Entry entry = ways.get(i);
+                if (Objects.nonNull(entry) && entry.hash == hash && entry.number == key) {
+                    return hit(entry);
+                }
+            }
+            return null;
+        }
+
+        void put(Entry entry) {
+            int set = set(entry.hash);
+            int base = set * WAYS;
+            int hand = hands[set];
+            // a free way, or the first one not hit since the hand passed, the second round always finds one
+            for (int i = 0; i < 2 * WAYS; i++) {
+                int way = (hand + i) & (WAYS - 1);
+                Entry old = ways.get(base + way);
+                if (Objects.isNull(old) || !old.referenced) {
+                    ways.set(base + way, entry);
+                    hands[set] = (way + 1) & (WAYS - 1);
+                    return;
+                }
+                old.referenced = false;
+            }
+        }
+
+        void clear() {
+            for (int i = 0; i < ways.length(); i++) {
+                ways.set(i, null);
+            }
+        }
+
+        private int set(int hash) {
+            return (hash ^ hash >>> 16) & mask;
+        }
+
+        private static Entry hit(Entry entry) {
+            // no write when already set, hot entries stay clean in other cores' caches
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+            return entry;
+        }
+    }
+}
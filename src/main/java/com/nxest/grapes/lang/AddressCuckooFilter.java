@@ -0,0 +1,532 @@
+package com.nxest.grapes.lang;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A cuckoo filter of IPV4, IPV6 and MAC values, like {@link AddressBloomFilter} but keys can be removed.
+ * Each key keeps a fingerprint of 4 to 16 bits in one of two buckets of 4, so a lookup reads at most two
+ * buckets. Buckets are packed at the fingerprint width and their count is not rounded to a power of two,
+ * so a full filter takes {@code fingerprintBits / 0.95} bits per key, about 10.5 at 1% and 13.7 at 0.1%.
+ * <p>
+ * Thread-safe, adds and removes take a lock, lookups take no lock and retry only when they miss while a
+ * change moved fingerprints. A key added twice is in twice and needs two removes, remove only keys that
+ * were added, removing a key never added may remove another key sharing its fingerprint.
+ *
+ * <pre>
+ * AddressCuckooFilter filter = new AddressCuckooFilter(1_000_000, 0.001);
+ * filter.addIp("192.168.0.1");
+ * assertTrue(filter.mightContainIpV4(3232235521L));
+ * filter.removeIp("192.168.0.1");
+ * assertFalse(filter.mightContainIpV4(3232235521L));
+ * </pre>
+ *
+ * @author l10178
+ */
+public final class AddressCuckooFilter {
+
+    static final int MAGIC = 0x47524346;
+    static final int VERSION = 2;
+
+    private static final int SLOTS = 4;
+    private static final int MIN_FINGERPRINT_BITS = 4;
+    private static final int MAX_FINGERPRINT_BITS = 16;
+    private static final double LOAD_FACTOR = 0.95;
+    private static final int MAX_BUCKETS = 1 << 30;
+    private static final int MAX_KICKS = 500;
+
+    private final StampedLock lock = new StampedLock();
+    /**
+     * bucket b is the bits [b * bucketBits, (b + 1) * bucketBits), its slot s the fingerprintBits from s * fingerprintBits
+     */
+    private final long[] words;
+    private final int bucketCount;
+    private final int fingerprintBits;
+    private final int bucketBits;
+    private final long bucketMask;
+    private final int fingerprintMask;
+    private final int[] kickedBuckets = new int[MAX_KICKS];
+    private final int[] kickedSlots = new int[MAX_KICKS];
+    private long size;
+    private long random = 0x9E3779B97F4A7C15L;
+
+    /**
+     * @param expectedInsertions the expected count of keys, adds may fail a little after it
+     * @param fpp                the wanted false positive probability when full, in (0, 1)
+     * @throws IllegalArgumentException throw if expectedInsertions is negative, fpp not in (0, 1),
+     *                                  or the filter would be too large
+     */
+    public AddressCuckooFilter(long expectedInsertions, double fpp) throws IllegalArgumentException {
+        this(bucketCount(expectedInsertions), fingerprintBits(fpp));
+    }
+
+    private AddressCuckooFilter(int bucketCount, int fingerprintBits) {
+        this.bucketCount = bucketCount;
+        this.fingerprintBits = fingerprintBits;
+        this.bucketBits = SLOTS * fingerprintBits;
+        this.bucketMask = bucketBits == Long.SIZE ? -1L : (1L << bucketBits) - 1;
+        this.fingerprintMask = (1 << fingerprintBits) - 1;
+        this.words = new long[wordCount(bucketCount, fingerprintBits)];
+    }
+
+    private static int bucketCount(long expectedInsertions) {
+        if (expectedInsertions < 0) {
+            throw new IllegalArgumentException("Illegal arguments : " + expectedInsertions);
+        }
+        double wanted = Math.ceil(Math.max(1L, expectedInsertions) / (SLOTS * LOAD_FACTOR));
+        if (wanted > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Too many insertions : " + expectedInsertions);
+        }
+        return (int) wanted;
+    }
+
+    private static int fingerprintBits(double fpp) {
+        if (!(fpp > 0 && fpp < 1)) {
+            throw new IllegalArgumentException("Illegal arguments : " + fpp);
+        }
+        // a lookup compares 2 * SLOTS fingerprints, each matches by chance with 2^-bits
+        int bits = (int) Math.ceil(Math.log(2 * SLOTS / fpp) / Math.log(2));
+        return Math.max(MIN_FINGERPRINT_BITS, Math.min(MAX_FINGERPRINT_BITS, bits));
+    }
+
+    private static int wordCount(int bucketCount, int fingerprintBits) {
+        return (int) (((long) bucketCount * SLOTS * fingerprintBits + Long.SIZE - 1) / Long.SIZE);
+    }
+
+    /**
+     * @param ip IPV4 long value
+     * @return {@code false} if the filter is too full to add ip
+     * @throws IllegalArgumentException throw if not 0 - 0xFFFFFFFF
+     */
+    public boolean addIpV4(long ip) throws IllegalArgumentException {
+        return put(AddressHash.hashIpV4(ip));
+    }
+
+    /**
+     * @param high the high 64 bits of the IPV6
+     * @param low  the low 64 bits of the IPV6
+     * @return {@code false} if the filter is too full to add the ip
+     */
+    public boolean addIpV6(long high, long low) {
+        return put(AddressHash.hashIpV6(high, low));
+    }
+
+    /**
+     * @param ip IPV4 or IPV6 string, see {@link ParsedIp#parse(CharSequence)}
+     * @return {@code false} if the filter is too full to add ip
+     * @throws IllegalArgumentException throw if not legal IP
+     */
+    public boolean addIp(final CharSequence ip) throws IllegalArgumentException {
+        ParsedIp parsed = AddressHash.parseIp(ip);
+        if (parsed == null) {
+            throw new IllegalArgumentException("Illegal arguments : " + ip);
+        }
+        return put(AddressHash.hashIp(parsed));
+    }
+
+    /**
+     * @param mac MAC long value
+     * @return {@code false} if the filter is too full to add mac
+     * @throws IllegalArgumentException throw if not 0 - 0xFFFFFFFFFFFF
+     */
+    public boolean addMac(long mac) throws IllegalArgumentException {
+        return put(AddressHash.hashMac(mac));
+    }
+
+    /**
+     * @param mac MAC string, see {@link IpMacUtils#isLegalMac(String)}
+     * @return {@code false} if the filter is too full to add mac
+     * @throws IllegalArgumentException throw if not legal MAC
+     */
+    public boolean addMac(final CharSequence mac) throws IllegalArgumentException {
+        long value = AddressHash.parseMac(mac);
+        if (value == IpMacUtils.INVALID_VALUE) {
+            throw new IllegalArgumentException("Illegal arguments : " + mac);
+        }
+        return put(AddressHash.hashMac(value));
+    }
+
+    /**
+     * @param ip IPV4 long value
+     * @return {@code true} if a fingerprint of ip was removed
+     * @throws IllegalArgumentException throw if not 0 - 0xFFFFFFFF
+     */
+    public boolean removeIpV4(long ip) throws IllegalArgumentException {
+        return delete(AddressHash.hashIpV4(ip));
+    }
+
+    /**
+     * @param high the high 64 bits of the IPV6
+     * @param low  the low 64 bits of the IPV6
+     * @return {@code true} if a fingerprint of the ip was removed
+     */
+    public boolean removeIpV6(long high, long low) {
+        return delete(AddressHash.hashIpV6(high, low));
+    }
+
+    /**
+     * @param ip IPV4 or IPV6 chars, may be null
+     * @return {@code true} if a fingerprint of ip was removed, {@code false} if not in or not legal
+     */
+    public boolean removeIp(final CharSequence ip) {
+        ParsedIp parsed = AddressHash.parseIp(ip);
+        return parsed != null && delete(AddressHash.hashIp(parsed));
+    }
+
+    /**
+     * @param mac MAC long value
+     * @return {@code true} if a fingerprint of mac was removed
+     * @throws IllegalArgumentException throw if not 0 - 0xFFFFFFFFFFFF
+     */
+    public boolean removeMac(long mac) throws IllegalArgumentException {
+        return delete(AddressHash.hashMac(mac));
+    }
+
+    /**
+     * @param mac MAC chars, may be null
+     * @return {@code true} if a fingerprint of mac was removed, {@code false} if not in or not legal
+     */
+    public boolean removeMac(final CharSequence mac) {
+        long value = AddressHash.parseMac(mac);
+        return value != IpMacUtils.INVALID_VALUE && delete(AddressHash.hashMac(value));
+    }
+
+    /**
+     * @param ip IPV4 long value
+     * @return {@code false} if ip is certainly not in
+     * @throws IllegalArgumentException throw if not 0 - 0xFFFFFFFF
+     */
+    public boolean mightContainIpV4(long ip) throws IllegalArgumentException {
+        return mightContain(AddressHash.hashIpV4(ip));
+    }
+
+    /**
+     * @param high the high 64 bits of the IPV6
+     * @param low  the low 64 bits of the IPV6
+     * @return {@code false} if the ip is certainly not in
+     */
+    public boolean mightContainIpV6(long high, long low) {
+        return mightContain(AddressHash.hashIpV6(high, low));
+    }
+
+    /**
+     * @param ip IPV4 or IPV6 chars, may be null
+     * @return {@code false} if ip is certainly not in, or not legal
+     */
+    public boolean mightContainIp(final CharSequence ip) {
+        ParsedIp parsed = AddressHash.parseIp(ip);
+        return parsed != null && mightContain(AddressHash.hashIp(parsed));
+    }
+
+    /**
+     * @param mac MAC long value
+     * @return {@code false} if mac is certainly not in
+     * @throws IllegalArgumentException throw if not 0 - 0xFFFFFFFFFFFF
+     */
+    public boolean mightContainMac(long mac) throws IllegalArgumentException {
+        return mightContain(AddressHash.hashMac(mac));
+    }
+
+    /**
+     * @param mac MAC chars, may be null
+     * @return {@code false} if mac is certainly not in, or not legal
+     */
+    public boolean mightContainMac(final CharSequence mac) {
+        long value = AddressHash.parseMac(mac);
+        return value != IpMacUtils.INVALID_VALUE && mightContain(AddressHash.hashMac(value));
+    }
+
+    /**
+     * @return the count of fingerprints
+     */
+    public long size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return the most fingerprints the buckets hold
+     */
+    public long capacity() {
+        return (long) bucketCount * SLOTS;
+    }
+
+    /**
+     * @return the bits of a fingerprint
+     */
+    public int fingerprintBits() {
+        return fingerprintBits;
+    }
+
+    /**
+     * @return the count of bits of the buckets
+     */
+    public long bitSize() {
+        return (long) words.length * Long.SIZE;
+    }
+
+    /**
+     * @return the count of bytes {@link #writeTo(DataOutput)} writes
+     */
+    public long serializedSize() {
+        return 24 + (long) words.length * Long.BYTES;
+    }
+
+    /**
+     * Write the filter, big-endian: magic, version, bucket count and fingerprint bits as ints,
+     * the fingerprint count as a long, then the packed buckets as longs.
+     *
+     * @param out where to write
+     * @throws IOException throw if out can not be written
+     */
+    public void writeTo(final DataOutput out) throws IOException {
+        long stamp = lock.readLock();
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(bucketCount);
+            out.writeInt(fingerprintBits);
+            out.writeLong(size);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Read a filter written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in where to read
+     * @return the filter
+     * @throws IOException throw if in can not be read or is not a valid filter
+     */
+    public static AddressCuckooFilter readFrom(final DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an address cuckoo filter.");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported address cuckoo filter version : " + version);
+        }
+        int count = in.readInt();
+        int bits = in.readInt();
+        long size = in.readLong();
+        if (count <= 0 || count > MAX_BUCKETS || bits < MIN_FINGERPRINT_BITS || bits > MAX_FINGERPRINT_BITS
+            || size < 0 || size > (long) count * SLOTS) {
+            throw new IOException("Corrupted address cuckoo filter.");
+        }
+        AddressCuckooFilter filter = new AddressCuckooFilter(count, bits);
+        for (int i = 0; i < filter.words.length; i++) {
+            filter.words[i] = in.readLong();
+        }
+        // the bits after the last bucket are never set
+        int used = (int) ((long) count * filter.bucketBits % Long.SIZE);
+        if (used != 0 && filter.words[filter.words.length - 1] >>> used != 0) {
+            throw new IOException("Corrupted address cuckoo filter.");
+        }
+        long fingerprints = 0;
+        for (int i = 0; i < count; i++) {
+            long bucket = filter.bucket(i);
+            for (int slot = 0; slot < SLOTS; slot++) {
+                fingerprints += filter.slot(bucket, slot) == 0 ? 0 : 1;
+            }
+        }
+        if (fingerprints != size) {
+            throw new IOException("Corrupted address cuckoo filter.");
+        }
+        filter.size = size;
+        return filter;
+    }
+
+    private boolean put(long hash) {
+        int fingerprint = fingerprint(hash);
+        int first = index(hash);
+        long stamp = lock.writeLock();
+        try {
+            int second = alternate(first, fingerprint);
+            if (insert(first, fingerprint) || insert(second, fingerprint)) {
+                size++;
+                return true;
+            }
+            // evict a random fingerprint to its other bucket, again and again, and undo all if none fits
+            int bucket = nextRandom() % 2 == 0 ? first : second;
+            int moving = fingerprint;
+            for (int kick = 0; kick < MAX_KICKS; kick++) {
+                int slot = nextRandom() % SLOTS;
+                kickedBuckets[kick] = bucket;
+                kickedSlots[kick] = slot;
+                long value = bucket(bucket);
+                int evicted = slot(value, slot);
+                setBucket(bucket, withSlot(value, slot, moving));
+                moving = evicted;
+                bucket = alternate(bucket, moving);
+                if (insert(bucket, moving)) {
+                    size++;
+                    return true;
+                }
+            }
+            for (int kick = MAX_KICKS - 1; kick >= 0; kick--) {
+                int back = kickedBuckets[kick];
+                long value = bucket(back);
+                int current = slot(value, kickedSlots[kick]);
+                setBucket(back, withSlot(value, kickedSlots[kick], moving));
+                moving = current;
+            }
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private boolean delete(long hash) {
+        int fingerprint = fingerprint(hash);
+        int first = index(hash);
+        long stamp = lock.writeLock();
+        try {
+            if (remove(first, fingerprint) || remove(alternate(first, fingerprint), fingerprint)) {
+                size--;
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private boolean mightContain(long hash) {
+        int fingerprint = fingerprint(hash);
+        int first = index(hash);
+        int second = alternate(first, fingerprint);
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            boolean found = find(bucket(first), fingerprint) || find(bucket(second), fingerprint);
+            // a bucket may span two longs, and a miss may be a fingerprint in flight between its buckets
+            if (lock.validate(stamp)) {
+                return found;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return find(bucket(first), fingerprint) || find(bucket(second), fingerprint);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private boolean insert(int bucket, int fingerprint) {
+        long value = bucket(bucket);
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (slot(value, slot) == 0) {
+                setBucket(bucket, withSlot(value, slot, fingerprint));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean remove(int bucket, int fingerprint) {
+        long value = bucket(bucket);
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (slot(value, slot) == fingerprint) {
+                setBucket(bucket, withSlot(value, slot, 0));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean find(long bucket, int fingerprint) {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (slot(bucket, slot) == fingerprint) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * the high bits of the hash, never 0 which is a free slot
+     */
+    private int fingerprint(long hash) {
+        int fingerprint = (int) (hash >>> (Long.SIZE - fingerprintBits));
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    /**
+     * the low 32 bits of the hash scaled to the bucket count
+     */
+    private int index(long hash) {
+        return (int) ((hash & 0xFFFFFFFFL) * bucketCount >>> 32);
+    }
+
+    /**
+     * partial-key cuckoo hashing, the other bucket from a bucket and the fingerprint alone. The table is not
+     * a power of two for xor, {@code (h(fingerprint) - bucket) mod count} is its own inverse as well.
+     */
+    private int alternate(int bucket, int fingerprint) {
+        int alternate = index(AddressHash.mix(fingerprint) >>> 32) - bucket;
+        return alternate < 0 ? alternate + bucketCount : alternate;
+    }
+
+    private long bucket(int bucket) {
+        long bit = (long) bucket * bucketBits;
+        int word = (int) (bit >>> 6);
+        int shift = (int) bit & (Long.SIZE - 1);
+        long value = words[word] >>> shift;
+        if (shift + bucketBits > Long.SIZE) {
+            value |= words[word + 1] << (Long.SIZE - shift);
+        }
+        return value & bucketMask;
+    }
+
+    private void setBucket(int bucket, long value) {
+        long bit = (long) bucket * bucketBits;
+        int word = (int) (bit >>> 6);
+        int shift = (int) bit & (Long.SIZE - 1);
+        words[word] = words[word] & ~(bucketMask << shift) | value << shift;
+        if (shift + bucketBits > Long.SIZE) {
+            int low = Long.SIZE - shift;
+            words[word + 1] = words[word + 1] & ~(bucketMask >>> low) | value >>> low;
+        }
+    }
+
+    private int slot(long bucket, int slot) {
+        return (int) (bucket >>> (slot * fingerprintBits)) & fingerprintMask;
+    }
+
+    private long withSlot(long bucket, int slot, int fingerprint) {
+        int shift = slot * fingerprintBits;
+        return bucket & ~((long) fingerprintMask << shift) | (long) fingerprint << shift;
+    }
+
+    /**
+     * xorshift, only called under the write lock
+     */
+    private int nextRandom() {
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (int) (random >>> 33);
+    }
+
+    @Override
+    public String toString() {
+        return "AddressCuckooFilter{" +
+            "size=" + size() +
+            ", capacity=" + capacity() +
+            ", fingerprintBits=" + fingerprintBits +
+            '}';
+    }
+}
@@ -0,0 +1,85 @@
+package com.nxest.grapes.lang;
+
+import java.util.Objects;
+
+/**
+ * 64-bit hashes of numeric addresses for the probabilistic filters. An IPV4 is hashed as its
+ * IPV4-mapped IPV6, so <code>10.0.0.1</code> and <code>::ffff:10.0.0.1</code> are one key, and a MAC
+ * is hashed with another seed, so a MAC and an IPV4 of the same long value are different keys.
+ *
+ * @author l10178
+ */
+final class AddressHash {
+
+    private static final long IP_SEED = 0x2545F4914F6CDD1DL;
+    private static final long MAC_SEED = 0x9E3779B97F4A7C15L;
+    private static final long IPV4_MAPPED = 0xFFFF00000000L;
+
+    private static final ThreadLocal<ParsedIp> PARSED_IP = ThreadLocal.withInitial(ParsedIp::new);
+
+    private AddressHash() {
+    }
+
+    static long hashIpV4(long ip) {
+        checkIpV4(ip);
+        return hashIpV6(0L, IPV4_MAPPED | ip);
+    }
+
+    static long hashIpV6(long high, long low) {
+        return mix(mix(high ^ IP_SEED) ^ low);
+    }
+
+    static long hashMac(long mac) {
+        checkMac(mac);
+        return mix(mac ^ MAC_SEED);
+    }
+
+    /**
+     * @param ip IPV4 or IPV6 chars, may be null
+     * @return the parse result reused by this thread, or null if not legal
+     */
+    static ParsedIp parseIp(final CharSequence ip) {
+        ParsedIp parsed = PARSED_IP.get();
+        return parsed.parse(ip) ? parsed : null;
+    }
+
+    /**
+     * @param ip a legal parse result
+     * @return the hash of ip, an IPV4-mapped IPV6 is its IPV4
+     */
+    static long hashIp(final ParsedIp ip) {
+        return ip.isIpV4() ? hashIpV6(0L, IPV4_MAPPED | ip.getLow()) : hashIpV6(ip.getHigh(), ip.getLow());
+    }
+
+    /**
+     * @param mac MAC chars, may be null
+     * @return the MAC value, or {@link IpMacUtils#INVALID_VALUE} if not legal
+     */
+    static long parseMac(final CharSequence mac) {
+        return Objects.isNull(mac) ? IpMacUtils.INVALID_VALUE : IpMacUtils.parseMac(mac, 0, mac.length());
+    }
+
+    /**
+     * murmur3 finalizer
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    static void checkIpV4(long ip) throws IllegalArgumentException {
+        if (ip < 0 || ip > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("Illegal arguments : " + ip);
+        }
+    }
+
+    static void checkMac(long mac) throws IllegalArgumentException {
+        if (mac < 0 || mac > 0xFFFFFFFFFFFFL) {
+            throw new IllegalArgumentException("Illegal arguments : " + mac);
+        }
+    }
+}
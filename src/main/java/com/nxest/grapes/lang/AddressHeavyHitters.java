@@ -0,0 +1,586 @@
+package com.nxest.grapes.lang;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The heaviest IPV4 and IPV6 prefixes of a weighted stream, by the Space-Saving algorithm of Metwally
+ * et al. in a fixed number of counters. Every prefix heavier than total / capacity is kept, a kept
+ * count is never below the true count and never above it by more than its error, and the error is at
+ * most total / capacity.
+ * <p>
+ * IPs are counted by prefix, <code>/24</code> and <code>/64</code> by default, an IPV4-mapped IPV6 is
+ * its IPV4. Sketches of the same capacity and prefix lengths merge after Agarwal et al., with the same
+ * guarantees over the merged stream, so each thread or node counts alone and the sketches are merged.
+ * <p>
+ * Not thread-safe, use one sketch per thread and {@link #merge(AddressHeavyHitters)}.
+ *
+ * <pre>
+ * AddressHeavyHitters top = new AddressHeavyHitters(1024);
+ * top.addIp("192.168.0.1", 10);
+ * top.addIp("192.168.0.2", 5);
+ * top.addIp("10.0.0.1", 1);
+ * assertEquals("192.168.0.0/24", top.topK(1).get(0).toString());
+ * assertEquals(15L, top.topK(1).get(0).getCount());
+ * </pre>
+ *
+ * @author l10178
+ */
+public final class AddressHeavyHitters {
+
+    static final int MAGIC = 0x47525353;
+    static final int VERSION = 1;
+
+    public static final int DEFAULT_IPV4_PREFIX_LENGTH = 24;
+    public static final int DEFAULT_IPV6_PREFIX_LENGTH = 64;
+
+    private static final int MAX_CAPACITY = 1 << 24;
+    private static final long IPV4_MAPPED = 0xFFFF00000000L;
+
+    private final int capacity;
+    private final int ipV4PrefixLength;
+    private final int ipV6PrefixLength;
+    private final long ipV4Mask;
+    private final long ipV6MaskHigh;
+    private final long ipV6MaskLow;
+
+    /**
+     * counter i counts the prefix highs[i], lows[i]
+     */
+    private final long[] highs;
+    private final long[] lows;
+    private final long[] counts;
+    private final long[] errors;
+    /**
+     * a min-heap of counters by count, and the heap position of each counter
+     */
+    private final int[] heap;
+    private final int[] positions;
+    /**
+     * open addressing from a prefix to its counter + 1, 0 is free
+     */
+    private final int[] table;
+    private final int mask;
+    /**
+     * the parse result of {@link #addIp(CharSequence, long)}, reused as the sketch is not thread-safe
+     */
+    private final ParsedIp parsed = new ParsedIp();
+    private int size;
+    private long total;
+
+    /**
+     * @param capacity the count of counters, 1 - 2^24
+     * @throws IllegalArgumentException throw if capacity is out of range
+     */
+    public AddressHeavyHitters(int capacity) throws IllegalArgumentException {
+        this(capacity, DEFAULT_IPV4_PREFIX_LENGTH, DEFAULT_IPV6_PREFIX_LENGTH);
+    }
+
+    /**
+     * @param capacity         the count of counters, 1 - 2^24
+     * @param ipV4PrefixLength 0 - 32, IPV4 are counted by this prefix
+     * @param ipV6PrefixLength 0 - 128, IPV6 are counted by this prefix
+     * @throws IllegalArgumentException throw if an argument is out of range
+     */
+    public AddressHeavyHitters(int capacity, int ipV4PrefixLength, int ipV6PrefixLength) throws IllegalArgumentException {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Illegal arguments : " + capacity);
+        }
+        if (ipV4PrefixLength < 0 || ipV4PrefixLength > 32) {
+            throw new IllegalArgumentException("Illegal arguments : " + ipV4PrefixLength);
+        }
+        if (ipV6PrefixLength < 0 || ipV6PrefixLength > 128) {
+            throw new IllegalArgumentException("Illegal arguments : " + ipV6PrefixLength);
+        }
+        this.capacity = capacity;
+        this.ipV4PrefixLength = ipV4PrefixLength;
+        this.ipV6PrefixLength = ipV6PrefixLength;
+        this.ipV4Mask = IpV6Address.maskLow(96 + ipV4PrefixLength);
+        this.ipV6MaskHigh = IpV6Address.maskHigh(ipV6PrefixLength);
+        this.ipV6MaskLow = IpV6Address.maskLow(ipV6PrefixLength);
+        this.highs = new long[capacity];
+        this.lows = new long[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.heap = new int[capacity];
+        this.positions = new int[capacity];
+        this.table = new int[Integer.highestOneBit(capacity) << 2];
+        this.mask = table.length - 1;
+    }
+
+    /**
+     * @param ip IPV4 long value
+     * @throws IllegalArgumentException throw if not 0 - 0xFFFFFFFF
+     */
+    public void addIpV4(long ip) throws IllegalArgumentException {
+        addIpV4(ip, 1L);
+    }
+
+    /**
+     * @param ip     IPV4 long value
+     * @param weight a positive weight, such as packets or bytes
+     * @throws IllegalArgumentException throw if not 0 - 0xFFFFFFFF, or weight is not positive
+     */
+    public void addIpV4(long ip, long weight) throws IllegalArgumentException {
+        AddressHash.checkIpV4(ip);
+        add(0L, IPV4_MAPPED | ip, weight);
+    }
+
+    /**
+     * @param high the high 64 bits of the IPV6
+     * @param low  the low 64 bits of the IPV6
+     */
+    public void addIpV6(long high, long low) {
+        add(high, low, 1L);
+    }
+
+    /**
+     * @param high   the high 64 bits of the IPV6
+     * @param low    the low 64 bits of the IPV6
+     * @param weight a positive weight, such as packets or bytes
+     * @throws IllegalArgumentException throw if weight is not positive
+     */
+    public void addIpV6(long high, long low, long weight) throws IllegalArgumentException {
+        add(high, low, weight);
+    }
+
+    /**
+     * @param ip     IPV4 or IPV6 chars, see {@link ParsedIp#parse(CharSequence)}
+     * @param weight a positive weight, such as packets or bytes
+     * @return {@code false} if ip is not legal and not counted
+     * @throws IllegalArgumentException throw if weight is not positive
+     */
+    public boolean addIp(final CharSequence ip, long weight) throws IllegalArgumentException {
+        if (!parsed.parse(ip)) {
+            return false;
+        }
+        add(parsed.isIpV4() ? 0L : parsed.getHigh(), parsed.isIpV4() ? IPV4_MAPPED | parsed.getLow() : parsed.getLow(), weight);
+        return true;
+    }
+
+    /**
+     * @param ip IPV4 long value
+     * @return an upper bound of the weight of the prefix of ip
+     * @throws IllegalArgumentException throw if not 0 - 0xFFFFFFFF
+     */
+    public long estimateIpV4(long ip) throws IllegalArgumentException {
+        AddressHash.checkIpV4(ip);
+        return estimate(0L, (IPV4_MAPPED | ip) & ipV4Mask);
+    }
+
+    /**
+     * @param high the high 64 bits of the IPV6
+     * @param low  the low 64 bits of the IPV6
+     * @return an upper bound of the weight of the prefix of the ip
+     */
+    public long estimateIpV6(long high, long low) {
+        if (isIpV4Mapped(high, low)) {
+            return estimate(0L, low & ipV4Mask);
+        }
+        return estimate(high & ipV6MaskHigh, low & ipV6MaskLow);
+    }
+
+    /**
+     * @param k the most prefixes to return
+     * @return up to k kept prefixes, the heaviest first
+     */
+    public List<Entry> topK(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Illegal arguments : " + k);
+        }
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+        List<Entry> entries = new ArrayList<>(Math.min(k, size));
+        for (int i = 0; i < Math.min(k, size); i++) {
+            int c = order[i];
+            boolean ipV4 = isIpV4Mapped(highs[c], lows[c]);
+            entries.add(new Entry(highs[c], lows[c], ipV4 ? ipV4PrefixLength : ipV6PrefixLength, ipV4, counts[c], errors[c]));
+        }
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Adds the stream counted by other, this keeps the heaviest prefixes of both streams.
+     *
+     * @param other a sketch of the same capacity and prefix lengths
+     * @throws IllegalArgumentException throw if other counts differently
+     */
+    public void merge(final AddressHeavyHitters other) throws IllegalArgumentException {
+        if (!isCompatible(other)) {
+            throw new IllegalArgumentException("Illegal arguments : " + other);
+        }
+        // a prefix not kept by a full sketch weighs at most its smallest count there
+        long mine = size == capacity ? counts[heap[0]] : 0L;
+        long theirs = other.size == other.capacity ? other.counts[other.heap[0]] : 0L;
+        int n = 0;
+        long[] mergedHighs = new long[size + other.size];
+        long[] mergedLows = new long[mergedHighs.length];
+        long[] mergedCounts = new long[mergedHighs.length];
+        long[] mergedErrors = new long[mergedHighs.length];
+        for (int i = 0; i < size; i++) {
+            int j = other.find(highs[i], lows[i]);
+            mergedHighs[n] = highs[i];
+            mergedLows[n] = lows[i];
+            mergedCounts[n] = counts[i] + (j < 0 ? theirs : other.counts[j]);
+            mergedErrors[n++] = errors[i] + (j < 0 ? theirs : other.errors[j]);
+        }
+        for (int j = 0; j < other.size; j++) {
+            if (find(other.highs[j], other.lows[j]) < 0) {
+                mergedHighs[n] = other.highs[j];
+                mergedLows[n] = other.lows[j];
+                mergedCounts[n] = other.counts[j] + mine;
+                mergedErrors[n++] = other.errors[j] + mine;
+            }
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(mergedCounts[b], mergedCounts[a]));
+        long sum = total + other.total;
+        clear();
+        for (int i = 0; i < Math.min(n, capacity); i++) {
+            int m = order[i];
+            append(mergedHighs[m], mergedLows[m], mergedCounts[m], mergedErrors[m]);
+        }
+        total = sum;
+    }
+
+    /**
+     * @return the total weight added
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * @return the count of kept prefixes
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+        size = 0;
+        total = 0L;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getIpV4PrefixLength() {
+        return ipV4PrefixLength;
+    }
+
+    public int getIpV6PrefixLength() {
+        return ipV6PrefixLength;
+    }
+
+    /**
+     * @return the count of bytes {@link #writeTo(DataOutput)} writes
+     */
+    public long serializedSize() {
+        return 26 + 32L * size;
+    }
+
+    /**
+     * Write the sketch, big-endian: magic, version and capacity as ints, the IPV4 and IPV6 prefix lengths
+     * as bytes, the total weight as a long, the counter count as an int, then for each counter its high,
+     * low, count and error as longs.
+     *
+     * @param out where to write
+     * @throws IOException throw if out can not be written
+     */
+    public void writeTo(final DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(capacity);
+        out.writeByte(ipV4PrefixLength);
+        out.writeByte(ipV6PrefixLength);
+        out.writeLong(total);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeLong(highs[i]);
+            out.writeLong(lows[i]);
+            out.writeLong(counts[i]);
+            out.writeLong(errors[i]);
+        }
+    }
+
+    /**
+     * Read a sketch written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in where to read
+     * @return the sketch
+     * @throws IOException throw if in can not be read or is not a valid sketch
+     */
+    public static AddressHeavyHitters readFrom(final DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an address heavy hitters sketch.");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported address heavy hitters sketch version : " + version);
+        }
+        int capacity = in.readInt();
+        int ipV4PrefixLength = in.readUnsignedByte();
+        int ipV6PrefixLength = in.readUnsignedByte();
+        long total = in.readLong();
+        int size = in.readInt();
+        if (capacity <= 0 || capacity > MAX_CAPACITY || ipV4PrefixLength > 32 || ipV6PrefixLength > 128
+            || total < 0 || size < 0 || size > capacity) {
+            throw new IOException("Corrupted address heavy hitters sketch.");
+        }
+        AddressHeavyHitters sketch = new AddressHeavyHitters(capacity, ipV4PrefixLength, ipV6PrefixLength);
+        for (int i = 0; i < size; i++) {
+            long high = in.readLong();
+            long low = in.readLong();
+            long count = in.readLong();
+            long error = in.readLong();
+            if (count <= 0 || error < 0 || error >= count || sketch.find(high, low) >= 0) {
+                throw new IOException("Corrupted address heavy hitters sketch.");
+            }
+            sketch.append(high, low, count, error);
+        }
+        sketch.total = total;
+        return sketch;
+    }
+
+    private boolean isCompatible(final AddressHeavyHitters other) {
+        return capacity == other.capacity && ipV4PrefixLength == other.ipV4PrefixLength
+            && ipV6PrefixLength == other.ipV6PrefixLength;
+    }
+
+    private void add(long high, long low, long weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("Illegal arguments : " + weight);
+        }
+        if (isIpV4Mapped(high, low)) {
+            low &= ipV4Mask;
+        } else {
+            high &= ipV6MaskHigh;
+            low &= ipV6MaskLow;
+        }
+        total += weight;
+        int c = find(high, low);
+        if (c >= 0) {
+            counts[c] += weight;
+            siftDown(positions[c]);
+        } else if (size < capacity) {
+            append(high, low, weight, 0L);
+        } else {
+            // the smallest counter is handed to the new prefix, its count is the error
+            c = heap[0];
+            unlink(c);
+            highs[c] = high;
+            lows[c] = low;
+            errors[c] = counts[c];
+            counts[c] += weight;
+            link(c);
+            siftDown(0);
+        }
+    }
+
+    private long estimate(long high, long low) {
+        int c = find(high, low);
+        if (c >= 0) {
+            return counts[c];
+        }
+        return size == capacity ? counts[heap[0]] : 0L;
+    }
+
+    private void append(long high, long low, long count, long error) {
+        int c = size++;
+        highs[c] = high;
+        lows[c] = low;
+        counts[c] = count;
+        errors[c] = error;
+        link(c);
+        heap[c] = c;
+        positions[c] = c;
+        siftUp(c);
+    }
+
+    /**
+     * @return the counter of the prefix, or -1
+     */
+    private int find(long high, long low) {
+        for (int i = slot(high, low); ; i = (i + 1) & mask) {
+            int c = table[i] - 1;
+            if (c < 0) {
+                return -1;
+            }
+            if (highs[c] == high && lows[c] == low) {
+                return c;
+            }
+        }
+    }
+
+    private void link(int c) {
+        int i = slot(highs[c], lows[c]);
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = c + 1;
+    }
+
+    /**
+     * linear probing delete, shifts back the entries after the hole that can not be found past it
+     */
+    private void unlink(int c) {
+        int hole = slot(highs[c], lows[c]);
+        while (table[hole] != c + 1) {
+            hole = (hole + 1) & mask;
+        }
+        for (int i = (hole + 1) & mask; table[i] != 0; i = (i + 1) & mask) {
+            int moving = table[i] - 1;
+            int home = slot(highs[moving], lows[moving]);
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                table[hole] = table[i];
+                hole = i;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    private int slot(long high, long low) {
+        return (int) AddressHash.hashIpV6(high, low) & mask;
+    }
+
+    private void siftUp(int position) {
+        int c = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[c]) {
+                break;
+            }
+            place(heap[parent], position);
+            position = parent;
+        }
+        place(c, position);
+    }
+
+    private void siftDown(int position) {
+        int c = heap[position];
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[c] <= counts[heap[child]]) {
+                break;
+            }
+            place(heap[child], position);
+            position = child;
+        }
+        place(c, position);
+    }
+
+    private void place(int c, int position) {
+        heap[position] = c;
+        positions[c] = position;
+    }
+
+    private static boolean isIpV4Mapped(long high, long low) {
+        return high == 0L && low >>> 32 == 0xFFFFL;
+    }
+
+    @Override
+    public String toString() {
+        return "AddressHeavyHitters{" +
+            "capacity=" + capacity +
+            ", size=" + size +
+            ", total=" + total +
+            ", top=" + topK(10) +
+            '}';
+    }
+
+    /**
+     * A kept prefix and its count.
+     */
+    public static final class Entry {
+
+        private final long high;
+        private final long low;
+        private final int prefixLength;
+        private final boolean ipV4;
+        private final long count;
+        private final long error;
+
+        private Entry(long high, long low, int prefixLength, boolean ipV4, long count, long error) {
+            this.high = high;
+            this.low = low;
+            this.prefixLength = prefixLength;
+            this.ipV4 = ipV4;
+            this.count = count;
+            this.error = error;
+        }
+
+        public boolean isIpV4() {
+            return ipV4;
+        }
+
+        /**
+         * @return the IPV4 long value of the network, only for an IPV4 prefix
+         */
+        public long getIpV4() {
+            return low & 0xFFFFFFFFL;
+        }
+
+        /**
+         * @return the high 64 bits of the network, 0 for an IPV4 prefix
+         */
+        public long getHigh() {
+            return high;
+        }
+
+        /**
+         * @return the low 64 bits of the network, the IPV4-mapped IPV6 for an IPV4 prefix
+         */
+        public long getLow() {
+            return low;
+        }
+
+        public int getPrefixLength() {
+            return prefixLength;
+        }
+
+        /**
+         * @return an upper bound of the weight of the prefix
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the most the count may be above the weight of the prefix
+         */
+        public long getError() {
+            return error;
+        }
+
+        /**
+         * @return the network and prefix length, such as <code>192.168.0.0/24</code>
+         */
+        @Override
+        public String toString() {
+            String network = ipV4 ? IpMacUtils.longToIpV4(getIpV4()) : IpMacUtils.longsToIpV6(high, low);
+            return network + '/' + prefixLength;
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package com.nxest.grapes.lang;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A HyperLogLog distinct counter of IPV4, IPV6 and MAC values, or of their prefixes, in a fixed
+ * 2^precision bytes. With 64-bit hashes and the estimator of Ertl (2017), which needs neither the
+ * bias tables nor the linear counting switch of HyperLogLog++, the relative error is about
+ * 1.04 / sqrt(2^precision) over the whole range, 0.8% at the default precision 14, 16 KB.
+ * <p>
+ * IPs are counted by prefix when prefix lengths are given, <code>/24</code> counts distinct IPV4
+ * networks. Counters of the same precision and prefix lengths merge into the union, so each thread
+ * or node counts alone and the counts are merged.
+ * <p>
+ * Not thread-safe, use one counter per thread and {@link #merge(AddressHyperLogLog)}.
+ *
+ * <pre>
+ * AddressHyperLogLog sources = new AddressHyperLogLog();
+ * sources.addIp("192.168.0.1");
+ * sources.addIp("192.168.0.1");
+ * sources.addIp("ff06::c3");
+ * assertEquals(2L, sources.cardinality());
+ * </pre>
+ *
+ * @author l10178
+ */
+public final class AddressHyperLogLog {
+
+    static final int MAGIC = 0x4752484C;
+    static final int VERSION = 1;
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+    public static final int DEFAULT_PRECISION = 14;
+
+    private static final double ALPHA_INFINITY = 0.5 / Math.log(2);
+    private static final long IPV4_MAPPED = 0xFFFF00000000L;
+
+    private final int precision;
+    private final int ipV4PrefixLength;
+    private final int ipV6PrefixLength;
+    private final long ipV6MaskHigh;
+    private final long ipV6MaskLow;
+    private final long ipV4Mask;
+    private final byte[] registers;
+    /**
+     * the parse result of {@link #addIp(CharSequence)}, reused as the counter is not thread-safe
+     */
+    private final ParsedIp parsed = new ParsedIp();
+
+    public AddressHyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param precision 4 - 18, the counter takes 2^precision bytes
+     * @throws IllegalArgumentException throw if precision not 4 - 18
+     */
+    public AddressHyperLogLog(int precision) throws IllegalArgumentException {
+        this(precision, 32, 128);
+    }
+
+    /**
+     * @param precision        4 - 18, the counter takes 2^precision bytes
+     * @param ipV4PrefixLength 0 - 32, IPV4 are counted by this prefix
+     * @param ipV6PrefixLength 0 - 128, IPV6 are counted by this prefix
+     * @throws IllegalArgumentException throw if an argument is out of range
+     */
+    public AddressHyperLogLog(int precision, int ipV4PrefixLength, int ipV6PrefixLength) throws IllegalArgumentException {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Illegal arguments : " + precision);
+        }
+        if (ipV4PrefixLength < 0 || ipV4PrefixLength > 32) {
+            throw new IllegalArgumentException("Illegal arguments : " + ipV4PrefixLength);
+        }
+        if (ipV6PrefixLength < 0 || ipV6PrefixLength > 128) {
+            throw new IllegalArgumentException("Illegal arguments : " + ipV6PrefixLength);
+        }
+        this.precision = precision;
+        this.ipV4PrefixLength = ipV4PrefixLength;
+        this.ipV6PrefixLength = ipV6PrefixLength;
+        this.ipV4Mask = IpV6Address.maskLow(96 + ipV4PrefixLength);
+        this.ipV6MaskHigh = IpV6Address.maskHigh(ipV6PrefixLength);
+        this.ipV6MaskLow = IpV6Address.maskLow(ipV6PrefixLength);
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * A copy of other.
+     *
+     * @param other the counter to copy
+     */
+    public AddressHyperLogLog(final AddressHyperLogLog other) {
+        this(other.precision, other.ipV4PrefixLength, other.ipV6PrefixLength);
+        System.arraycopy(other.registers, 0, registers, 0, registers.length);
+    }
+
+    /**
+     * @param ip IPV4 long value
+     * @throws IllegalArgumentException throw if not 0 - 0xFFFFFFFF
+     */
+    public void addIpV4(long ip) throws IllegalArgumentException {
+        AddressHash.checkIpV4(ip);
+        add(AddressHash.hashIpV6(0L, (IPV4_MAPPED | ip) & ipV4Mask));
+    }
+
+    /**
+     * @param high the high 64 bits of the IPV6
+     * @param low  the low 64 bits of the IPV6
+     */
+    public void addIpV6(long high, long low) {
+        if (high == 0L && low >>> 32 == 0xFFFFL) {
+            // an IPV4-mapped IPV6 is its IPV4
+            add(AddressHash.hashIpV6(0L, low & ipV4Mask));
+        } else {
+            add(AddressHash.hashIpV6(high & ipV6MaskHigh, low & ipV6MaskLow));
+        }
+    }
+
+    /**
+     * @param ip IPV4 or IPV6 chars, see {@link ParsedIp#parse(CharSequence)}
+     * @return {@code false} if ip is not legal and not counted
+     */
+    public boolean addIp(final CharSequence ip) {
+        if (!parsed.parse(ip)) {
+            return false;
+        }
+        if (parsed.isIpV4()) {
+            addIpV4(parsed.getLow());
+        } else {
+            addIpV6(parsed.getHigh(), parsed.getLow());
+        }
+        return true;
+    }
+
+    /**
+     * @param mac MAC long value
+     * @throws IllegalArgumentException throw if not 0 - 0xFFFFFFFFFFFF
+     */
+    public void addMac(long mac) throws IllegalArgumentException {
+        add(AddressHash.hashMac(mac));
+    }
+
+    /**
+     * @param mac MAC chars, see {@link IpMacUtils#isLegalMac(String)}
+     * @return {@code false} if mac is not legal and not counted
+     */
+    public boolean addMac(final CharSequence mac) {
+        long value = AddressHash.parseMac(mac);
+        if (value == IpMacUtils.INVALID_VALUE) {
+            return false;
+        }
+        add(AddressHash.hashMac(value));
+        return true;
+    }
+
+    /**
+     * Adds all values counted by other, this counts the union.
+     *
+     * @param other a counter of the same precision and prefix lengths
+     * @throws IllegalArgumentException throw if other counts differently
+     */
+    public void merge(final AddressHyperLogLog other) throws IllegalArgumentException {
+        if (!isCompatible(other)) {
+            throw new IllegalArgumentException("Illegal arguments : " + other);
+        }
+        byte[] theirs = other.registers;
+        for (int i = 0; i < registers.length; i++) {
+            if (theirs[i] > registers[i]) {
+                registers[i] = theirs[i];
+            }
+        }
+    }
+
+    /**
+     * @return the estimated count of distinct values
+     */
+    public long cardinality() {
+        int q = Long.SIZE - precision;
+        int m = registers.length;
+        int[] histogram = new int[q + 2];
+        for (byte register : registers) {
+            histogram[register]++;
+        }
+        double z = m * tau(1.0 - (double) histogram[q + 1] / m);
+        for (int k = q; k >= 1; k--) {
+            z = 0.5 * (z + histogram[k]);
+        }
+        z += m * sigma((double) histogram[0] / m);
+        return Math.round(ALPHA_INFINITY * m * m / z);
+    }
+
+    public boolean isEmpty() {
+        for (byte register : registers) {
+            if (register != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(registers, (byte) 0);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public int getIpV4PrefixLength() {
+        return ipV4PrefixLength;
+    }
+
+    public int getIpV6PrefixLength() {
+        return ipV6PrefixLength;
+    }
+
+    /**
+     * @return the count of bytes {@link #writeTo(DataOutput)} writes
+     */
+    public long serializedSize() {
+        return 11 + registers.length;
+    }
+
+    /**
+     * Write the counter, big-endian: magic and version as ints, precision and the IPV4 and IPV6
+     * prefix lengths as bytes, then a byte for each register.
+     *
+     * @param out where to write
+     * @throws IOException throw if out can not be written
+     */
+    public void writeTo(final DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeByte(precision);
+        out.writeByte(ipV4PrefixLength);
+        out.writeByte(ipV6PrefixLength);
+        out.write(registers);
+    }
+
+    /**
+     * Read a counter written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in where to read
+     * @return the counter
+     * @throws IOException throw if in can not be read or is not a valid counter
+     */
+    public static AddressHyperLogLog readFrom(final DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an address HyperLogLog.");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported address HyperLogLog version : " + version);
+        }
+        int precision = in.readUnsignedByte();
+        int ipV4PrefixLength = in.readUnsignedByte();
+        int ipV6PrefixLength = in.readUnsignedByte();
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION || ipV4PrefixLength > 32 || ipV6PrefixLength > 128) {
+            throw new IOException("Corrupted address HyperLogLog.");
+        }
+        AddressHyperLogLog counter = new AddressHyperLogLog(precision, ipV4PrefixLength, ipV6PrefixLength);
+        in.readFully(counter.registers);
+        int max = Long.SIZE - precision + 1;
+        for (byte register : counter.registers) {
+            if (register < 0 || register > max) {
+                throw new IOException("Corrupted address HyperLogLog.");
+            }
+        }
+        return counter;
+    }
+
+    private boolean isCompatible(final AddressHyperLogLog other) {
+        return precision == other.precision && ipV4PrefixLength == other.ipV4PrefixLength
+            && ipV6PrefixLength == other.ipV6PrefixLength;
+    }
+
+    /**
+     * the high precision bits pick the register, it keeps the most leading zeros of the rest plus one
+     */
+    private void add(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << precision), Long.SIZE - precision) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    private static double sigma(double x) {
+        if (x == 1.0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double y = 1.0;
+        double z = x;
+        double previous;
+        do {
+            x *= x;
+            previous = z;
+            z += x * y;
+            y += y;
+        } while (z != previous);
+        return z;
+    }
+
+    private static double tau(double x) {
+        if (x == 0.0 || x == 1.0) {
+            return 0.0;
+        }
+        double y = 1.0;
+        double z = 1.0 - x;
+        double previous;
+        do {
+            x = Math.sqrt(x);
+            previous = z;
+            y *= 0.5;
+            z -= (1.0 - x) * (1.0 - x) * y;
+        } while (z != previous);
+        return z / 3.0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AddressHyperLogLog)) {
+            return false;
+        }
+        AddressHyperLogLog other = (AddressHyperLogLog) o;
+        return isCompatible(other) && Arrays.equals(registers, other.registers);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * precision + Arrays.hashCode(registers);
+    }
+
+    @Override
+    public String toString() {
+        return "AddressHyperLogLog{" +
+            "precision=" + precision +
+            ", ipV4PrefixLength=" + ipV4PrefixLength +
+            ", ipV6PrefixLength=" + ipV6PrefixLength +
+            ", cardinality=" + cardinality() +
+            '}';
+    }
+}
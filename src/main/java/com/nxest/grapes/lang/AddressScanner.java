@@ -0,0 +1,326 @@
+package com.nxest.grapes.lang;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * Pulls every IPV4, IPV6 and MAC address out of ASCII or UTF-8 bytes, such as log files, and hands them
+ * to a {@link Handler} as primitive values with their byte offsets. Nothing is turned into a string.
+ * <p>
+ * Bytes may be fed in chunks of any size, an address split between two chunks is still found.
+ * An address must not touch a letter or an underscore, so <code>std::vector</code> has no address.
+ * Trailing punctuation, an IPV4 <code>:port</code> and a <code>-</code> between two IPs are stripped.
+ * MACs are found in every {@link MacFormat} but {@link MacFormat#BARE}. An IPV4-mapped IPV6, such as
+ * <code>::ffff:10.0.0.1</code>, is reported as its IPV4 at the offset and length of the IPV6 text.
+ *
+ * <pre>
+ * AddressScanner scanner = new AddressScanner(new AddressScanner.Handler() {
+ *     public void onIpV4(long ip, long offset, int length) {
+ *         // 3232235521L, 4, 11
+ *     }
+ * });
+ * scanner.scan("src=192.168.0.1 ok".getBytes(StandardCharsets.US_ASCII));
+ * scanner.finish();
+ * </pre>
+ * <p>
+ * Not thread-safe, use one scanner per thread.
+ *
+ * @author l10178
+ */
+public final class AddressScanner {
+
+    /**
+     * Receives addresses in the order found, the offset counts bytes from the first byte scanned.
+     */
+    public interface Handler {
+
+        default void onIpV4(long ip, long offset, int length) {
+        }
+
+        default void onIpV6(long high, long low, long offset, int length) {
+        }
+
+        default void onMac(long mac, long offset, int length) {
+        }
+    }
+
+    /**
+     * longer runs of address chars can not be an address
+     */
+    static final int MAX_TOKEN = 64;
+
+    private static final int MAP_WINDOW = 1 << 26;
+
+    /**
+     * byte types, anything else is 0 and ends a token
+     */
+    private static final byte TOKEN = 1;
+    private static final byte WORD = 2;
+    private static final byte[] TYPES = new byte[256];
+
+    static {
+        for (int c = 'g'; c <= 'z'; c++) {
+            TYPES[c] = WORD;
+            TYPES[c - 'a' + 'A'] = WORD;
+        }
+        TYPES['_'] = WORD;
+        for (int c = '0'; c <= '9'; c++) {
+            TYPES[c] = TOKEN;
+        }
+        for (int c = 'a'; c <= 'f'; c++) {
+            TYPES[c] = TOKEN;
+            TYPES[c - 'a' + 'A'] = TOKEN;
+        }
+        TYPES['.'] = TOKEN;
+        TYPES[':'] = TOKEN;
+        TYPES['-'] = TOKEN;
+    }
+
+    private final Handler handler;
+    private final byte[] token = new byte[MAX_TOKEN];
+    private final AsciiCharSequence chars = new AsciiCharSequence(token, 0, 0);
+    private final long[] ipV6 = new long[2];
+
+    private long position;
+    private long tokenStart;
+    private int tokenLength;
+    private boolean overlong;
+    /**
+     * the byte before the current token is a letter or an underscore
+     */
+    private boolean afterWord;
+
+    public AddressScanner(final Handler handler) {
+        this.handler = Objects.requireNonNull(handler, "handler");
+    }
+
+    /**
+     * Scan the next bytes.
+     *
+     * @param bytes the bytes
+     */
+    public void scan(final byte[] bytes) {
+        scan(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Scan the next bytes.
+     *
+     * @param bytes  the bytes
+     * @param offset index of the first byte
+     * @param length the count of bytes
+     */
+    public void scan(final byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > bytes.length - length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", size " + bytes.length);
+        }
+        for (int i = offset, end = offset + length; i < end; i++) {
+            next(bytes[i]);
+        }
+    }
+
+    /**
+     * Scan the remaining bytes of the buffer, the buffer position is not changed.
+     *
+     * @param buffer the bytes, may be a mapped or direct buffer
+     */
+    public void scan(final ByteBuffer buffer) {
+        for (int i = buffer.position(), end = buffer.limit(); i < end; i++) {
+            next(buffer.get(i));
+        }
+    }
+
+    /**
+     * Scan all bytes of the stream and {@link #finish()}, the stream is not closed.
+     *
+     * @param in the stream
+     * @return the count of bytes scanned
+     * @throws IOException throw if the stream can not be read
+     */
+    public long scan(final InputStream in) throws IOException {
+        byte[] buffer = new byte[1 << 16];
+        long start = position;
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            scan(buffer, 0, n);
+        }
+        finish();
+        return position - start;
+    }
+
+    /**
+     * Scan a whole file through memory-mapped windows and {@link #finish()}.
+     *
+     * @param file the file
+     * @return the count of bytes scanned
+     * @throws IOException throw if the file can not be read
+     */
+    public long scan(final Path file) throws IOException {
+        long start = position;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long at = 0; at < size; at += MAP_WINDOW) {
+                scan(channel.map(FileChannel.MapMode.READ_ONLY, at, Math.min(MAP_WINDOW, size - at)));
+            }
+        }
+        finish();
+        return position - start;
+    }
+
+    /**
+     * End of input, report an address at the very end.
+     */
+    public void finish() {
+        endToken(false);
+        afterWord = false;
+    }
+
+    /**
+     * Forget the pending token and restart offsets from 0.
+     */
+    public void reset() {
+        position = 0L;
+        tokenLength = 0;
+        overlong = false;
+        afterWord = false;
+    }
+
+    /**
+     * @return the count of bytes scanned since created or reset
+     */
+    public long position() {
+        return position;
+    }
+
+    private void next(byte b) {
+        byte type = TYPES[b & 0xFF];
+        if (type == TOKEN) {
+            if (tokenLength == 0 && !overlong) {
+                tokenStart = position;
+            }
+            if (tokenLength < MAX_TOKEN) {
+                token[tokenLength++] = b;
+            } else {
+                overlong = true;
+            }
+        } else {
+            endToken(type == WORD);
+            afterWord = type == WORD;
+        }
+        position++;
+    }
+
+    private void endToken(boolean beforeWord) {
+        if (tokenLength > 0 && !overlong && !afterWord && !beforeWord) {
+            classify();
+        }
+        tokenLength = 0;
+        overlong = false;
+    }
+
+    private void classify() {
+        // the parsers see exactly the token
+        chars.wrap(token, 0, tokenLength);
+        if (emit(0, tokenLength)) {
+            return;
+        }
+        // trailing punctuation, "10.0.0.1." or "ff06::c3:"
+        int from = 0;
+        int to = tokenLength;
+        while (from < to && (token[from] == '.' || token[from] == '-')) {
+            from++;
+        }
+        while (to > from && (token[to - 1] == '.' || token[to - 1] == '-' || token[to - 1] == ':')) {
+            to--;
+        }
+        if ((from > 0 || to < tokenLength) && emit(from, to)) {
+            return;
+        }
+        // ip:port
+        int colon = lastIndexOf(':', from, to);
+        if (colon > from && indexOf(':', from, colon) < 0 && emitIpV4(from, colon)) {
+            return;
+        }
+        // begin-end
+        if (indexOf('-', from, to) >= 0) {
+            int partStart = from;
+            for (int i = from; i <= to; i++) {
+                if (i == to || token[i] == '-') {
+                    if (i > partStart && !emitIpV4(partStart, i)) {
+                        emitIpV6(partStart, i);
+                    }
+                    partStart = i + 1;
+                }
+            }
+        }
+    }
+
+    private boolean emit(int from, int to) {
+        return emitIpV4(from, to) || emitMac(from, to) || emitIpV6(from, to);
+    }
+
+    private boolean emitIpV4(int from, int to) {
+        if (to - from < 7 || indexOf('.', from, to) < 0) {
+            return false;
+        }
+        long ip = IpMacUtils.parseIpV4(chars, from, to);
+        if (ip == IpMacUtils.INVALID_VALUE) {
+            return false;
+        }
+        handler.onIpV4(ip, tokenStart + from, to - from);
+        return true;
+    }
+
+    private boolean emitMac(int from, int to) {
+        // a bare 60a01050d030 is too often a timestamp or a hex id in text
+        if (to - from < 11 || indexOf('-', from, to) < 0 && indexOf(':', from, to) < 0 && indexOf('.', from, to) < 0) {
+            return false;
+        }
+        long mac = IpMacUtils.parseMac(chars, from, to);
+        if (mac == IpMacUtils.INVALID_VALUE) {
+            return false;
+        }
+        handler.onMac(mac, tokenStart + from, to - from);
+        return true;
+    }
+
+    private boolean emitIpV6(int from, int to) {
+        // "::" alone is no address in text
+        if (to - from < 3 || indexOf(':', from, to) < 0) {
+            return false;
+        }
+        int result = IpMacUtils.parseIpV6(chars, from, to, false, ipV6);
+        if (result == IpMacUtils.IPV6_INVALID) {
+            return false;
+        }
+        if ((result & IpMacUtils.IPV6_IPV4_MAPPED) != 0) {
+            handler.onIpV4(ipV6[1] & 0xFFFFFFFFL, tokenStart + from, to - from);
+            return true;
+        }
+        handler.onIpV6(ipV6[0], ipV6[1], tokenStart + from, to - from);
+        return true;
+    }
+
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (token[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int lastIndexOf(char c, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (token[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,278 @@
+package com.nxest.grapes.lang;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Snapshots of compiled lookup structures, {@link IpRangeSet}, {@link CidrTrie} and {@link MacSet}, so a
+ * restart reads them back in one bulk copy into their primitive arrays instead of parsing strings again.
+ * <p>
+ * A snapshot file is big-endian: magic, version, type and the CRC32 of the payload as ints, the payload
+ * length as a long, then the payload, the arrays of the structure one after another. A snapshot is
+ * written to a temporary file and moved over the old one, so readers never see half a snapshot. The
+ * new file gets the POSIX permissions of the one it replaces; a first snapshot is readable by its owner
+ * only, as temporary files are, so set its permissions once if another user reads it.
+ *
+ * <pre>
+ * AddressSnapshot.write(Paths.get("blocklist.snapshot"), blocklist);
+ * IpRangeSet blocklist = AddressSnapshot.readIpRangeSet(Paths.get("blocklist.snapshot"));
+ * </pre>
+ *
+ * @author l10178
+ */
+public final class AddressSnapshot {
+
+    static final int MAGIC = 0x4752534E;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+
+    static final int TYPE_IP_RANGE_SET = 1;
+    static final int TYPE_CIDR_TRIE = 2;
+    static final int TYPE_MAC_SET = 3;
+
+    /**
+     * {@link DataOutput#writeUTF(String)} strings
+     */
+    public static final ValueCodec<String> STRING_CODEC = new ValueCodec<String>() {
+        @Override
+        public void write(DataOutput out, String value) throws IOException {
+            out.writeUTF(value);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            return in.readUTF();
+        }
+    };
+
+    /**
+     * 4-byte integers
+     */
+    public static final ValueCodec<Integer> INTEGER_CODEC = new ValueCodec<Integer>() {
+        @Override
+        public void write(DataOutput out, Integer value) throws IOException {
+            out.writeInt(value);
+        }
+
+        @Override
+        public Integer read(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    private AddressSnapshot() {
+    }
+
+    /**
+     * @param file the snapshot file, replaced if exists, keeping its permissions
+     * @param set  the set to write
+     * @throws IOException throw if file can not be written
+     */
+    public static void write(final Path file, final IpRangeSet set) throws IOException {
+        write(file, TYPE_IP_RANGE_SET, set.toSnapshot());
+    }
+
+    /**
+     * @param file the snapshot file
+     * @return the set
+     * @throws IOException throw if file can not be read or is not a valid snapshot of a set
+     */
+    public static IpRangeSet readIpRangeSet(final Path file) throws IOException {
+        return IpRangeSet.fromSnapshot(read(file, TYPE_IP_RANGE_SET));
+    }
+
+    /**
+     * @param file the snapshot file, replaced if exists, keeping its permissions
+     * @param set  the set to write
+     * @throws IOException throw if file can not be written
+     */
+    public static void write(final Path file, final MacSet set) throws IOException {
+        write(file, TYPE_MAC_SET, set.toSnapshot());
+    }
+
+    /**
+     * @param file the snapshot file
+     * @return the set
+     * @throws IOException throw if file can not be read or is not a valid snapshot of a set
+     */
+    public static MacSet readMacSet(final Path file) throws IOException {
+        return MacSet.fromSnapshot(read(file, TYPE_MAC_SET));
+    }
+
+    /**
+     * Write a trie, each distinct value once, so values equal to each other are one value when read.
+     *
+     * @param file  the snapshot file, replaced if exists, keeping its permissions
+     * @param trie  the trie to write
+     * @param codec writes the values
+     * @param <V>   the value type
+     * @throws IOException throw if file can not be written
+     */
+    public static <V> void write(final Path file, final CidrTrie<V> trie, final ValueCodec<V> codec) throws IOException {
+        write(file, TYPE_CIDR_TRIE, trie.toSnapshot(codec));
+    }
+
+    /**
+     * @param file  the snapshot file
+     * @param codec reads the values
+     * @param <V>   the value type
+     * @return the trie
+     * @throws IOException throw if file can not be read or is not a valid snapshot of a trie
+     */
+    public static <V> CidrTrie<V> readCidrTrie(final Path file, final ValueCodec<V> codec) throws IOException {
+        return CidrTrie.fromSnapshot(read(file, TYPE_CIDR_TRIE), codec);
+    }
+
+    private static void write(final Path file, int type, final ByteBuffer payload) throws IOException {
+        ((Buffer) payload).flip();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(type).putInt((int) crc.getValue()).putLong(payload.remaining());
+        ((Buffer) header).flip();
+
+        Path absolute = file.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), "snapshot", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining() || payload.hasRemaining()) {
+                    channel.write(new ByteBuffer[]{header, payload});
+                }
+                channel.force(false);
+            }
+            copyPermissions(absolute, temp);
+            try {
+                Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * A temporary file is created owner-only, give it the permissions of the file it replaces.
+     */
+    private static void copyPermissions(final Path from, final Path to) throws IOException {
+        if (Files.exists(from) && Files.getFileStore(to).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+        }
+    }
+
+    /**
+     * @return the mapped payload, checked
+     */
+    private static ByteBuffer read(final Path file, int type) throws IOException {
+        Objects.requireNonNull(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // read the whole header
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+                throw new IOException("Not an address snapshot : " + file);
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported address snapshot version : " + header.getInt(4));
+            }
+            if (header.getInt(8) != type) {
+                throw new IOException("Not an address snapshot of type " + type + " : " + header.getInt(8));
+            }
+            long length = header.getLong(16);
+            if (length != size - HEADER_SIZE || length > Integer.MAX_VALUE) {
+                throw new IOException("Corrupted address snapshot : " + file);
+            }
+            // the mapping stays valid after the channel is closed
+            ByteBuffer payload = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, length);
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != header.getInt(12)) {
+                throw new IOException("Corrupted address snapshot : " + file);
+            }
+            return payload;
+        }
+    }
+
+    static void putLongs(ByteBuffer buffer, long[] values, int count) {
+        buffer.asLongBuffer().put(values, 0, count);
+        ((Buffer) buffer).position(buffer.position() + count * Long.BYTES);
+    }
+
+    static void putInts(ByteBuffer buffer, int[] values, int count) {
+        buffer.asIntBuffer().put(values, 0, count);
+        ((Buffer) buffer).position(buffer.position() + count * Integer.BYTES);
+    }
+
+    /**
+     * @return count longs read into a new array of at least capacity
+     */
+    static long[] getLongs(ByteBuffer buffer, int count, int capacity) throws IOException {
+        checkRemaining(buffer, (long) count * Long.BYTES);
+        long[] values = new long[Math.max(count, capacity)];
+        buffer.asLongBuffer().get(values, 0, count);
+        ((Buffer) buffer).position(buffer.position() + count * Long.BYTES);
+        return values;
+    }
+
+    static int[] getInts(ByteBuffer buffer, int count, int capacity) throws IOException {
+        checkRemaining(buffer, (long) count * Integer.BYTES);
+        int[] values = new int[Math.max(count, capacity)];
+        buffer.asIntBuffer().get(values, 0, count);
+        ((Buffer) buffer).position(buffer.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    static byte[] getBytes(ByteBuffer buffer, int count, int capacity) throws IOException {
+        checkRemaining(buffer, count);
+        byte[] values = new byte[Math.max(count, capacity)];
+        buffer.get(values, 0, count);
+        return values;
+    }
+
+    /**
+     * @throws IOException throw if a count read from a snapshot is negative or past its end
+     */
+    static void checkRemaining(ByteBuffer buffer, long bytes) throws IOException {
+        if (bytes < 0 || bytes > buffer.remaining()) {
+            throw new IOException("Corrupted address snapshot.");
+        }
+    }
+
+    /**
+     * @param size the payload size
+     * @return a buffer for a payload
+     * @throws IllegalArgumentException throw if larger than 2GB
+     */
+    static ByteBuffer allocate(long size) throws IllegalArgumentException {
+        if (size > Integer.MAX_VALUE - HEADER_SIZE) {
+            throw new IllegalArgumentException("Address snapshot larger than 2GB.");
+        }
+        return ByteBuffer.allocate((int) size);
+    }
+
+    /**
+     * Writes and reads the values of a {@link CidrTrie}.
+     *
+     * @param <V> the value type
+     */
+    public interface ValueCodec<V> {
+
+        void write(DataOutput out, V value) throws IOException;
+
+        V read(DataInput in) throws IOException;
+    }
+}
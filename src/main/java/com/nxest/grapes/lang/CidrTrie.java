@@ -0,0 +1,625 @@
+package com.nxest.grapes.lang;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A path-compressed (Patricia) prefix trie mapping IPV4 and IPV6 CIDRs to values, for longest-prefix match.
+ * Nodes live in primitive arrays, so lookups do not allocate and a large table costs a few arrays.
+ *
+ * <pre>
+ * CidrTrie&lt;String&gt; trie = new CidrTrie&lt;&gt;();
+ * trie.put("10.0.0.0/8", "intranet");
+ * trie.put("10.1.0.0/16", "office");
+ * trie.put("2001:db8::/32", "documentation");
+ * assertEquals("office", trie.longestMatch("10.1.2.3"));
+ * assertEquals("intranet", trie.longestMatch("10.2.2.3"));
+ * assertEquals("documentation", trie.longestMatch("2001:db8::1"));
+ * assertNull(trie.longestMatch("192.168.0.1"));
+ * </pre>
+ * <p>
+ * Not thread-safe, concurrent lookups are safe once no more changes are made.
+ *
+ * @param <V> the value type
+ * @author l10178
+ */
+public final class CidrTrie<V> {
+
+    private static final int NONE = -1;
+
+    private static final ThreadLocal<long[]> IPV6_BUFFER = ThreadLocal.withInitial(() -> new long[2]);
+
+    /**
+     * node prefix bits, IPV4 is kept in the high 32 bits of highs
+     */
+    private long[] highs;
+    private long[] lows;
+    /**
+     * node prefix length, 0 - 128
+     */
+    private byte[] lengths;
+    private int[] zeros;
+    private int[] ones;
+    private int[] parents;
+    /**
+     * node value, null for a branch node without a CIDR
+     */
+    private Object[] values;
+
+    private int nodes;
+    private int freeNode = NONE;
+    private int rootV4 = NONE;
+    private int rootV6 = NONE;
+    private int size;
+
+    public CidrTrie() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize the expected count of CIDRs
+     */
+    public CidrTrie(int expectedSize) {
+        int capacity = Math.max(16, expectedSize * 2);
+        highs = new long[capacity];
+        lows = new long[capacity];
+        lengths = new byte[capacity];
+        zeros = new int[capacity];
+        ones = new int[capacity];
+        parents = new int[capacity];
+        values = new Object[capacity];
+    }
+
+    private CidrTrie(long[] highs, long[] lows, byte[] lengths, int[] zeros, int[] ones, int[] parents, Object[] values) {
+        this.highs = highs;
+        this.lows = lows;
+        this.lengths = lengths;
+        this.zeros = zeros;
+        this.ones = ones;
+        this.parents = parents;
+        this.values = values;
+    }
+
+    /**
+     * @param cidr  IPV4 or IPV6 with an optional prefix, eg. 10.0.0.0/8 or 2001:db8::/32,
+     *              bits after the prefix are ignored, so are blanks around the whole
+     * @param value the value, can not be null
+     * @return the previous value of the cidr, or null
+     * @throws IllegalArgumentException throw if not legal CIDR
+     */
+    public V put(final String cidr, final V value) throws IllegalArgumentException {
+        Objects.requireNonNull(value, "value");
+        long v4 = parseIpV4Cidr(cidr);
+        if (v4 != IpMacUtils.INVALID_VALUE) {
+            return putIpV4(v4 & 0xFFFFFFFFL, (int) (v4 >>> 32), value);
+        }
+        long[] v6 = IPV6_BUFFER.get();
+        int prefix = parseIpV6Cidr(cidr, v6);
+        return putIpV6(v6[0], v6[1], prefix, value);
+    }
+
+    /**
+     * @param ipV4         IPV4 long value
+     * @param prefixLength 0 - 32
+     * @param value        the value, can not be null
+     * @return the previous value of the cidr, or null
+     */
+    public V putIpV4(long ipV4, int prefixLength, final V value) {
+        checkIpV4(ipV4, prefixLength);
+        Objects.requireNonNull(value, "value");
+        return put(false, ipV4 << 32, 0L, prefixLength, value);
+    }
+
+    /**
+     * @param high         the high 64 bits of the IPV6
+     * @param low          the low 64 bits of the IPV6
+     * @param prefixLength 0 - 128
+     * @param value        the value, can not be null
+     * @return the previous value of the cidr, or null
+     */
+    public V putIpV6(long high, long low, int prefixLength, final V value) {
+        checkIpV6(prefixLength);
+        Objects.requireNonNull(value, "value");
+        return put(true, high, low, prefixLength, value);
+    }
+
+    /**
+     * @param cidr IPV4 or IPV6 with an optional prefix
+     * @return the value of exactly this cidr, or null
+     * @throws IllegalArgumentException throw if not legal CIDR
+     */
+    public V get(final String cidr) throws IllegalArgumentException {
+        long v4 = parseIpV4Cidr(cidr);
+        if (v4 != IpMacUtils.INVALID_VALUE) {
+            return value(find(false, (v4 & 0xFFFFFFFFL) << 32, 0L, (int) (v4 >>> 32)));
+        }
+        long[] v6 = IPV6_BUFFER.get();
+        int prefix = parseIpV6Cidr(cidr, v6);
+        return value(find(true, v6[0], v6[1], prefix));
+    }
+
+    /**
+     * @param cidr IPV4 or IPV6 with an optional prefix
+     * @return the removed value, or null
+     * @throws IllegalArgumentException throw if not legal CIDR
+     */
+    public V remove(final String cidr) throws IllegalArgumentException {
+        long v4 = parseIpV4Cidr(cidr);
+        if (v4 != IpMacUtils.INVALID_VALUE) {
+            return removeIpV4(v4 & 0xFFFFFFFFL, (int) (v4 >>> 32));
+        }
+        long[] v6 = IPV6_BUFFER.get();
+        int prefix = parseIpV6Cidr(cidr, v6);
+        return removeIpV6(v6[0], v6[1], prefix);
+    }
+
+    public V removeIpV4(long ipV4, int prefixLength) {
+        checkIpV4(ipV4, prefixLength);
+        return remove(false, ipV4 << 32, 0L, prefixLength);
+    }
+
+    public V removeIpV6(long high, long low, int prefixLength) {
+        checkIpV6(prefixLength);
+        return remove(true, high, low, prefixLength);
+    }
+
+    /**
+     * @param ip IPV4 or IPV6, may be null
+     * @return the value of the most specific CIDR containing the ip, or null
+     */
+    public V longestMatch(final CharSequence ip) {
+        if (Objects.isNull(ip) || ip.length() == 0) {
+            return null;
+        }
+        long v4 = IpMacUtils.parseIpV4(ip, 0, ip.length());
+        if (v4 != IpMacUtils.INVALID_VALUE) {
+            return longestMatchIpV4(v4);
+        }
+        long[] v6 = IPV6_BUFFER.get();
+        if (!IpMacUtils.isLegalIpV6Result(IpMacUtils.parseIpV6(ip, 0, ip.length(), false, v6))) {
+            return null;
+        }
+        return longestMatchIpV6(v6[0], v6[1]);
+    }
+
+    /**
+     * @param ipV4 IPV4 long value
+     * @return the value of the most specific CIDR containing the ip, or null, also if not 0 - 0xFFFFFFFF
+     */
+    public V longestMatchIpV4(long ipV4) {
+        if (ipV4 < 0 || ipV4 > 0xFFFFFFFFL) {
+            return null;
+        }
+        return value(longestMatch(rootV4, ipV4 << 32, 0L));
+    }
+
+    public V longestMatch(final IpV6Address ipV6) {
+        return Objects.isNull(ipV6) ? null : longestMatchIpV6(ipV6.getHigh(), ipV6.getLow());
+    }
+
+    /**
+     * @param high the high 64 bits of the IPV6
+     * @param low  the low 64 bits of the IPV6
+     * @return the value of the most specific CIDR containing the ip, or null
+     */
+    public V longestMatchIpV6(long high, long low) {
+        return value(longestMatch(rootV6, high, low));
+    }
+
+    /**
+     * @param ip IPV4 or IPV6, may be null
+     * @return values of all CIDRs containing the ip, the least specific first
+     */
+    public List<V> allMatches(final CharSequence ip) {
+        List<V> matches = new ArrayList<>();
+        if (Objects.isNull(ip) || ip.length() == 0) {
+            return matches;
+        }
+        long v4 = IpMacUtils.parseIpV4(ip, 0, ip.length());
+        if (v4 != IpMacUtils.INVALID_VALUE) {
+            collectMatches(rootV4, v4 << 32, 0L, matches);
+            return matches;
+        }
+        long[] v6 = IPV6_BUFFER.get();
+        if (IpMacUtils.isLegalIpV6Result(IpMacUtils.parseIpV6(ip, 0, ip.length(), false, v6))) {
+            collectMatches(rootV6, v6[0], v6[1], matches);
+        }
+        return matches;
+    }
+
+    /**
+     * @return the count of CIDRs
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * The payload of {@link AddressSnapshot}: node count, free list head, roots, size, value count and
+     * values length as ints, then the node arrays, a value id for each node, -1 for none, and the
+     * distinct values written by codec.
+     */
+    ByteBuffer toSnapshot(final AddressSnapshot.ValueCodec<V> codec) throws IOException {
+        Objects.requireNonNull(codec, "codec");
+        Map<Object, Integer> ids = new HashMap<>();
+        int[] valueIds = new int[nodes];
+        ByteArrayOutputStream blob = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(blob);
+        for (int i = 0; i < nodes; i++) {
+            if (values[i] == null) {
+                valueIds[i] = NONE;
+                continue;
+            }
+            Integer id = ids.get(values[i]);
+            if (id == null) {
+                id = ids.size();
+                ids.put(values[i], id);
+                codec.write(out, value(i));
+            }
+            valueIds[i] = id;
+        }
+        out.flush();
+        ByteBuffer buffer = AddressSnapshot.allocate(28L + 33L * nodes + blob.size());
+        buffer.putInt(nodes).putInt(freeNode).putInt(rootV4).putInt(rootV6).putInt(size)
+            .putInt(ids.size()).putInt(blob.size());
+        AddressSnapshot.putLongs(buffer, highs, nodes);
+        AddressSnapshot.putLongs(buffer, lows, nodes);
+        AddressSnapshot.putInts(buffer, zeros, nodes);
+        AddressSnapshot.putInts(buffer, ones, nodes);
+        AddressSnapshot.putInts(buffer, parents, nodes);
+        AddressSnapshot.putInts(buffer, valueIds, nodes);
+        buffer.put(lengths, 0, nodes);
+        buffer.put(blob.toByteArray());
+        return buffer;
+    }
+
+    /**
+     * The node arrays are read back as is, checked to be a tree so lookups end.
+     */
+    static <V> CidrTrie<V> fromSnapshot(final ByteBuffer buffer, final AddressSnapshot.ValueCodec<V> codec)
+        throws IOException {
+        Objects.requireNonNull(codec, "codec");
+        AddressSnapshot.checkRemaining(buffer, 28);
+        int nodes = buffer.getInt();
+        int freeNode = buffer.getInt();
+        int rootV4 = buffer.getInt();
+        int rootV6 = buffer.getInt();
+        int size = buffer.getInt();
+        int valueCount = buffer.getInt();
+        int blobLength = buffer.getInt();
+        AddressSnapshot.checkRemaining(buffer, 33L * nodes + blobLength);
+        int capacity = Math.max(16, nodes);
+        CidrTrie<V> trie = new CidrTrie<>(AddressSnapshot.getLongs(buffer, nodes, capacity),
+            AddressSnapshot.getLongs(buffer, nodes, capacity), null,
+            AddressSnapshot.getInts(buffer, nodes, capacity), AddressSnapshot.getInts(buffer, nodes, capacity),
+            AddressSnapshot.getInts(buffer, nodes, capacity), new Object[capacity]);
+        int[] valueIds = AddressSnapshot.getInts(buffer, nodes, 0);
+        trie.lengths = AddressSnapshot.getBytes(buffer, nodes, capacity);
+        byte[] blob = AddressSnapshot.getBytes(buffer, blobLength, 0);
+        if (buffer.hasRemaining() || valueCount < 0 || valueCount > nodes) {
+            throw new IOException("Corrupted address snapshot.");
+        }
+        trie.nodes = nodes;
+        trie.freeNode = freeNode;
+        trie.rootV4 = rootV4;
+        trie.rootV6 = rootV6;
+        trie.size = size;
+
+        Object[] distinct = new Object[valueCount];
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(blob));
+        for (int i = 0; i < valueCount; i++) {
+            distinct[i] = Objects.requireNonNull(codec.read(in), "value");
+        }
+        if (in.available() > 0) {
+            throw new IOException("Corrupted address snapshot.");
+        }
+        if (!trie.isValidSnapshot(valueIds, distinct)) {
+            throw new IOException("Corrupted address snapshot.");
+        }
+        return trie;
+    }
+
+    /**
+     * Sets the values by id while checking the free list and that each child points back to its parent
+     * with a longer prefix, so the nodes reachable from a root are a tree.
+     */
+    private boolean isValidSnapshot(int[] valueIds, Object[] distinct) {
+        boolean[] free = new boolean[nodes];
+        int freeCount = 0;
+        for (int node = freeNode; node != NONE; node = zeros[node]) {
+            if (node < NONE || node >= nodes || free[node] || valueIds[node] != NONE) {
+                return false;
+            }
+            free[node] = true;
+            freeCount++;
+        }
+        if (!isRoot(rootV4, free) || !isRoot(rootV6, free) || rootV4 != NONE && length(rootV4) > 32) {
+            return false;
+        }
+        int count = 0;
+        for (int node = 0; node < nodes; node++) {
+            if (free[node]) {
+                continue;
+            }
+            if (length(node) > 128 || valueIds[node] < NONE || valueIds[node] >= distinct.length
+                || !isChild(node, zeros[node], free) || !isChild(node, ones[node], free)) {
+                return false;
+            }
+            if (valueIds[node] != NONE) {
+                values[node] = distinct[valueIds[node]];
+                count++;
+            }
+        }
+        return count == size && nodes - freeCount >= size;
+    }
+
+    private boolean isRoot(int node, boolean[] free) {
+        return node == NONE || node >= 0 && node < nodes && !free[node] && parents[node] == NONE;
+    }
+
+    private boolean isChild(int parent, int child, boolean[] free) {
+        return child == NONE || child >= 0 && child < nodes && !free[child] && parents[child] == parent
+            && length(child) > length(parent);
+    }
+
+    private int longestMatch(int node, long high, long low) {
+        int best = NONE;
+        while (node != NONE && matches(node, high, low)) {
+            if (values[node] != null) {
+                best = node;
+            }
+            node = child(node, bit(high, low, length(node)));
+        }
+        return best;
+    }
+
+    private void collectMatches(int node, long high, long low, List<V> matches) {
+        while (node != NONE && matches(node, high, low)) {
+            if (values[node] != null) {
+                matches.add(value(node));
+            }
+            node = child(node, bit(high, low, length(node)));
+        }
+    }
+
+    private int find(boolean v6, long high, long low, int length) {
+        high &= IpV6Address.maskHigh(length);
+        low &= IpV6Address.maskLow(length);
+        int node = v6 ? rootV6 : rootV4;
+        while (node != NONE && length(node) <= length && matches(node, high, low)) {
+            if (length(node) == length) {
+                return node;
+            }
+            node = child(node, bit(high, low, length(node)));
+        }
+        return NONE;
+    }
+
+    private V put(boolean v6, long high, long low, int length, V value) {
+        high &= IpV6Address.maskHigh(length);
+        low &= IpV6Address.maskLow(length);
+        int node = v6 ? rootV6 : rootV4;
+        if (node == NONE) {
+            replaceChild(v6, NONE, NONE, newNode(high, low, length, value, NONE));
+            size++;
+            return null;
+        }
+        while (true) {
+            int nodeLength = length(node);
+            int common = commonLength(high, low, highs[node], lows[node], Math.min(length, nodeLength));
+            if (common == nodeLength) {
+                if (nodeLength == length) {
+                    V old = value(node);
+                    values[node] = value;
+                    if (old == null) {
+                        size++;
+                    }
+                    return old;
+                }
+                int dir = bit(high, low, nodeLength);
+                int child = child(node, dir);
+                if (child == NONE) {
+                    setChild(node, dir, newNode(high, low, length, value, node));
+                    size++;
+                    return null;
+                }
+                node = child;
+            } else if (common == length) {
+                // the new CIDR contains this node
+                int parent = parents[node];
+                int added = newNode(high, low, length, value, parent);
+                replaceChild(v6, parent, node, added);
+                setChild(added, bit(highs[node], lows[node], length), node);
+                size++;
+                return null;
+            } else {
+                // split at the first different bit
+                int parent = parents[node];
+                int branch = newNode(high & IpV6Address.maskHigh(common), low & IpV6Address.maskLow(common),
+                    common, null, parent);
+                replaceChild(v6, parent, node, branch);
+                int dir = bit(high, low, common);
+                setChild(branch, dir, newNode(high, low, length, value, branch));
+                setChild(branch, 1 - dir, node);
+                size++;
+                return null;
+            }
+        }
+    }
+
+    private V remove(boolean v6, long high, long low, int length) {
+        int node = find(v6, high, low, length);
+        if (node == NONE || values[node] == null) {
+            return null;
+        }
+        V old = value(node);
+        values[node] = null;
+        size--;
+        compact(v6, node);
+        return old;
+    }
+
+    /**
+     * Drop a node without value if it has less than two children.
+     */
+    private void compact(boolean v6, int node) {
+        while (node != NONE && values[node] == null && (zeros[node] == NONE || ones[node] == NONE)) {
+            int child = zeros[node] != NONE ? zeros[node] : ones[node];
+            int parent = parents[node];
+            replaceChild(v6, parent, node, child);
+            if (child != NONE) {
+                parents[child] = parent;
+            }
+            releaseNode(node);
+            // a parent branch node may have only one child now
+            node = child == NONE ? parent : NONE;
+        }
+    }
+
+    private boolean matches(int node, long high, long low) {
+        int length = length(node);
+        return ((high ^ highs[node]) & IpV6Address.maskHigh(length)) == 0
+            && ((low ^ lows[node]) & IpV6Address.maskLow(length)) == 0;
+    }
+
+    private int length(int node) {
+        return lengths[node] & 0xFF;
+    }
+
+    private int child(int node, int dir) {
+        return dir == 0 ? zeros[node] : ones[node];
+    }
+
+    private void setChild(int node, int dir, int child) {
+        if (dir == 0) {
+            zeros[node] = child;
+        } else {
+            ones[node] = child;
+        }
+        parents[child] = node;
+    }
+
+    private void replaceChild(boolean v6, int parent, int oldChild, int newChild) {
+        if (parent == NONE) {
+            if (v6) {
+                rootV6 = newChild;
+            } else {
+                rootV4 = newChild;
+            }
+        } else if (zeros[parent] == oldChild) {
+            zeros[parent] = newChild;
+        } else {
+            ones[parent] = newChild;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(int node) {
+        return node == NONE ? null : (V) values[node];
+    }
+
+    private int newNode(long high, long low, int length, Object value, int parent) {
+        int node;
+        if (freeNode != NONE) {
+            node = freeNode;
+            freeNode = zeros[node];
+        } else {
+            if (nodes == highs.length) {
+                grow();
+            }
+            node = nodes++;
+        }
+        highs[node] = high;
+        lows[node] = low;
+        lengths[node] = (byte) length;
+        zeros[node] = NONE;
+        ones[node] = NONE;
+        parents[node] = parent;
+        values[node] = value;
+        return node;
+    }
+
+    private void releaseNode(int node) {
+        values[node] = null;
+        zeros[node] = freeNode;
+        freeNode = node;
+    }
+
+    private void grow() {
+        int capacity = highs.length * 2;
+        highs = Arrays.copyOf(highs, capacity);
+        lows = Arrays.copyOf(lows, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        zeros = Arrays.copyOf(zeros, capacity);
+        ones = Arrays.copyOf(ones, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    /**
+     * @return the bit at index, 0 is the most significant bit
+     */
+    static int bit(long high, long low, int index) {
+        if (index < 64) {
+            return (int) (high >>> (63 - index)) & 1;
+        }
+        return index < 128 ? (int) (low >>> (127 - index)) & 1 : 0;
+    }
+
+    private static int commonLength(long high1, long low1, long high2, long low2, int max) {
+        long x = high1 ^ high2;
+        int common = x != 0L ? Long.numberOfLeadingZeros(x) : 64 + Long.numberOfLeadingZeros(low1 ^ low2);
+        return Math.min(common, max);
+    }
+
+    private static long parseIpV4Cidr(final String cidr) {
+        if (Objects.isNull(cidr)) {
+            throw new IllegalArgumentException("Illegal arguments : null");
+        }
+        return IpMacUtils.parseIpV4Prefix(cidr, 0, cidr.length());
+    }
+
+    private static int parseIpV6Cidr(final String cidr, long[] out) {
+        // blanks around the whole are skipped, as parseIpV4Prefix does
+        int from = 0;
+        int to = cidr.length();
+        while (from < to && cidr.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && cidr.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        int result = IpMacUtils.parseIpV6(cidr, from, to, true, out);
+        if (!IpMacUtils.isLegalIpV6Result(result)) {
+            throw new IllegalArgumentException("Illegal arguments : " + cidr);
+        }
+        int prefix = result & IpMacUtils.IPV6_PREFIX_MASK;
+        return prefix == IpMacUtils.IPV6_NO_PREFIX ? 128 : prefix;
+    }
+
+    private static void checkIpV4(long ipV4, int prefixLength) {
+        if (ipV4 < 0 || ipV4 > 0xFFFFFFFFL || prefixLength < 0 || prefixLength > 32) {
+            throw new IllegalArgumentException("Illegal arguments : " + ipV4 + "/" + prefixLength);
+        }
+    }
+
+    private static void checkIpV6(int prefixLength) {
+        if (prefixLength < 0 || prefixLength > 128) {
+            throw new IllegalArgumentException("Illegal prefix length : " + prefixLength);
+        }
+    }
+}
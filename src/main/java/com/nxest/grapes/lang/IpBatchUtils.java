@@ -0,0 +1,384 @@
+package com.nxest.grapes.lang;
+
+import java.util.Objects;
+
+/**
+ * Column at a time conversions, such as a batch of 64k strings from a Parquet or Arrow column.
+ * Results go to caller-supplied primitive arrays with a validity bitmap, bit i of the bitmap is
+ * <code>(validity[i &gt;&gt;&gt; 6] &gt;&gt;&gt; i &amp; 1) == 1</code> when the value at i is legal.
+ * A slot of an illegal value is 0, or {@link IpMacUtils#INVALID_VALUE} in a long column.
+ *
+ * <pre>
+ * String[] ips = {"192.168.0.1", "a.b.c.d", "10.0.0.1"};
+ * int[] values = new int[ips.length];
+ * long[] validity = IpBatchUtils.newValidity(ips.length);
+ * assertEquals(2, IpBatchUtils.ipV4ToInt(ips, values, validity));
+ * assertFalse(IpBatchUtils.isValid(validity, 1));
+ * </pre>
+ *
+ * @author l10178
+ */
+public final class IpBatchUtils {
+
+    /**
+     * a MAC is always formatted as 60-a0-10-50-d0-30
+     */
+    private static final int MAC_CHARS = 17;
+
+    private IpBatchUtils() {
+    }
+
+    /**
+     * @param size the count of values
+     * @return a bitmap for size values, all invalid
+     */
+    public static long[] newValidity(int size) {
+        return new long[(size + 63) >>> 6];
+    }
+
+    /**
+     * @param validity the bitmap, null means all valid
+     * @param index    the value index
+     * @return true if the value at index is legal
+     */
+    public static boolean isValid(final long[] validity, int index) {
+        return validity == null || (validity[index >>> 6] >>> index & 1L) != 0;
+    }
+
+    /**
+     * convert IPV4 strings to int values, the unsigned int is the IPV4 long value.
+     *
+     * @param ips      IPV4 strings, null elements are illegal
+     * @param dst      receives ips.length values
+     * @param validity receives ips.length validity bits
+     * @return the count of legal IPs
+     */
+    public static int ipV4ToInt(final CharSequence[] ips, final int[] dst, final long[] validity) {
+        return ipV4ToInt(ips, 0, dst, 0, validity, ips.length);
+    }
+
+    /**
+     * convert IPV4 strings to int values, the unsigned int is the IPV4 long value.
+     *
+     * @param ips      IPV4 strings, null elements are illegal
+     * @param from     index of the first ip
+     * @param dst      receives length values from dstFrom
+     * @param dstFrom  index of the first value, also the index of the first validity bit
+     * @param validity receives length validity bits
+     * @param length   the count of ips to convert
+     * @return the count of legal IPs
+     */
+    public static int ipV4ToInt(final CharSequence[] ips, int from, final int[] dst, int dstFrom,
+                                final long[] validity, int length) {
+        checkRange(ips.length, from, length);
+        checkRange(dst.length, dstFrom, length);
+        int legal = 0;
+        for (int i = 0; i < length; i++) {
+            CharSequence ip = ips[from + i];
+            long value = Objects.isNull(ip) ? IpMacUtils.INVALID_VALUE : IpMacUtils.parseIpV4(ip, 0, ip.length());
+            boolean valid = value != IpMacUtils.INVALID_VALUE;
+            dst[dstFrom + i] = valid ? (int) value : 0;
+            setValid(validity, dstFrom + i, valid);
+            if (valid) {
+                legal++;
+            }
+        }
+        return legal;
+    }
+
+    /**
+     * convert IPV4 strings to long values, see {@link IpMacUtils#ipV4ToLong(String)}.
+     *
+     * @param ips      IPV4 strings, null elements are illegal
+     * @param dst      receives ips.length values
+     * @param validity receives ips.length validity bits
+     * @return the count of legal IPs
+     */
+    public static int ipV4ToLong(final CharSequence[] ips, final long[] dst, final long[] validity) {
+        return ipV4ToLong(ips, 0, dst, 0, validity, ips.length);
+    }
+
+    /**
+     * convert IPV4 strings to long values, see {@link IpMacUtils#ipV4ToLong(String)}.
+     *
+     * @param ips      IPV4 strings, null elements are illegal
+     * @param from     index of the first ip
+     * @param dst      receives length values from dstFrom
+     * @param dstFrom  index of the first value, also the index of the first validity bit
+     * @param validity receives length validity bits
+     * @param length   the count of ips to convert
+     * @return the count of legal IPs
+     */
+    public static int ipV4ToLong(final CharSequence[] ips, int from, final long[] dst, int dstFrom,
+                                 final long[] validity, int length) {
+        checkRange(ips.length, from, length);
+        checkRange(dst.length, dstFrom, length);
+        int legal = 0;
+        for (int i = 0; i < length; i++) {
+            CharSequence ip = ips[from + i];
+            long value = Objects.isNull(ip) ? IpMacUtils.INVALID_VALUE : IpMacUtils.parseIpV4(ip, 0, ip.length());
+            boolean valid = value != IpMacUtils.INVALID_VALUE;
+            dst[dstFrom + i] = value;
+            setValid(validity, dstFrom + i, valid);
+            if (valid) {
+                legal++;
+            }
+        }
+        return legal;
+    }
+
+    /**
+     * convert an ASCII string column to int values, string i is data[offsets[i]] until data[offsets[i + 1]],
+     * the Arrow and Parquet binary layout.
+     *
+     * @param data     ASCII bytes of all strings
+     * @param offsets  count + 1 offsets into data
+     * @param dst      receives offsets.length - 1 values
+     * @param validity receives offsets.length - 1 validity bits
+     * @return the count of legal IPs
+     */
+    public static int ipV4ToInt(final byte[] data, final int[] offsets, final int[] dst, final long[] validity) {
+        int count = offsets.length - 1;
+        checkRange(dst.length, 0, count);
+        AsciiCharSequence chars = new AsciiCharSequence(data, 0, 0);
+        int legal = 0;
+        for (int i = 0; i < count; i++) {
+            int length = offsets[i + 1] - offsets[i];
+            checkRange(data.length, offsets[i], length);
+            long value = IpMacUtils.parseIpV4(chars.wrap(data, offsets[i], length), 0, length);
+            boolean valid = value != IpMacUtils.INVALID_VALUE;
+            dst[i] = valid ? (int) value : 0;
+            setValid(validity, i, valid);
+            if (valid) {
+                legal++;
+            }
+        }
+        return legal;
+    }
+
+    /**
+     * convert IPV6 strings to pairs of longs, see {@link IpV6Address}.
+     *
+     * @param ips      IPV6 strings, null elements are illegal
+     * @param highs    receives ips.length high 64 bits
+     * @param lows     receives ips.length low 64 bits
+     * @param validity receives ips.length validity bits
+     * @return the count of legal IPs
+     */
+    public static int ipV6ToLongs(final CharSequence[] ips, final long[] highs, final long[] lows, final long[] validity) {
+        checkRange(highs.length, 0, ips.length);
+        checkRange(lows.length, 0, ips.length);
+        long[] value = new long[2];
+        int legal = 0;
+        for (int i = 0; i < ips.length; i++) {
+            CharSequence ip = ips[i];
+            boolean valid = Objects.nonNull(ip)
+                && IpMacUtils.isLegalIpV6Result(IpMacUtils.parseIpV6(ip, 0, ip.length(), false, value));
+            highs[i] = valid ? value[0] : 0L;
+            lows[i] = valid ? value[1] : 0L;
+            setValid(validity, i, valid);
+            if (valid) {
+                legal++;
+            }
+        }
+        return legal;
+    }
+
+    /**
+     * convert MAC strings to long values, see {@link IpMacUtils#macToLong(String)}.
+     *
+     * @param macs     MAC strings, null elements are illegal
+     * @param dst      receives macs.length values
+     * @param validity receives macs.length validity bits
+     * @return the count of legal MACs
+     */
+    public static int macToLong(final CharSequence[] macs, final long[] dst, final long[] validity) {
+        checkRange(dst.length, 0, macs.length);
+        int legal = 0;
+        for (int i = 0; i < macs.length; i++) {
+            CharSequence mac = macs[i];
+            long value = Objects.isNull(mac) ? IpMacUtils.INVALID_VALUE : IpMacUtils.parseMac(mac, 0, mac.length());
+            boolean valid = value != IpMacUtils.INVALID_VALUE;
+            dst[i] = value;
+            setValid(validity, i, valid);
+            if (valid) {
+                legal++;
+            }
+        }
+        return legal;
+    }
+
+    /**
+     * convert int values to IPV4 strings.
+     *
+     * @param ips      int values, the unsigned int is the IPV4 long value
+     * @param validity the bitmap, null means all valid
+     * @return IPV4 strings, null for an invalid value
+     */
+    public static String[] intToIpV4(final int[] ips, final long[] validity) {
+        String[] strings = new String[ips.length];
+        char[] chars = new char[IpMacUtils.IPV4_MAX_CHARS];
+        for (int i = 0; i < ips.length; i++) {
+            if (isValid(validity, i)) {
+                strings[i] = new String(chars, 0, IpMacUtils.writeIpV4(ips[i] & 0xFFFFFFFFL, chars, 0));
+            }
+        }
+        return strings;
+    }
+
+    /**
+     * Format int values into one char column without creating strings, string i is dst[offsets[i]]
+     * until dst[offsets[i + 1]].
+     *
+     * @param ips     int values, the unsigned int is the IPV4 long value
+     * @param from    index of the first ip
+     * @param length  the count of ips to format
+     * @param dst     receives the chars, 15 * length chars are always enough
+     * @param offsets receives length + 1 offsets into dst
+     * @return the count of chars written
+     * @throws IndexOutOfBoundsException throw if dst or offsets is too small
+     */
+    public static int intToIpV4(final int[] ips, int from, int length, final char[] dst, final int[] offsets) {
+        checkRange(ips.length, from, length);
+        checkRange(offsets.length, 0, length + 1);
+        int at = 0;
+        offsets[0] = 0;
+        for (int i = 0; i < length; i++) {
+            at += IpMacUtils.writeIpV4(ips[from + i] & 0xFFFFFFFFL, dst, at);
+            offsets[i + 1] = at;
+        }
+        return at;
+    }
+
+    /**
+     * convert pairs of longs to IPV6 strings, see {@link IpMacUtils#longsToIpV6(long, long)}.
+     *
+     * @param highs    the high 64 bits
+     * @param lows     the low 64 bits
+     * @param validity the bitmap, null means all valid
+     * @return IPV6 strings, null for an invalid value
+     */
+    public static String[] longsToIpV6(final long[] highs, final long[] lows, final long[] validity) {
+        checkRange(lows.length, 0, highs.length);
+        String[] strings = new String[highs.length];
+        char[] chars = new char[IpMacUtils.IPV6_MAX_CHARS];
+        for (int i = 0; i < highs.length; i++) {
+            if (isValid(validity, i)) {
+                strings[i] = new String(chars, 0, IpMacUtils.writeIpV6(highs[i], lows[i], chars, 0));
+            }
+        }
+        return strings;
+    }
+
+    /**
+     * Format pairs of longs into one char column without creating strings, string i is dst[offsets[i]]
+     * until dst[offsets[i + 1]].
+     *
+     * @param highs   the high 64 bits
+     * @param lows    the low 64 bits
+     * @param from    index of the first ip
+     * @param length  the count of ips to format
+     * @param dst     receives the chars, 39 * length chars are always enough
+     * @param offsets receives length + 1 offsets into dst
+     * @return the count of chars written
+     * @throws IndexOutOfBoundsException throw if dst or offsets is too small
+     */
+    public static int longsToIpV6(final long[] highs, final long[] lows, int from, int length,
+                                  final char[] dst, final int[] offsets) {
+        checkRange(highs.length, from, length);
+        checkRange(lows.length, from, length);
+        checkRange(offsets.length, 0, length + 1);
+        int at = 0;
+        offsets[0] = 0;
+        for (int i = 0; i < length; i++) {
+            at += IpMacUtils.writeIpV6(highs[from + i], lows[from + i], dst, at);
+            offsets[i + 1] = at;
+        }
+        return at;
+    }
+
+    /**
+     * convert long values to MAC strings, see {@link IpMacUtils#longToMac(long)}.
+     *
+     * @param macs     MAC long values
+     * @param validity the bitmap, null means all valid
+     * @return MAC strings, null for an invalid value
+     */
+    public static String[] longToMac(final long[] macs, final long[] validity) {
+        String[] strings = new String[macs.length];
+        char[] chars = new char[MAC_CHARS];
+        for (int i = 0; i < macs.length; i++) {
+            if (isValid(validity, i)) {
+                strings[i] = new String(chars, 0, IpMacUtils.longToMac(macs[i], chars, 0));
+            }
+        }
+        return strings;
+    }
+
+    /**
+     * Format long values into one char column without creating strings, MAC i is
+     * dst[17 * i] until dst[17 * (i + 1)].
+     *
+     * @param macs   MAC long values
+     * @param from   index of the first mac
+     * @param length the count of macs to format
+     * @param dst    receives 17 * length chars
+     * @return the count of chars written
+     * @throws IndexOutOfBoundsException throw if dst is too small
+     */
+    public static int longToMac(final long[] macs, int from, int length, final char[] dst) {
+        checkRange(macs.length, from, length);
+        checkRange(dst.length / MAC_CHARS, 0, length);
+        int at = 0;
+        for (int i = 0; i < length; i++) {
+            at += IpMacUtils.longToMac(macs[from + i], dst, at);
+        }
+        return at;
+    }
+
+    /**
+     * classify int values, see {@link IpPurposeEnum#ofIpV4(long)}.
+     *
+     * @param ips      int values, the unsigned int is the IPV4 long value
+     * @param validity the bitmap, null means all valid
+     * @param dst      receives ips.length purposes, null for an invalid value
+     */
+    public static void purposeOfIpV4(final int[] ips, final long[] validity, final IpPurposeEnum[] dst) {
+        checkRange(dst.length, 0, ips.length);
+        for (int i = 0; i < ips.length; i++) {
+            dst[i] = isValid(validity, i) ? IpPurposeEnum.ofIpV4(ips[i] & 0xFFFFFFFFL) : null;
+        }
+    }
+
+    /**
+     * classify pairs of longs, see {@link IpPurposeEnum#ofIpV6(long, long)}.
+     *
+     * @param highs    the high 64 bits
+     * @param lows     the low 64 bits
+     * @param validity the bitmap, null means all valid
+     * @param dst      receives highs.length purposes, null for an invalid value
+     */
+    public static void purposeOfIpV6(final long[] highs, final long[] lows, final long[] validity,
+                                     final IpPurposeEnum[] dst) {
+        checkRange(lows.length, 0, highs.length);
+        checkRange(dst.length, 0, highs.length);
+        for (int i = 0; i < highs.length; i++) {
+            dst[i] = isValid(validity, i) ? IpPurposeEnum.ofIpV6(highs[i], lows[i]) : null;
+        }
+    }
+
+    private static void setValid(final long[] validity, int index, boolean valid) {
+        long bit = 1L << index;
+        if (valid) {
+            validity[index >>> 6] |= bit;
+        } else {
+            validity[index >>> 6] &= ~bit;
+        }
+    }
+
+    private static void checkRange(int size, int from, int length) {
+        if (from < 0 || length < 0 || from > size - length) {
+            throw new IndexOutOfBoundsException("from " + from + ", length " + length + ", size " + size);
+        }
+    }
+}
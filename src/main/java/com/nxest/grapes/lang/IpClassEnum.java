@@ -26,6 +26,11 @@ public enum IpClassEnum {
      */
     E("E", "240.0.0.0–255.255.255.255");
 
+    /**
+     * the class of each value of the top 4 bits
+     */
+    private static final IpClassEnum[] BY_TOP_BITS = {A, A, A, A, A, A, A, A, B, B, B, B, C, C, D, E};
+
     private String name;
     private String range;
 
@@ -34,6 +39,18 @@ public enum IpClassEnum {
         this.range = range;
     }
 
+    /**
+     * @param ip IPV4 long value
+     * @return the class of ip, one table read
+     * @throws IllegalArgumentException throw if not 0 - 0xFFFFFFFF
+     */
+    public static IpClassEnum ofIpV4(long ip) throws IllegalArgumentException {
+        if (ip < 0 || ip > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("Illegal arguments : " + ip);
+        }
+        return BY_TOP_BITS[(int) (ip >>> 28)];
+    }
+
     public String getName() {
         return name;
     }
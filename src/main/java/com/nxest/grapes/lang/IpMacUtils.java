@@ -1,10 +1,11 @@
 package com.nxest.grapes.lang;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigInteger;
-import java.net.Inet6Address;
-import java.net.InetAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Objects;
-import java.util.regex.Pattern;
 
 /**
  * A collection of IP and MAC utilities.
@@ -13,28 +14,63 @@ import java.util.regex.Pattern;
  */
 public class IpMacUtils {
 
-    private static final String IPV4_REGEX = "(([0-9]|[1-9][0-9]|1[0-9][0-9]|2[0-4][0-9]|25[0-5])\\x2e){3}([0-9]|[1-9][0-9]|1[0-9][0-9]|2[0-4][0-9]|25[0-5])";
-    private static final Pattern IPV4_PATTERN = Pattern.compile(IPV4_REGEX);
-    private static final Pattern MAC6 = Pattern.compile("([a-fA-F0-9]{1,2}[-:]){5}[a-fA-F0-9]{1,2}");
-
     /**
      * value for invalid IP or MAC
      */
     public static final long INVALID_VALUE = -1L;
 
     /**
-     * dot <code>.</code> value.
+     * {@link #parseIpV6} result for an illegal literal.
      */
-    private static final String DOT = "\\x2e";
+    static final int IPV6_INVALID = -1;
     /**
-     * colon <code>:</code> value.
+     * {@link #parseIpV6} result bits holding the prefix length.
      */
-    private static final String COLON = ":";
-
-    private static final String SLASH = "/";
+    static final int IPV6_PREFIX_MASK = 0xFF;
+    /**
+     * {@link #parseIpV6} prefix length when there is no <code>/prefix</code>.
+     */
+    static final int IPV6_NO_PREFIX = 0xFF;
+    /**
+     * {@link #parseIpV6} flag for a dotted IPV4 tail.
+     */
+    static final int IPV6_IPV4_TAIL = 0x100;
+    /**
+     * {@link #parseIpV6} flag for an IPV4-mapped address, <code>::ffff:0:0/96</code>.
+     */
+    static final int IPV6_IPV4_MAPPED = 0x200;
 
     private static final String MIDLINE = "-";
 
+    /**
+     * the longest dotted-quad, 255.255.255.255
+     */
+    static final int IPV4_MAX_CHARS = 15;
+    /**
+     * the longest IPV6, eight groups of four hex digits
+     */
+    static final int IPV6_MAX_CHARS = 39;
+    private static final int MAC_BYTES = 6;
+    private static final int EUI64_BYTES = 8;
+    /**
+     * the longest EUI-64, ff-ff-ff-ff-ff-ff-ff-ff
+     */
+    private static final int EUI64_MAX_CHARS = 23;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    /**
+     * scratch chars of the Appendable and ByteBuffer formatting
+     */
+    private static final ThreadLocal<char[]> CHARS_BUFFER = ThreadLocal.withInitial(() -> new char[IPV6_MAX_CHARS]);
+    /**
+     * parse results reused by the methods that look at up to three IPs at once
+     */
+    private static final ThreadLocal<ParsedIp[]> PARSED_IPS = ThreadLocal.withInitial(
+        () -> new ParsedIp[]{new ParsedIp(), new ParsedIp(), new ParsedIp()});
+    /**
+     * the value out of the MAC and EUI-64 parser
+     */
+    private static final ThreadLocal<long[]> HARDWARE_VALUE = ThreadLocal.withInitial(() -> new long[1]);
+
     private IpMacUtils() {
     }
 
@@ -46,18 +82,44 @@ public class IpMacUtils {
      * </pre>
      *
      * @param hostIp ip address
-     * @return the long value,if ip is invalid, will return 0L
+     * @return the long value,if ip is invalid, will return {@link #INVALID_VALUE}
      */
     public static long ipV4ToLong(final String hostIp) {
-        if (!isLegalIpV4(hostIp)) {
+        return ipV4ToLong((CharSequence) hostIp);
+    }
+
+    /**
+     * convert IPV4 characters to long, without creating any intermediate objects.
+     *
+     * @param hostIp ip address, may be null
+     * @return the long value,if ip is invalid, will return {@link #INVALID_VALUE}
+     */
+    public static long ipV4ToLong(final CharSequence hostIp) {
+        if (Objects.isNull(hostIp)) {
             return INVALID_VALUE;
         }
-        String[] parts = hostIp.trim().split(DOT);
-        long ipLong = 0L;
-        for (final String part : parts) {
-            ipLong = ipLong << 8 | Long.valueOf(part);
+        return parseIpV4(hostIp, 0, hostIp.length());
+    }
+
+    /**
+     * convert a window of IPV4 characters to long, without creating any intermediate objects.
+     * 
+     * <pre>
+     *     ipV4ToLong("src=192.168.0.1 ", 4, 11) to 3232235521L
+     * </pre>
+     *
+     * @param hostIp ip address, may be null
+     * @param offset index of the first char to parse
+     * @param length number of chars to parse
+     * @return the long value,if ip is invalid, will return {@link #INVALID_VALUE}
+     * @throws IndexOutOfBoundsException if offset or length is out of the bounds of hostIp
+     */
+    public static long ipV4ToLong(final CharSequence hostIp, final int offset, final int length) {
+        if (Objects.isNull(hostIp)) {
+            return INVALID_VALUE;
         }
-        return ipLong;
+        checkBounds(hostIp, offset, length);
+        return parseIpV4(hostIp, offset, offset + length);
     }
 
     /**
@@ -71,10 +133,57 @@ public class IpMacUtils {
      * @return IP string value
      */
     public static String longToIpV4(long longIp) {
+        checkIpV4(longIp);
+        char[] chars = new char[IPV4_MAX_CHARS];
+        return new String(chars, 0, writeIpV4(longIp, chars, 0));
+    }
+
+    /**
+     * Writes a long IPV4 into dst without creating a string.
+     *
+     * @param longIp IP long value
+     * @param dst    the chars to write into, 15 chars from offset are always enough
+     * @param offset index of the first char to write
+     * @return the count of chars written
+     * @throws IndexOutOfBoundsException throw if dst is too small
+     */
+    public static int longToIpV4(long longIp, final char[] dst, int offset) {
+        checkIpV4(longIp);
+        return writeIpV4(longIp, dst, offset);
+    }
+
+    /**
+     * Appends a long IPV4, such as to a StringBuilder or a Writer.
+     *
+     * @param longIp IP long value
+     * @param out    where to append
+     * @return the count of chars appended
+     * @throws UncheckedIOException throw if out throws IOException
+     */
+    public static int longToIpV4(long longIp, final Appendable out) {
+        checkIpV4(longIp);
+        char[] chars = CHARS_BUFFER.get();
+        return append(chars, writeIpV4(longIp, chars, 0), out);
+    }
+
+    /**
+     * Puts a long IPV4 as ASCII bytes at the buffer position, the position moves past the bytes.
+     *
+     * @param longIp IP long value
+     * @param dst    the buffer to put into
+     * @return the count of bytes put
+     * @throws BufferOverflowException throw if dst has not enough remaining bytes, nothing is put
+     */
+    public static int longToIpV4(long longIp, final ByteBuffer dst) {
+        checkIpV4(longIp);
+        char[] chars = CHARS_BUFFER.get();
+        return put(chars, writeIpV4(longIp, chars, 0), dst);
+    }
+
+    private static void checkIpV4(long longIp) {
         if (longIp < 0) {
             throw new IllegalArgumentException("IP can not be negative.");
         }
-        return (longIp >> 24 & 255L) + "." + (longIp >> 16 & 255L) + "." + (longIp >> 8 & 255L) + "." + (longIp & 255L);
     }
 
     /**
@@ -93,10 +202,40 @@ public class IpMacUtils {
      * @return {@code true} if legal IPV4
      */
     public static boolean isLegalIpV4(final String ip) {
-        if (isBlank(ip)) {
+        return ipV4ToLong(ip) != INVALID_VALUE;
+    }
+
+    /**
+     * Checks if a window of chars is a legal IPV4.
+     *
+     * @param ip     the ip to check, may be null
+     * @param offset index of the first char to check
+     * @param length number of chars to check
+     * @return {@code true} if legal IPV4
+     * @throws IndexOutOfBoundsException if offset or length is out of the bounds of ip
+     */
+    public static boolean isLegalIpV4(final CharSequence ip, final int offset, final int length) {
+        return ipV4ToLong(ip, offset, length) != INVALID_VALUE;
+    }
+
+    /**
+     * Checks if legal IPV4 with prefix length, such as <code>192.168.0.0/16</code>. Leading and trailing
+     * blanks are skipped as {@link #isLegalIpV4(String)}, blanks next to the '/' are not legal.
+     *
+     * <pre>
+     * assertTrue(IpMacUtils.isLegalIpV4Prefix(" 10.0.0.0/8 "));
+     * assertFalse(IpMacUtils.isLegalIpV4Prefix("10.0.0.0 /8"));
+     * assertFalse(IpMacUtils.isLegalIpV4Prefix("10.0.0.0/ 8"));
+     * </pre>
+     *
+     * @param ip the ip to check, may be null
+     * @return {@code true} if legal IPV4 with prefix length between 0 and 32
+     */
+    public static boolean isLegalIpV4Prefix(final String ip) {
+        if (isBlank(ip) || ip.indexOf('/') < 0) {
             return false;
         }
-        return IPV4_PATTERN.matcher(ip.trim()).matches();
+        return parseIpV4Prefix(ip, 0, ip.length()) != INVALID_VALUE;
     }
 
     /**
@@ -115,42 +254,36 @@ public class IpMacUtils {
      * @throws IllegalArgumentException throw if not legal IP
      */
     public static IpClassEnum getClassOfIp(final String ipv4) throws IllegalArgumentException {
-        if (!isLegalIpV4(ipv4)) {
+        long ip = ipV4ToLong(ipv4);
+        if (ip == INVALID_VALUE) {
             throw new IllegalArgumentException("Illegal arguments : " + ipv4);
         }
-        String[] ipSegs = ipv4.split(DOT);
-        String ipSeg = ipSegs[0];
-        int ipSegDigit = Integer.parseInt(ipSeg);
-        StringBuilder binStr = new StringBuilder(Integer.toBinaryString(ipSegDigit));
-        String tmpStr = binStr.toString();
+        return IpClassEnum.ofIpV4(ip);
+    }
 
-        for (int binaryChars = 0; binaryChars < 8 - tmpStr.length(); ++binaryChars) {
-            binStr.insert(0, "0");
+    /**
+     * Special purpose of an IPV4 or IPV6, see {@link IpPurposeEnum}.
+     *
+     * <pre>
+     * IpMacUtils.getPurposeOfIp("10.0.0.1")    = PRIVATE
+     * IpMacUtils.getPurposeOfIp("fe80::1%eth0") = LINK_LOCAL
+     * IpMacUtils.getPurposeOfIp("8.8.8.8")     = GLOBAL
+     * </pre>
+     *
+     * @param ip the IP to check, should be legal IP
+     * @return the purpose
+     * @throws IllegalArgumentException throw if not legal IP
+     */
+    public static IpPurposeEnum getPurposeOfIp(final String ip) throws IllegalArgumentException {
+        ParsedIp parsed = PARSED_IPS.get()[0];
+        if (!parsed.parse(ip)) {
+            throw new IllegalArgumentException("Illegal arguments : " + ip);
         }
-
-        char[] binArr = binStr.toString().toCharArray();
-        if (binArr.length == 8) {
-            if (48 == binArr[0]) {
-                return IpClassEnum.A;
-            }
-
-            if (49 == binArr[0] && 48 == binArr[1]) {
-                return IpClassEnum.B;
-            }
-
-            if (49 == binArr[0] && 49 == binArr[1] && 48 == binArr[2]) {
-                return IpClassEnum.C;
-            }
-
-            if (49 == binArr[0] && 49 == binArr[1] && 49 == binArr[2] && 48 == binArr[3]) {
-                return IpClassEnum.D;
-            }
-
-            if (49 == binArr[0] && 49 == binArr[1] && 49 == binArr[2] && 49 == binArr[3]) {
-                return IpClassEnum.E;
-            }
+        if (parsed.isIpV4()) {
+            return IpPurposeEnum.ofIpV4(parsed.getLow());
         }
-        throw new IllegalArgumentException("Illegal arguments : " + ipv4);
+        // an IPv4-mapped IPV6 is classified as its IPV4
+        return IpPurposeEnum.ofIpV6(parsed.getHigh(), parsed.getLow());
     }
 
     /**
@@ -186,65 +319,134 @@ public class IpMacUtils {
         return ipV6toBigInteger(endIp).subtract(ipV6toBigInteger(startIp));
     }
 
+    /**
+     * The range between two V6 IPs.
+     *
+     * @param startIp the start IP
+     * @param endIp   the end IP
+     * @return endIp - startIp
+     */
+    public static BigInteger rangeBetweenIpV6(final IpV6Address startIp, final IpV6Address endIp) {
+        return endIp.subtract(startIp);
+    }
+
+    /**
+     * The range between two V6 IPs, without allocating.
+     *
+     * @param startHigh the high 64 bits of the start IP
+     * @param startLow  the low 64 bits of the start IP
+     * @param endHigh   the high 64 bits of the end IP
+     * @param endLow    the low 64 bits of the end IP
+     * @return end - start, saturated to {@link Long#MIN_VALUE} or {@link Long#MAX_VALUE} when it overflows a long
+     */
+    public static long rangeBetweenIpV6(long startHigh, long startLow, long endHigh, long endLow) {
+        return IpV6Address.difference(endHigh, endLow, startHigh, startLow);
+    }
+
     /**
      * convert String IPV6 to BigInteger
      *
      * @param ipv6 ipv6 string value
-     * @return ipv6 BigInteger value
+     * @return ipv6 BigInteger value, if ip is invalid, will return {@link #INVALID_VALUE}
      */
     public static BigInteger ipV6toBigInteger(final String ipv6) {
-        if (!isLegalIpV6(ipv6)) {
+        if (isBlank(ipv6)) {
             return BigInteger.valueOf(INVALID_VALUE);
         }
-        return ipV6toBigIntegerSum(ipv6);
-    }
-
-    private static BigInteger ipV6toBigIntegerSum(final String ipv6) {
-        int compressIndex = ipv6.indexOf("::");
-        if (compressIndex != -1) {
-            String part1s = ipv6.substring(0, compressIndex);
-            String part2s = ipv6.substring(compressIndex + 1);
-            BigInteger part1 = ipV6toBigIntegerSum(part1s);
-            BigInteger part2 = ipV6toBigIntegerSum(part2s);
-            int part1hasDot = 0;
-            char ch[] = part1s.toCharArray();
-            for (char c : ch) {
-                if (c == ':') {
-                    part1hasDot++;
-                }
-            }
-            return part1.shiftLeft(16 * (7 - part1hasDot)).add(part2);
-        }
-        String[] str = ipv6.split(COLON);
-        BigInteger big = BigInteger.ZERO;
-        for (int i = 0; i < str.length; i++) {
-            // ::1
-            if (str[i].isEmpty()) {
-                str[i] = "0";
-            }
-            big = big.add(BigInteger.valueOf(Long.valueOf(str[i], 16)).shiftLeft(16 * (str.length - i - 1)));
+        long[] value = new long[2];
+        int result = parseIpV6(ipv6, 0, ipv6.length(), false, value);
+        if (!isLegalIpV6Result(result)) {
+            return BigInteger.valueOf(INVALID_VALUE);
+        }
+        return IpV6Address.toBigInteger(value[0], value[1]);
+    }
+
+    /**
+     * convert String IPV6 to {@link IpV6Address}
+     *
+     * @param ipv6 ipv6 string value
+     * @return the address, or null if ip is invalid
+     */
+    public static IpV6Address ipV6ToAddress(final String ipv6) {
+        if (isBlank(ipv6)) {
+            return null;
+        }
+        long[] value = new long[2];
+        int result = parseIpV6(ipv6, 0, ipv6.length(), false, value);
+        if (!isLegalIpV6Result(result)) {
+            return null;
         }
-        return big;
+        return IpV6Address.of(value[0], value[1]);
     }
 
     /**
-     * convert BigInteger IPV6 to String
+     * convert BigInteger IPV6 to String, in the RFC 5952 canonical form.
+     *
+     * <pre>
+     *     338984292706304756556241983349463187651 to ff06::c3
+     * </pre>
      *
-     * @param big ipv6 BigInteger value
+     * @param big ipv6 BigInteger value, only the low 128 bits are used
      * @return ipv6 String value
      */
     public static String bigIntegerToIpV6(BigInteger big) {
-        StringBuilder str = new StringBuilder();
-        BigInteger ff = BigInteger.valueOf(0xffff);
-        for (int i = 0; i < 8; i++) {
-            str.insert(0, big.and(ff).toString(16) + COLON);
+        return longsToIpV6(big.shiftRight(64).longValue(), big.longValue());
+    }
 
-            big = big.shiftRight(16);
-        }
-        // the last :
-        str = new StringBuilder(str.substring(0, str.length() - 1));
+    /**
+     * convert an IPV6 of two longs to String, in the RFC 5952 canonical form: lower case hex without
+     * leading zeros, and the longest run of two or more zero groups, the first one on a tie, as "::".
+     * An IPV4 tail is written in hex too, the same as {@link #bigIntegerToIpV6(BigInteger)}.
+     *
+     * @param high the high 64 bits
+     * @param low  the low 64 bits
+     * @return ipv6 String value
+     */
+    public static String longsToIpV6(long high, long low) {
+        char[] chars = new char[IPV6_MAX_CHARS];
+        return new String(chars, 0, writeIpV6(high, low, chars, 0));
+    }
 
-        return str.toString().replaceFirst("(^|:)(0+(:|$)){2,8}", "::");
+    /**
+     * Writes an IPV6 of two longs into dst without creating a string, see {@link #longsToIpV6(long, long)}.
+     *
+     * @param high   the high 64 bits
+     * @param low    the low 64 bits
+     * @param dst    the chars to write into, 39 chars from offset are always enough
+     * @param offset index of the first char to write
+     * @return the count of chars written
+     * @throws IndexOutOfBoundsException throw if dst is too small
+     */
+    public static int longsToIpV6(long high, long low, final char[] dst, int offset) {
+        return writeIpV6(high, low, dst, offset);
+    }
+
+    /**
+     * Appends an IPV6 of two longs, see {@link #longsToIpV6(long, long)}.
+     *
+     * @param high the high 64 bits
+     * @param low  the low 64 bits
+     * @param out  where to append
+     * @return the count of chars appended
+     * @throws UncheckedIOException throw if out throws IOException
+     */
+    public static int longsToIpV6(long high, long low, final Appendable out) {
+        char[] chars = CHARS_BUFFER.get();
+        return append(chars, writeIpV6(high, low, chars, 0), out);
+    }
+
+    /**
+     * Puts an IPV6 of two longs as ASCII bytes at the buffer position, see {@link #longsToIpV6(long, long)}.
+     *
+     * @param high the high 64 bits
+     * @param low  the low 64 bits
+     * @param dst  the buffer to put into
+     * @return the count of bytes put
+     * @throws BufferOverflowException throw if dst has not enough remaining bytes, nothing is put
+     */
+    public static int longsToIpV6(long high, long low, final ByteBuffer dst) {
+        char[] chars = CHARS_BUFFER.get();
+        return put(chars, writeIpV6(high, low, chars, 0), dst);
     }
 
     /**
@@ -259,36 +461,66 @@ public class IpMacUtils {
     }
 
     /**
-     * convert string mac to long
+     * compare two IPV6
+     *
+     * @param leftIp  ip1
+     * @param rightIp ip2
+     * @return leftIp - rightIp, saturated to {@link Long#MIN_VALUE} or {@link Long#MAX_VALUE} when it overflows a long
+     */
+    public static long compareIpV6(final IpV6Address leftIp, final IpV6Address rightIp) {
+        return IpV6Address.difference(leftIp.getHigh(), leftIp.getLow(), rightIp.getHigh(), rightIp.getLow());
+    }
+
+    /**
+     * convert string mac to long, in any {@link MacFormat}.
      * 
      * <pre>
      *      60-a0-10-50-d0-30 to 106240584765488L
+     *      60:A0:10:50:D0:30 to 106240584765488L
+     *      60a0.1050.d030 to 106240584765488L
+     *      60a01050d030 to 106240584765488L
      * </pre>
      *
      * @param mac mac string
      * @return long value
      */
     public static long macToLong(final String mac) {
-        if (!isLegalMac(mac)) {
-            return INVALID_VALUE;
-        }
-        String macAddr = mac.replace(MIDLINE, "");
-        macAddr = macAddr.replace(COLON, "");
-        long longMac = 0L;
+        return Objects.isNull(mac) ? INVALID_VALUE : parseMac(mac, 0, mac.length());
+    }
 
-        for (int i = 0; i < macAddr.length(); ++i) {
-            if (i != 0) {
-                longMac <<= 4;
-            }
-            if (macAddr.charAt(i) >= 48 && macAddr.charAt(i) <= 57) {
-                longMac += (long) (macAddr.charAt(i) - 48);
-            } else if (macAddr.charAt(i) >= 97 && macAddr.charAt(i) <= 102) {
-                longMac += (long) (macAddr.charAt(i) - 97 + 10);
-            } else if (macAddr.charAt(i) >= 65 && macAddr.charAt(i) <= 70) {
-                longMac += (long) (macAddr.charAt(i) - 65 + 10);
-            }
-        }
-        return longMac;
+    /**
+     * convert a string EUI-64 to long, in any {@link MacFormat} with eight bytes.
+     *
+     * <pre>
+     *      60-a0-10-ff-fe-50-d0-30 to 6962823488094523440L
+     * </pre>
+     * <p>
+     * All 64 bits are used, so the legal ff-ff-ff-ff-ff-ff-ff-ff parses to -1L, which is also
+     * {@link #INVALID_VALUE}. Use {@link #parseEui64(CharSequence, long[])} when that one matters.
+     *
+     * @param eui64 EUI-64 string
+     * @return long value, or {@link #INVALID_VALUE} if not legal or all ones
+     */
+    public static long eui64ToLong(final String eui64) {
+        long[] value = HARDWARE_VALUE.get();
+        return parseEui64(eui64, value) ? value[0] : INVALID_VALUE;
+    }
+
+    /**
+     * Parse an EUI-64 in any {@link MacFormat} with eight bytes, the validity is returned apart from the
+     * value, so all ones is not mistaken for {@link #INVALID_VALUE}.
+     *
+     * <pre>
+     *      parseEui64("ff-ff-ff-ff-ff-ff-ff-ff", out) is true, out[0] is -1L
+     *      parseEui64("ff-ff-ff-ff-ff-ff-ff", out) is false, out[0] is not changed
+     * </pre>
+     *
+     * @param eui64 EUI-64 chars, may be null
+     * @param out   receives the value at index 0 if legal
+     * @return {@code true} if legal
+     */
+    public static boolean parseEui64(final CharSequence eui64, final long[] out) {
+        return Objects.nonNull(eui64) && parseHardwareAddress(eui64, 0, eui64.length(), EUI64_BYTES, out);
     }
 
     /**
@@ -302,31 +534,95 @@ public class IpMacUtils {
      * @return string value
      */
     public static String longToMac(long longMac) {
-        char[] strArray = new char[12];
+        char[] chars = new char[EUI64_MAX_CHARS];
+        return new String(chars, 0, writeHardwareAddress(longMac, MAC_BYTES, MacFormat.HYPHEN, chars, 0));
+    }
 
-        for (int sb = 11; sb >= 0; --sb) {
-            char i = (char) ((int) (longMac & 15L));
-            if (i >= 10) {
-                i = (char) (i - 10 + 97);
-            } else {
-                i = (char) (i + 48);
-            }
+    /**
+     * Writes a long mac into dst without creating a string, such as 60-a0-10-50-d0-30.
+     *
+     * @param longMac mac long value
+     * @param dst     the chars to write into, 17 chars from offset
+     * @param offset  index of the first char to write
+     * @return the count of chars written, always 17
+     * @throws IndexOutOfBoundsException throw if dst is too small
+     */
+    public static int longToMac(long longMac, final char[] dst, int offset) {
+        return writeHardwareAddress(longMac, MAC_BYTES, MacFormat.HYPHEN, dst, offset);
+    }
 
-            strArray[sb] = i;
-            if (sb > 0) {
-                longMac >>= 4;
-            }
-        }
+    /**
+     * Appends a long mac, such as 60-a0-10-50-d0-30.
+     *
+     * @param longMac mac long value
+     * @param out     where to append
+     * @return the count of chars appended, always 17
+     * @throws UncheckedIOException throw if out throws IOException
+     */
+    public static int longToMac(long longMac, final Appendable out) {
+        char[] chars = CHARS_BUFFER.get();
+        return append(chars, writeHardwareAddress(longMac, MAC_BYTES, MacFormat.HYPHEN, chars, 0), out);
+    }
 
-        StringBuilder mac = new StringBuilder();
-        for (int i = 0; i < strArray.length; ++i) {
-            mac.append(strArray[i]);
-            if (i != strArray.length - 1 && (i + 1) % 2 == 0) {
-                mac.append(MIDLINE);
-            }
-        }
+    /**
+     * Puts a long mac as ASCII bytes at the buffer position, such as 60-a0-10-50-d0-30.
+     *
+     * @param longMac mac long value
+     * @param dst     the buffer to put into
+     * @return the count of bytes put, always 17
+     * @throws BufferOverflowException throw if dst has not enough remaining bytes, nothing is put
+     */
+    public static int longToMac(long longMac, final ByteBuffer dst) {
+        char[] chars = CHARS_BUFFER.get();
+        return put(chars, writeHardwareAddress(longMac, MAC_BYTES, MacFormat.HYPHEN, chars, 0), dst);
+    }
+
+    /**
+     * convert long mac to string in format.
+     *
+     * <pre>
+     *     106240584765488L, MacFormat.DOT to 60a0.1050.d030
+     * </pre>
+     *
+     * @param longMac mac long value
+     * @param format  the style
+     * @return string value
+     */
+    public static String longToMac(long longMac, final MacFormat format) {
+        char[] chars = new char[EUI64_MAX_CHARS];
+        return new String(chars, 0, writeHardwareAddress(longMac, MAC_BYTES, format, chars, 0));
+    }
+
+    /**
+     * Appends a long mac in format.
+     *
+     * @param longMac mac long value
+     * @param format  the style
+     * @param out     where to append
+     * @return the count of chars appended
+     * @throws UncheckedIOException throw if out throws IOException
+     */
+    public static int longToMac(long longMac, final MacFormat format, final Appendable out) {
+        char[] chars = CHARS_BUFFER.get();
+        return append(chars, writeHardwareAddress(longMac, MAC_BYTES, format, chars, 0), out);
+    }
 
-        return mac.toString();
+    /**
+     * Appends a long EUI-64 in format.
+     *
+     * <pre>
+     *     6962823488094523440L, MacFormat.COLON to 60:a0:10:ff:fe:50:d0:30
+     * </pre>
+     *
+     * @param eui64  EUI-64 long value
+     * @param format the style
+     * @param out    where to append
+     * @return the count of chars appended
+     * @throws UncheckedIOException throw if out throws IOException
+     */
+    public static int longToEui64(long eui64, final MacFormat format, final Appendable out) {
+        char[] chars = CHARS_BUFFER.get();
+        return append(chars, writeHardwareAddress(eui64, EUI64_BYTES, format, chars, 0), out);
     }
 
     /**
@@ -339,81 +635,155 @@ public class IpMacUtils {
      * assertFalse(IpMacUtils.isLegalMac(""));
      * assertFalse(IpMacUtils.isLegalMac("12:34::"));
      * assertFalse(IpMacUtils.isLegalMac("GG:a0:10:50:d0:30"));
+     * assertTrue(IpMacUtils.isLegalMac("60a0.1050.d030"));
+     * assertTrue(IpMacUtils.isLegalMac("60a01050d030"));
      * </pre>
      *
      * @param mac the mac to check
      * @return {@code true} if legal MAC
      */
     public static boolean isLegalMac(final String mac) {
-        return isNotBlank(mac) && MAC6.matcher(mac.trim()).matches();
+        return macToLong(mac) != INVALID_VALUE;
+    }
+
+    /**
+     * Checks if legal EUI-64, in any {@link MacFormat} with eight bytes.
+     *
+     * @param eui64 the EUI-64 to check
+     * @return {@code true} if legal EUI-64
+     */
+    public static boolean isLegalEui64(final String eui64) {
+        return parseEui64(eui64, HARDWARE_VALUE.get());
     }
 
     public static boolean isNotLegalMac(final String mac) {
         return !isLegalMac(mac);
     }
 
+    /**
+     * Checks the I/G bit, the lowest bit of the first byte.
+     *
+     * <pre>
+     * assertTrue(IpMacUtils.isMulticastMac(IpMacUtils.macToLong("01-00-5e-00-00-fb")));
+     * assertFalse(IpMacUtils.isMulticastMac(IpMacUtils.macToLong("60-a0-10-50-d0-30")));
+     * </pre>
+     *
+     * @param mac MAC long value
+     * @return {@code true} if a multicast or broadcast MAC
+     */
+    public static boolean isMulticastMac(long mac) {
+        return (mac >>> 40 & 1L) != 0L;
+    }
+
+    /**
+     * Checks the U/L bit, the second lowest bit of the first byte, set by randomized and virtual MACs.
+     *
+     * <pre>
+     * assertTrue(IpMacUtils.isLocallyAdministeredMac(IpMacUtils.macToLong("02-42-ac-11-00-02")));
+     * assertFalse(IpMacUtils.isLocallyAdministeredMac(IpMacUtils.macToLong("60-a0-10-50-d0-30")));
+     * </pre>
+     *
+     * @param mac MAC long value
+     * @return {@code true} if a locally administered MAC, not assigned by a vendor
+     */
+    public static boolean isLocallyAdministeredMac(long mac) {
+        return (mac >>> 41 & 1L) != 0L;
+    }
+
+    /**
+     * Checks if both are legal IPV4, or both legal IPV6, each is parsed once.
+     *
+     * @param me the ip to check, may be null
+     * @param he the other ip to check, may be null
+     * @return {@code true} if the same IP type
+     */
     public static boolean isSameIpType(final String me, String he) {
-        boolean meIsV4 = isLegalIpV4(me);
-        boolean meIsV6 = isLegalIpV6(me);
-        boolean heIsV4 = isLegalIpV4(he);
-        boolean heIsV6 = isLegalIpV6(he);
-        boolean isAllIpv4 = meIsV4 && heIsV4;
-        boolean isAllIpv6 = meIsV6 && heIsV6;
-        return isAllIpv4 || isAllIpv6;
+        ParsedIp[] parsed = PARSED_IPS.get();
+        return parsed[0].parse(me) && parsed[1].parse(he) && parsed[0].isSameFamily(parsed[1]);
     }
 
+    /**
+     * compare two IPs of the same type.
+     *
+     * @param leftIp  ip1
+     * @param rightIp ip2
+     * @return leftIp - rightIp, for IPV6 saturated to {@link Long#MIN_VALUE} or {@link Long#MAX_VALUE}
+     * when it overflows a long, so the sign is always right
+     * @throws NumberFormatException throw if not same IP type
+     */
     public static long compareIp(final String leftIp, String rightIp) {
-        if (isLegalIpV4(leftIp) && isLegalIpV4(rightIp)) {
-            return compareIpV4(leftIp, rightIp);
-        } else if (isLegalIpV6(leftIp) && isLegalIpV6(rightIp)) {
-            return compareIpV6(leftIp, rightIp).longValue();
-        } else {
-            throw new NumberFormatException(leftIp + " and " + rightIp + " are not same IP type.");
+        ParsedIp[] parsed = PARSED_IPS.get();
+        if (parsed[0].parse(leftIp) && parsed[1].parse(rightIp) && parsed[0].isSameFamily(parsed[1])) {
+            return parsed[0].difference(parsed[1]);
         }
+        throw new NumberFormatException(leftIp + " and " + rightIp + " are not same IP type.");
     }
 
     public static boolean isLegalIpV6(final String ipv6) {
-        return isLegalIpV6Common(ipv6) || isLegalIPV6Compatible(ipv6);
+        return isLegalIpV6Common(ipv6);
     }
 
+    /**
+     * Checks if a window of chars is a legal IPV6 literal, the input is never resolved as a host name.
+     *
+     * @param ipv6   the ip to check, may be null
+     * @param offset index of the first char to check
+     * @param length number of chars to check
+     * @return {@code true} if legal IPV6
+     * @throws IndexOutOfBoundsException if offset or length is out of the bounds of ipv6
+     */
+    public static boolean isLegalIpV6(final CharSequence ipv6, final int offset, final int length) {
+        if (Objects.isNull(ipv6)) {
+            return false;
+        }
+        checkBounds(ipv6, offset, length);
+        return isLegalIpV6Result(parseIpV6(ipv6, offset, offset + length, false, null));
+    }
+
+    /**
+     * Checks if legal IPV6 literal, such as <code>ff06::c3</code>, <code>[::1]</code> or <code>fe80::1%10</code>.
+     * IPV4-mapped addresses (<code>::ffff:192.1.56.10</code>) are IPV4 addresses and are not legal here.
+     *
+     * @param ip the ip to check, may be null
+     * @return {@code true} if legal IPV6
+     */
     public static boolean isLegalIpV6Common(final String ip) {
-        try {
-            InetAddress e = Inet6Address.getByName(ip);
-            return e instanceof Inet6Address;
-        } catch (Exception e) {
+        if (isBlank(ip)) {
             return false;
         }
+        return isLegalIpV6Result(parseIpV6(ip, 0, ip.length(), false, null));
     }
 
     public static boolean isLegalIpV6All(final String ip) {
         return isLegalIpV6Common(ip) || isLegalIPV6Compatible(ip) || isLegalIPV6Prefix(ip);
     }
 
+    /**
+     * Checks if legal IPV6 with an embedded IPV4 tail, such as <code>::192.1.56.10</code>.
+     *
+     * @param ip the ip to check, may be null
+     * @return {@code true} if legal IPV6 with dotted IPV4 tail
+     */
     public static boolean isLegalIPV6Compatible(final String ip) {
-        return isLegalIpV6Common(ip) && (!isBlank(ip) && countMatches(ip, ".") == 3);
+        if (isBlank(ip)) {
+            return false;
+        }
+        int result = parseIpV6(ip, 0, ip.length(), false, null);
+        return isLegalIpV6Result(result) && (result & IPV6_IPV4_TAIL) != 0;
     }
 
+    /**
+     * Checks if legal IPV6 with prefix length, such as <code>2001:db8::/32</code>.
+     *
+     * @param ip the ip to check, may be null
+     * @return {@code true} if legal IPV6 with prefix length between 0 and 128
+     */
     public static boolean isLegalIPV6Prefix(final String ip) {
         if (isBlank(ip)) {
             return false;
         }
-        if (countMatches(ip, SLASH) == 1 && !ip.endsWith(SLASH)) {
-            String[] ips = ip.split(SLASH);
-
-            int prefixLength1;
-            try {
-                if (ips[1].length() > 1 && ips[1].startsWith("0")) {
-                    return false;
-                }
-
-                prefixLength1 = Integer.parseInt(ips[1]);
-            } catch (Exception e) {
-                return false;
-            }
-
-            return isLegalIpV6Common(ips[0]) && prefixLength1 >= 0 && prefixLength1 <= 128;
-        }
-        return false;
+        int result = parseIpV6(ip, 0, ip.length(), true, null);
+        return isLegalIpV6Result(result) && (result & IPV6_PREFIX_MASK) != IPV6_NO_PREFIX;
     }
 
     /**
@@ -435,6 +805,14 @@ public class IpMacUtils {
         return ipExistsInRangeBySplit(ip, ipSection, MIDLINE);
     }
 
+    /**
+     * check the ip in range, the section is split by a regular expression.
+     *
+     * @param ip        the ip to compare, can not be null
+     * @param ipSection ip section, eg. 192.168.1.2 ~ 192.168.3.0
+     * @param split     the regular expression between begin and end ip
+     * @return true if ip in range
+     */
     public static boolean ipExistsInRangeBySplit(String ip, String ipSection, String split) {
         if (isBlank(ip) || isBlank(ipSection)) {
             return false;
@@ -443,6 +821,9 @@ public class IpMacUtils {
         if (Objects.isNull(split)) {
             return false;
         }
+        if (MIDLINE.equals(split)) {
+            return ipExistsInSection(ip, ipSection, '-');
+        }
         String[] ipArray = ipSection.split(split);
         String beginIp = ipArray[0].trim();
         String endIp = ipArray[0].trim();
@@ -468,13 +849,60 @@ public class IpMacUtils {
      * @param ip      the ip to compare, can not be null
      * @param beginIp begin ip, can not be null
      * @param endIp   end ip, can not be null
-     * @return true if ip in range
+     * @return true if ip in range, false if any is not legal or they are not the same IP type
      */
     public static boolean ipExistsInRange(String ip, String beginIp, String endIp) {
-        if (isBlank(ip) || isBlank(beginIp) || isBlank(endIp)) {
+        ParsedIp[] parsed = PARSED_IPS.get();
+        return parsed[1].parse(beginIp) && parsed[2].parse(endIp) && isInRange(ip, parsed);
+    }
+
+    /**
+     * Same as splitting the section by the char and trimming the parts, without creating strings.
+     */
+    private static boolean ipExistsInSection(String ip, String ipSection, char split) {
+        ParsedIp[] parsed = PARSED_IPS.get();
+        int length = ipSection.length();
+        int dash = ipSection.indexOf(split);
+        if (dash < 0) {
+            return parseTrimmed(parsed[1], ipSection, 0, length) && parseTrimmed(parsed[2], ipSection, 0, length)
+                && isInRange(ip, parsed);
+        }
+        int endFrom = dash + 1;
+        int endTo = ipSection.indexOf(split, endFrom);
+        if (endTo < 0) {
+            endTo = length;
+        }
+        if (!parseTrimmed(parsed[1], ipSection, 0, dash)) {
             return false;
         }
-        return compareIp(ip, beginIp) >= 0 && compareIp(ip, endIp) <= 0;
+        // String.split drops trailing empty parts, so "a-" and "a--" are the single ip a
+        boolean trailing = endFrom == endTo;
+        for (int i = endFrom; trailing && i < length; i++) {
+            trailing = ipSection.charAt(i) == split;
+        }
+        if (trailing) {
+            return parseTrimmed(parsed[2], ipSection, 0, dash) && isInRange(ip, parsed);
+        }
+        return parseTrimmed(parsed[2], ipSection, endFrom, endTo) && isInRange(ip, parsed);
+    }
+
+    private static boolean parseTrimmed(ParsedIp parsed, String str, int from, int to) {
+        while (from < to && str.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && str.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return parsed.parse(str, from, to - from);
+    }
+
+    /**
+     * @param parsed begin and end ip parsed at 1 and 2, the ip is parsed into 0
+     */
+    private static boolean isInRange(String ip, ParsedIp[] parsed) {
+        ParsedIp target = parsed[0];
+        return target.parse(ip) && target.isSameFamily(parsed[1]) && target.isSameFamily(parsed[2])
+            && target.difference(parsed[1]) >= 0 && target.difference(parsed[2]) <= 0;
     }
 
     public static boolean macExistsInRange(String mac, String beginMac, String endMac) {
@@ -487,35 +915,28 @@ public class IpMacUtils {
         if (isBlank(endMac)) {
             endMac = beginMac;
         }
-        if (isNotLegalMac(mac) || isNotLegalMac(beginMac) || isNotLegalMac(beginMac)) {
-            return false;
-        }
         long macLong = macToLong(mac);
         long beginMacLong = macToLong(beginMac);
         long endMacLong = macToLong(endMac);
+        if (macLong == INVALID_VALUE || beginMacLong == INVALID_VALUE || endMacLong == INVALID_VALUE) {
+            return false;
+        }
         return macLong >= beginMacLong && macLong <= endMacLong;
     }
 
     public static boolean macExistsInArray(String mac, String... macs) {
-        if (isNotLegalMac(mac) || Objects.isNull(macs) || macs.length == 0) {
+        long macLong = macToLong(mac);
+        if (macLong == INVALID_VALUE || Objects.isNull(macs) || macs.length == 0) {
             return false;
         }
-        String formattedMac = formatMac(mac);
         for (String mac2 : macs) {
-            if (formattedMac.equals(formatMac(mac2))) {
+            if (macLong == macToLong(mac2)) {
                 return true;
             }
         }
         return false;
     }
 
-    private static String formatMac(String mac) {
-        if (isBlank(mac)) {
-            return "";
-        }
-        return mac.replace(MIDLINE, COLON).toLowerCase();
-    }
-
     private static boolean isBlank(CharSequence cs) {
         int strLen;
         if (cs != null && (strLen = cs.length()) != 0) {
@@ -534,22 +955,503 @@ public class IpMacUtils {
         return !isBlank(cs);
     }
 
-    private static int countMatches(CharSequence str, CharSequence sub) {
-        if (!isBlank(str) && !isBlank(sub)) {
-            int count = 0;
+    static boolean isLegalIpV6Result(final int result) {
+        return result != IPV6_INVALID && (result & IPV6_IPV4_MAPPED) == 0;
+    }
+
+    /**
+     * Parses a dotted-quad IPV4 in one scan, leading and trailing chars up to space are ignored
+     * the same way as {@link String#trim()}. Octets are decimal 0-255 without leading zeros.
+     *
+     * @param cs   the chars to parse
+     * @param from first index, inclusive
+     * @param to   last index, exclusive
+     * @return the long value, or {@link #INVALID_VALUE}
+     */
+    static long parseIpV4(final CharSequence cs, int from, int to) {
+        while (from < to && cs.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && cs.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        long ip = 0L;
+        int octet = 0;
+        int digits = 0;
+        int dots = 0;
+        for (int i = from; i < to; i++) {
+            char c = cs.charAt(i);
+            if (c >= '0' && c <= '9') {
+                // no leading zero, "01" is not an octet
+                if (digits == 1 && octet == 0) {
+                    return INVALID_VALUE;
+                }
+                octet = octet * 10 + (c - '0');
+                if (octet > 255) {
+                    return INVALID_VALUE;
+                }
+                digits++;
+            } else if (c == '.') {
+                if (digits == 0 || dots == 3) {
+                    return INVALID_VALUE;
+                }
+                ip = ip << 8 | octet;
+                octet = 0;
+                digits = 0;
+                dots++;
+            } else {
+                return INVALID_VALUE;
+            }
+        }
+        if (dots != 3 || digits == 0) {
+            return INVALID_VALUE;
+        }
+        return ip << 8 | octet;
+    }
 
-            for (int idx = 0; (idx = indexOf(str, sub, idx)) != -1; idx += sub.length()) {
-                ++count;
+    /**
+     * Writes a dotted-quad IPV4 into dst.
+     *
+     * @param ip     IPV4 long value, 0 - 0xFFFFFFFF
+     * @param dst    the chars to write into, at least 15 chars from offset
+     * @param offset index of the first char to write
+     * @return the count of chars written
+     */
+    static int writeIpV4(final long ip, final char[] dst, final int offset) {
+        int at = offset;
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            int octet = (int) (ip >>> shift) & 0xFF;
+            if (octet >= 100) {
+                dst[at++] = (char) ('0' + octet / 100);
+                dst[at++] = (char) ('0' + octet / 10 % 10);
+            } else if (octet >= 10) {
+                dst[at++] = (char) ('0' + octet / 10);
+            }
+            dst[at++] = (char) ('0' + octet % 10);
+            if (shift > 0) {
+                dst[at++] = '.';
             }
+        }
+        return at - offset;
+    }
 
-            return count;
+    /**
+     * Writes an IPV6 in the RFC 5952 canonical form into dst.
+     *
+     * @param high   the high 64 bits
+     * @param low    the low 64 bits
+     * @param dst    the chars to write into, at least 39 chars from offset
+     * @param offset index of the first char to write
+     * @return the count of chars written
+     */
+    static int writeIpV6(final long high, final long low, final char[] dst, final int offset) {
+        // the longest run of zero groups, a single zero group is not compressed
+        int zerosFrom = -1;
+        int zeros = 1;
+        int runFrom = -1;
+        for (int i = 0; i < 8; i++) {
+            if (ipV6Group(high, low, i) != 0) {
+                runFrom = -1;
+            } else {
+                if (runFrom < 0) {
+                    runFrom = i;
+                }
+                if (i - runFrom + 1 > zeros) {
+                    zerosFrom = runFrom;
+                    zeros = i - runFrom + 1;
+                }
+            }
+        }
+        int at = offset;
+        for (int i = 0; i < 8; i++) {
+            if (i == zerosFrom) {
+                dst[at++] = ':';
+                dst[at++] = ':';
+                i += zeros - 1;
+                continue;
+            }
+            if (i > 0 && i != zerosFrom + zeros) {
+                dst[at++] = ':';
+            }
+            int group = ipV6Group(high, low, i);
+            for (int shift = 12; shift >= 0; shift -= 4) {
+                if (shift == 0 || group >>> shift != 0) {
+                    dst[at++] = HEX_DIGITS[group >>> shift & 0xF];
+                }
+            }
+        }
+        return at - offset;
+    }
+
+    private static int ipV6Group(final long high, final long low, int index) {
+        return (int) ((index < 4 ? high : low) >>> (48 - ((index & 3) << 4))) & 0xFFFF;
+    }
+
+    /**
+     * Writes the low bytes * 8 bits as lower case hex in format into dst.
+     *
+     * @param value  mac or EUI-64 long value
+     * @param bytes  6 for a MAC, 8 for an EUI-64
+     * @param format the style
+     * @param dst    the chars to write into, at least 23 chars from offset
+     * @param offset index of the first char to write
+     * @return the count of chars written
+     */
+    static int writeHardwareAddress(final long value, final int bytes, final MacFormat format,
+                                    final char[] dst, final int offset) {
+        int at = offset;
+        for (int i = bytes - 1; i >= 0; i--) {
+            int b = (int) (value >>> (i << 3)) & 0xFF;
+            dst[at++] = HEX_DIGITS[b >>> 4];
+            dst[at++] = HEX_DIGITS[b & 0xF];
+            if (i > 0 && format.groupBytes > 0 && i % format.groupBytes == 0) {
+                dst[at++] = format.separator;
+            }
+        }
+        return at - offset;
+    }
+
+    private static int append(final char[] chars, int length, final Appendable out) {
+        try {
+            for (int i = 0; i < length; i++) {
+                out.append(chars[i]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return length;
+    }
+
+    private static int put(final char[] chars, int length, final ByteBuffer dst) {
+        if (dst.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        for (int i = 0; i < length; i++) {
+            dst.put((byte) chars[i]);
+        }
+        return length;
+    }
+
+    /**
+     * Parses a MAC in any {@link MacFormat} in one scan, leading and trailing chars up to space are ignored.
+     *
+     * @param cs   the chars to parse
+     * @param from first index, inclusive
+     * @param to   last index, exclusive
+     * @return the 48-bit value, or {@link #INVALID_VALUE}
+     */
+    static long parseMac(final CharSequence cs, int from, int to) {
+        long[] value = HARDWARE_VALUE.get();
+        return parseHardwareAddress(cs, from, to, MAC_BYTES, value) ? value[0] : INVALID_VALUE;
+    }
+
+    /**
+     * Parses a hardware address of bytes bytes in one scan, in one of the forms:
+     * <ul>
+     * <li>groups of one byte split by '-' or ':', a group is one or two hex digits</li>
+     * <li>groups of two bytes split by '.', a group is four hex digits</li>
+     * <li>bytes * 2 hex digits without separators</li>
+     * </ul>
+     *
+     * @param cs    the chars to parse
+     * @param from  first index, inclusive
+     * @param to    last index, exclusive
+     * @param bytes 6 for a MAC, 8 for an EUI-64
+     * @param out   receives the value at index 0 if legal, left as is if not
+     * @return {@code true} if legal
+     */
+    private static boolean parseHardwareAddress(final CharSequence cs, int from, int to, final int bytes,
+                                                final long[] out) {
+        while (from < to && cs.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && cs.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        long value = 0L;
+        long group = 0L;
+        int digits = 0;
+        int groups = 0;
+        char separator = 0;
+        for (int i = from; i < to; i++) {
+            char c = cs.charAt(i);
+            int hex = hexValue(c);
+            if (hex >= 0) {
+                if (++digits > bytes * 2) {
+                    return false;
+                }
+                group = group << 4 | hex;
+            } else if (c == '-' || c == ':' || c == '.') {
+                boolean dot = c == '.';
+                if (separator == 0) {
+                    separator = dot ? '.' : '-';
+                } else if ((separator == '.') != dot) {
+                    return false;
+                }
+                if (dot ? digits != 4 || ++groups >= bytes / 2 : digits == 0 || digits > 2 || ++groups >= bytes) {
+                    return false;
+                }
+                value = value << (dot ? 16 : 8) | group;
+                group = 0L;
+                digits = 0;
+            } else {
+                return false;
+            }
+        }
+        boolean legal;
+        if (separator == 0) {
+            legal = digits == bytes * 2;
+            value = group;
+        } else if (separator == '.') {
+            legal = digits == 4 && groups == bytes / 2 - 1;
+            value = value << 16 | group;
+        } else {
+            legal = digits > 0 && digits <= 2 && groups == bytes - 1;
+            value = value << 8 | group;
+        }
+        if (legal) {
+            out[0] = value;
+        }
+        return legal;
+    }
+
+    /**
+     * Parses an IPV4 with an optional <code>/prefix</code>, a missing prefix is 32. Blanks around the
+     * whole are skipped as {@link #parseIpV4}, blanks next to the '/' are not legal.
+     *
+     * @param cs   the chars to parse
+     * @param from first index, inclusive
+     * @param to   last index, exclusive
+     * @return prefix &lt;&lt; 32 | ip, or {@link #INVALID_VALUE}
+     */
+    static long parseIpV4Prefix(final CharSequence cs, int from, int to) {
+        // blanks around the whole, as parseIpV4, but not around the '/'
+        while (from < to && cs.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && cs.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        int end = to;
+        long prefix = 32L;
+        for (int i = from; i < to; i++) {
+            if (cs.charAt(i) == '/') {
+                prefix = parsePrefixLength(cs, i + 1, to, 32);
+                if (prefix < 0 || i == from || cs.charAt(i - 1) <= ' ') {
+                    return INVALID_VALUE;
+                }
+                end = i;
+                break;
+            }
+        }
+        long ip = parseIpV4(cs, from, end);
+        if (ip == INVALID_VALUE) {
+            return INVALID_VALUE;
+        }
+        return prefix << 32 | ip;
+    }
+
+    /**
+     * Parses an IPV6 literal in one scan and never does any I/O. Accepts RFC 4291 text forms with
+     * <code>::</code> compression, a dotted IPV4 tail, an optional <code>%zone</code>, an optional
+     * <code>/prefix</code> when allowed, or the whole literal in brackets.
+     *
+     * @param cs          the chars to parse
+     * @param from        first index, inclusive
+     * @param to          last index, exclusive
+     * @param allowPrefix whether a <code>/prefix</code> suffix is accepted
+     * @param out         receives the high and low 64 bits when not null
+     * @return {@link #IPV6_INVALID}, or the prefix length (or {@link #IPV6_NO_PREFIX}) masked by
+     * {@link #IPV6_PREFIX_MASK} combined with the {@link #IPV6_IPV4_TAIL}, {@link #IPV6_IPV4_MAPPED} flags
+     */
+    static int parseIpV6(final CharSequence cs, int from, int to, final boolean allowPrefix, final long[] out) {
+        if (from < to && cs.charAt(from) == '[') {
+            if (cs.charAt(to - 1) != ']') {
+                return IPV6_INVALID;
+            }
+            from++;
+            to--;
+        }
+        int flags = IPV6_NO_PREFIX;
+        int end = to;
+        if (allowPrefix) {
+            for (int i = from; i < to; i++) {
+                if (cs.charAt(i) == '/') {
+                    int prefix = parsePrefixLength(cs, i + 1, to, 128);
+                    if (prefix < 0) {
+                        return IPV6_INVALID;
+                    }
+                    flags = prefix;
+                    end = i;
+                    break;
+                }
+            }
+        }
+        for (int i = from; i < end; i++) {
+            if (cs.charAt(i) == '%') {
+                if (!isLegalZone(cs, i + 1, end)) {
+                    return IPV6_INVALID;
+                }
+                end = i;
+                break;
+            }
+        }
+
+        int i = from;
+        // a leading colon must be the start of "::"
+        if (i < end && cs.charAt(i) == ':') {
+            if (i + 1 >= end || cs.charAt(i + 1) != ':') {
+                return IPV6_INVALID;
+            }
+            i++;
+        }
+        long hi = 0L;
+        long lo = 0L;
+        int groups = 0;
+        int compressAt = -1;
+        int group = 0;
+        int digits = 0;
+        int groupStart = i;
+        while (i < end) {
+            char c = cs.charAt(i++);
+            int hex = hexValue(c);
+            if (hex >= 0) {
+                if (++digits > 4) {
+                    return IPV6_INVALID;
+                }
+                group = group << 4 | hex;
+            } else if (c == ':') {
+                groupStart = i;
+                if (digits == 0) {
+                    if (compressAt >= 0) {
+                        return IPV6_INVALID;
+                    }
+                    compressAt = groups;
+                    continue;
+                }
+                if (i == end || groups == 8) {
+                    return IPV6_INVALID;
+                }
+                hi = hi << 16 | lo >>> 48;
+                lo = lo << 16 | group;
+                groups++;
+                group = 0;
+                digits = 0;
+            } else if (c == '.' && groups <= 6 && cs.charAt(end - 1) > ' ') {
+                long ipv4 = parseIpV4(cs, groupStart, end);
+                if (ipv4 == INVALID_VALUE) {
+                    return IPV6_INVALID;
+                }
+                hi = hi << 32 | lo >>> 32;
+                lo = lo << 32 | ipv4;
+                groups += 2;
+                digits = 0;
+                flags |= IPV6_IPV4_TAIL;
+                break;
+            } else {
+                return IPV6_INVALID;
+            }
+        }
+        if (digits > 0) {
+            if (groups == 8) {
+                return IPV6_INVALID;
+            }
+            hi = hi << 16 | lo >>> 48;
+            lo = lo << 16 | group;
+            groups++;
+        }
+        if (compressAt < 0) {
+            if (groups != 8) {
+                return IPV6_INVALID;
+            }
         } else {
-            return 0;
+            if (groups > 7) {
+                return IPV6_INVALID;
+            }
+            // move the groups before "::" up, leaving zero groups in between
+            int tailBits = 16 * (groups - compressAt);
+            int shift = 16 * (8 - groups);
+            long tailHi;
+            long tailLo;
+            if (tailBits >= 64) {
+                tailHi = tailBits == 128 ? hi : hi & ((1L << (tailBits - 64)) - 1);
+                tailLo = lo;
+            } else {
+                tailHi = 0L;
+                tailLo = tailBits == 0 ? 0L : lo & ((1L << tailBits) - 1);
+            }
+            long headHi = hi ^ tailHi;
+            long headLo = lo ^ tailLo;
+            if (shift >= 64) {
+                headHi = shift == 128 ? 0L : headLo << (shift - 64);
+                headLo = 0L;
+            } else {
+                headHi = headHi << shift | headLo >>> (64 - shift);
+                headLo = headLo << shift;
+            }
+            hi = headHi | tailHi;
+            lo = headLo | tailLo;
+        }
+        if (hi == 0L && lo >>> 32 == 0xFFFFL) {
+            flags |= IPV6_IPV4_MAPPED;
+        }
+        if (out != null) {
+            out[0] = hi;
+            out[1] = lo;
+        }
+        return flags;
+    }
+
+    /**
+     * Parses a decimal prefix length without leading zeros.
+     *
+     * @return the prefix length, or -1 if not legal
+     */
+    static int parsePrefixLength(final CharSequence cs, final int from, final int to, final int max) {
+        if (from >= to || to - from > 3 || (cs.charAt(from) == '0' && to - from > 1)) {
+            return -1;
+        }
+        int prefix = 0;
+        for (int i = from; i < to; i++) {
+            char c = cs.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            prefix = prefix * 10 + (c - '0');
+        }
+        return prefix <= max ? prefix : -1;
+    }
+
+    private static boolean isLegalZone(final CharSequence cs, final int from, final int to) {
+        if (from >= to) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            char c = cs.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '-' || c == '_' || c == '.')) {
+                return false;
+            }
         }
+        return true;
     }
 
-    private static int indexOf(CharSequence cs, CharSequence searchChar, int start) {
-        return cs.toString().indexOf(searchChar.toString(), start);
+    static int hexValue(final char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    static void checkBounds(final CharSequence cs, final int offset, final int length) {
+        if (offset < 0 || length < 0 || offset > cs.length() - length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", size " + cs.length());
+        }
     }
 
 }
@@ -0,0 +1,154 @@
+package com.nxest.grapes.lang;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What an IP is for, after the IANA IPv4 and IPv6 Special-Purpose Address Registries, the longest
+ * matching block wins. Lookups on the numeric value read a precomputed prefix table, a few array
+ * reads and no string work. An IPv4-mapped IPV6 (::ffff:0:0/96) is an IPV4 here, as in
+ * {@link IpMacUtils#isLegalIpV6(String)}, so it gets the purpose of its IPV4.
+ *
+ * <pre>
+ * assertEquals(IpPurposeEnum.PRIVATE, IpPurposeEnum.ofIpV4(IpMacUtils.ipV4ToLong("192.168.0.1")));
+ * assertEquals(IpPurposeEnum.SHARED, IpMacUtils.getPurposeOfIp("100.64.0.1"));
+ * assertEquals(IpPurposeEnum.DOCUMENTATION, IpMacUtils.getPurposeOfIp("2001:db8::1"));
+ * </pre>
+ *
+ * @author l10178
+ */
+public enum IpPurposeEnum {
+
+    /**
+     * Any address not in a block below
+     */
+    GLOBAL("Global"),
+    /**
+     * "This network" and the unspecified address, 0.0.0.0/8, ::/128
+     */
+    UNSPECIFIED("Unspecified", "0.0.0.0/8", "::/128"),
+    /**
+     * Loopback, 127.0.0.0/8, ::1/128
+     */
+    LOOPBACK("Loopback", "127.0.0.0/8", "::1/128"),
+    /**
+     * Private-Use (RFC 1918) and Unique-Local (RFC 4193), 10.0.0.0/8, 172.16.0.0/12, 192.168.0.0/16, fc00::/7
+     */
+    PRIVATE("Private-Use", "10.0.0.0/8", "172.16.0.0/12", "192.168.0.0/16", "fc00::/7"),
+    /**
+     * Shared Address Space of carrier-grade NAT (RFC 6598), 100.64.0.0/10
+     */
+    SHARED("Shared Address Space", "100.64.0.0/10"),
+    /**
+     * Link-Local, 169.254.0.0/16, fe80::/10
+     */
+    LINK_LOCAL("Link-Local", "169.254.0.0/16", "fe80::/10"),
+    /**
+     * Multicast, 224.0.0.0/4, ff00::/8
+     */
+    MULTICAST("Multicast", "224.0.0.0/4", "ff00::/8"),
+    /**
+     * Documentation, 192.0.2.0/24, 198.51.100.0/24, 203.0.113.0/24, 233.252.0.0/24, 2001:db8::/32, 3fff::/20
+     */
+    DOCUMENTATION("Documentation", "192.0.2.0/24", "198.51.100.0/24", "203.0.113.0/24", "233.252.0.0/24",
+        "2001:db8::/32", "3fff::/20"),
+    /**
+     * Benchmarking, 198.18.0.0/15, 2001:2::/48
+     */
+    BENCHMARKING("Benchmarking", "198.18.0.0/15", "2001:2::/48"),
+    /**
+     * IETF Protocol Assignments, 192.0.0.0/24, 2001::/23
+     */
+    PROTOCOL("IETF Protocol Assignments", "192.0.0.0/24", "2001::/23"),
+    /**
+     * IPV4 to IPV6 transition, 6to4 relay 192.88.99.0/24, NAT64 64:ff9b::/96 and 64:ff9b:1::/48,
+     * Teredo 2001::/32, 6to4 2002::/16
+     */
+    TRANSITION("Transition", "192.88.99.0/24", "64:ff9b::/96", "64:ff9b:1::/48", "2001::/32", "2002::/16"),
+    /**
+     * Limited Broadcast, 255.255.255.255/32
+     */
+    BROADCAST("Limited Broadcast", "255.255.255.255/32"),
+    /**
+     * Reserved, 240.0.0.0/4, Discard-Only 100::/64
+     */
+    RESERVED("Reserved", "240.0.0.0/4", "100::/64");
+
+    private static final IpPurposeEnum[] VALUES = values();
+    private static final PrefixTable IPV4;
+    private static final PrefixTable IPV6;
+
+    static {
+        PrefixTable.Builder v4 = PrefixTable.builder(GLOBAL.ordinal());
+        PrefixTable.Builder v6 = PrefixTable.builder(GLOBAL.ordinal());
+        long[] ip = new long[2];
+        for (IpPurposeEnum purpose : VALUES) {
+            for (String cidr : purpose.ranges) {
+                long v4Prefix = IpMacUtils.parseIpV4Prefix(cidr, 0, cidr.length());
+                if (v4Prefix != IpMacUtils.INVALID_VALUE) {
+                    v4.addIpV4(v4Prefix & 0xFFFFFFFFL, (int) (v4Prefix >>> 32), purpose.ordinal());
+                } else {
+                    int result = IpMacUtils.parseIpV6(cidr, 0, cidr.length(), true, ip);
+                    v6.addIpV6(ip[0], ip[1], result & IpMacUtils.IPV6_PREFIX_MASK, purpose.ordinal());
+                }
+            }
+        }
+        IPV4 = v4.build();
+        IPV6 = v6.build();
+    }
+
+    private final String description;
+    private final List<String> ranges;
+
+    IpPurposeEnum(String description, String... ranges) {
+        this.description = description;
+        this.ranges = Collections.unmodifiableList(Arrays.asList(ranges));
+    }
+
+    /**
+     * @param ip IPV4 long value
+     * @return the purpose of ip
+     * @throws IllegalArgumentException throw if not 0 - 0xFFFFFFFF
+     */
+    public static IpPurposeEnum ofIpV4(long ip) throws IllegalArgumentException {
+        if (ip < 0 || ip > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("Illegal arguments : " + ip);
+        }
+        return VALUES[IPV4.getIpV4(ip)];
+    }
+
+    /**
+     * @param high the high 64 bits of the IPV6
+     * @param low  the low 64 bits of the IPV6
+     * @return the purpose of the ip
+     */
+    public static IpPurposeEnum ofIpV6(long high, long low) {
+        if (high == 0L && low >>> 32 == 0xFFFFL) {
+            return VALUES[IPV4.getIpV4(low & 0xFFFFFFFFL)];
+        }
+        return VALUES[IPV6.getIpV6(high, low)];
+    }
+
+    /**
+     * @return the registry name
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return the CIDR blocks, empty for {@link #GLOBAL}
+     */
+    public List<String> getRanges() {
+        return ranges;
+    }
+
+    @Override
+    public String toString() {
+        return "IpPurposeEnum{" +
+            "description='" + description + '\'' +
+            ", ranges=" + ranges +
+            '}';
+    }
+}
@@ -0,0 +1,396 @@
+package com.nxest.grapes.lang;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A read-only table of disjoint IPV4 and IPV6 ranges with an int record id each, such as a geo or
+ * ownership database. The file is memory-mapped and lookups binary-search the mapped bytes directly,
+ * so opening is near-instant, nothing is copied to the heap and JVMs on one host share the page cache.
+ *
+ * <pre>
+ * IpRangeDatabase.writer()
+ *     .add("192.168.1.0-192.168.1.255", 1)
+ *     .add("ff06::c3-ff06::1:c3", 2)
+ *     .write(path);
+ * IpRangeDatabase db = IpRangeDatabase.open(path);
+ * assertEquals(1, db.lookup("192.168.1.3"));
+ * assertEquals(IpRangeDatabase.NOT_FOUND, db.lookup("10.0.0.1"));
+ * </pre>
+ * <p>
+ * File layout, big-endian: a 32 bytes header of magic, version, IPV4 count and IPV6 count, then the
+ * IPV4 starts, ends and records as ints, padding to 8 bytes, then the IPV6 starts and ends as pairs of
+ * longs and the records as ints. Ranges are sorted by start. A file is limited to 2GB.
+ *
+ * @author l10178
+ */
+public final class IpRangeDatabase {
+
+    /**
+     * lookup result for an ip in no range
+     */
+    public static final int NOT_FOUND = -1;
+
+    static final int MAGIC = 0x47524442;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+
+    private static final ThreadLocal<long[]> IPV6_BUFFER = ThreadLocal.withInitial(() -> new long[2]);
+
+    private final ByteBuffer buffer;
+    private final int v4Count;
+    private final int v6Count;
+    private final int v4Starts;
+    private final int v4Ends;
+    private final int v4Records;
+    private final int v6Starts;
+    private final int v6Ends;
+    private final int v6Records;
+
+    private IpRangeDatabase(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        if (this.buffer.capacity() < HEADER_SIZE || this.buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an IP range database.");
+        }
+        if (this.buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported IP range database version : " + this.buffer.getInt(4));
+        }
+        this.v4Count = this.buffer.getInt(8);
+        this.v6Count = this.buffer.getInt(12);
+        if (v4Count < 0 || v6Count < 0 || fileSize(v4Count, v6Count) != this.buffer.capacity()) {
+            throw new IOException("Corrupted IP range database.");
+        }
+        this.v4Starts = HEADER_SIZE;
+        this.v4Ends = v4Starts + 4 * v4Count;
+        this.v4Records = v4Ends + 4 * v4Count;
+        this.v6Starts = align8(v4Records + 4 * v4Count);
+        this.v6Ends = v6Starts + 16 * v6Count;
+        this.v6Records = v6Ends + 16 * v6Count;
+    }
+
+    /**
+     * Map a database file, the file must not be changed while in use.
+     *
+     * @param file the database file
+     * @return the database
+     * @throws IOException throw if the file can not be read or is not a database
+     */
+    public static IpRangeDatabase open(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("IP range database larger than 2GB : " + file);
+            }
+            // the mapping stays valid after the channel is closed
+            return new IpRangeDatabase(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * Use database bytes already in memory, the buffer is not copied.
+     *
+     * @param buffer the database bytes from position 0
+     * @return the database
+     * @throws IOException throw if the bytes are not a database
+     */
+    public static IpRangeDatabase wrap(final ByteBuffer buffer) throws IOException {
+        return new IpRangeDatabase(buffer);
+    }
+
+    public static Writer writer() {
+        return new Writer();
+    }
+
+    /**
+     * @param ip IPV4 or IPV6, may be null
+     * @return the record id of the range containing ip, or {@link #NOT_FOUND}
+     */
+    public int lookup(final CharSequence ip) {
+        if (Objects.isNull(ip) || ip.length() == 0) {
+            return NOT_FOUND;
+        }
+        long ipV4 = IpMacUtils.parseIpV4(ip, 0, ip.length());
+        if (ipV4 != IpMacUtils.INVALID_VALUE) {
+            return lookupIpV4(ipV4);
+        }
+        long[] ipV6 = IPV6_BUFFER.get();
+        if (!IpMacUtils.isLegalIpV6Result(IpMacUtils.parseIpV6(ip, 0, ip.length(), false, ipV6))) {
+            return NOT_FOUND;
+        }
+        return lookupIpV6(ipV6[0], ipV6[1]);
+    }
+
+    /**
+     * @param ipV4 IPV4 long value
+     * @return the record id of the range containing ip, or {@link #NOT_FOUND}
+     */
+    public int lookupIpV4(long ipV4) {
+        int lo = 0;
+        int hi = v4Count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if ((buffer.getInt(v4Starts + 4 * mid) & 0xFFFFFFFFL) <= ipV4) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (hi < 0 || ipV4 > (buffer.getInt(v4Ends + 4 * hi) & 0xFFFFFFFFL)) {
+            return NOT_FOUND;
+        }
+        return buffer.getInt(v4Records + 4 * hi);
+    }
+
+    public int lookup(final IpV6Address ipV6) {
+        return Objects.isNull(ipV6) ? NOT_FOUND : lookupIpV6(ipV6.getHigh(), ipV6.getLow());
+    }
+
+    /**
+     * @param high the high 64 bits of the IPV6
+     * @param low  the low 64 bits of the IPV6
+     * @return the record id of the range containing ip, or {@link #NOT_FOUND}
+     */
+    public int lookupIpV6(long high, long low) {
+        int lo = 0;
+        int hi = v6Count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int at = v6Starts + 16 * mid;
+            if (IpV6Address.compare(buffer.getLong(at), buffer.getLong(at + 8), high, low) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (hi < 0) {
+            return NOT_FOUND;
+        }
+        int at = v6Ends + 16 * hi;
+        if (IpV6Address.compare(high, low, buffer.getLong(at), buffer.getLong(at + 8)) > 0) {
+            return NOT_FOUND;
+        }
+        return buffer.getInt(v6Records + 4 * hi);
+    }
+
+    /**
+     * @return the count of IPV4 ranges
+     */
+    public int sizeIpV4() {
+        return v4Count;
+    }
+
+    /**
+     * @return the count of IPV6 ranges
+     */
+    public int sizeIpV6() {
+        return v6Count;
+    }
+
+    private static int align8(int offset) {
+        return (offset + 7) & ~7;
+    }
+
+    private static long fileSize(long v4Count, long v6Count) {
+        return ((HEADER_SIZE + 12L * v4Count + 7) & ~7L) + 36L * v6Count;
+    }
+
+    /**
+     * Collects ranges with record ids in any order, ranges must not overlap.
+     */
+    public static final class Writer {
+
+        /**
+         * IPV4 groups of start, end, record
+         */
+        private long[] v4 = new long[48];
+        private int v4Size;
+
+        /**
+         * IPV6 groups of start high, start low, end high, end low, record
+         */
+        private long[] v6 = new long[80];
+        private int v6Size;
+
+        private Writer() {
+        }
+
+        /**
+         * @param section  ip section split by '-', eg. 192.168.1.2-192.168.3.0, or a single ip
+         * @param recordId the record id, not negative
+         * @return this writer
+         * @throws IllegalArgumentException throw if the section is not legal
+         */
+        public Writer add(final String section, int recordId) throws IllegalArgumentException {
+            return add(section, "-", recordId);
+        }
+
+        /**
+         * @param section  ip section, eg. 192.168.1.2-192.168.3.0, or a single ip
+         * @param split    the pattern between begin and end ip
+         * @param recordId the record id, not negative
+         * @return this writer
+         * @throws IllegalArgumentException throw if the section is not legal
+         */
+        public Writer add(final String section, final String split, int recordId) throws IllegalArgumentException {
+            if (Objects.isNull(section) || Objects.isNull(split)) {
+                throw new IllegalArgumentException("Illegal arguments : " + section);
+            }
+            String[] ipArray = section.split(split);
+            String beginIp = ipArray.length > 0 ? ipArray[0].trim() : "";
+            String endIp = ipArray.length > 1 ? ipArray[1].trim() : beginIp;
+            long begin = IpMacUtils.ipV4ToLong(beginIp);
+            long end = IpMacUtils.ipV4ToLong(endIp);
+            if (begin != IpMacUtils.INVALID_VALUE && end != IpMacUtils.INVALID_VALUE) {
+                return addIpV4(begin, end, recordId);
+            }
+            IpV6Address begin6 = IpMacUtils.ipV6ToAddress(beginIp);
+            IpV6Address end6 = IpMacUtils.ipV6ToAddress(endIp);
+            if (begin6 == null || end6 == null) {
+                throw new IllegalArgumentException(beginIp + " and " + endIp + " are not same IP type.");
+            }
+            return addIpV6(begin6.getHigh(), begin6.getLow(), end6.getHigh(), end6.getLow(), recordId);
+        }
+
+        /**
+         * @throws IllegalArgumentException throw if not legal IPV4 values, begin is greater than end or record is negative
+         */
+        public Writer addIpV4(long begin, long end, int recordId) throws IllegalArgumentException {
+            if (begin < 0 || end > 0xFFFFFFFFL || begin > end || recordId < 0) {
+                throw new IllegalArgumentException("Illegal arguments : " + begin + "-" + end + " " + recordId);
+            }
+            if (v4Size + 3 > v4.length) {
+                v4 = Arrays.copyOf(v4, v4.length * 2);
+            }
+            v4[v4Size++] = begin;
+            v4[v4Size++] = end;
+            v4[v4Size++] = recordId;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException throw if begin is greater than end or record is negative
+         */
+        public Writer addIpV6(long beginHigh, long beginLow, long endHigh, long endLow, int recordId)
+            throws IllegalArgumentException {
+            if (IpV6Address.compare(beginHigh, beginLow, endHigh, endLow) > 0 || recordId < 0) {
+                throw new IllegalArgumentException("Illegal arguments : " + IpV6Address.of(beginHigh, beginLow)
+                    + "-" + IpV6Address.of(endHigh, endLow) + " " + recordId);
+            }
+            if (v6Size + 5 > v6.length) {
+                v6 = Arrays.copyOf(v6, v6.length * 2);
+            }
+            v6[v6Size++] = beginHigh;
+            v6[v6Size++] = beginLow;
+            v6[v6Size++] = endHigh;
+            v6[v6Size++] = endLow;
+            v6[v6Size++] = recordId;
+            return this;
+        }
+
+        /**
+         * Sort the ranges and write the database file, replacing an existing file. The file is written
+         * beside it and moved over it, a JVM that has the old file open keeps reading the old table.
+         * The new file gets the POSIX permissions of the one it replaces.
+         *
+         * @param file the database file
+         * @throws IOException              throw if the file can not be written
+         * @throws IllegalArgumentException throw if two ranges overlap
+         */
+        public void write(final Path file) throws IOException, IllegalArgumentException {
+            int v4Count = v4Size / 3;
+            int v6Count = v6Size / 5;
+            long[] v4Sorted = sortIpV4(v4Count);
+            long[] v6Sorted = Arrays.copyOf(v6, v6Size);
+            IpRangeSet.sortIpV6(v6Sorted, 5, 0, v6Count - 1);
+            for (int i = 1; i < v4Count; i++) {
+                if (v4Sorted[3 * i] <= v4Sorted[3 * i - 2]) {
+                    throw new IllegalArgumentException("Overlapped ranges : " + IpMacUtils.longToIpV4(v4Sorted[3 * i]));
+                }
+            }
+            for (int i = 1; i < v6Count; i++) {
+                if (IpV6Address.compare(v6Sorted[5 * i], v6Sorted[5 * i + 1], v6Sorted[5 * i - 3], v6Sorted[5 * i - 2]) <= 0) {
+                    throw new IllegalArgumentException("Overlapped ranges : " + IpV6Address.of(v6Sorted[5 * i], v6Sorted[5 * i + 1]));
+                }
+            }
+            long size = fileSize(v4Count, v6Count);
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("IP range database larger than 2GB.");
+            }
+
+            Path target = file.toAbsolutePath();
+            Path temp = Files.createTempFile(target.getParent(), "database", ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                    writeTo(out, v4Count, v4Sorted, v6Count, v6Sorted);
+                    out.flush();
+                    channel.force(false);
+                }
+                // a temporary file is created owner-only
+                if (Files.exists(target) && Files.getFileStore(temp).supportsFileAttributeView(PosixFileAttributeView.class)) {
+                    Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+                }
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        private static void writeTo(final DataOutputStream out, int v4Count, long[] v4Sorted, int v6Count, long[] v6Sorted)
+            throws IOException {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(v4Count);
+            out.writeInt(v6Count);
+            out.write(new byte[HEADER_SIZE - 16]);
+            for (int column = 0; column < 3; column++) {
+                for (int i = 0; i < v4Count; i++) {
+                    out.writeInt((int) v4Sorted[3 * i + column]);
+                }
+            }
+            int written = HEADER_SIZE + 12 * v4Count;
+            out.write(new byte[align8(written) - written]);
+            for (int column = 0; column < 4; column += 2) {
+                for (int i = 0; i < v6Count; i++) {
+                    out.writeLong(v6Sorted[5 * i + column]);
+                    out.writeLong(v6Sorted[5 * i + column + 1]);
+                }
+            }
+            for (int i = 0; i < v6Count; i++) {
+                out.writeInt((int) v6Sorted[5 * i + 4]);
+            }
+        }
+
+        private long[] sortIpV4(int count) {
+            // start << 32 | index sorts by start, the sign flip makes a signed sort unsigned
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = (v4[3 * i] << 32 | i) ^ Long.MIN_VALUE;
+            }
+            Arrays.sort(keys);
+            long[] sorted = new long[3 * count];
+            for (int i = 0; i < count; i++) {
+                int from = 3 * (int) ((keys[i] ^ Long.MIN_VALUE) & 0xFFFFFFFFL);
+                System.arraycopy(v4, from, sorted, 3 * i, 3);
+            }
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package com.nxest.grapes.lang;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Loads a large text file of IP ranges into an {@link IpRangeSet} on all cores. The file is memory-mapped
+ * in chunks that end at a newline, each chunk is parsed into its own sorted set on a fork-join pool
+ * without creating strings, and the sets are merged pairwise by {@link IpRangeSet#union(IpRangeSet)}.
+ * <p>
+ * A line is a single IP, a CIDR or a section such as <code>192.168.1.2 - 192.168.1.5</code>, as
+ * {@link IpRangeSet.Builder#add(String)}. Blank lines and lines starting with <code>#</code> are skipped.
+ * A bad line does not stop the load, it is reported with its line number.
+ *
+ * <pre>
+ * IpRangeLoader.Result result = IpRangeLoader.load(Paths.get("blocklist.txt"));
+ * IpRangeSet blocklist = result.getRanges();
+ * for (IpRangeLoader.BadLine bad : result.getBadLines()) {
+ *     log.warn("blocklist.txt:{} {}", bad.getLineNumber(), bad.getLine());
+ * }
+ * </pre>
+ *
+ * @author l10178
+ */
+public final class IpRangeLoader {
+
+    /**
+     * the most bad lines a result keeps, the count is always exact
+     */
+    public static final int MAX_BAD_LINES = 1000;
+
+    static final int DEFAULT_CHUNK_SIZE = 16 << 20;
+
+    /**
+     * the most chars of a bad line a result keeps
+     */
+    private static final int MAX_BAD_LINE_LENGTH = 256;
+
+    private IpRangeLoader() {
+    }
+
+    /**
+     * Load on the common fork-join pool.
+     *
+     * @param file the text file, ASCII or UTF-8
+     * @return the ranges and the bad lines
+     * @throws IOException throw if file can not be read
+     */
+    public static Result load(final Path file) throws IOException {
+        return load(file, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param file the text file, ASCII or UTF-8
+     * @param pool where to parse
+     * @return the ranges and the bad lines
+     * @throws IOException throw if file can not be read
+     */
+    public static Result load(final Path file, final ForkJoinPool pool) throws IOException {
+        return load(file, pool, DEFAULT_CHUNK_SIZE);
+    }
+
+    static Result load(final Path file, final ForkJoinPool pool, int chunkSize) throws IOException {
+        if (Objects.isNull(file) || Objects.isNull(pool) || chunkSize <= 0) {
+            throw new IllegalArgumentException("Illegal arguments : " + file);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel, chunkSize);
+            Chunk chunk = pool.invoke(new LoadTask(channel, bounds, 0, bounds.length - 1));
+            if (chunk.failure != null) {
+                throw chunk.failure;
+            }
+            return new Result(chunk.ranges, chunk.lines, chunk.badLines, chunk.badCount);
+        }
+    }
+
+    /**
+     * @return the chunk starts and the file size, each start but the first is just after a newline
+     */
+    private static long[] chunkBounds(final FileChannel channel, int chunkSize) throws IOException {
+        long size = channel.size();
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long position = chunkSize;
+        while (position < size) {
+            long newline = -1;
+            while (newline < 0 && position < size) {
+                ((Buffer) buffer).clear();
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') {
+                        newline = position + i;
+                        break;
+                    }
+                }
+                position += newline < 0 ? read : 0;
+            }
+            if (newline < 0 || newline + 1 >= size) {
+                break;
+            }
+            bounds.add(newline + 1);
+            position = newline + 1 + chunkSize;
+        }
+        bounds.add(size);
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Parses chunks [from, to), splitting in halves down to one chunk.
+     */
+    private static final class LoadTask extends RecursiveTask<Chunk> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel channel;
+        private final long[] bounds;
+        private final int from;
+        private final int to;
+
+        LoadTask(FileChannel channel, long[] bounds, int from, int to) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Chunk compute() {
+            if (to - from == 1) {
+                try {
+                    return parse(channel, bounds[from], bounds[to]);
+                } catch (IOException e) {
+                    return new Chunk(e);
+                }
+            }
+            int middle = (from + to) >>> 1;
+            LoadTask left = new LoadTask(channel, bounds, from, middle);
+            left.fork();
+            Chunk right = new LoadTask(channel, bounds, middle, to).compute();
+            return left.join().append(right);
+        }
+    }
+
+    private static Chunk parse(final FileChannel channel, long start, long end) throws IOException {
+        if (end - start > Integer.MAX_VALUE) {
+            throw new IOException("Line too long at byte " + start);
+        }
+        Chunk chunk = new Chunk();
+        if (end == start) {
+            chunk.ranges = IpRangeSet.builder().build();
+            return chunk;
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        LineParser parser = new LineParser();
+        byte[] line = new byte[128];
+        int length = 0;
+        int limit = buffer.limit();
+        for (int i = 0; i <= limit; i++) {
+            byte b = i < limit ? buffer.get(i) : (byte) '\n';
+            if (b != '\n') {
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, length * 2);
+                }
+                line[length++] = b;
+                continue;
+            }
+            if (i == limit && length == 0) {
+                break;
+            }
+            chunk.lines++;
+            if (!parser.parse(line, length)) {
+                chunk.addBadLine(chunk.lines, line, length);
+            }
+            length = 0;
+        }
+        chunk.ranges = parser.builder.build();
+        return chunk;
+    }
+
+    /**
+     * Parses lines of one chunk into a builder, with its own parse results.
+     */
+    private static final class LineParser {
+
+        private final IpRangeSet.Builder builder = IpRangeSet.builder();
+        private final AsciiCharSequence chars = new AsciiCharSequence(new byte[0], 0, 0);
+        private final ParsedIp begin = new ParsedIp();
+        private final ParsedIp end = new ParsedIp();
+
+        /**
+         * @return {@code false} if a bad line
+         */
+        boolean parse(byte[] line, int length) {
+            AsciiCharSequence cs = chars.wrap(line, 0, length);
+            int from = 0;
+            int to = length;
+            while (from < to && cs.charAt(from) <= ' ') {
+                from++;
+            }
+            while (to > from && cs.charAt(to - 1) <= ' ') {
+                to--;
+            }
+            if (from == to || cs.charAt(from) == '#') {
+                return true;
+            }
+            int dash = indexOf(cs, '-', from, to);
+            if (dash < 0) {
+                return begin.parseWithPrefix(cs, from, to - from) && addCidr(begin);
+            }
+            if (indexOf(cs, '-', dash + 1, to) >= 0 || !parseTrimmed(begin, cs, from, dash)
+                || !parseTrimmed(end, cs, dash + 1, to) || !begin.isSameFamily(end) || begin.difference(end) > 0) {
+                return false;
+            }
+            if (begin.isIpV4()) {
+                builder.addIpV4(begin.getLow(), end.getLow());
+            } else {
+                builder.addIpV6(begin.getHigh(), begin.getLow(), end.getHigh(), end.getLow());
+            }
+            return true;
+        }
+
+        private boolean addCidr(ParsedIp cidr) {
+            if (cidr.isIpV4()) {
+                long mask = IpV6Address.maskLow(96 + cidr.getPrefix()) & 0xFFFFFFFFL;
+                long network = cidr.getLow() & mask;
+                builder.addIpV4(network, network | ~mask & 0xFFFFFFFFL);
+                return true;
+            }
+            if (!cidr.isIpV6()) {
+                return false;
+            }
+            long maskHigh = IpV6Address.maskHigh(cidr.getPrefix());
+            long maskLow = IpV6Address.maskLow(cidr.getPrefix());
+            builder.addIpV6(cidr.getHigh() & maskHigh, cidr.getLow() & maskLow,
+                cidr.getHigh() | ~maskHigh, cidr.getLow() | ~maskLow);
+            return true;
+        }
+
+        private static boolean parseTrimmed(ParsedIp ip, CharSequence cs, int from, int to) {
+            while (from < to && cs.charAt(from) <= ' ') {
+                from++;
+            }
+            while (to > from && cs.charAt(to - 1) <= ' ') {
+                to--;
+            }
+            // a range end is a plain IP, not a CIDR
+            return ip.parse(cs, from, to - from);
+        }
+
+        private static int indexOf(CharSequence cs, char c, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (cs.charAt(i) == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * The result of some consecutive chunks, line numbers counted from the first of them.
+     */
+    private static final class Chunk {
+
+        private IpRangeSet ranges;
+        private long lines;
+        private List<BadLine> badLines = new ArrayList<>();
+        private long badCount;
+        private IOException failure;
+
+        Chunk() {
+        }
+
+        Chunk(IOException failure) {
+            this.failure = failure;
+        }
+
+        void addBadLine(long lineNumber, byte[] line, int length) {
+            if (badLines.size() < MAX_BAD_LINES) {
+                String text = new AsciiCharSequence(line, 0, Math.min(length, MAX_BAD_LINE_LENGTH)).toString();
+                badLines.add(new BadLine(lineNumber, text));
+            }
+            badCount++;
+        }
+
+        /**
+         * @param next the chunks just after these
+         * @return this, covering both
+         */
+        Chunk append(Chunk next) {
+            if (failure != null) {
+                return this;
+            }
+            if (next.failure != null) {
+                return next;
+            }
+            for (BadLine bad : next.badLines) {
+                if (badLines.size() == MAX_BAD_LINES) {
+                    break;
+                }
+                badLines.add(new BadLine(lines + bad.lineNumber, bad.line));
+            }
+            ranges = ranges.union(next.ranges);
+            lines += next.lines;
+            badCount += next.badCount;
+            return this;
+        }
+    }
+
+    /**
+     * The ranges of a file and its bad lines.
+     */
+    public static final class Result {
+
+        private final IpRangeSet ranges;
+        private final long lineCount;
+        private final List<BadLine> badLines;
+        private final long badLineCount;
+
+        private Result(IpRangeSet ranges, long lineCount, List<BadLine> badLines, long badLineCount) {
+            this.ranges = ranges;
+            this.lineCount = lineCount;
+            this.badLines = Collections.unmodifiableList(badLines);
+            this.badLineCount = badLineCount;
+        }
+
+        /**
+         * @return the ranges of all good lines
+         */
+        public IpRangeSet getRanges() {
+            return ranges;
+        }
+
+        /**
+         * @return the count of lines, blank and comment lines included
+         */
+        public long getLineCount() {
+            return lineCount;
+        }
+
+        /**
+         * @return the first {@link #MAX_BAD_LINES} bad lines, by line number
+         */
+        public List<BadLine> getBadLines() {
+            return badLines;
+        }
+
+        /**
+         * @return the count of all bad lines
+         */
+        public long getBadLineCount() {
+            return badLineCount;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{" +
+                "ranges=" + ranges.sizeIpV4() + "+" + ranges.sizeIpV6() +
+                ", lineCount=" + lineCount +
+                ", badLineCount=" + badLineCount +
+                '}';
+        }
+    }
+
+    /**
+     * A line that is not a legal IP, CIDR or section.
+     */
+    public static final class BadLine {
+
+        private final long lineNumber;
+        private final String line;
+
+        private BadLine(long lineNumber, String line) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+        }
+
+        /**
+         * @return the line number, from 1
+         */
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * @return the line, at most the first 256 chars
+         */
+        public String getLine() {
+            return line;
+        }
+
+        @Override
+        public String toString() {
+            return lineNumber + ": " + line;
+        }
+    }
+}
@@ -0,0 +1,799 @@
+package com.nxest.grapes.lang;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An immutable set of IPV4 and IPV6 ranges, compiled once from sections such as
+ * <code>192.168.1.2-192.168.1.5</code>. Overlapping and adjacent ranges are merged into sorted
+ * primitive arrays, so {@link #contains(CharSequence)} is a binary search and does not allocate.
+ *
+ * <pre>
+ * IpRangeSet set = IpRangeSet.of("192.168.1.2-192.168.1.5", "10.0.0.1", "ff06::c3 - ff06::1:c3", "172.16.0.0/12");
+ * assertTrue(set.contains("192.168.1.3"));
+ * assertTrue(set.contains("ff06::ff"));
+ * assertFalse(set.contains("10.0.0.2"));
+ * </pre>
+ * <p>
+ * Sets combine with {@link #union}, {@link #intersect}, {@link #subtract} and {@link #complement} in linear
+ * sweeps over the sorted ranges, and {@link #toMinimalCidrs()} turns a set back into prefixes.
+ *
+ * @author l10178
+ */
+public final class IpRangeSet {
+
+    private static final long[] EMPTY = new long[0];
+
+    /**
+     * every IPV4 and every IPV6
+     */
+    private static final IpRangeSet ALL = new IpRangeSet(new long[]{0L}, new long[]{0xFFFFFFFFL},
+        new long[]{0L}, new long[]{0L}, new long[]{-1L}, new long[]{-1L});
+
+    private static final ThreadLocal<long[]> IPV6_BUFFER = ThreadLocal.withInitial(() -> new long[2]);
+
+    /**
+     * IPV4 ranges, sorted and disjoint, both ends inclusive.
+     */
+    final long[] v4Starts;
+    final long[] v4Ends;
+
+    /**
+     * IPV6 ranges, sorted and disjoint, both ends inclusive.
+     */
+    final long[] v6StartHighs;
+    final long[] v6StartLows;
+    final long[] v6EndHighs;
+    final long[] v6EndLows;
+
+    IpRangeSet(long[] v4Starts, long[] v4Ends,
+               long[] v6StartHighs, long[] v6StartLows, long[] v6EndHighs, long[] v6EndLows) {
+        this.v4Starts = v4Starts;
+        this.v4Ends = v4Ends;
+        this.v6StartHighs = v6StartHighs;
+        this.v6StartLows = v6StartLows;
+        this.v6EndHighs = v6EndHighs;
+        this.v6EndLows = v6EndLows;
+    }
+
+    /**
+     * Compile sections split by '-', see {@link IpMacUtils#ipExistsInRange(String, String)}.
+     *
+     * @param sections ip sections, eg. 192.168.1.2-192.168.3.0
+     * @return the compiled set
+     * @throws IllegalArgumentException throw if a section is not legal
+     */
+    public static IpRangeSet of(final String... sections) throws IllegalArgumentException {
+        return of(Arrays.asList(sections));
+    }
+
+    /**
+     * Compile sections split by '-', see {@link IpMacUtils#ipExistsInRange(String, String)}.
+     *
+     * @param sections ip sections, eg. 192.168.1.2-192.168.3.0
+     * @return the compiled set
+     * @throws IllegalArgumentException throw if a section is not legal
+     */
+    public static IpRangeSet of(final Collection<String> sections) throws IllegalArgumentException {
+        return of(sections, "-");
+    }
+
+    /**
+     * Compile sections, see {@link IpMacUtils#ipExistsInRangeBySplit(String, String, String)}.
+     *
+     * @param sections ip sections
+     * @param split    the pattern between begin and end ip
+     * @return the compiled set
+     * @throws IllegalArgumentException throw if a section is not legal
+     */
+    public static IpRangeSet of(final Collection<String> sections, final String split) throws IllegalArgumentException {
+        Builder builder = builder();
+        for (String section : sections) {
+            builder.add(section, split);
+        }
+        return builder.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * check the ip in this set.
+     *
+     * @param ip IPV4 or IPV6, may be null
+     * @return true if ip in range
+     */
+    public boolean contains(final CharSequence ip) {
+        if (Objects.isNull(ip) || ip.length() == 0) {
+            return false;
+        }
+        long ipV4 = IpMacUtils.parseIpV4(ip, 0, ip.length());
+        if (ipV4 != IpMacUtils.INVALID_VALUE) {
+            return containsIpV4(ipV4);
+        }
+        long[] ipV6 = IPV6_BUFFER.get();
+        if (!IpMacUtils.isLegalIpV6Result(IpMacUtils.parseIpV6(ip, 0, ip.length(), false, ipV6))) {
+            return false;
+        }
+        return containsIpV6(ipV6[0], ipV6[1]);
+    }
+
+    /**
+     * @param ipV4 IPV4 long value, see {@link IpMacUtils#ipV4ToLong(String)}
+     * @return true if ip in range
+     */
+    public boolean containsIpV4(long ipV4) {
+        int i = Arrays.binarySearch(v4Starts, ipV4);
+        if (i >= 0) {
+            return true;
+        }
+        i = -i - 2;
+        return i >= 0 && ipV4 <= v4Ends[i];
+    }
+
+    public boolean contains(final IpV6Address ipV6) {
+        return Objects.nonNull(ipV6) && containsIpV6(ipV6.getHigh(), ipV6.getLow());
+    }
+
+    /**
+     * @param high the high 64 bits of the IPV6
+     * @param low  the low 64 bits of the IPV6
+     * @return true if ip in range
+     */
+    public boolean containsIpV6(long high, long low) {
+        int i = floorIpV6(high, low);
+        return i >= 0 && IpV6Address.compare(high, low, v6EndHighs[i], v6EndLows[i]) <= 0;
+    }
+
+    /**
+     * @return the count of disjoint IPV4 ranges
+     */
+    public int sizeIpV4() {
+        return v4Starts.length;
+    }
+
+    /**
+     * @return the count of disjoint IPV6 ranges
+     */
+    public int sizeIpV6() {
+        return v6StartHighs.length;
+    }
+
+    public boolean isEmpty() {
+        return v4Starts.length == 0 && v6StartHighs.length == 0;
+    }
+
+    /**
+     * The IPs in this set or in other, in one linear sweep over both sorted ranges.
+     *
+     * @param other the other set
+     * @return a new set
+     */
+    public IpRangeSet union(final IpRangeSet other) {
+        V4Appender v4 = new V4Appender(v4Starts.length + other.v4Starts.length);
+        int i = 0;
+        int j = 0;
+        while (i < v4Starts.length || j < other.v4Starts.length) {
+            if (j == other.v4Starts.length || i < v4Starts.length && v4Starts[i] <= other.v4Starts[j]) {
+                v4.add(v4Starts[i], v4Ends[i]);
+                i++;
+            } else {
+                v4.add(other.v4Starts[j], other.v4Ends[j]);
+                j++;
+            }
+        }
+        V6Appender v6 = new V6Appender(v6StartHighs.length + other.v6StartHighs.length);
+        i = 0;
+        j = 0;
+        while (i < v6StartHighs.length || j < other.v6StartHighs.length) {
+            if (j == other.v6StartHighs.length || i < v6StartHighs.length && IpV6Address.compare(v6StartHighs[i],
+                v6StartLows[i], other.v6StartHighs[j], other.v6StartLows[j]) <= 0) {
+                v6.add(v6StartHighs[i], v6StartLows[i], v6EndHighs[i], v6EndLows[i]);
+                i++;
+            } else {
+                v6.add(other.v6StartHighs[j], other.v6StartLows[j], other.v6EndHighs[j], other.v6EndLows[j]);
+                j++;
+            }
+        }
+        return create(v4, v6);
+    }
+
+    /**
+     * The IPs in both this set and other, in one linear sweep over both sorted ranges.
+     *
+     * @param other the other set
+     * @return a new set
+     */
+    public IpRangeSet intersect(final IpRangeSet other) {
+        V4Appender v4 = new V4Appender(Math.max(v4Starts.length, other.v4Starts.length));
+        int i = 0;
+        int j = 0;
+        while (i < v4Starts.length && j < other.v4Starts.length) {
+            long start = Math.max(v4Starts[i], other.v4Starts[j]);
+            long end = Math.min(v4Ends[i], other.v4Ends[j]);
+            if (start <= end) {
+                v4.add(start, end);
+            }
+            if (v4Ends[i] < other.v4Ends[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        V6Appender v6 = new V6Appender(Math.max(v6StartHighs.length, other.v6StartHighs.length));
+        i = 0;
+        j = 0;
+        while (i < v6StartHighs.length && j < other.v6StartHighs.length) {
+            boolean thisStarts = IpV6Address.compare(v6StartHighs[i], v6StartLows[i],
+                other.v6StartHighs[j], other.v6StartLows[j]) >= 0;
+            boolean thisEnds = IpV6Address.compare(v6EndHighs[i], v6EndLows[i],
+                other.v6EndHighs[j], other.v6EndLows[j]) < 0;
+            long startHigh = thisStarts ? v6StartHighs[i] : other.v6StartHighs[j];
+            long startLow = thisStarts ? v6StartLows[i] : other.v6StartLows[j];
+            long endHigh = thisEnds ? v6EndHighs[i] : other.v6EndHighs[j];
+            long endLow = thisEnds ? v6EndLows[i] : other.v6EndLows[j];
+            if (IpV6Address.compare(startHigh, startLow, endHigh, endLow) <= 0) {
+                v6.add(startHigh, startLow, endHigh, endLow);
+            }
+            if (thisEnds) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return create(v4, v6);
+    }
+
+    /**
+     * The IPs in this set but not in other, in one linear sweep over both sorted ranges.
+     *
+     * @param other the other set
+     * @return a new set
+     */
+    public IpRangeSet subtract(final IpRangeSet other) {
+        V4Appender v4 = new V4Appender(v4Starts.length + other.v4Starts.length);
+        int j = 0;
+        for (int i = 0; i < v4Starts.length; i++) {
+            long start = v4Starts[i];
+            long end = v4Ends[i];
+            while (j < other.v4Starts.length && other.v4Ends[j] < start) {
+                j++;
+            }
+            // cut out every range of other overlapping this one, the last of them may overlap the next one too
+            int k = j;
+            while (start <= end && k < other.v4Starts.length && other.v4Starts[k] <= end) {
+                if (other.v4Starts[k] > start) {
+                    v4.add(start, other.v4Starts[k] - 1);
+                }
+                start = Math.max(start, other.v4Ends[k] + 1);
+                k++;
+            }
+            if (start <= end) {
+                v4.add(start, end);
+            }
+        }
+        V6Appender v6 = new V6Appender(v6StartHighs.length + other.v6StartHighs.length);
+        j = 0;
+        for (int i = 0; i < v6StartHighs.length; i++) {
+            long startHigh = v6StartHighs[i];
+            long startLow = v6StartLows[i];
+            long endHigh = v6EndHighs[i];
+            long endLow = v6EndLows[i];
+            while (j < other.v6StartHighs.length
+                && IpV6Address.compare(other.v6EndHighs[j], other.v6EndLows[j], startHigh, startLow) < 0) {
+                j++;
+            }
+            boolean open = true;
+            int k = j;
+            while (open && k < other.v6StartHighs.length
+                && IpV6Address.compare(other.v6StartHighs[k], other.v6StartLows[k], endHigh, endLow) <= 0) {
+                if (IpV6Address.compare(other.v6StartHighs[k], other.v6StartLows[k], startHigh, startLow) > 0) {
+                    long low = other.v6StartLows[k] - 1;
+                    v6.add(startHigh, startLow, low == -1L ? other.v6StartHighs[k] - 1 : other.v6StartHighs[k], low);
+                }
+                // the cut may reach the end of this range, also the end of the whole space
+                if (IpV6Address.compare(other.v6EndHighs[k], other.v6EndLows[k], endHigh, endLow) >= 0) {
+                    open = false;
+                } else {
+                    startLow = other.v6EndLows[k] + 1;
+                    startHigh = startLow == 0L ? other.v6EndHighs[k] + 1 : other.v6EndHighs[k];
+                }
+                k++;
+            }
+            if (open) {
+                v6.add(startHigh, startLow, endHigh, endLow);
+            }
+        }
+        return create(v4, v6);
+    }
+
+    /**
+     * All IPs not in this set, the IPV4 gaps in 0.0.0.0-255.255.255.255 and the IPV6 gaps in ::-ffff:...:ffff.
+     * The complement of an empty set is every IPV4 and every IPV6.
+     *
+     * @return a new set
+     */
+    public IpRangeSet complement() {
+        return ALL.subtract(this);
+    }
+
+    /**
+     * The fewest CIDR blocks that cover exactly this set, IPV4 ones first, each in ip order.
+     *
+     * <pre>
+     * IpRangeSet.of("10.0.0.0-10.0.1.255", "10.0.2.0-10.0.2.4").toMinimalCidrs()
+     * [10.0.0.0/23, 10.0.2.0/30, 10.0.2.4/32]
+     * </pre>
+     *
+     * @return CIDR strings, eg. 10.0.0.0/23 and ff06::/16
+     */
+    public List<String> toMinimalCidrs() {
+        List<String> cidrs = new ArrayList<>();
+        StringBuilder str = new StringBuilder();
+        for (int i = 0; i < v4Starts.length; i++) {
+            long start = v4Starts[i];
+            long end = v4Ends[i];
+            while (start <= end) {
+                // the largest block aligned at start that does not pass end
+                int bits = Math.min(start == 0L ? 32 : Long.numberOfTrailingZeros(start),
+                    63 - Long.numberOfLeadingZeros(end - start + 1));
+                str.setLength(0);
+                IpMacUtils.longToIpV4(start, str);
+                cidrs.add(str.append('/').append(32 - bits).toString());
+                start += 1L << bits;
+            }
+        }
+        for (int i = 0; i < v6StartHighs.length; i++) {
+            long startHigh = v6StartHighs[i];
+            long startLow = v6StartLows[i];
+            long endHigh = v6EndHighs[i];
+            long endLow = v6EndLows[i];
+            while (true) {
+                int align = startLow != 0L ? Long.numberOfTrailingZeros(startLow)
+                    : startHigh != 0L ? 64 + Long.numberOfTrailingZeros(startHigh) : 128;
+                // end - start, then log2 of end - start + 1
+                long diffLow = endLow - startLow;
+                long diffHigh = endHigh - startHigh - (Long.compareUnsigned(endLow, startLow) < 0 ? 1L : 0L);
+                int span;
+                if (diffHigh == -1L && diffLow == -1L) {
+                    span = 128;
+                } else {
+                    long sizeLow = diffLow + 1;
+                    long sizeHigh = sizeLow == 0L ? diffHigh + 1 : diffHigh;
+                    span = sizeHigh != 0L ? 127 - Long.numberOfLeadingZeros(sizeHigh) : 63 - Long.numberOfLeadingZeros(sizeLow);
+                }
+                int bits = Math.min(align, span);
+                str.setLength(0);
+                IpMacUtils.longsToIpV6(startHigh, startLow, str);
+                cidrs.add(str.append('/').append(128 - bits).toString());
+                // start is aligned, so the last ip of the block only sets the low bits
+                long lastLow = bits >= 64 ? -1L : startLow | (1L << bits) - 1;
+                long lastHigh = bits < 64 ? startHigh : bits == 128 ? -1L : startHigh | (1L << bits - 64) - 1;
+                if (lastHigh == endHigh && lastLow == endLow) {
+                    break;
+                }
+                startLow = lastLow + 1;
+                startHigh = startLow == 0L ? lastHigh + 1 : lastHigh;
+            }
+        }
+        return cidrs;
+    }
+
+    /**
+     * @return the index of the last range starting at or before the ip, or -1
+     */
+    private int floorIpV6(long high, long low) {
+        int lo = 0;
+        int hi = v6StartHighs.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = IpV6Address.compare(v6StartHighs[mid], v6StartLows[mid], high, low);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return hi;
+    }
+
+    /**
+     * @return the payload of {@link AddressSnapshot}, IPV4 and IPV6 range counts as ints then the arrays
+     */
+    ByteBuffer toSnapshot() {
+        int v4 = v4Starts.length;
+        int v6 = v6StartHighs.length;
+        ByteBuffer buffer = AddressSnapshot.allocate(8L + 16L * v4 + 32L * v6);
+        buffer.putInt(v4).putInt(v6);
+        AddressSnapshot.putLongs(buffer, v4Starts, v4);
+        AddressSnapshot.putLongs(buffer, v4Ends, v4);
+        AddressSnapshot.putLongs(buffer, v6StartHighs, v6);
+        AddressSnapshot.putLongs(buffer, v6StartLows, v6);
+        AddressSnapshot.putLongs(buffer, v6EndHighs, v6);
+        AddressSnapshot.putLongs(buffer, v6EndLows, v6);
+        return buffer;
+    }
+
+    /**
+     * The arrays are read back as is, checked to be sorted and disjoint so lookups stay correct.
+     */
+    static IpRangeSet fromSnapshot(final ByteBuffer buffer) throws IOException {
+        AddressSnapshot.checkRemaining(buffer, 8);
+        int v4 = buffer.getInt();
+        int v6 = buffer.getInt();
+        AddressSnapshot.checkRemaining(buffer, 16L * v4 + 32L * v6);
+        long[] v4Starts = AddressSnapshot.getLongs(buffer, v4, 0);
+        long[] v4Ends = AddressSnapshot.getLongs(buffer, v4, 0);
+        long[] v6StartHighs = AddressSnapshot.getLongs(buffer, v6, 0);
+        long[] v6StartLows = AddressSnapshot.getLongs(buffer, v6, 0);
+        long[] v6EndHighs = AddressSnapshot.getLongs(buffer, v6, 0);
+        long[] v6EndLows = AddressSnapshot.getLongs(buffer, v6, 0);
+        if (buffer.hasRemaining()) {
+            throw new IOException("Corrupted address snapshot.");
+        }
+        for (int i = 0; i < v4; i++) {
+            if (v4Starts[i] < 0 || v4Starts[i] > v4Ends[i] || v4Ends[i] > 0xFFFFFFFFL
+                || i > 0 && v4Starts[i] <= v4Ends[i - 1]) {
+                throw new IOException("Corrupted address snapshot.");
+            }
+        }
+        for (int i = 0; i < v6; i++) {
+            if (IpV6Address.compare(v6StartHighs[i], v6StartLows[i], v6EndHighs[i], v6EndLows[i]) > 0
+                || i > 0 && IpV6Address.compare(v6StartHighs[i], v6StartLows[i], v6EndHighs[i - 1], v6EndLows[i - 1]) <= 0) {
+                throw new IOException("Corrupted address snapshot.");
+            }
+        }
+        return new IpRangeSet(v4Starts, v4Ends, v6StartHighs, v6StartLows, v6EndHighs, v6EndLows);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IpRangeSet)) {
+            return false;
+        }
+        IpRangeSet that = (IpRangeSet) o;
+        return Arrays.equals(v4Starts, that.v4Starts) && Arrays.equals(v4Ends, that.v4Ends)
+            && Arrays.equals(v6StartHighs, that.v6StartHighs) && Arrays.equals(v6StartLows, that.v6StartLows)
+            && Arrays.equals(v6EndHighs, that.v6EndHighs) && Arrays.equals(v6EndLows, that.v6EndLows);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Arrays.hashCode(v4Starts);
+        result = 31 * result + Arrays.hashCode(v4Ends);
+        result = 31 * result + Arrays.hashCode(v6StartLows);
+        return 31 * result + Arrays.hashCode(v6EndLows);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder("IpRangeSet{");
+        for (int i = 0; i < v4Starts.length; i++) {
+            if (i > 0) {
+                str.append(", ");
+            }
+            IpMacUtils.longToIpV4(v4Starts[i], str);
+            IpMacUtils.longToIpV4(v4Ends[i], str.append('-'));
+        }
+        for (int i = 0; i < v6StartHighs.length; i++) {
+            if (i > 0 || v4Starts.length > 0) {
+                str.append(", ");
+            }
+            IpMacUtils.longsToIpV6(v6StartHighs[i], v6StartLows[i], str);
+            IpMacUtils.longsToIpV6(v6EndHighs[i], v6EndLows[i], str.append('-'));
+        }
+        return str.append('}').toString();
+    }
+
+    /**
+     * Collects ranges in any order, {@link #build()} sorts and merges them.
+     */
+    public static final class Builder {
+
+        /**
+         * IPV4 ranges packed as start &lt;&lt; 32 | end, sign flipped so a signed sort is an unsigned sort.
+         */
+        private long[] v4 = EMPTY;
+        private int v4Size;
+
+        private long[] v6 = EMPTY;
+        private int v6Size;
+
+        private Builder() {
+        }
+
+        /**
+         * @param section ip section split by '-', eg. 192.168.1.2-192.168.3.0
+         * @return this builder
+         * @throws IllegalArgumentException throw if the section is not legal
+         */
+        public Builder add(final String section) throws IllegalArgumentException {
+            return add(section, "-");
+        }
+
+        /**
+         * @param section ip section, eg. 192.168.1.2-192.168.3.0
+         * @param split   the pattern between begin and end ip
+         * @return this builder
+         * @throws IllegalArgumentException throw if the section is not legal
+         */
+        public Builder add(final String section, final String split) throws IllegalArgumentException {
+            if (Objects.isNull(section) || Objects.isNull(split)) {
+                throw new IllegalArgumentException("Illegal arguments : " + section);
+            }
+            String[] ipArray = section.split(split);
+            String beginIp = ipArray.length > 0 ? ipArray[0].trim() : "";
+            String endIp = ipArray.length > 1 ? ipArray[1].trim() : beginIp;
+            if (ipArray.length == 1 && beginIp.indexOf('/') >= 0) {
+                return addCidr(beginIp);
+            }
+            return addRange(beginIp, endIp);
+        }
+
+        /**
+         * @param cidr IPV4 or IPV6 CIDR, eg. 192.168.1.0/24 or ff06::/16, bits after the prefix are ignored
+         * @return this builder
+         * @throws IllegalArgumentException throw if the CIDR is not legal
+         */
+        public Builder addCidr(final String cidr) throws IllegalArgumentException {
+            if (Objects.isNull(cidr)) {
+                throw new IllegalArgumentException("Illegal arguments : " + cidr);
+            }
+            long v4Prefix = IpMacUtils.parseIpV4Prefix(cidr, 0, cidr.length());
+            if (v4Prefix != IpMacUtils.INVALID_VALUE) {
+                int prefix = (int) (v4Prefix >>> 32);
+                long mask = prefix == 0 ? 0L : 0xFFFFFFFFL << (32 - prefix) & 0xFFFFFFFFL;
+                long begin = v4Prefix & mask;
+                return addIpV4(begin, begin | ~mask & 0xFFFFFFFFL);
+            }
+            long[] ip = new long[2];
+            int result = IpMacUtils.parseIpV6(cidr, 0, cidr.length(), true, ip);
+            if (!IpMacUtils.isLegalIpV6Result(result)) {
+                throw new IllegalArgumentException("Illegal arguments : " + cidr);
+            }
+            int prefix = result & IpMacUtils.IPV6_PREFIX_MASK;
+            if (prefix == IpMacUtils.IPV6_NO_PREFIX) {
+                prefix = 128;
+            }
+            long maskHigh = IpV6Address.maskHigh(prefix);
+            long maskLow = IpV6Address.maskLow(prefix);
+            return addIpV6(ip[0] & maskHigh, ip[1] & maskLow, ip[0] | ~maskHigh, ip[1] | ~maskLow);
+        }
+
+        /**
+         * @param set ranges to add, such as another blocklist
+         * @return this builder
+         */
+        public Builder addAll(final IpRangeSet set) {
+            for (int i = 0; i < set.v4Starts.length; i++) {
+                addIpV4(set.v4Starts[i], set.v4Ends[i]);
+            }
+            for (int i = 0; i < set.v6StartHighs.length; i++) {
+                addIpV6(set.v6StartHighs[i], set.v6StartLows[i], set.v6EndHighs[i], set.v6EndLows[i]);
+            }
+            return this;
+        }
+
+        /**
+         * @param beginIp begin ip, inclusive
+         * @param endIp   end ip, inclusive
+         * @return this builder, unchanged if begin is greater than end
+         * @throws IllegalArgumentException throw if not legal IPs of the same type
+         */
+        public Builder addRange(final String beginIp, final String endIp) throws IllegalArgumentException {
+            long begin = IpMacUtils.ipV4ToLong(beginIp);
+            long end = IpMacUtils.ipV4ToLong(endIp);
+            if (begin != IpMacUtils.INVALID_VALUE && end != IpMacUtils.INVALID_VALUE) {
+                return addIpV4(begin, end);
+            }
+            IpV6Address begin6 = IpMacUtils.ipV6ToAddress(beginIp);
+            IpV6Address end6 = IpMacUtils.ipV6ToAddress(endIp);
+            if (begin6 == null || end6 == null) {
+                throw new IllegalArgumentException(beginIp + " and " + endIp + " are not same IP type.");
+            }
+            return addIpV6(begin6.getHigh(), begin6.getLow(), end6.getHigh(), end6.getLow());
+        }
+
+        /**
+         * @param begin IPV4 long value, inclusive
+         * @param end   IPV4 long value, inclusive
+         * @return this builder, unchanged if begin is greater than end
+         * @throws IllegalArgumentException throw if not legal IPV4 values
+         */
+        public Builder addIpV4(long begin, long end) throws IllegalArgumentException {
+            if (begin < 0 || begin > 0xFFFFFFFFL || end < 0 || end > 0xFFFFFFFFL) {
+                throw new IllegalArgumentException("Illegal arguments : " + begin + "-" + end);
+            }
+            if (begin > end) {
+                return this;
+            }
+            if (v4Size == v4.length) {
+                v4 = Arrays.copyOf(v4, Math.max(16, v4Size * 2));
+            }
+            v4[v4Size++] = (begin << 32 | end) ^ Long.MIN_VALUE;
+            return this;
+        }
+
+        /**
+         * @return this builder, unchanged if begin is greater than end
+         */
+        public Builder addIpV6(long beginHigh, long beginLow, long endHigh, long endLow) {
+            if (IpV6Address.compare(beginHigh, beginLow, endHigh, endLow) > 0) {
+                return this;
+            }
+            if (v6Size + 4 > v6.length) {
+                v6 = Arrays.copyOf(v6, Math.max(64, v6.length * 2));
+            }
+            v6[v6Size++] = beginHigh;
+            v6[v6Size++] = beginLow;
+            v6[v6Size++] = endHigh;
+            v6[v6Size++] = endLow;
+            return this;
+        }
+
+        public IpRangeSet build() {
+            long[] packed = Arrays.copyOf(v4, v4Size);
+            Arrays.sort(packed);
+            V4Appender v4Out = new V4Appender(packed.length);
+            for (long p : packed) {
+                p ^= Long.MIN_VALUE;
+                v4Out.add(p >>> 32, p & 0xFFFFFFFFL);
+            }
+
+            int count = v6Size / 4;
+            long[] ranges = Arrays.copyOf(v6, v6Size);
+            sortIpV6(ranges, 4, 0, count - 1);
+            V6Appender v6Out = new V6Appender(count);
+            for (int i = 0; i < count; i++) {
+                v6Out.add(ranges[4 * i], ranges[4 * i + 1], ranges[4 * i + 2], ranges[4 * i + 3]);
+            }
+            return create(v4Out, v6Out);
+        }
+    }
+
+    /**
+     * Sorted ranges appended in order of start, a range touching or overlapping the last one is merged into it.
+     */
+    private static final class V4Appender {
+
+        private long[] starts;
+        private long[] ends;
+        private int size;
+
+        V4Appender(int capacity) {
+            starts = new long[Math.max(4, capacity)];
+            ends = new long[starts.length];
+        }
+
+        void add(long start, long end) {
+            if (size > 0 && start <= ends[size - 1] + 1) {
+                ends[size - 1] = Math.max(ends[size - 1], end);
+                return;
+            }
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            size++;
+        }
+    }
+
+    /**
+     * {@link V4Appender} of IPV6 ranges.
+     */
+    private static final class V6Appender {
+
+        private long[] startHighs;
+        private long[] startLows;
+        private long[] endHighs;
+        private long[] endLows;
+        private int size;
+
+        V6Appender(int capacity) {
+            startHighs = new long[Math.max(4, capacity)];
+            startLows = new long[startHighs.length];
+            endHighs = new long[startHighs.length];
+            endLows = new long[startHighs.length];
+        }
+
+        void add(long startHigh, long startLow, long endHigh, long endLow) {
+            if (size > 0 && isAdjacentOrOverlapped(endHighs[size - 1], endLows[size - 1], startHigh, startLow)) {
+                if (IpV6Address.compare(endHigh, endLow, endHighs[size - 1], endLows[size - 1]) > 0) {
+                    endHighs[size - 1] = endHigh;
+                    endLows[size - 1] = endLow;
+                }
+                return;
+            }
+            if (size == startHighs.length) {
+                startHighs = Arrays.copyOf(startHighs, size * 2);
+                startLows = Arrays.copyOf(startLows, size * 2);
+                endHighs = Arrays.copyOf(endHighs, size * 2);
+                endLows = Arrays.copyOf(endLows, size * 2);
+            }
+            startHighs[size] = startHigh;
+            startLows[size] = startLow;
+            endHighs[size] = endHigh;
+            endLows[size] = endLow;
+            size++;
+        }
+    }
+
+    private static IpRangeSet create(V4Appender v4, V6Appender v6) {
+        return new IpRangeSet(Arrays.copyOf(v4.starts, v4.size), Arrays.copyOf(v4.ends, v4.size),
+            Arrays.copyOf(v6.startHighs, v6.size), Arrays.copyOf(v6.startLows, v6.size),
+            Arrays.copyOf(v6.endHighs, v6.size), Arrays.copyOf(v6.endLows, v6.size));
+    }
+
+    /**
+     * @return true if the range starting at start touches or overlaps the range ending at end
+     */
+    static boolean isAdjacentOrOverlapped(long endHigh, long endLow, long startHigh, long startLow) {
+        if (IpV6Address.compare(startHigh, startLow, endHigh, endLow) <= 0) {
+            return true;
+        }
+        // end + 1 == start, end can not be the max value here
+        long nextLow = endLow + 1;
+        long nextHigh = nextLow == 0L ? endHigh + 1 : endHigh;
+        return nextHigh == startHigh && nextLow == startLow;
+    }
+
+    /**
+     * Sort IPV6 ranges stored as groups of stride longs by the first two longs, the start.
+     * from and to are range indexes, both inclusive.
+     */
+    static void sortIpV6(long[] ranges, int stride, int from, int to) {
+        while (to - from > 16) {
+            int mid = (from + to) >>> 1;
+            long pivotHigh = ranges[stride * mid];
+            long pivotLow = ranges[stride * mid + 1];
+            int i = from;
+            int j = to;
+            while (i <= j) {
+                while (IpV6Address.compare(ranges[stride * i], ranges[stride * i + 1], pivotHigh, pivotLow) < 0) {
+                    i++;
+                }
+                while (IpV6Address.compare(ranges[stride * j], ranges[stride * j + 1], pivotHigh, pivotLow) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swapIpV6(ranges, stride, i++, j--);
+                }
+            }
+            // recurse into the smaller part, loop on the larger one
+            if (j - from < to - i) {
+                sortIpV6(ranges, stride, from, j);
+                from = i;
+            } else {
+                sortIpV6(ranges, stride, i, to);
+                to = j;
+            }
+        }
+        for (int i = from + 1; i <= to; i++) {
+            for (int j = i; j > from && IpV6Address.compare(ranges[stride * j], ranges[stride * j + 1],
+                ranges[stride * (j - 1)], ranges[stride * (j - 1) + 1]) < 0; j--) {
+                swapIpV6(ranges, stride, j, j - 1);
+            }
+        }
+    }
+
+    private static void swapIpV6(long[] ranges, int stride, int i, int j) {
+        for (int k = 0; k < stride; k++) {
+            long t = ranges[stride * i + k];
+            ranges[stride * i + k] = ranges[stride * j + k];
+            ranges[stride * j + k] = t;
+        }
+    }
+}
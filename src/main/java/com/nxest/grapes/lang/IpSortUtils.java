@@ -0,0 +1,776 @@
+package com.nxest.grapes.lang;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Sorts and de-duplicates large arrays of IPs without parsing or comparing strings. IPV4 is an
+ * unsigned int or a long of 0 - 0xFFFFFFFF, IPV6 is two arrays of high and low longs, see {@link IpV6Address}.
+ * All sorts are LSD radix sorts over bytes, O(n) and stable, a byte shared by every ip is skipped.
+ * <p>
+ * The parallel sorts split by the highest byte where ips differ, then sort the parts on the common pool,
+ * so a dump of one /8 splits as well as one of the whole space. Dumps larger than the heap are sorted
+ * by {@link #externalSortIpV4(Path, Path, int, boolean)} over binary run files.
+ *
+ * <pre>
+ * int[] ips = {0xC0A80001, 0x0A000001, 0xC0A80001};
+ * IpSortUtils.sortIpV4(ips);
+ * assertEquals(2, IpSortUtils.distinct(ips, 0, ips.length));
+ * // 10.0.0.1, 192.168.0.1
+ * </pre>
+ *
+ * @author l10178
+ */
+public final class IpSortUtils {
+
+    /**
+     * smaller arrays are not worth splitting
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private static final int RADIX = 256;
+    private static final int IPV4_BYTES = 4;
+    private static final int IPV6_BYTES = 16;
+
+    private IpSortUtils() {
+    }
+
+    /**
+     * Sort ips as unsigned ints.
+     *
+     * @param ips IPV4 values
+     */
+    public static void sortIpV4(final int[] ips) {
+        sortIpV4(ips, 0, ips.length);
+    }
+
+    /**
+     * Sort ips[from, to) as unsigned ints.
+     *
+     * @param ips  IPV4 values
+     * @param from first index, inclusive
+     * @param to   last index, exclusive
+     */
+    public static void sortIpV4(final int[] ips, int from, int to) {
+        checkRange(ips.length, from, to);
+        radixSort(ips, from, to, new int[to - from], 0, IPV4_BYTES);
+    }
+
+    /**
+     * Sort IPV4 long values.
+     *
+     * @param ips IPV4 long values, see {@link IpMacUtils#ipV4ToLong(String)}
+     * @throws IllegalArgumentException throw if a value is not 0 - 0xFFFFFFFF
+     */
+    public static void sortIpV4(final long[] ips) throws IllegalArgumentException {
+        sortIpV4(ips, 0, ips.length);
+    }
+
+    /**
+     * Sort ips[from, to).
+     *
+     * @param ips  IPV4 long values, see {@link IpMacUtils#ipV4ToLong(String)}
+     * @param from first index, inclusive
+     * @param to   last index, exclusive
+     * @throws IllegalArgumentException throw if a value is not 0 - 0xFFFFFFFF
+     */
+    public static void sortIpV4(final long[] ips, int from, int to) throws IllegalArgumentException {
+        checkRange(ips.length, from, to);
+        checkIpV4(ips, from, to);
+        radixSort(ips, from, to, new long[to - from], 0, IPV4_BYTES);
+    }
+
+    /**
+     * Sort IPV6 as unsigned 128-bit values, highs[i] and lows[i] move together.
+     *
+     * @param highs the high 64 bits
+     * @param lows  the low 64 bits
+     */
+    public static void sortIpV6(final long[] highs, final long[] lows) {
+        sortIpV6(highs, lows, 0, highs.length);
+    }
+
+    /**
+     * Sort IPV6 [from, to) as unsigned 128-bit values, highs[i] and lows[i] move together.
+     *
+     * @param highs the high 64 bits
+     * @param lows  the low 64 bits
+     * @param from  first index, inclusive
+     * @param to    last index, exclusive
+     */
+    public static void sortIpV6(final long[] highs, final long[] lows, int from, int to) {
+        checkRange(Math.min(highs.length, lows.length), from, to);
+        radixSortIpV6(highs, lows, from, to, new long[to - from], new long[to - from], 0, IPV6_BYTES);
+    }
+
+    /**
+     * {@link #sortIpV4(int[])} split across cores.
+     *
+     * @param ips IPV4 values
+     */
+    public static void parallelSortIpV4(final int[] ips) {
+        parallelSortIpV4(ips, 0, ips.length);
+    }
+
+    /**
+     * {@link #sortIpV4(long[])} split across cores.
+     *
+     * @param ips IPV4 long values
+     * @throws IllegalArgumentException throw if a value is not 0 - 0xFFFFFFFF
+     */
+    public static void parallelSortIpV4(final long[] ips) throws IllegalArgumentException {
+        int n = ips.length;
+        if (n < PARALLEL_THRESHOLD) {
+            sortIpV4(ips);
+            return;
+        }
+        int chunks = chunks(n);
+        long diff = IntStream.range(0, chunks).parallel().mapToLong(c -> {
+            int to = chunkFrom(n, chunks, c + 1);
+            checkIpV4(ips, chunkFrom(n, chunks, c), to);
+            long or = 0L;
+            for (int i = chunkFrom(n, chunks, c); i < to; i++) {
+                or |= ips[i] ^ ips[0];
+            }
+            return or;
+        }).reduce(0L, (a, b) -> a | b);
+        if (diff == 0L) {
+            return;
+        }
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(diff) - 7);
+        int[][] counts = new int[chunks][RADIX];
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int[] count = counts[c];
+            for (int i = chunkFrom(n, chunks, c), to = chunkFrom(n, chunks, c + 1); i < to; i++) {
+                count[(int) (ips[i] >>> shift) & 0xFF]++;
+            }
+        });
+        int[] starts = toOffsets(counts);
+        long[] buffer = new long[n];
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int[] offset = counts[c];
+            for (int i = chunkFrom(n, chunks, c), to = chunkFrom(n, chunks, c + 1); i < to; i++) {
+                long ip = ips[i];
+                buffer[offset[(int) (ip >>> shift) & 0xFF]++] = ip;
+            }
+        });
+        IntStream.range(0, RADIX).parallel().forEach(b -> {
+            int from = starts[b];
+            int to = starts[b + 1];
+            radixSort(buffer, from, to, ips, from, (shift + 7) >>> 3);
+            System.arraycopy(buffer, from, ips, from, to - from);
+        });
+    }
+
+    /**
+     * {@link #sortIpV6(long[], long[])} split across cores.
+     *
+     * @param highs the high 64 bits
+     * @param lows  the low 64 bits
+     */
+    public static void parallelSortIpV6(final long[] highs, final long[] lows) {
+        int n = Math.min(highs.length, lows.length);
+        if (n < PARALLEL_THRESHOLD) {
+            sortIpV6(highs, lows, 0, n);
+            return;
+        }
+        int chunks = chunks(n);
+        long[][] diffs = new long[chunks][2];
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            for (int i = chunkFrom(n, chunks, c), to = chunkFrom(n, chunks, c + 1); i < to; i++) {
+                diffs[c][0] |= highs[i] ^ highs[0];
+                diffs[c][1] |= lows[i] ^ lows[0];
+            }
+        });
+        long diffHigh = 0L;
+        long diffLow = 0L;
+        for (long[] diff : diffs) {
+            diffHigh |= diff[0];
+            diffLow |= diff[1];
+        }
+        if (diffHigh == 0L && diffLow == 0L) {
+            return;
+        }
+        int highestBit = diffHigh != 0L ? 127 - Long.numberOfLeadingZeros(diffHigh) : 63 - Long.numberOfLeadingZeros(diffLow);
+        int shift = Math.max(0, highestBit - 7);
+        int[][] counts = new int[chunks][RADIX];
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int[] count = counts[c];
+            for (int i = chunkFrom(n, chunks, c), to = chunkFrom(n, chunks, c + 1); i < to; i++) {
+                count[digitIpV6(highs[i], lows[i], shift)]++;
+            }
+        });
+        int[] starts = toOffsets(counts);
+        long[] bufferHighs = new long[n];
+        long[] bufferLows = new long[n];
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int[] offset = counts[c];
+            for (int i = chunkFrom(n, chunks, c), to = chunkFrom(n, chunks, c + 1); i < to; i++) {
+                int at = offset[digitIpV6(highs[i], lows[i], shift)]++;
+                bufferHighs[at] = highs[i];
+                bufferLows[at] = lows[i];
+            }
+        });
+        IntStream.range(0, RADIX).parallel().forEach(b -> {
+            int from = starts[b];
+            int to = starts[b + 1];
+            radixSortIpV6(bufferHighs, bufferLows, from, to, highs, lows, from, (shift + 7) >>> 3);
+            System.arraycopy(bufferHighs, from, highs, from, to - from);
+            System.arraycopy(bufferLows, from, lows, from, to - from);
+        });
+    }
+
+    /**
+     * Move the distinct values of sorted[from, to) to the front, in order.
+     *
+     * @param sorted sorted values
+     * @param from   first index, inclusive
+     * @param to     last index, exclusive
+     * @return the end of the distinct values, exclusive
+     */
+    public static int distinct(final int[] sorted, int from, int to) {
+        checkRange(sorted.length, from, to);
+        if (to - from < 2) {
+            return to;
+        }
+        int end = from + 1;
+        for (int i = from + 1; i < to; i++) {
+            if (sorted[i] != sorted[end - 1]) {
+                sorted[end++] = sorted[i];
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Move the distinct values of sorted[from, to) to the front, in order.
+     *
+     * @param sorted sorted values
+     * @param from   first index, inclusive
+     * @param to     last index, exclusive
+     * @return the end of the distinct values, exclusive
+     */
+    public static int distinct(final long[] sorted, int from, int to) {
+        checkRange(sorted.length, from, to);
+        if (to - from < 2) {
+            return to;
+        }
+        int end = from + 1;
+        for (int i = from + 1; i < to; i++) {
+            if (sorted[i] != sorted[end - 1]) {
+                sorted[end++] = sorted[i];
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Move the distinct IPV6 of sorted [from, to) to the front, in order.
+     *
+     * @param highs the high 64 bits, sorted with lows
+     * @param lows  the low 64 bits
+     * @param from  first index, inclusive
+     * @param to    last index, exclusive
+     * @return the end of the distinct values, exclusive
+     */
+    public static int distinctIpV6(final long[] highs, final long[] lows, int from, int to) {
+        checkRange(Math.min(highs.length, lows.length), from, to);
+        if (to - from < 2) {
+            return to;
+        }
+        int end = from + 1;
+        for (int i = from + 1; i < to; i++) {
+            if (highs[i] != highs[end - 1] || lows[i] != lows[end - 1]) {
+                highs[end] = highs[i];
+                lows[end++] = lows[i];
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Sort a file of big-endian 4-byte IPV4 records that may not fit in the heap. Runs of runLength records
+     * are sorted in memory and written next to output, then merged into output and deleted.
+     *
+     * @param input     the records to sort
+     * @param output    receives the sorted records, replaced if it exists
+     * @param runLength the most records sorted in memory at once, it takes about 12 bytes a record
+     * @param distinct  true to drop repeated ips
+     * @return the count of records written
+     * @throws IOException throw if a file can not be read or written, or input is not whole records
+     */
+    public static long externalSortIpV4(final Path input, final Path output, int runLength, boolean distinct)
+        throws IOException {
+        return externalSort(input, output, runLength, distinct, IPV4_BYTES);
+    }
+
+    /**
+     * Sort a file of 16-byte IPV6 records, the big-endian high then low long, that may not fit in the heap.
+     * See {@link #externalSortIpV4(Path, Path, int, boolean)}.
+     *
+     * @param input     the records to sort
+     * @param output    receives the sorted records, replaced if it exists
+     * @param runLength the most records sorted in memory at once, it takes about 48 bytes a record
+     * @param distinct  true to drop repeated ips
+     * @return the count of records written
+     * @throws IOException throw if a file can not be read or written, or input is not whole records
+     */
+    public static long externalSortIpV6(final Path input, final Path output, int runLength, boolean distinct)
+        throws IOException {
+        return externalSort(input, output, runLength, distinct, IPV6_BYTES);
+    }
+
+    private static void parallelSortIpV4(final int[] ips, int from, int to) {
+        int n = to - from;
+        if (n < PARALLEL_THRESHOLD) {
+            sortIpV4(ips, from, to);
+            return;
+        }
+        int chunks = chunks(n);
+        int diff = IntStream.range(0, chunks).parallel().map(c -> {
+            int or = 0;
+            for (int i = from + chunkFrom(n, chunks, c), end = from + chunkFrom(n, chunks, c + 1); i < end; i++) {
+                or |= ips[i] ^ ips[from];
+            }
+            return or;
+        }).reduce(0, (a, b) -> a | b);
+        if (diff == 0) {
+            return;
+        }
+        // ips share every bit above the highest different one, so split by the byte starting there
+        int shift = Math.max(0, 31 - Integer.numberOfLeadingZeros(diff) - 7);
+        int[][] counts = new int[chunks][RADIX];
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int[] count = counts[c];
+            for (int i = from + chunkFrom(n, chunks, c), end = from + chunkFrom(n, chunks, c + 1); i < end; i++) {
+                count[ips[i] >>> shift & 0xFF]++;
+            }
+        });
+        int[] starts = toOffsets(counts);
+        int[] buffer = new int[n];
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int[] offset = counts[c];
+            for (int i = from + chunkFrom(n, chunks, c), end = from + chunkFrom(n, chunks, c + 1); i < end; i++) {
+                int ip = ips[i];
+                buffer[offset[ip >>> shift & 0xFF]++] = ip;
+            }
+        });
+        IntStream.range(0, RADIX).parallel().forEach(b -> {
+            int start = starts[b];
+            int end = starts[b + 1];
+            radixSort(buffer, start, end, ips, from + start, (shift + 7) >>> 3);
+            System.arraycopy(buffer, start, ips, from + start, end - start);
+        });
+    }
+
+    /**
+     * LSD radix sort of a[from, to) by the low passes bytes as unsigned, scratch holds to - from values
+     * from scratchFrom. The result is in a.
+     */
+    static void radixSort(int[] a, int from, int to, int[] scratch, int scratchFrom, int passes) {
+        int n = to - from;
+        if (n < 2) {
+            return;
+        }
+        int[] counts = new int[passes * RADIX];
+        for (int i = from; i < to; i++) {
+            int v = a[i];
+            for (int p = 0; p < passes; p++) {
+                counts[p * RADIX + (v >>> (p << 3) & 0xFF)]++;
+            }
+        }
+        int[] src = a;
+        int srcFrom = from;
+        int[] dst = scratch;
+        int dstFrom = scratchFrom;
+        for (int p = 0; p < passes; p++) {
+            int shift = p << 3;
+            int base = p * RADIX;
+            // one bucket holds all, this byte is already in order
+            if (counts[base + (src[srcFrom] >>> shift & 0xFF)] == n) {
+                continue;
+            }
+            toOffsets(counts, base, dstFrom);
+            for (int i = srcFrom; i < srcFrom + n; i++) {
+                int v = src[i];
+                dst[counts[base + (v >>> shift & 0xFF)]++] = v;
+            }
+            int[] t = src;
+            src = dst;
+            dst = t;
+            int f = srcFrom;
+            srcFrom = dstFrom;
+            dstFrom = f;
+        }
+        if (src != a) {
+            System.arraycopy(src, srcFrom, a, from, n);
+        }
+    }
+
+    /**
+     * {@link #radixSort(int[], int, int, int[], int, int)} of longs.
+     */
+    static void radixSort(long[] a, int from, int to, long[] scratch, int scratchFrom, int passes) {
+        int n = to - from;
+        if (n < 2) {
+            return;
+        }
+        int[] counts = new int[passes * RADIX];
+        for (int i = from; i < to; i++) {
+            long v = a[i];
+            for (int p = 0; p < passes; p++) {
+                counts[p * RADIX + ((int) (v >>> (p << 3)) & 0xFF)]++;
+            }
+        }
+        long[] src = a;
+        int srcFrom = from;
+        long[] dst = scratch;
+        int dstFrom = scratchFrom;
+        for (int p = 0; p < passes; p++) {
+            int shift = p << 3;
+            int base = p * RADIX;
+            if (counts[base + ((int) (src[srcFrom] >>> shift) & 0xFF)] == n) {
+                continue;
+            }
+            toOffsets(counts, base, dstFrom);
+            for (int i = srcFrom; i < srcFrom + n; i++) {
+                long v = src[i];
+                dst[counts[base + ((int) (v >>> shift) & 0xFF)]++] = v;
+            }
+            long[] t = src;
+            src = dst;
+            dst = t;
+            int f = srcFrom;
+            srcFrom = dstFrom;
+            dstFrom = f;
+        }
+        if (src != a) {
+            System.arraycopy(src, srcFrom, a, from, n);
+        }
+    }
+
+    /**
+     * {@link #radixSort(int[], int, int, int[], int, int)} of IPV6, passes up to 16 bytes from the lowest.
+     */
+    static void radixSortIpV6(long[] highs, long[] lows, int from, int to,
+                              long[] scratchHighs, long[] scratchLows, int scratchFrom, int passes) {
+        int n = to - from;
+        if (n < 2) {
+            return;
+        }
+        int[] counts = new int[passes * RADIX];
+        for (int i = from; i < to; i++) {
+            long high = highs[i];
+            long low = lows[i];
+            for (int p = 0; p < passes; p++) {
+                counts[p * RADIX + digitIpV6(high, low, p << 3)]++;
+            }
+        }
+        long[] srcHighs = highs;
+        long[] srcLows = lows;
+        int srcFrom = from;
+        long[] dstHighs = scratchHighs;
+        long[] dstLows = scratchLows;
+        int dstFrom = scratchFrom;
+        for (int p = 0; p < passes; p++) {
+            int shift = p << 3;
+            int base = p * RADIX;
+            if (counts[base + digitIpV6(srcHighs[srcFrom], srcLows[srcFrom], shift)] == n) {
+                continue;
+            }
+            toOffsets(counts, base, dstFrom);
+            for (int i = srcFrom; i < srcFrom + n; i++) {
+                int at = counts[base + digitIpV6(srcHighs[i], srcLows[i], shift)]++;
+                dstHighs[at] = srcHighs[i];
+                dstLows[at] = srcLows[i];
+            }
+            long[] t = srcHighs;
+            srcHighs = dstHighs;
+            dstHighs = t;
+            t = srcLows;
+            srcLows = dstLows;
+            dstLows = t;
+            int f = srcFrom;
+            srcFrom = dstFrom;
+            dstFrom = f;
+        }
+        if (srcHighs != highs) {
+            System.arraycopy(srcHighs, srcFrom, highs, from, n);
+            System.arraycopy(srcLows, srcFrom, lows, from, n);
+        }
+    }
+
+    /**
+     * @return the 8 bits of the 128-bit value starting at bit shift
+     */
+    private static int digitIpV6(long high, long low, int shift) {
+        if (shift >= 64) {
+            return (int) (high >>> (shift - 64)) & 0xFF;
+        }
+        if (shift > 56) {
+            return (int) (low >>> shift | high << (64 - shift)) & 0xFF;
+        }
+        return (int) (low >>> shift) & 0xFF;
+    }
+
+    /**
+     * counts[base, base + 256) to the first index of each bucket from start
+     */
+    private static void toOffsets(int[] counts, int base, int start) {
+        int sum = start;
+        for (int b = base; b < base + RADIX; b++) {
+            int count = counts[b];
+            counts[b] = sum;
+            sum += count;
+        }
+    }
+
+    /**
+     * counts[chunk][bucket] to where chunk writes its first value of bucket, chunks of a bucket in order.
+     *
+     * @return the first index of each bucket, and the total count last
+     */
+    private static int[] toOffsets(int[][] counts) {
+        int[] starts = new int[RADIX + 1];
+        int sum = 0;
+        for (int b = 0; b < RADIX; b++) {
+            starts[b] = sum;
+            for (int[] count : counts) {
+                int c = count[b];
+                count[b] = sum;
+                sum += c;
+            }
+        }
+        starts[RADIX] = sum;
+        return starts;
+    }
+
+    private static int chunks(int n) {
+        return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 4, n / (PARALLEL_THRESHOLD / 4)));
+    }
+
+    private static int chunkFrom(int n, int chunks, int chunk) {
+        return (int) ((long) n * chunk / chunks);
+    }
+
+    private static long externalSort(final Path input, final Path output, int runLength, boolean distinct,
+                                     int recordBytes) throws IOException {
+        if (runLength <= 0 || runLength > Integer.MAX_VALUE / IPV6_BYTES) {
+            throw new IllegalArgumentException("Illegal arguments : " + runLength);
+        }
+        Path dir = output.toAbsolutePath().getParent();
+        List<Path> runs = new ArrayList<>();
+        List<Long> runSizes = new ArrayList<>();
+        try {
+            try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+                long size = in.size();
+                if (size % recordBytes != 0) {
+                    throw new IOException("Not whole " + recordBytes + "-byte records : " + input);
+                }
+                ByteBuffer bytes = ByteBuffer.allocate((int) Math.min(size, (long) runLength * recordBytes));
+                int[] ips = recordBytes == IPV4_BYTES ? new int[bytes.capacity() / IPV4_BYTES] : null;
+                long[] pairs = recordBytes == IPV6_BYTES ? new long[bytes.capacity() / Long.BYTES] : null;
+                while (readFully(in, bytes) > 0) {
+                    int count = bytes.remaining() / recordBytes;
+                    if (recordBytes == IPV4_BYTES) {
+                        bytes.asIntBuffer().get(ips, 0, count);
+                        parallelSortIpV4(ips, 0, count);
+                        count = distinct ? distinct(ips, 0, count) : count;
+                        ((Buffer) bytes).clear();
+                        bytes.asIntBuffer().put(ips, 0, count);
+                    } else {
+                        bytes.asLongBuffer().get(pairs, 0, 2 * count);
+                        count = sortPairs(pairs, count, distinct);
+                        ((Buffer) bytes).clear();
+                        bytes.asLongBuffer().put(pairs, 0, 2 * count);
+                    }
+                    ((Buffer) bytes).limit(count * recordBytes);
+                    Path run = Files.createTempFile(dir, "ip-run", ".bin");
+                    runs.add(run);
+                    runSizes.add((long) count);
+                    try (FileChannel out = FileChannel.open(run, StandardOpenOption.WRITE)) {
+                        while (bytes.hasRemaining()) {
+                            out.write(bytes);
+                        }
+                    }
+                    ((Buffer) bytes).clear();
+                }
+            }
+            if (runs.size() == 1) {
+                Files.move(runs.remove(0), output, StandardCopyOption.REPLACE_EXISTING);
+                return runSizes.get(0);
+            }
+            return merge(runs, runSizes, output, distinct, recordBytes);
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    /**
+     * sort interleaved high, low pairs through a radix sort of two arrays
+     *
+     * @return the count of pairs kept
+     */
+    private static int sortPairs(long[] pairs, int count, boolean distinct) {
+        long[] highs = new long[count];
+        long[] lows = new long[count];
+        for (int i = 0; i < count; i++) {
+            highs[i] = pairs[2 * i];
+            lows[i] = pairs[2 * i + 1];
+        }
+        parallelSortIpV6(highs, lows);
+        int kept = distinct ? distinctIpV6(highs, lows, 0, count) : count;
+        for (int i = 0; i < kept; i++) {
+            pairs[2 * i] = highs[i];
+            pairs[2 * i + 1] = lows[i];
+        }
+        return kept;
+    }
+
+    /**
+     * fill bytes from the channel, then flip it
+     *
+     * @return the count of bytes read
+     */
+    private static int readFully(FileChannel in, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining() && in.read(bytes) >= 0) {
+            // keep reading
+        }
+        ((Buffer) bytes).flip();
+        return bytes.remaining();
+    }
+
+    /**
+     * k-way merge of sorted runs through a binary heap of run indexes
+     */
+    private static long merge(List<Path> runs, List<Long> runSizes, Path output, boolean distinct,
+                              int recordBytes) throws IOException {
+        int k = runs.size();
+        DataInputStream[] readers = new DataInputStream[k];
+        long[] remaining = new long[k];
+        long[] highs = new long[k];
+        long[] lows = new long[k];
+        int[] heap = new int[k];
+        int heapSize = 0;
+        long written = 0L;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output), 1 << 16))) {
+            for (int r = 0; r < k; r++) {
+                readers[r] = new DataInputStream(new BufferedInputStream(Files.newInputStream(runs.get(r)), 1 << 16));
+                remaining[r] = runSizes.get(r);
+                if (next(readers[r], remaining, highs, lows, r, recordBytes)) {
+                    heap[heapSize++] = r;
+                    siftUp(heap, heapSize - 1, highs, lows);
+                }
+            }
+            boolean hasLast = false;
+            long lastHigh = 0L;
+            long lastLow = 0L;
+            while (heapSize > 0) {
+                int r = heap[0];
+                long high = highs[r];
+                long low = lows[r];
+                if (!distinct || !hasLast || high != lastHigh || low != lastLow) {
+                    if (recordBytes == IPV4_BYTES) {
+                        out.writeInt((int) low);
+                    } else {
+                        out.writeLong(high);
+                        out.writeLong(low);
+                    }
+                    written++;
+                    hasLast = true;
+                    lastHigh = high;
+                    lastLow = low;
+                }
+                if (!next(readers[r], remaining, highs, lows, r, recordBytes)) {
+                    heap[0] = heap[--heapSize];
+                }
+                siftDown(heap, heapSize, highs, lows);
+            }
+        } finally {
+            for (DataInputStream reader : readers) {
+                if (reader != null) {
+                    reader.close();
+                }
+            }
+        }
+        return written;
+    }
+
+    private static boolean next(DataInputStream reader, long[] remaining, long[] highs, long[] lows, int r,
+                                int recordBytes) throws IOException {
+        if (remaining[r] == 0L) {
+            return false;
+        }
+        remaining[r]--;
+        if (recordBytes == IPV4_BYTES) {
+            highs[r] = 0L;
+            lows[r] = reader.readInt() & 0xFFFFFFFFL;
+        } else {
+            highs[r] = reader.readLong();
+            lows[r] = reader.readLong();
+        }
+        return true;
+    }
+
+    private static void siftUp(int[] heap, int i, long[] highs, long[] lows) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (IpV6Address.compare(highs[heap[i]], lows[heap[i]], highs[heap[parent]], lows[heap[parent]]) >= 0) {
+                return;
+            }
+            int t = heap[i];
+            heap[i] = heap[parent];
+            heap[parent] = t;
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, long[] highs, long[] lows) {
+        int i = 0;
+        while (true) {
+            int smallest = i;
+            for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                if (IpV6Address.compare(highs[heap[child]], lows[heap[child]],
+                    highs[heap[smallest]], lows[heap[smallest]]) < 0) {
+                    smallest = child;
+                }
+            }
+            if (smallest == i) {
+                return;
+            }
+            int t = heap[i];
+            heap[i] = heap[smallest];
+            heap[smallest] = t;
+            i = smallest;
+        }
+    }
+
+    private static void checkIpV4(final long[] ips, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (ips[i] < 0 || ips[i] > 0xFFFFFFFFL) {
+                throw new IllegalArgumentException("Illegal arguments : " + ips[i]);
+            }
+        }
+    }
+
+    private static void checkRange(int size, int from, int to) {
+        if (from < 0 || from > to || to > size) {
+            throw new IndexOutOfBoundsException("from " + from + ", to " + to + ", size " + size);
+        }
+    }
+}
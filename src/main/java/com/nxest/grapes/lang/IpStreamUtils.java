@@ -0,0 +1,193 @@
+package com.nxest.grapes.lang;
+
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy iteration over IP ranges and CIDR blocks. IPV4 come as a {@link LongStream} of long values,
+ * IPV6 as an {@link IpV6Cursor} of two longs, nothing is materialized and no string is made.
+ * Both split in even halves, so a parallel stream over a /8 keeps every core busy.
+ *
+ * <pre>
+ * long hosts = IpStreamUtils.ipV4CidrStream("10.0.0.0/8").parallel().filter(ip -&gt; (ip &amp; 0xFF) != 0).count();
+ * IpV6Cursor cursor = IpStreamUtils.ipV6Cursor("ff06::c3", "ff06::1:c3");
+ * while (cursor.next()) {
+ *     scan(cursor.getHigh(), cursor.getLow());
+ * }
+ * </pre>
+ *
+ * @author l10178
+ */
+public final class IpStreamUtils {
+
+    private IpStreamUtils() {
+    }
+
+    /**
+     * @param start the first IPV4 long value
+     * @param end   the last IPV4 long value, inclusive
+     * @return the ips from start to end, see {@link #ipV4Spliterator(long, long)}
+     * @throws IllegalArgumentException throw if not IPV4 long values or start &gt; end
+     */
+    public static LongStream ipV4Stream(long start, long end) throws IllegalArgumentException {
+        return StreamSupport.longStream(ipV4Spliterator(start, end), false);
+    }
+
+    /**
+     * Unlike {@link LongStream#rangeClosed(long, long)}, which splits large ranges into uneven parts,
+     * this always splits in halves, so each task of a fork-join over a block gets the same share.
+     *
+     * @param start the first IPV4 long value
+     * @param end   the last IPV4 long value, inclusive
+     * @return a SIZED spliterator of the ips from start to end
+     * @throws IllegalArgumentException throw if not IPV4 long values or start &gt; end
+     */
+    public static Spliterator.OfLong ipV4Spliterator(long start, long end) throws IllegalArgumentException {
+        if (start < 0 || end > 0xFFFFFFFFL || start > end) {
+            throw new IllegalArgumentException("Illegal arguments : " + start + "-" + end);
+        }
+        return new IpV4Spliterator(start, end + 1);
+    }
+
+    /**
+     * @param startIp the first IPV4
+     * @param endIp   the last IPV4, inclusive
+     * @return the ips from startIp to endIp as long values
+     * @throws IllegalArgumentException throw if not legal IPV4 or startIp &gt; endIp
+     */
+    public static LongStream ipV4Stream(final String startIp, final String endIp) throws IllegalArgumentException {
+        long start = IpMacUtils.ipV4ToLong(startIp);
+        long end = IpMacUtils.ipV4ToLong(endIp);
+        if (start == IpMacUtils.INVALID_VALUE || end == IpMacUtils.INVALID_VALUE) {
+            throw new IllegalArgumentException("Illegal arguments : " + startIp + "-" + endIp);
+        }
+        return ipV4Stream(start, end);
+    }
+
+    /**
+     * @param cidr IPV4 CIDR, eg. 192.168.1.0/24, bits after the prefix are ignored
+     * @return the ips of the block as long values, network and broadcast included
+     * @throws IllegalArgumentException throw if the CIDR is not legal
+     */
+    public static LongStream ipV4CidrStream(final String cidr) throws IllegalArgumentException {
+        long v4Prefix = Objects.isNull(cidr) ? IpMacUtils.INVALID_VALUE : IpMacUtils.parseIpV4Prefix(cidr, 0, cidr.length());
+        if (v4Prefix == IpMacUtils.INVALID_VALUE) {
+            throw new IllegalArgumentException("Illegal arguments : " + cidr);
+        }
+        int prefix = (int) (v4Prefix >>> 32);
+        long mask = prefix == 0 ? 0L : 0xFFFFFFFFL << (32 - prefix) & 0xFFFFFFFFL;
+        long begin = v4Prefix & mask;
+        return ipV4Stream(begin, begin | ~mask & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param startIp the first IPV6
+     * @param endIp   the last IPV6, inclusive
+     * @return a cursor before startIp
+     * @throws IllegalArgumentException throw if not legal IPV6 or startIp &gt; endIp
+     */
+    public static IpV6Cursor ipV6Cursor(final String startIp, final String endIp) throws IllegalArgumentException {
+        IpV6Address start = IpMacUtils.ipV6ToAddress(startIp);
+        IpV6Address end = IpMacUtils.ipV6ToAddress(endIp);
+        if (Objects.isNull(start) || Objects.isNull(end)) {
+            throw new IllegalArgumentException("Illegal arguments : " + startIp + "-" + endIp);
+        }
+        return IpV6Cursor.of(start, end);
+    }
+
+    /**
+     * @param cidr IPV6 CIDR, eg. ff06::/16, bits after the prefix are ignored, IPV4-mapped blocks
+     *             such as ::ffff:0:0/96 are walked as IPV6 too
+     * @return a cursor before the first ip of the block
+     * @throws IllegalArgumentException throw if the CIDR is not legal
+     */
+    public static IpV6Cursor ipV6CidrCursor(final String cidr) throws IllegalArgumentException {
+        long[] ip = new long[2];
+        int result = Objects.isNull(cidr) ? IpMacUtils.IPV6_INVALID : IpMacUtils.parseIpV6(cidr, 0, cidr.length(), true, ip);
+        if (result == IpMacUtils.IPV6_INVALID) {
+            throw new IllegalArgumentException("Illegal arguments : " + cidr);
+        }
+        int prefix = result & IpMacUtils.IPV6_PREFIX_MASK;
+        if (prefix == IpMacUtils.IPV6_NO_PREFIX) {
+            prefix = 128;
+        }
+        long maskHigh = IpV6Address.maskHigh(prefix);
+        long maskLow = IpV6Address.maskLow(prefix);
+        return new IpV6Cursor(ip[0] & maskHigh, ip[1] & maskLow, ip[0] | ~maskHigh, ip[1] | ~maskLow);
+    }
+
+    /**
+     * A stream of {@link IpV6Address} over {@link #ipV6Cursor(String, String)}, one object per ip,
+     * use the cursor where that matters.
+     *
+     * @param startIp the first IPV6
+     * @param endIp   the last IPV6, inclusive
+     * @return the ips from startIp to endIp, splits in halves when parallel
+     * @throws IllegalArgumentException throw if not legal IPV6 or startIp &gt; endIp
+     */
+    public static Stream<IpV6Address> ipV6Stream(final String startIp, final String endIp) throws IllegalArgumentException {
+        return StreamSupport.stream(ipV6Cursor(startIp, endIp).spliterator(), false);
+    }
+
+    /**
+     * IPV4 from next to end, exclusive, the range fits a long even for the whole space.
+     */
+    private static final class IpV4Spliterator implements Spliterator.OfLong {
+
+        private long next;
+        private final long end;
+
+        IpV4Spliterator(long next, long end) {
+            this.next = next;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if (next == end) {
+                return false;
+            }
+            action.accept(next++);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            for (long ip = next; ip < end; ip++) {
+                action.accept(ip);
+            }
+            next = end;
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            long mid = next + (end - next) / 2;
+            if (mid == next) {
+                return null;
+            }
+            IpV4Spliterator prefix = new IpV4Spliterator(next, mid);
+            next = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - next;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | SORTED | NONNULL | IMMUTABLE | SIZED | SUBSIZED;
+        }
+
+        @Override
+        public Comparator<? super Long> getComparator() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,902 @@
+package com.nxest.grapes.lang;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A compressed set of IPV4, for populations of scattered addresses up to the whole 2^32 space, in the
+ * way of a Roaring bitmap. The high 16 bits of an ip pick a container of the low 16 bits, a container is
+ * a sorted char array up to 4096 ips, a 8KB bitmap above that, or sorted runs for dense ranges. An ip takes
+ * 2 bytes or less, against about 80 bytes in a <code>HashSet&lt;Long&gt;</code>.
+ *
+ * <pre>
+ * IpV4Bitmap seen = new IpV4Bitmap();
+ * seen.add("192.168.0.1");
+ * seen.addRange(IpMacUtils.ipV4ToLong("10.0.0.0"), IpMacUtils.ipV4ToLong("10.255.255.255"));
+ * assertTrue(seen.contains("10.1.2.3"));
+ * assertEquals(16777217L, seen.cardinality());
+ * </pre>
+ * <p>
+ * {@link #and(IpV4Bitmap)}, {@link #or(IpV4Bitmap)} and {@link #andNot(IpV4Bitmap)} return new bitmaps in
+ * the smallest container of each part. {@link #add(long)} does not compress, call {@link #runOptimize()}
+ * after many adds. Not thread-safe, concurrent lookups are safe once no more changes are made.
+ *
+ * @author l10178
+ */
+public final class IpV4Bitmap {
+
+    static final int MAGIC = 0x4752424D;
+    static final int VERSION = 1;
+
+    private static final byte ARRAY = 1;
+    private static final byte BITMAP = 2;
+    private static final byte RUN = 3;
+
+    /**
+     * high 16 bits of each container, sorted
+     */
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+    private long cardinality;
+
+    public IpV4Bitmap() {
+        this(4);
+    }
+
+    private IpV4Bitmap(int capacity) {
+        this.keys = new char[Math.max(4, capacity)];
+        this.containers = new Container[keys.length];
+    }
+
+    /**
+     * A copy of other.
+     *
+     * @param other the bitmap to copy
+     */
+    public IpV4Bitmap(final IpV4Bitmap other) {
+        this(other.size);
+        for (int i = 0; i < other.size; i++) {
+            append(other.keys[i], other.containers[i].copy());
+        }
+    }
+
+    /**
+     * @param ip IPV4 string
+     * @return true if the bitmap did not contain the ip
+     * @throws IllegalArgumentException throw if not legal IPV4
+     */
+    public boolean add(final CharSequence ip) throws IllegalArgumentException {
+        long value = Objects.isNull(ip) ? IpMacUtils.INVALID_VALUE : IpMacUtils.parseIpV4(ip, 0, ip.length());
+        if (value == IpMacUtils.INVALID_VALUE) {
+            throw new IllegalArgumentException("Illegal arguments : " + ip);
+        }
+        return add(value);
+    }
+
+    /**
+     * @param ip IPV4 long value
+     * @return true if the bitmap did not contain the ip
+     * @throws IllegalArgumentException throw if not 0 - 0xFFFFFFFF
+     */
+    public boolean add(long ip) throws IllegalArgumentException {
+        checkIpV4(ip);
+        int low = (int) ip & 0xFFFF;
+        int i = indexOf((char) (ip >>> 16));
+        if (i < 0) {
+            insert(-i - 1, (char) (ip >>> 16), new ArrayContainer(low));
+            return true;
+        }
+        Container container = containers[i];
+        int before = container.cardinality();
+        containers[i] = container.add(low);
+        if (containers[i].cardinality() == before) {
+            return false;
+        }
+        cardinality++;
+        return true;
+    }
+
+    /**
+     * Add all ips from start to end, a range is held in a few bytes.
+     *
+     * @param start the first IPV4 long value
+     * @param end   the last IPV4 long value, inclusive
+     * @throws IllegalArgumentException throw if not IPV4 long values or start &gt; end
+     */
+    public void addRange(long start, long end) throws IllegalArgumentException {
+        checkIpV4(start);
+        checkIpV4(end);
+        if (start > end) {
+            throw new IllegalArgumentException("Illegal arguments : " + start + "-" + end);
+        }
+        for (long high = start >>> 16; high <= end >>> 16; high++) {
+            int from = high == start >>> 16 ? (int) start & 0xFFFF : 0;
+            int to = high == end >>> 16 ? (int) end & 0xFFFF : 0xFFFF;
+            int i = indexOf((char) high);
+            if (i < 0) {
+                insert(-i - 1, (char) high, new RunContainer(new char[]{(char) from, (char) (to - from)}, 1));
+                continue;
+            }
+            cardinality -= containers[i].cardinality();
+            BitmapContainer bits = containers[i].toBitmap();
+            bits.setRange(from, to);
+            containers[i] = bits.compact();
+            cardinality += containers[i].cardinality();
+        }
+    }
+
+    /**
+     * @param ip IPV4 string, may be null
+     * @return true if the ip in this bitmap
+     */
+    public boolean contains(final CharSequence ip) {
+        return Objects.nonNull(ip) && contains(IpMacUtils.parseIpV4(ip, 0, ip.length()));
+    }
+
+    /**
+     * @param ip IPV4 long value
+     * @return true if the ip in this bitmap
+     */
+    public boolean contains(long ip) {
+        if (ip < 0 || ip > 0xFFFFFFFFL) {
+            return false;
+        }
+        int i = indexOf((char) (ip >>> 16));
+        return i >= 0 && containers[i].contains((int) ip & 0xFFFF);
+    }
+
+    /**
+     * @return the count of ips, up to 2^32
+     */
+    public long cardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * @param other another bitmap
+     * @return a new bitmap of the ips in both
+     */
+    public IpV4Bitmap and(final IpV4Bitmap other) {
+        IpV4Bitmap result = new IpV4Bitmap(Math.min(size, other.size));
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.appendNonNull(keys[i], Container.and(containers[i++], other.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param other another bitmap
+     * @return a new bitmap of the ips in either
+     */
+    public IpV4Bitmap or(final IpV4Bitmap other) {
+        IpV4Bitmap result = new IpV4Bitmap(size + other.size);
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || i < size && keys[i] < other.keys[j]) {
+                result.append(keys[i], containers[i++].copy());
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j++].copy());
+            } else {
+                result.append(keys[i], Container.or(containers[i++], other.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param other another bitmap
+     * @return a new bitmap of the ips in this but not in other
+     */
+    public IpV4Bitmap andNot(final IpV4Bitmap other) {
+        IpV4Bitmap result = new IpV4Bitmap(size);
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.size && other.keys[j] == keys[i]) {
+                result.appendNonNull(keys[i], Container.andNot(containers[i], other.containers[j]));
+            } else {
+                result.append(keys[i], containers[i].copy());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Convert each container to the smallest of array, bitmap and runs.
+     */
+    public void runOptimize() {
+        for (int i = 0; i < size; i++) {
+            containers[i] = containers[i].toBitmap().compact();
+        }
+    }
+
+    /**
+     * @return the count of bytes {@link #writeTo(DataOutput)} writes
+     */
+    public long serializedSize() {
+        long bytes = 12;
+        for (int i = 0; i < size; i++) {
+            bytes += 7 + containers[i].payloadSize();
+        }
+        return bytes;
+    }
+
+    /**
+     * Write the bitmap, big-endian: magic, version and container count as ints, then for each container
+     * its key as a short, its type as a byte, its count as an int and its chars or longs.
+     *
+     * @param out where to write
+     * @throws IOException throw if out can not be written
+     */
+    public void writeTo(final DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeShort(keys[i]);
+            containers[i].writeTo(out);
+        }
+    }
+
+    /**
+     * Read a bitmap written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in where to read
+     * @return the bitmap
+     * @throws IOException throw if in can not be read or is not a valid bitmap
+     */
+    public static IpV4Bitmap readFrom(final DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an IP bitmap.");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported IP bitmap version : " + version);
+        }
+        int count = in.readInt();
+        if (count < 0 || count > 1 << 16) {
+            throw new IOException("Corrupted IP bitmap.");
+        }
+        IpV4Bitmap bitmap = new IpV4Bitmap(count);
+        for (int i = 0; i < count; i++) {
+            char key = in.readChar();
+            if (i > 0 && key <= bitmap.keys[i - 1]) {
+                throw new IOException("Corrupted IP bitmap.");
+            }
+            bitmap.append(key, Container.readFrom(in));
+        }
+        return bitmap;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IpV4Bitmap)) {
+            return false;
+        }
+        IpV4Bitmap other = (IpV4Bitmap) o;
+        if (size != other.size || cardinality != other.cardinality) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (keys[i] != other.keys[i] || !containers[i].sameValues(other.containers[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        // the same ips may be held in different containers, hash what does not depend on that
+        int hash = 1;
+        for (int i = 0; i < size; i++) {
+            hash = 31 * hash + (keys[i] << 16 ^ containers[i].cardinality());
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "IpV4Bitmap{cardinality=" + cardinality + ", containers=" + size + '}';
+    }
+
+    private int indexOf(char key) {
+        // appends in order are the common case
+        if (size > 0 && keys[size - 1] == key) {
+            return size - 1;
+        }
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insert(int i, char key, Container container) {
+        if (size == keys.length) {
+            int capacity = Math.min(1 << 16, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = container;
+        size++;
+        cardinality += container.cardinality();
+    }
+
+    private void append(char key, Container container) {
+        insert(size, key, container);
+    }
+
+    private void appendNonNull(char key, Container container) {
+        if (Objects.nonNull(container)) {
+            append(key, container);
+        }
+    }
+
+    private static void checkIpV4(long ip) throws IllegalArgumentException {
+        if (ip < 0 || ip > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("Illegal arguments : " + ip);
+        }
+    }
+
+    /**
+     * The low 16 bits of the ips sharing one high 16 bits, never empty.
+     */
+    private abstract static class Container {
+
+        abstract int cardinality();
+
+        abstract boolean contains(int low);
+
+        /**
+         * @return this or a bigger container, holding low too
+         */
+        abstract Container add(int low);
+
+        /**
+         * @return a new bitmap of the same values
+         */
+        abstract BitmapContainer toBitmap();
+
+        abstract Container copy();
+
+        abstract int payloadSize();
+
+        abstract void writeTo(DataOutput out) throws IOException;
+
+        boolean sameValues(Container other) {
+            if (cardinality() != other.cardinality()) {
+                return false;
+            }
+            if (this instanceof ArrayContainer && other instanceof ArrayContainer) {
+                char[] values = ((ArrayContainer) this).values;
+                char[] otherValues = ((ArrayContainer) other).values;
+                for (int i = 0; i < cardinality(); i++) {
+                    if (values[i] != otherValues[i]) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            return Arrays.equals(toBitmap().words, other.toBitmap().words);
+        }
+
+        /**
+         * @return the values in both, null if none
+         */
+        static Container and(Container a, Container b) {
+            if (a instanceof ArrayContainer) {
+                return ((ArrayContainer) a).filter(b, true);
+            }
+            if (b instanceof ArrayContainer) {
+                return ((ArrayContainer) b).filter(a, true);
+            }
+            BitmapContainer bits = a.toBitmap();
+            long[] other = b instanceof BitmapContainer ? ((BitmapContainer) b).words : b.toBitmap().words;
+            for (int i = 0; i < bits.words.length; i++) {
+                bits.words[i] &= other[i];
+            }
+            bits.recount();
+            return bits.compact();
+        }
+
+        /**
+         * @return the values in either
+         */
+        static Container or(Container a, Container b) {
+            if (a instanceof ArrayContainer && b instanceof ArrayContainer
+                && a.cardinality() + b.cardinality() <= ArrayContainer.MAX_CARDINALITY) {
+                return ((ArrayContainer) a).merge((ArrayContainer) b);
+            }
+            BitmapContainer bits = a.toBitmap();
+            b.orInto(bits);
+            bits.recount();
+            return bits.compact();
+        }
+
+        /**
+         * @return the values in a but not in b, null if none
+         */
+        static Container andNot(Container a, Container b) {
+            if (a instanceof ArrayContainer) {
+                return ((ArrayContainer) a).filter(b, false);
+            }
+            BitmapContainer bits = a.toBitmap();
+            b.clearFrom(bits);
+            bits.recount();
+            return bits.compact();
+        }
+
+        /**
+         * set the values of this in bits, the cardinality of bits is not updated
+         */
+        abstract void orInto(BitmapContainer bits);
+
+        /**
+         * clear the values of this from bits, the cardinality of bits is not updated
+         */
+        abstract void clearFrom(BitmapContainer bits);
+
+        static Container readFrom(DataInput in) throws IOException {
+            byte type = in.readByte();
+            int count = in.readInt();
+            switch (type) {
+                case ARRAY:
+                    if (count < 1 || count > ArrayContainer.MAX_CARDINALITY) {
+                        throw new IOException("Corrupted IP bitmap.");
+                    }
+                    char[] values = new char[count];
+                    for (int i = 0; i < count; i++) {
+                        values[i] = in.readChar();
+                        if (i > 0 && values[i] <= values[i - 1]) {
+                            throw new IOException("Corrupted IP bitmap.");
+                        }
+                    }
+                    return new ArrayContainer(values, count);
+                case BITMAP:
+                    BitmapContainer bits = new BitmapContainer();
+                    for (int i = 0; i < bits.words.length; i++) {
+                        bits.words[i] = in.readLong();
+                    }
+                    bits.recount();
+                    if (bits.cardinality != count || count == 0) {
+                        throw new IOException("Corrupted IP bitmap.");
+                    }
+                    return bits;
+                case RUN:
+                    if (count < 1 || count > 1 << 15) {
+                        throw new IOException("Corrupted IP bitmap.");
+                    }
+                    char[] runs = new char[2 * count];
+                    int next = 0;
+                    for (int i = 0; i < count; i++) {
+                        runs[2 * i] = in.readChar();
+                        runs[2 * i + 1] = in.readChar();
+                        if (runs[2 * i] < next || runs[2 * i] + runs[2 * i + 1] > 0xFFFF) {
+                            throw new IOException("Corrupted IP bitmap.");
+                        }
+                        // runs must not touch, or they would be one run
+                        next = runs[2 * i] + runs[2 * i + 1] + 2;
+                    }
+                    return new RunContainer(runs, count);
+                default:
+                    throw new IOException("Corrupted IP bitmap.");
+            }
+        }
+    }
+
+    /**
+     * Sorted values, up to {@link #MAX_CARDINALITY}.
+     */
+    private static final class ArrayContainer extends Container {
+
+        /**
+         * above this a bitmap is smaller
+         */
+        static final int MAX_CARDINALITY = 4096;
+
+        char[] values;
+        int cardinality;
+
+        ArrayContainer(int low) {
+            this(new char[]{(char) low, 0, 0, 0}, 1);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(int low) {
+            return Arrays.binarySearch(values, 0, cardinality, (char) low) >= 0;
+        }
+
+        @Override
+        Container add(int low) {
+            int i = Arrays.binarySearch(values, 0, cardinality, (char) low);
+            if (i >= 0) {
+                return this;
+            }
+            if (cardinality == MAX_CARDINALITY) {
+                return toBitmap().add(low);
+            }
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(MAX_CARDINALITY, cardinality * 2));
+            }
+            i = -i - 1;
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = (char) low;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            BitmapContainer bits = new BitmapContainer();
+            orInto(bits);
+            bits.cardinality = cardinality;
+            return bits;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, cardinality), cardinality);
+        }
+
+        @Override
+        int payloadSize() {
+            return 2 * cardinality;
+        }
+
+        @Override
+        void writeTo(DataOutput out) throws IOException {
+            out.writeByte(ARRAY);
+            out.writeInt(cardinality);
+            for (int i = 0; i < cardinality; i++) {
+                out.writeChar(values[i]);
+            }
+        }
+
+        @Override
+        void orInto(BitmapContainer bits) {
+            for (int i = 0; i < cardinality; i++) {
+                bits.words[values[i] >>> 6] |= 1L << values[i];
+            }
+        }
+
+        @Override
+        void clearFrom(BitmapContainer bits) {
+            for (int i = 0; i < cardinality; i++) {
+                bits.words[values[i] >>> 6] &= ~(1L << values[i]);
+            }
+        }
+
+        /**
+         * @return the values that other contains, or does not contain, null if none
+         */
+        ArrayContainer filter(Container other, boolean contained) {
+            char[] kept = new char[cardinality];
+            int n = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i]) == contained) {
+                    kept[n++] = values[i];
+                }
+            }
+            return n == 0 ? null : new ArrayContainer(kept, n);
+        }
+
+        ArrayContainer merge(ArrayContainer other) {
+            char[] merged = new char[cardinality + other.cardinality];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < cardinality || j < other.cardinality) {
+                if (j == other.cardinality || i < cardinality && values[i] < other.values[j]) {
+                    merged[n++] = values[i++];
+                } else if (i == cardinality || values[i] > other.values[j]) {
+                    merged[n++] = other.values[j++];
+                } else {
+                    merged[n++] = values[i++];
+                    j++;
+                }
+            }
+            return new ArrayContainer(merged, n);
+        }
+    }
+
+    /**
+     * One bit for each of the 65536 values.
+     */
+    private static final class BitmapContainer extends Container {
+
+        final long[] words = new long[1024];
+        int cardinality;
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(int low) {
+            return (words[low >>> 6] & 1L << low) != 0;
+        }
+
+        @Override
+        Container add(int low) {
+            long word = words[low >>> 6];
+            long set = word | 1L << low;
+            if (set != word) {
+                words[low >>> 6] = set;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            BitmapContainer bits = new BitmapContainer();
+            System.arraycopy(words, 0, bits.words, 0, words.length);
+            bits.cardinality = cardinality;
+            return bits;
+        }
+
+        @Override
+        Container copy() {
+            return toBitmap();
+        }
+
+        @Override
+        int payloadSize() {
+            return 8 * words.length;
+        }
+
+        @Override
+        void writeTo(DataOutput out) throws IOException {
+            out.writeByte(BITMAP);
+            out.writeInt(cardinality);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        }
+
+        @Override
+        void orInto(BitmapContainer bits) {
+            for (int i = 0; i < words.length; i++) {
+                bits.words[i] |= words[i];
+            }
+        }
+
+        @Override
+        void clearFrom(BitmapContainer bits) {
+            for (int i = 0; i < words.length; i++) {
+                bits.words[i] &= ~words[i];
+            }
+        }
+
+        /**
+         * set from - to, inclusive, and recount
+         */
+        void setRange(int from, int to) {
+            fill(from, to, true);
+            recount();
+        }
+
+        /**
+         * set or clear from - to, inclusive, the cardinality is not updated
+         */
+        void fill(int from, int to, boolean set) {
+            int first = from >>> 6;
+            int last = to >>> 6;
+            for (int i = first; i <= last; i++) {
+                long mask = -1L;
+                if (i == first) {
+                    mask &= -1L << from;
+                }
+                if (i == last) {
+                    mask &= -1L >>> (63 - (to & 63));
+                }
+                words[i] = set ? words[i] | mask : words[i] & ~mask;
+            }
+        }
+
+        void recount() {
+            int count = 0;
+            for (long word : words) {
+                count += Long.bitCount(word);
+            }
+            cardinality = count;
+        }
+
+        /**
+         * @return the smallest container of these values, null if none
+         */
+        Container compact() {
+            if (cardinality == 0) {
+                return null;
+            }
+            int runs = countRuns();
+            int runBytes = 4 * runs;
+            int arrayBytes = cardinality <= ArrayContainer.MAX_CARDINALITY ? 2 * cardinality : Integer.MAX_VALUE;
+            if (runBytes < arrayBytes && runBytes < payloadSize()) {
+                return toRuns(runs);
+            }
+            if (arrayBytes <= payloadSize()) {
+                return toArray();
+            }
+            return this;
+        }
+
+        private int countRuns() {
+            int runs = 0;
+            long carry = 0L;
+            for (long word : words) {
+                // a run starts at a set bit whose lower neighbour is clear
+                runs += Long.bitCount(word & ~(word << 1 | carry));
+                carry = word >>> 63;
+            }
+            return runs;
+        }
+
+        private ArrayContainer toArray() {
+            char[] values = new char[cardinality];
+            int n = 0;
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[n++] = (char) (i << 6 | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, n);
+        }
+
+        private RunContainer toRuns(int count) {
+            char[] runs = new char[2 * count];
+            int n = 0;
+            int i = 0;
+            long word = words[0];
+            while (true) {
+                while (word == 0 && i < words.length - 1) {
+                    word = words[++i];
+                }
+                if (word == 0) {
+                    break;
+                }
+                int start = i << 6 | Long.numberOfTrailingZeros(word);
+                // fill below the start, then find the first clear bit
+                word |= word - 1;
+                while (word == -1L && i < words.length - 1) {
+                    word = words[++i];
+                }
+                int end;
+                if (word == -1L) {
+                    end = 1 << 16;
+                    word = 0;
+                } else {
+                    end = i << 6 | Long.numberOfTrailingZeros(~word);
+                    word &= word + 1;
+                }
+                runs[2 * n] = (char) start;
+                runs[2 * n + 1] = (char) (end - start - 1);
+                n++;
+            }
+            return new RunContainer(runs, n);
+        }
+    }
+
+    /**
+     * Sorted runs of start and length - 1, runs do not touch.
+     */
+    private static final class RunContainer extends Container {
+
+        final char[] runs;
+        final int count;
+        final int cardinality;
+
+        RunContainer(char[] runs, int count) {
+            this.runs = runs;
+            this.count = count;
+            int sum = 0;
+            for (int i = 0; i < count; i++) {
+                sum += runs[2 * i + 1] + 1;
+            }
+            this.cardinality = sum;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(int low) {
+            // the last run starting at or before low
+            int lo = 0;
+            int hi = count - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (runs[2 * mid] <= low) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return hi >= 0 && low - runs[2 * hi] <= runs[2 * hi + 1];
+        }
+
+        @Override
+        Container add(int low) {
+            // runs are compacted again by runOptimize, not on each add
+            return contains(low) ? this : toBitmap().add(low);
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            BitmapContainer bits = new BitmapContainer();
+            orInto(bits);
+            bits.cardinality = cardinality;
+            return bits;
+        }
+
+        @Override
+        Container copy() {
+            return new RunContainer(Arrays.copyOf(runs, 2 * count), count);
+        }
+
+        @Override
+        int payloadSize() {
+            return 4 * count;
+        }
+
+        @Override
+        void writeTo(DataOutput out) throws IOException {
+            out.writeByte(RUN);
+            out.writeInt(count);
+            for (int i = 0; i < 2 * count; i++) {
+                out.writeChar(runs[i]);
+            }
+        }
+
+        @Override
+        void orInto(BitmapContainer bits) {
+            for (int i = 0; i < count; i++) {
+                bits.fill(runs[2 * i], runs[2 * i] + runs[2 * i + 1], true);
+            }
+        }
+
+        @Override
+        void clearFrom(BitmapContainer bits) {
+            for (int i = 0; i < count; i++) {
+                bits.fill(runs[2 * i], runs[2 * i] + runs[2 * i + 1], false);
+            }
+        }
+    }
+}
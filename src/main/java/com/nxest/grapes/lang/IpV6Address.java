@@ -0,0 +1,358 @@
+package com.nxest.grapes.lang;
+
+import java.math.BigInteger;
+import java.util.Objects;
+
+/**
+ * An immutable 128-bit IPV6 address held in two longs, compare and range math never allocate.
+ *
+ * <pre>
+ * IpV6Address ip = IpV6Address.valueOf("ff06::c3");
+ * assertEquals(0xff06000000000000L, ip.getHigh());
+ * assertEquals(0xc3L, ip.getLow());
+ * assertEquals(IpV6Address.valueOf("ff06::c4"), ip.add(1));
+ * </pre>
+ *
+ * @author l10178
+ */
+public final class IpV6Address implements Comparable<IpV6Address> {
+
+    /**
+     * <code>::</code>
+     */
+    public static final IpV6Address MIN_VALUE = new IpV6Address(0L, 0L);
+
+    /**
+     * <code>ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff</code>
+     */
+    public static final IpV6Address MAX_VALUE = new IpV6Address(-1L, -1L);
+
+    private static final BigInteger MAX_BIG_INTEGER = BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE);
+
+    private final long high;
+    private final long low;
+
+    private IpV6Address(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * @param high the high 64 bits
+     * @param low  the low 64 bits
+     * @return the address
+     */
+    public static IpV6Address of(long high, long low) {
+        return new IpV6Address(high, low);
+    }
+
+    /**
+     * Parse an IPV6 literal, see {@link IpMacUtils#isLegalIpV6(String)}.
+     *
+     * @param ipv6 ipv6 string value
+     * @return the address
+     * @throws IllegalArgumentException throw if not legal IPV6
+     */
+    public static IpV6Address valueOf(final String ipv6) throws IllegalArgumentException {
+        IpV6Address address = IpMacUtils.ipV6ToAddress(ipv6);
+        if (address == null) {
+            throw new IllegalArgumentException("Illegal arguments : " + ipv6);
+        }
+        return address;
+    }
+
+    /**
+     * @param big ipv6 BigInteger value
+     * @return the address
+     * @throws IllegalArgumentException throw if big is negative or wider than 128 bits
+     */
+    public static IpV6Address valueOf(final BigInteger big) throws IllegalArgumentException {
+        if (Objects.isNull(big) || big.signum() < 0 || big.compareTo(MAX_BIG_INTEGER) > 0) {
+            throw new IllegalArgumentException("Illegal arguments : " + big);
+        }
+        return new IpV6Address(big.shiftRight(64).longValue(), big.longValue());
+    }
+
+    /**
+     * @param bytes 16 bytes in network byte order
+     * @return the address
+     * @throws IllegalArgumentException throw if bytes is not 16 bytes
+     */
+    public static IpV6Address valueOf(final byte[] bytes) throws IllegalArgumentException {
+        if (Objects.isNull(bytes) || bytes.length != 16) {
+            throw new IllegalArgumentException("IPV6 must be 16 bytes.");
+        }
+        long high = 0L;
+        long low = 0L;
+        for (int i = 0; i < 8; i++) {
+            high = high << 8 | (bytes[i] & 0xFFL);
+            low = low << 8 | (bytes[i + 8] & 0xFFL);
+        }
+        return new IpV6Address(high, low);
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    /**
+     * @param offset the offset to add, may be negative
+     * @return this + offset
+     * @throws ArithmeticException throw if the result is out of the IPV6 space
+     */
+    public IpV6Address add(long offset) throws ArithmeticException {
+        long newLow = low + offset;
+        long newHigh = high;
+        if (offset >= 0) {
+            if (Long.compareUnsigned(newLow, low) < 0) {
+                newHigh++;
+                if (newHigh == 0L) {
+                    throw new ArithmeticException("IPV6 overflow");
+                }
+            }
+        } else if (Long.compareUnsigned(newLow, low) > 0) {
+            if (newHigh == 0L) {
+                throw new ArithmeticException("IPV6 overflow");
+            }
+            newHigh--;
+        }
+        return new IpV6Address(newHigh, newLow);
+    }
+
+    /**
+     * @param offset the offset to subtract, may be negative
+     * @return this - offset
+     * @throws ArithmeticException throw if the result is out of the IPV6 space
+     */
+    public IpV6Address subtract(long offset) throws ArithmeticException {
+        if (offset == Long.MIN_VALUE) {
+            return add(Long.MAX_VALUE).add(1L);
+        }
+        return add(-offset);
+    }
+
+    /**
+     * Allocates the result, see {@link #difference(IpV6Address)} and {@link #subtract(long, long, long, long, long[])}.
+     *
+     * @param other the address to subtract
+     * @return this - other
+     */
+    public BigInteger subtract(final IpV6Address other) {
+        if (compareTo(other) < 0) {
+            return other.subtract(this).negate();
+        }
+        long[] result = new long[2];
+        subtract(high, low, other.high, other.low, result);
+        return toBigInteger(result[0], result[1]);
+    }
+
+    /**
+     * @param other the address to subtract
+     * @return this - other, saturated to {@link Long#MIN_VALUE} or {@link Long#MAX_VALUE} when it overflows a long
+     */
+    public long difference(final IpV6Address other) {
+        return difference(high, low, other.high, other.low);
+    }
+
+    /**
+     * @param other the address to subtract
+     * @return this - other
+     * @throws ArithmeticException throw if the result overflows a long
+     */
+    public long subtractExact(final IpV6Address other) throws ArithmeticException {
+        return difference(high, low, other.high, other.low, true);
+    }
+
+    /**
+     * The count of addresses from this to end, both inclusive. Allocates the result,
+     * see {@link #rangeSize(long, long, long, long)}.
+     *
+     * @param end the end address
+     * @return end - this + 1, or zero if end is less than this
+     */
+    public BigInteger rangeSize(final IpV6Address end) {
+        if (compareTo(end) > 0) {
+            return BigInteger.ZERO;
+        }
+        long[] result = new long[2];
+        subtract(end.high, end.low, high, low, result);
+        return toBigInteger(result[0], result[1]).add(BigInteger.ONE);
+    }
+
+    /**
+     * The first address of the network, keep the high prefixLength bits.
+     *
+     * <pre>
+     *     2001:db8::1 with prefix 32 to 2001:db8::
+     * </pre>
+     *
+     * @param prefixLength 0 - 128
+     * @return the network address
+     */
+    public IpV6Address mask(int prefixLength) {
+        checkPrefixLength(prefixLength);
+        return new IpV6Address(high & maskHigh(prefixLength), low & maskLow(prefixLength));
+    }
+
+    /**
+     * The last address of the network, set the bits after prefixLength.
+     *
+     * <pre>
+     *     2001:db8::1 with prefix 32 to 2001:db8:ffff:ffff:ffff:ffff:ffff:ffff
+     * </pre>
+     *
+     * @param prefixLength 0 - 128
+     * @return the last address of the network
+     */
+    public IpV6Address lastInNetwork(int prefixLength) {
+        checkPrefixLength(prefixLength);
+        return new IpV6Address(high | ~maskHigh(prefixLength), low | ~maskLow(prefixLength));
+    }
+
+    public BigInteger toBigInteger() {
+        return toBigInteger(high, low);
+    }
+
+    /**
+     * @return 16 bytes in network byte order
+     */
+    public byte[] toBytes() {
+        return toBytes(high, low);
+    }
+
+    private static byte[] toBytes(long high, long low) {
+        byte[] bytes = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (high >>> (56 - 8 * i));
+            bytes[i + 8] = (byte) (low >>> (56 - 8 * i));
+        }
+        return bytes;
+    }
+
+    @Override
+    public int compareTo(final IpV6Address other) {
+        return compare(high, low, other.high, other.low);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IpV6Address)) {
+            return false;
+        }
+        IpV6Address that = (IpV6Address) o;
+        return high == that.high && low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(high) * 31 + Long.hashCode(low);
+    }
+
+    @Override
+    public String toString() {
+        return IpMacUtils.longsToIpV6(high, low);
+    }
+
+    /**
+     * Compare two unsigned 128-bit values.
+     *
+     * @return negative, zero or positive as the left is less than, equal to, or greater than the right
+     */
+    public static int compare(long leftHigh, long leftLow, long rightHigh, long rightLow) {
+        int c = Long.compareUnsigned(leftHigh, rightHigh);
+        return c != 0 ? c : Long.compareUnsigned(leftLow, rightLow);
+    }
+
+    /**
+     * left - right modulo 2^128, without allocating. When left is not less than right it is the unsigned
+     * 128-bit difference.
+     *
+     * @param result the high and low 64 bits of the difference are written to result[0] and result[1]
+     */
+    public static void subtract(long leftHigh, long leftLow, long rightHigh, long rightLow, final long[] result) {
+        result[1] = leftLow - rightLow;
+        result[0] = leftHigh - rightHigh - (Long.compareUnsigned(leftLow, rightLow) < 0 ? 1L : 0L);
+    }
+
+    /**
+     * The count of addresses from start to end, both inclusive, without allocating.
+     *
+     * @return end - start + 1 saturated to {@link Long#MAX_VALUE}, or zero if end is less than start
+     */
+    public static long rangeSize(long startHigh, long startLow, long endHigh, long endLow) {
+        long difference = difference(endHigh, endLow, startHigh, startLow);
+        if (difference < 0) {
+            return 0L;
+        }
+        return difference == Long.MAX_VALUE ? Long.MAX_VALUE : difference + 1;
+    }
+
+    /**
+     * left - right, saturated to {@link Long#MIN_VALUE} or {@link Long#MAX_VALUE} when it overflows a long,
+     * so the sign is always right.
+     */
+    public static long difference(long leftHigh, long leftLow, long rightHigh, long rightLow) {
+        return difference(leftHigh, leftLow, rightHigh, rightLow, false);
+    }
+
+    private static long difference(long leftHigh, long leftLow, long rightHigh, long rightLow, boolean exact) {
+        int c = compare(leftHigh, leftLow, rightHigh, rightLow);
+        if (c == 0) {
+            return 0L;
+        }
+        long bigHigh = c > 0 ? leftHigh : rightHigh;
+        long bigLow = c > 0 ? leftLow : rightLow;
+        long smallHigh = c > 0 ? rightHigh : leftHigh;
+        long smallLow = c > 0 ? rightLow : leftLow;
+        long low = bigLow - smallLow;
+        long high = bigHigh - smallHigh - (Long.compareUnsigned(bigLow, smallLow) < 0 ? 1L : 0L);
+        if (c > 0) {
+            if (high == 0L && low >= 0L) {
+                return low;
+            }
+        } else if (high == 0L && (low >= 0L || low == Long.MIN_VALUE)) {
+            return -low;
+        }
+        if (exact) {
+            throw new ArithmeticException("long overflow");
+        }
+        return c > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+    }
+
+    static BigInteger toBigInteger(long high, long low) {
+        return new BigInteger(1, toBytes(high, low));
+    }
+
+    /**
+     * @return the high 64 bits of a prefixLength network mask
+     */
+    static long maskHigh(int prefixLength) {
+        if (prefixLength <= 0) {
+            return 0L;
+        }
+        return prefixLength >= 64 ? -1L : -1L << (64 - prefixLength);
+    }
+
+    /**
+     * @return the low 64 bits of a prefixLength network mask
+     */
+    static long maskLow(int prefixLength) {
+        if (prefixLength <= 64) {
+            return 0L;
+        }
+        return -1L << (128 - prefixLength);
+    }
+
+    private static void checkPrefixLength(int prefixLength) {
+        if (prefixLength < 0 || prefixLength > 128) {
+            throw new IllegalArgumentException("Illegal prefix length : " + prefixLength);
+        }
+    }
+}
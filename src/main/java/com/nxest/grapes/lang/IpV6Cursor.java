@@ -0,0 +1,214 @@
+package com.nxest.grapes.lang;
+
+import java.math.BigInteger;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Walks the IPV6 from start to end as high and low longs, nothing is allocated per ip. A cursor splits
+ * in halves like a {@link Spliterator}, so fork-join tasks can fan out a /32 or a whole /0 without
+ * materializing any ip.
+ *
+ * <pre>
+ * IpV6Cursor cursor = IpStreamUtils.ipV6CidrCursor("ff06::/126");
+ * IpV6Cursor firstHalf = cursor.trySplit();
+ * while (firstHalf.next()) {
+ *     // ff06::, ff06::1
+ *     scan(firstHalf.getHigh(), firstHalf.getLow());
+ * }
+ * </pre>
+ * <p>
+ * Not thread-safe, hand each split to one thread.
+ *
+ * @author l10178
+ */
+public final class IpV6Cursor {
+
+    /**
+     * Receives an IPV6 as two longs.
+     */
+    @FunctionalInterface
+    public interface IpV6Consumer {
+
+        void accept(long high, long low);
+    }
+
+    private long nextHigh;
+    private long nextLow;
+    private final long endHigh;
+    private final long endLow;
+    private boolean done;
+    private long high;
+    private long low;
+
+    /**
+     * @param startHigh the high 64 bits of the first ip
+     * @param startLow  the low 64 bits of the first ip
+     * @param endHigh   the high 64 bits of the last ip
+     * @param endLow    the low 64 bits of the last ip
+     * @throws IllegalArgumentException throw if start &gt; end
+     */
+    public IpV6Cursor(long startHigh, long startLow, long endHigh, long endLow) throws IllegalArgumentException {
+        if (IpV6Address.compare(startHigh, startLow, endHigh, endLow) > 0) {
+            throw new IllegalArgumentException("Illegal arguments : " + IpV6Address.of(startHigh, startLow)
+                + "-" + IpV6Address.of(endHigh, endLow));
+        }
+        this.nextHigh = startHigh;
+        this.nextLow = startLow;
+        this.endHigh = endHigh;
+        this.endLow = endLow;
+    }
+
+    /**
+     * @param start the first ip
+     * @param end   the last ip, inclusive
+     * @return a cursor before start
+     * @throws IllegalArgumentException throw if start &gt; end
+     */
+    public static IpV6Cursor of(final IpV6Address start, final IpV6Address end) throws IllegalArgumentException {
+        return new IpV6Cursor(start.getHigh(), start.getLow(), end.getHigh(), end.getLow());
+    }
+
+    /**
+     * Move to the next ip.
+     *
+     * @return false if no ip is left
+     */
+    public boolean next() {
+        if (done) {
+            return false;
+        }
+        high = nextHigh;
+        low = nextLow;
+        if (nextHigh == endHigh && nextLow == endLow) {
+            done = true;
+        } else if (++nextLow == 0L) {
+            nextHigh++;
+        }
+        return true;
+    }
+
+    /**
+     * @return the high 64 bits of the current ip
+     */
+    public long getHigh() {
+        return high;
+    }
+
+    /**
+     * @return the low 64 bits of the current ip
+     */
+    public long getLow() {
+        return low;
+    }
+
+    /**
+     * Hand every ip left to action.
+     *
+     * @param action receives the ips in order
+     */
+    public void forEachRemaining(final IpV6Consumer action) {
+        while (next()) {
+            action.accept(high, low);
+        }
+    }
+
+    /**
+     * Split off the first half of the ips left, this cursor keeps the second half.
+     *
+     * @return a cursor of the first half, null if less than two ips are left
+     */
+    public IpV6Cursor trySplit() {
+        if (done || nextHigh == endHigh && nextLow == endLow) {
+            return null;
+        }
+        // mid = next + (end - next) / 2, the last ip of the first half
+        long diffLow = endLow - nextLow;
+        long diffHigh = endHigh - nextHigh - (Long.compareUnsigned(endLow, nextLow) < 0 ? 1 : 0);
+        long halfLow = diffLow >>> 1 | diffHigh << 63;
+        long halfHigh = diffHigh >>> 1;
+        long midLow = nextLow + halfLow;
+        long midHigh = nextHigh + halfHigh + (Long.compareUnsigned(midLow, nextLow) < 0 ? 1 : 0);
+        IpV6Cursor prefix = new IpV6Cursor(nextHigh, nextLow, midHigh, midLow);
+        nextLow = midLow + 1;
+        nextHigh = nextLow == 0L ? midHigh + 1 : midHigh;
+        return prefix;
+    }
+
+    /**
+     * @return the count of ips left, {@link Long#MAX_VALUE} if more
+     */
+    public long estimateSize() {
+        if (done) {
+            return 0L;
+        }
+        long diffLow = endLow - nextLow;
+        long diffHigh = endHigh - nextHigh - (Long.compareUnsigned(endLow, nextLow) < 0 ? 1 : 0);
+        return diffHigh != 0L || diffLow < 0L || diffLow == Long.MAX_VALUE ? Long.MAX_VALUE : diffLow + 1;
+    }
+
+    /**
+     * @return the exact count of ips left, up to 2^128
+     */
+    public BigInteger size() {
+        if (done) {
+            return BigInteger.ZERO;
+        }
+        return IpV6Address.toBigInteger(endHigh, endLow).subtract(IpV6Address.toBigInteger(nextHigh, nextLow))
+            .add(BigInteger.ONE);
+    }
+
+    /**
+     * @return the ips left as a spliterator of {@link IpV6Address}, for a parallel stream, one object per ip
+     */
+    public Spliterator<IpV6Address> spliterator() {
+        return new AddressSpliterator(this);
+    }
+
+    @Override
+    public String toString() {
+        return "IpV6Cursor{next=" + (done ? "none" : IpV6Address.of(nextHigh, nextLow).toString())
+            + ", end=" + IpV6Address.of(endHigh, endLow) + '}';
+    }
+
+    private static final class AddressSpliterator implements Spliterator<IpV6Address> {
+
+        private final IpV6Cursor cursor;
+
+        AddressSpliterator(IpV6Cursor cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super IpV6Address> action) {
+            if (!cursor.next()) {
+                return false;
+            }
+            action.accept(IpV6Address.of(cursor.high, cursor.low));
+            return true;
+        }
+
+        @Override
+        public Spliterator<IpV6Address> trySplit() {
+            IpV6Cursor prefix = cursor.trySplit();
+            return prefix == null ? null : new AddressSpliterator(prefix);
+        }
+
+        @Override
+        public long estimateSize() {
+            return cursor.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            int sized = cursor.estimateSize() < Long.MAX_VALUE ? SIZED | SUBSIZED : 0;
+            return ORDERED | DISTINCT | SORTED | NONNULL | IMMUTABLE | sized;
+        }
+
+        @Override
+        public Comparator<? super IpV6Address> getComparator() {
+            return null;
+        }
+    }
+}
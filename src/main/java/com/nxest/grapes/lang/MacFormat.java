@@ -0,0 +1,35 @@
+package com.nxest.grapes.lang;
+
+/**
+ * Text styles of a MAC or an EUI-64, see {@link IpMacUtils#longToMac(long, MacFormat, Appendable)}.
+ */
+public enum MacFormat {
+
+    /**
+     * IEEE 802 style, 60-a0-10-50-d0-30
+     */
+    HYPHEN('-', 1),
+    /**
+     * Unix style, 60:a0:10:50:d0:30
+     */
+    COLON(':', 1),
+    /**
+     * Cisco style, 60a0.1050.d030
+     */
+    DOT('.', 2),
+    /**
+     * no separators, 60a01050d030
+     */
+    BARE((char) 0, 0);
+
+    final char separator;
+    /**
+     * bytes between two separators
+     */
+    final int groupBytes;
+
+    MacFormat(char separator, int groupBytes) {
+        this.separator = separator;
+        this.groupBytes = groupBytes;
+    }
+}
@@ -0,0 +1,363 @@
+package com.nxest.grapes.lang;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * A set of MACs backed by an open-addressing hash table of {@link IpMacUtils#macToLong(String)} values,
+ * {@link #contains(CharSequence)} and {@link #contains(long)} do not allocate.
+ *
+ * <pre>
+ * MacSet set = MacSet.of("60:a0:10:50:d0:30", "50-A0-10-50-D0-30");
+ * assertTrue(set.contains("60-A0-10-50-D0-30"));
+ * assertTrue(set.contains(106240584765488L));
+ * assertFalse(set.contains("70:a0:10:50:d0:30"));
+ * </pre>
+ * <p>
+ * Not thread-safe, concurrent lookups are safe once no more changes are made.
+ *
+ * @author l10178
+ */
+public final class MacSet {
+
+    /**
+     * MAC values are 48 bits, a negative slot is free.
+     */
+    private static final long FREE = -1L;
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] table;
+    private int mask;
+    private int size;
+    private int threshold;
+
+    public MacSet() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize the expected count of MACs
+     */
+    public MacSet(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * A copy of other, one array copy without rehashing.
+     *
+     * @param other the set to copy
+     */
+    public MacSet(final MacSet other) {
+        this.table = other.table.clone();
+        this.mask = other.mask;
+        this.size = other.size;
+        this.threshold = other.threshold;
+    }
+
+    private MacSet(long[] table, int size) {
+        this.table = table;
+        this.mask = table.length - 1;
+        this.size = size;
+        this.threshold = (int) (table.length * LOAD_FACTOR);
+    }
+
+    /**
+     * @param macs MAC strings, see {@link IpMacUtils#isLegalMac(String)}
+     * @return a set of the macs
+     * @throws IllegalArgumentException throw if a MAC is not legal
+     */
+    public static MacSet of(final String... macs) throws IllegalArgumentException {
+        return of(Arrays.asList(macs));
+    }
+
+    /**
+     * @param macs MAC strings, see {@link IpMacUtils#isLegalMac(String)}
+     * @return a set of the macs
+     * @throws IllegalArgumentException throw if a MAC is not legal
+     */
+    public static MacSet of(final Collection<String> macs) throws IllegalArgumentException {
+        MacSet set = new MacSet(macs.size());
+        set.addAll(macs);
+        return set;
+    }
+
+    /**
+     * @param mac MAC string
+     * @return true if the set did not contain the mac
+     * @throws IllegalArgumentException throw if not legal MAC
+     */
+    public boolean add(final String mac) throws IllegalArgumentException {
+        return add(toLong(mac));
+    }
+
+    /**
+     * @param mac MAC long value
+     * @return true if the set did not contain the mac
+     * @throws IllegalArgumentException throw if not a 48-bit value
+     */
+    public boolean add(long mac) throws IllegalArgumentException {
+        checkMac(mac);
+        int i = indexOf(mac);
+        if (table[i] == mac) {
+            return false;
+        }
+        table[i] = mac;
+        if (++size > threshold) {
+            rehash(table.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * @param macs MAC strings
+     * @return the count of added macs
+     * @throws IllegalArgumentException throw if a MAC is not legal, macs before it are added
+     */
+    public int addAll(final Collection<String> macs) throws IllegalArgumentException {
+        ensureCapacity(size + macs.size());
+        int added = 0;
+        for (String mac : macs) {
+            if (add(mac)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * @param macs MAC long values
+     * @return the count of added macs
+     * @throws IllegalArgumentException throw if a MAC is not a 48-bit value, macs before it are added
+     */
+    public int addAll(final long... macs) throws IllegalArgumentException {
+        ensureCapacity(size + macs.length);
+        int added = 0;
+        for (long mac : macs) {
+            if (add(mac)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * @param mac MAC string, may be null
+     * @return true if the set contained the mac
+     */
+    public boolean remove(final String mac) {
+        return Objects.nonNull(mac) && remove(IpMacUtils.parseMac(mac, 0, mac.length()));
+    }
+
+    /**
+     * @param mac MAC long value
+     * @return true if the set contained the mac
+     */
+    public boolean remove(long mac) {
+        if (mac < 0) {
+            return false;
+        }
+        int i = indexOf(mac);
+        if (table[i] != mac) {
+            return false;
+        }
+        // shift back the following entries of the probe chain, no tombstone needed
+        int free = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            long value = table[j];
+            if (value == FREE) {
+                break;
+            }
+            int home = hash(value) & mask;
+            if (((j - home) & mask) >= ((j - free) & mask)) {
+                table[free] = value;
+                free = j;
+            }
+        }
+        table[free] = FREE;
+        size--;
+        return true;
+    }
+
+    /**
+     * @param macs MAC strings
+     * @return the count of removed macs
+     */
+    public int removeAll(final Collection<String> macs) {
+        int removed = 0;
+        for (String mac : macs) {
+            if (remove(mac)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @param macs MAC long values
+     * @return the count of removed macs
+     */
+    public int removeAll(final long... macs) {
+        int removed = 0;
+        for (long mac : macs) {
+            if (remove(mac)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @param mac MAC string, may be null
+     * @return true if the mac in this set
+     */
+    public boolean contains(final CharSequence mac) {
+        return Objects.nonNull(mac) && contains(IpMacUtils.parseMac(mac, 0, mac.length()));
+    }
+
+    /**
+     * @param mac MAC long value
+     * @return true if the mac in this set
+     */
+    public boolean contains(long mac) {
+        return mac >= 0 && table[indexOf(mac)] == mac;
+    }
+
+    /**
+     * @return MAC long values in no particular order
+     */
+    public long[] toArray() {
+        long[] macs = new long[size];
+        int n = 0;
+        for (long value : table) {
+            if (value != FREE) {
+                macs[n++] = value;
+            }
+        }
+        return macs;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(table, FREE);
+        size = 0;
+    }
+
+    /**
+     * @return the payload of {@link AddressSnapshot}, size and capacity as ints then the table as is
+     */
+    ByteBuffer toSnapshot() {
+        ByteBuffer buffer = AddressSnapshot.allocate(8L + 8L * table.length);
+        buffer.putInt(size).putInt(table.length);
+        AddressSnapshot.putLongs(buffer, table, table.length);
+        return buffer;
+    }
+
+    /**
+     * The table is read back as is, no rehashing, the hash of a MAC does not change between runs.
+     */
+    static MacSet fromSnapshot(final ByteBuffer buffer) throws IOException {
+        AddressSnapshot.checkRemaining(buffer, 8);
+        int size = buffer.getInt();
+        int capacity = buffer.getInt();
+        if (capacity < 8 || Integer.bitCount(capacity) != 1 || size < 0 || size > capacity * LOAD_FACTOR) {
+            throw new IOException("Corrupted address snapshot.");
+        }
+        long[] table = AddressSnapshot.getLongs(buffer, capacity, capacity);
+        int count = 0;
+        for (long value : table) {
+            if (value != FREE) {
+                if (value < 0 || value > 0xFFFFFFFFFFFFL) {
+                    throw new IOException("Corrupted address snapshot.");
+                }
+                count++;
+            }
+        }
+        if (count != size || buffer.hasRemaining()) {
+            throw new IOException("Corrupted address snapshot.");
+        }
+        return new MacSet(table, size);
+    }
+
+    /**
+     * @return the slot holding mac, or the free slot ending its probe chain
+     */
+    private int indexOf(long mac) {
+        int i = hash(mac) & mask;
+        long value;
+        while ((value = table[i]) != FREE && value != mac) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void ensureCapacity(int expectedSize) {
+        int capacity = tableSizeFor(expectedSize);
+        if (capacity > table.length) {
+            rehash(capacity);
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] old = table;
+        allocate(capacity);
+        for (long value : old) {
+            if (value != FREE) {
+                table[indexOf(value)] = value;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        table = new long[capacity];
+        Arrays.fill(table, FREE);
+        mask = capacity - 1;
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        long capacity = Long.highestOneBit(Math.max(8L, (long) (expectedSize / LOAD_FACTOR)) * 2 - 1);
+        if (capacity > 1 << 30) {
+            throw new IllegalArgumentException("Too many MACs : " + expectedSize);
+        }
+        return (int) capacity;
+    }
+
+    /**
+     * murmur3 finalizer, MAC vendor prefixes are not random.
+     */
+    static int hash(long mac) {
+        mac ^= mac >>> 33;
+        mac *= 0xff51afd7ed558ccdL;
+        mac ^= mac >>> 33;
+        mac *= 0xc4ceb9fe1a85ec53L;
+        mac ^= mac >>> 33;
+        return (int) mac;
+    }
+
+    private static long toLong(final String mac) throws IllegalArgumentException {
+        long value = Objects.isNull(mac) ? IpMacUtils.INVALID_VALUE : IpMacUtils.parseMac(mac, 0, mac.length());
+        if (value == IpMacUtils.INVALID_VALUE) {
+            throw new IllegalArgumentException("Illegal arguments : " + mac);
+        }
+        return value;
+    }
+
+    private static void checkMac(long mac) throws IllegalArgumentException {
+        if (mac < 0 || mac > 0xFFFFFFFFFFFFL) {
+            throw new IllegalArgumentException("Illegal arguments : " + mac);
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.nxest.grapes.lang;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An immutable index of the IEEE MAC address block registries, MA-L (OUI, 24 bits), MA-M (28 bits) and
+ * MA-S (36 bits), from the CSV files the IEEE publishes, <code>oui.csv</code>, <code>mam.csv</code> and
+ * <code>oui36.csv</code>. A lookup finds the longest registered prefix of a {@link IpMacUtils#macToLong(String)}
+ * value with at most three probes of one open-addressing table, and does not allocate.
+ * <p>
+ * Vendor names are pooled, a vendor with many blocks is one string.
+ * {@link IpMacUtils#isMulticastMac(long)} and {@link IpMacUtils#isLocallyAdministeredMac(long)} flag the
+ * MACs that no vendor assigned.
+ *
+ * <pre>
+ * MacVendorIndex vendors = MacVendorIndex.load(Paths.get("oui.csv"), Paths.get("mam.csv"), Paths.get("oui36.csv"));
+ * assertEquals("Apple, Inc.", vendors.longestMatch("f0-18-98-12-34-56"));
+ * assertEquals(24, vendors.matchLength(IpMacUtils.macToLong("f0-18-98-12-34-56")));
+ * </pre>
+ *
+ * @author l10178
+ */
+public final class MacVendorIndex {
+
+    /**
+     * MA-L, a 24-bit OUI
+     */
+    public static final int MA_L = 24;
+    /**
+     * MA-M, a 28-bit prefix
+     */
+    public static final int MA_M = 28;
+    /**
+     * MA-S, a 36-bit prefix, also the old IAB
+     */
+    public static final int MA_S = 36;
+
+    private static final int[] LENGTHS = {MA_S, MA_M, MA_L};
+
+    /**
+     * keys are the length above 48 bits and the prefix, a negative slot is free
+     */
+    private static final long FREE = -1L;
+
+    private final long[] keys;
+    private final int[] vendorIds;
+    private final int mask;
+    private final String[] vendors;
+    private final int size;
+    /**
+     * the registered lengths, longest first, so a lookup skips lengths without a block
+     */
+    private final int[] lengths;
+
+    private MacVendorIndex(long[] keys, int[] vendorIds, String[] vendors, int size, int[] lengths) {
+        this.keys = keys;
+        this.vendorIds = vendorIds;
+        this.mask = keys.length - 1;
+        this.vendors = vendors;
+        this.size = size;
+        this.lengths = lengths;
+    }
+
+    /**
+     * @param files IEEE registry CSV files, UTF-8
+     * @return the index of all files
+     * @throws IOException throw if a file can not be read or has a bad record
+     */
+    public static MacVendorIndex load(final Path... files) throws IOException {
+        Builder builder = builder();
+        for (Path file : files) {
+            builder.addCsv(file);
+        }
+        return builder.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param mac MAC string, may be null
+     * @return the vendor of the longest registered prefix, or null
+     */
+    public String longestMatch(final CharSequence mac) {
+        return Objects.isNull(mac) ? null : longestMatch(IpMacUtils.parseMac(mac, 0, mac.length()));
+    }
+
+    /**
+     * @param mac MAC long value
+     * @return the vendor of the longest registered prefix, or null
+     */
+    public String longestMatch(long mac) {
+        int slot = find(mac);
+        return slot < 0 ? null : vendors[vendorIds[slot]];
+    }
+
+    /**
+     * @param mac MAC long value
+     * @return the length of the longest registered prefix, {@link #MA_L}, {@link #MA_M} or {@link #MA_S},
+     * or 0 if not registered
+     */
+    public int matchLength(long mac) {
+        int slot = find(mac);
+        return slot < 0 ? 0 : (int) (keys[slot] >>> 48);
+    }
+
+    /**
+     * @return the count of prefixes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the count of distinct vendor names
+     */
+    public int vendorCount() {
+        return vendors.length;
+    }
+
+    /**
+     * @return the slot of the longest prefix, or -1
+     */
+    private int find(long mac) {
+        if (mac < 0 || mac > 0xFFFFFFFFFFFFL) {
+            return -1;
+        }
+        for (int length : lengths) {
+            long key = key(mac >>> (48 - length), length);
+            int i = MacSet.hash(key) & mask;
+            long value;
+            while ((value = keys[i]) != FREE) {
+                if (value == key) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+        }
+        return -1;
+    }
+
+    private static long key(long prefix, int length) {
+        return (long) length << 48 | prefix;
+    }
+
+    @Override
+    public String toString() {
+        return "MacVendorIndex{" +
+            "size=" + size +
+            ", vendorCount=" + vendors.length +
+            '}';
+    }
+
+    /**
+     * Collects prefixes, a prefix added again takes the last vendor.
+     */
+    public static final class Builder {
+
+        private final Map<Long, Integer> prefixes = new HashMap<>();
+        private final Map<String, Integer> vendorIds = new HashMap<>();
+        private final List<String> vendors = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * @param assignment the hex digits of a prefix, 6 for MA-L, 7 for MA-M and 9 for MA-S,
+         *                   '-', ':' and '.' are ignored, eg. 002272 or 8C-1F-64-F5
+         * @param vendor     the vendor name
+         * @return this
+         * @throws IllegalArgumentException throw if not a legal assignment or the vendor is blank
+         */
+        public Builder add(final String assignment, final String vendor) throws IllegalArgumentException {
+            long prefix = parseAssignment(assignment);
+            if (prefix == IpMacUtils.INVALID_VALUE) {
+                throw new IllegalArgumentException("Illegal arguments : " + assignment);
+            }
+            return add(prefix & 0xFFFFFFFFFL, (int) (prefix >>> 48), vendor);
+        }
+
+        /**
+         * @param prefix the high length bits of the MAC, eg. 0x002272 for 00-22-72
+         * @param length {@link #MA_L}, {@link #MA_M} or {@link #MA_S}
+         * @param vendor the vendor name
+         * @return this
+         * @throws IllegalArgumentException throw if an argument is not legal
+         */
+        public Builder add(long prefix, int length, final String vendor) throws IllegalArgumentException {
+            if (length != MA_L && length != MA_M && length != MA_S || prefix < 0 || prefix >>> length != 0) {
+                throw new IllegalArgumentException("Illegal arguments : " + prefix + "/" + length);
+            }
+            String name = Objects.isNull(vendor) ? "" : vendor.trim();
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("Illegal arguments : " + vendor);
+            }
+            Integer id = vendorIds.get(name);
+            if (id == null) {
+                id = vendors.size();
+                vendorIds.put(name, id);
+                vendors.add(name);
+            }
+            prefixes.put(key(prefix, length), id);
+            return this;
+        }
+
+        /**
+         * Add the records of an IEEE registry CSV file, <code>Registry,Assignment,Organization Name,...</code>
+         * with an optional header.
+         *
+         * @param file the CSV file, UTF-8
+         * @return this
+         * @throws IOException throw if file can not be read or has a bad record
+         */
+        public Builder addCsv(final Path file) throws IOException {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                return addCsv(reader);
+            }
+        }
+
+        /**
+         * @param csv IEEE registry CSV, not closed
+         * @return this
+         * @throws IOException throw if csv can not be read or has a bad record
+         * @see #addCsv(Path)
+         */
+        public Builder addCsv(final Reader csv) throws IOException {
+            BufferedReader reader = csv instanceof BufferedReader ? (BufferedReader) csv : new BufferedReader(csv);
+            List<String> fields = new ArrayList<>();
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                long recordLine = ++lineNumber;
+                StringBuilder record = new StringBuilder(line);
+                // a quoted field may span lines
+                while (!splitCsv(record, fields)) {
+                    line = reader.readLine();
+                    if (line == null) {
+                        throw new IOException("Unclosed quote at line " + recordLine);
+                    }
+                    lineNumber++;
+                    record.append('\n').append(line);
+                }
+                if (fields.size() == 1 && fields.get(0).trim().isEmpty()) {
+                    continue;
+                }
+                if (recordLine == 1 && fields.size() > 1 && "Assignment".equalsIgnoreCase(fields.get(1).trim())) {
+                    continue;
+                }
+                if (fields.size() < 3) {
+                    throw new IOException("Bad record at line " + recordLine + " : " + line);
+                }
+                try {
+                    add(fields.get(1).trim(), fields.get(2));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Bad record at line " + recordLine + " : " + line, e);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * @return the index, the builder can be used again
+         */
+        public MacVendorIndex build() {
+            int capacity = Integer.highestOneBit(Math.max(8, prefixes.size() * 2) * 2 - 1);
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, FREE);
+            int[] ids = new int[capacity];
+            boolean[] registered = new boolean[MA_S + 1];
+            for (Map.Entry<Long, Integer> entry : prefixes.entrySet()) {
+                long key = entry.getKey();
+                int i = MacSet.hash(key) & (capacity - 1);
+                while (keys[i] != FREE) {
+                    i = (i + 1) & (capacity - 1);
+                }
+                keys[i] = key;
+                ids[i] = entry.getValue();
+                registered[(int) (key >>> 48)] = true;
+            }
+            int[] lengths = Arrays.stream(LENGTHS).filter(length -> registered[length]).toArray();
+            return new MacVendorIndex(keys, ids, vendors.toArray(new String[0]), prefixes.size(), lengths);
+        }
+
+        /**
+         * @return the length above 48 bits and the prefix, or {@link IpMacUtils#INVALID_VALUE}
+         */
+        private static long parseAssignment(final String assignment) {
+            if (Objects.isNull(assignment)) {
+                return IpMacUtils.INVALID_VALUE;
+            }
+            long prefix = 0;
+            int digits = 0;
+            for (int i = 0; i < assignment.length(); i++) {
+                char c = assignment.charAt(i);
+                if (c == '-' || c == ':' || c == '.') {
+                    continue;
+                }
+                int digit = Character.digit(c, 16);
+                if (digit < 0 || ++digits > 9) {
+                    return IpMacUtils.INVALID_VALUE;
+                }
+                prefix = prefix << 4 | digit;
+            }
+            int length = digits * 4;
+            if (length != MA_L && length != MA_M && length != MA_S) {
+                return IpMacUtils.INVALID_VALUE;
+            }
+            return key(prefix, length);
+        }
+
+        /**
+         * Split a CSV record, quoted fields may have commas and doubled quotes.
+         *
+         * @return {@code false} if a quote is not closed yet
+         */
+        private static boolean splitCsv(final CharSequence record, final List<String> fields) {
+            fields.clear();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < record.length(); i++) {
+                char c = record.charAt(i);
+                if (quoted) {
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return !quoted;
+        }
+    }
+}
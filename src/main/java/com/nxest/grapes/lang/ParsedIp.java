@@ -0,0 +1,279 @@
+package com.nxest.grapes.lang;
+
+import java.util.Objects;
+
+/**
+ * A reusable, mutable result of parsing an IPV4 or IPV6 once: the family, the numeric value and
+ * the prefix length, or an error code. Parsing never throws on bad input and never allocates, so
+ * one instance can be kept per thread and fed a flood of strings, most of them bad.
+ *
+ * <pre>
+ * ParsedIp ip = new ParsedIp();
+ * assertTrue(ip.parse("192.168.0.1"));
+ * assertEquals(3232235521L, ip.getLow());
+ * assertTrue(ip.parseWithPrefix("2001:db8::/32"));
+ * assertEquals(32, ip.getPrefix());
+ * assertFalse(ip.parse("a.b.c.d"));
+ * assertEquals(ParsedIp.ERROR_ILLEGAL, ip.getError());
+ * </pre>
+ *
+ * @author l10178
+ */
+public final class ParsedIp {
+
+    /**
+     * family of a failed parse
+     */
+    public static final int FAMILY_NONE = 0;
+    /**
+     * IPV4, the value is in {@link #getLow()}
+     */
+    public static final int FAMILY_IPV4 = 4;
+    /**
+     * IPV6, the value is in {@link #getHigh()} and {@link #getLow()}
+     */
+    public static final int FAMILY_IPV6 = 6;
+
+    /**
+     * parsed
+     */
+    public static final int ERROR_NONE = 0;
+    /**
+     * null, empty or only white space
+     */
+    public static final int ERROR_BLANK = 1;
+    /**
+     * not a legal IPV4 or IPV6
+     */
+    public static final int ERROR_ILLEGAL = 2;
+
+    private final long[] words = new long[2];
+    private int family;
+    private int error;
+    private long high;
+    private long low;
+    private int prefix;
+    private boolean mapped;
+
+    public ParsedIp() {
+        fail(ERROR_BLANK);
+    }
+
+    /**
+     * Parse an IPV4 or IPV6 literal, in the forms of {@link IpMacUtils#isLegalIpV4(String)} and
+     * {@link IpMacUtils#isLegalIpV6(String)}. The prefix is the full length of the family.
+     *
+     * @param ip the ip to parse, may be null
+     * @return {@code true} if parsed, otherwise see {@link #getError()}
+     */
+    public boolean parse(final CharSequence ip) {
+        if (Objects.isNull(ip)) {
+            return fail(ERROR_BLANK);
+        }
+        return parse(ip, 0, ip.length(), false);
+    }
+
+    /**
+     * Parse a window of chars as an IPV4 or IPV6 literal.
+     *
+     * @param ip     the ip to parse, may be null
+     * @param offset index of the first char to parse
+     * @param length number of chars to parse
+     * @return {@code true} if parsed, otherwise see {@link #getError()}
+     * @throws IndexOutOfBoundsException if offset or length is out of the bounds of ip
+     */
+    public boolean parse(final CharSequence ip, final int offset, final int length) {
+        if (Objects.isNull(ip)) {
+            return fail(ERROR_BLANK);
+        }
+        IpMacUtils.checkBounds(ip, offset, length);
+        return parse(ip, offset, offset + length, false);
+    }
+
+    /**
+     * Parse an IPV4 or IPV6 with an optional <code>/prefix</code>, such as <code>192.168.0.0/16</code>,
+     * a missing prefix is the full length of the family.
+     *
+     * @param ip the ip to parse, may be null
+     * @return {@code true} if parsed, otherwise see {@link #getError()}
+     */
+    public boolean parseWithPrefix(final CharSequence ip) {
+        if (Objects.isNull(ip)) {
+            return fail(ERROR_BLANK);
+        }
+        return parse(ip, 0, ip.length(), true);
+    }
+
+    /**
+     * Parse a window of chars as an IPV4 or IPV6 with an optional <code>/prefix</code>.
+     *
+     * @param ip     the ip to parse, may be null
+     * @param offset index of the first char to parse
+     * @param length number of chars to parse
+     * @return {@code true} if parsed, otherwise see {@link #getError()}
+     * @throws IndexOutOfBoundsException if offset or length is out of the bounds of ip
+     */
+    public boolean parseWithPrefix(final CharSequence ip, final int offset, final int length) {
+        if (Objects.isNull(ip)) {
+            return fail(ERROR_BLANK);
+        }
+        IpMacUtils.checkBounds(ip, offset, length);
+        return parse(ip, offset, offset + length, true);
+    }
+
+    /**
+     * @return {@code true} if the last parse succeeded
+     */
+    public boolean isValid() {
+        return error == ERROR_NONE;
+    }
+
+    /**
+     * @return {@link #ERROR_NONE}, {@link #ERROR_BLANK} or {@link #ERROR_ILLEGAL}
+     */
+    public int getError() {
+        return error;
+    }
+
+    /**
+     * @return {@link #FAMILY_NONE}, {@link #FAMILY_IPV4} or {@link #FAMILY_IPV6}
+     */
+    public int getFamily() {
+        return family;
+    }
+
+    /**
+     * @return {@code true} if a legal IPV4
+     */
+    public boolean isIpV4() {
+        return family == FAMILY_IPV4;
+    }
+
+    /**
+     * @return {@code true} if a legal IPV6 as {@link IpMacUtils#isLegalIpV6(String)}, not IPV4-mapped
+     */
+    public boolean isIpV6() {
+        return family == FAMILY_IPV6 && !mapped;
+    }
+
+    /**
+     * @return {@code true} if an IPV4-mapped IPV6, <code>::ffff:0:0/96</code>
+     */
+    public boolean isIpV4Mapped() {
+        return mapped;
+    }
+
+    /**
+     * @return the high 64 bits of an IPV6, 0 for an IPV4
+     */
+    public long getHigh() {
+        return high;
+    }
+
+    /**
+     * @return the low 64 bits of an IPV6, or the IPV4 long value
+     */
+    public long getLow() {
+        return low;
+    }
+
+    /**
+     * @return the prefix length, 32 or 128 when none was given, -1 if not parsed
+     */
+    public int getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @param other another result
+     * @return {@code true} if both are legal IPV4, or both legal IPV6, see {@link #isIpV6()}
+     */
+    public boolean isSameFamily(final ParsedIp other) {
+        return isIpV4() && other.isIpV4() || isIpV6() && other.isIpV6();
+    }
+
+    /**
+     * @param other another result of the same family
+     * @return this - other, for IPV6 saturated to {@link Long#MIN_VALUE} or {@link Long#MAX_VALUE}
+     * @throws IllegalArgumentException throw if not the same family, see {@link #isSameFamily(ParsedIp)}
+     */
+    public long difference(final ParsedIp other) throws IllegalArgumentException {
+        if (!isSameFamily(other)) {
+            throw new IllegalArgumentException("Illegal arguments : " + other);
+        }
+        if (isIpV4()) {
+            return low - other.low;
+        }
+        return IpV6Address.difference(high, low, other.high, other.low);
+    }
+
+    private boolean parse(final CharSequence cs, final int from, final int to, final boolean allowPrefix) {
+        int start = from;
+        while (start < to && cs.charAt(start) <= ' ') {
+            start++;
+        }
+        if (start == to) {
+            return fail(ERROR_BLANK);
+        }
+        // choose the parser on the first few chars, so the input is scanned once
+        if (startsLikeIpV4(cs, start, to)) {
+            long ip = allowPrefix ? IpMacUtils.parseIpV4Prefix(cs, from, to) : IpMacUtils.parseIpV4(cs, from, to);
+            if (ip == IpMacUtils.INVALID_VALUE) {
+                return fail(ERROR_ILLEGAL);
+            }
+            return succeed(FAMILY_IPV4, 0L, ip & 0xFFFFFFFFL, allowPrefix ? (int) (ip >>> 32) : 32, false);
+        }
+        int result = IpMacUtils.parseIpV6(cs, from, to, allowPrefix, words);
+        if (result == IpMacUtils.IPV6_INVALID) {
+            return fail(ERROR_ILLEGAL);
+        }
+        int length = result & IpMacUtils.IPV6_PREFIX_MASK;
+        return succeed(FAMILY_IPV6, words[0], words[1], length == IpMacUtils.IPV6_NO_PREFIX ? 128 : length,
+            (result & IpMacUtils.IPV6_IPV4_MAPPED) != 0);
+    }
+
+    /**
+     * @return {@code true} if up to 3 digits and then a dot
+     */
+    private static boolean startsLikeIpV4(final CharSequence cs, final int from, final int to) {
+        for (int i = from; i < to && i <= from + 3; i++) {
+            char c = cs.charAt(i);
+            if (c == '.') {
+                return i > from;
+            }
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private boolean succeed(int family, long high, long low, int prefix, boolean mapped) {
+        this.family = family;
+        this.error = ERROR_NONE;
+        this.high = high;
+        this.low = low;
+        this.prefix = prefix;
+        this.mapped = mapped;
+        return true;
+    }
+
+    private boolean fail(int error) {
+        this.family = FAMILY_NONE;
+        this.error = error;
+        this.high = 0L;
+        this.low = 0L;
+        this.prefix = -1;
+        this.mapped = false;
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        if (!isValid()) {
+            return "ParsedIp{error=" + error + '}';
+        }
+        String ip = isIpV4() ? IpMacUtils.longToIpV4(low) : IpMacUtils.longsToIpV6(high, low);
+        return "ParsedIp{ip=" + ip + ", prefix=" + prefix + '}';
+    }
+}
@@ -0,0 +1,180 @@
+package com.nxest.grapes.lang;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An immutable map from IP prefixes to small values, the longest prefix wins. A multibit trie of
+ * 8-bit strides in one short array, a lookup reads one slot per byte until a slot holds a value,
+ * at most 4 for IPV4 and 16 for IPV6, without branching on the prefixes.
+ *
+ * @author l10178
+ */
+final class PrefixTable {
+
+    private static final int STRIDE = 8;
+    private static final int SLOTS = 1 << STRIDE;
+
+    /**
+     * node n is slots[n * 256, n * 256 + 256), a slot is a value, or ~child for a negative slot
+     */
+    private final short[] slots;
+
+    private PrefixTable(short[] slots) {
+        this.slots = slots;
+    }
+
+    static Builder builder(int defaultValue) {
+        return new Builder(defaultValue);
+    }
+
+    /**
+     * @param ip IPV4 long value
+     * @return the value of the longest prefix of ip
+     */
+    int getIpV4(long ip) {
+        int node = 0;
+        for (int shift = 24; ; shift -= STRIDE) {
+            short slot = slots[node << STRIDE | (int) (ip >>> shift) & 0xFF];
+            if (slot >= 0) {
+                return slot;
+            }
+            node = ~slot;
+        }
+    }
+
+    /**
+     * @param high the high 64 bits of the IPV6
+     * @param low  the low 64 bits of the IPV6
+     * @return the value of the longest prefix of the ip
+     */
+    int getIpV6(long high, long low) {
+        int node = 0;
+        for (int level = 0; ; level++) {
+            short slot = slots[node << STRIDE | byteAt(high, low, level)];
+            if (slot >= 0) {
+                return slot;
+            }
+            node = ~slot;
+        }
+    }
+
+    /**
+     * @return byte level of the 128 bits, 0 the highest
+     */
+    private static int byteAt(long high, long low, int level) {
+        return level < 8 ? (int) (high >>> (56 - STRIDE * level)) & 0xFF : (int) (low >>> (120 - STRIDE * level)) & 0xFF;
+    }
+
+    static final class Builder {
+
+        private final int defaultValue;
+        /**
+         * high, low, length, value
+         */
+        private final List<long[]> prefixes = new ArrayList<>();
+        private short[] slots;
+        private int nodes;
+
+        private Builder(int defaultValue) {
+            checkValue(defaultValue);
+            this.defaultValue = defaultValue;
+        }
+
+        /**
+         * @param ip     IPV4 long value, bits after length are ignored
+         * @param length prefix length, 0 - 32
+         * @param value  0 - 32767
+         * @return this builder
+         */
+        Builder addIpV4(long ip, int length, int value) {
+            if (length < 0 || length > 32) {
+                throw new IllegalArgumentException("Illegal arguments : " + length);
+            }
+            return addIpV6(ip << 32, 0L, length, value);
+        }
+
+        /**
+         * @param high   the high 64 bits of the IPV6, bits after length are ignored
+         * @param low    the low 64 bits of the IPV6
+         * @param length prefix length, 0 - 128
+         * @param value  0 - 32767
+         * @return this builder
+         */
+        Builder addIpV6(long high, long low, int length, int value) {
+            if (length < 0 || length > 128) {
+                throw new IllegalArgumentException("Illegal arguments : " + length);
+            }
+            checkValue(value);
+            prefixes.add(new long[]{high, low, length, value});
+            return this;
+        }
+
+        PrefixTable build() {
+            slots = new short[4 * SLOTS];
+            nodes = 0;
+            newNode((short) defaultValue);
+            // shorter prefixes first, so longer ones paint over them
+            prefixes.sort(Comparator.comparingLong(prefix -> prefix[2]));
+            for (long[] prefix : prefixes) {
+                insert(prefix[0], prefix[1], (int) prefix[2], (short) prefix[3]);
+            }
+            return new PrefixTable(Arrays.copyOf(slots, nodes * SLOTS));
+        }
+
+        private void insert(long high, long low, int length, short value) {
+            int node = 0;
+            int level = 0;
+            int rest = length;
+            while (rest > STRIDE) {
+                int i = node << STRIDE | byteAt(high, low, level);
+                short slot = slots[i];
+                if (slot >= 0) {
+                    int child = newNode(slot);
+                    slots[i] = (short) ~child;
+                    node = child;
+                } else {
+                    node = ~slot;
+                }
+                level++;
+                rest -= STRIDE;
+            }
+            int span = 1 << (STRIDE - rest);
+            int start = byteAt(high, low, level) & -span;
+            for (int i = start; i < start + span; i++) {
+                paint(node << STRIDE | i, value);
+            }
+        }
+
+        private void paint(int i, short value) {
+            short slot = slots[i];
+            if (slot >= 0) {
+                slots[i] = value;
+                return;
+            }
+            int child = ~slot << STRIDE;
+            for (int j = child; j < child + SLOTS; j++) {
+                paint(j, value);
+            }
+        }
+
+        private int newNode(short value) {
+            if ((nodes + 1) * SLOTS > slots.length) {
+                slots = Arrays.copyOf(slots, slots.length * 2);
+            }
+            if (nodes > Short.MAX_VALUE) {
+                throw new IllegalStateException("Too many prefixes : " + prefixes.size());
+            }
+            Arrays.fill(slots, nodes * SLOTS, (nodes + 1) * SLOTS, value);
+            return nodes++;
+        }
+
+        private static void checkValue(int value) {
+            if (value < 0 || value > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Illegal arguments : " + value);
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.nxest.grapes.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AclMatcher Test
+ */
+class AclMatcherTest {
+
+    @Test
+    void delta() {
+        MacSet macs = MacSet.of("60:a0:10:50:d0:30");
+        AclMatcher acl = new AclMatcher(IpRangeSet.of("10.0.0.0/8", "ff06::/16"), macs);
+        // the matcher keeps its own copy
+        macs.clear();
+        assertTrue(acl.containsIp("10.1.2.3"));
+        assertTrue(acl.containsMac("60-A0-10-50-D0-30"));
+        assertEquals(0L, acl.snapshot().getVersion());
+
+        AclMatcher.Snapshot before = acl.snapshot();
+        AclMatcher.Snapshot after = acl.update()
+            .removeIp("10.1.0.0/16")
+            .addIp("192.168.1.1-192.168.1.9")
+            .addIp("192.168.1.5")
+            .removeIp("192.168.1.5")
+            .addMac("60:a0:10:50:d0:31")
+            .removeMac("60:a0:10:50:d0:30")
+            .apply();
+        assertSame(after, acl.snapshot());
+        assertEquals(1L, after.getVersion());
+        assertFalse(acl.containsIp("10.1.2.3"));
+        assertTrue(acl.containsIp("10.2.0.0"));
+        assertTrue(acl.containsIp("192.168.1.4"));
+        assertFalse(acl.containsIp("192.168.1.5"));
+        assertTrue(acl.containsIpV6(0xff06000000000000L, 1L));
+        assertFalse(acl.containsMac("60:a0:10:50:d0:30"));
+        assertTrue(acl.containsMac(IpMacUtils.macToLong("60:a0:10:50:d0:31")));
+        assertEquals(1, after.sizeMac());
+
+        // an old snapshot does not change
+        assertTrue(before.containsIp("10.1.2.3"));
+        assertTrue(before.containsMac("60:a0:10:50:d0:30"));
+        assertFalse(before.containsMac("60:a0:10:50:d0:31"));
+
+        assertThrows(IllegalArgumentException.class, () -> acl.update().addIp("10.0.0.0/33"));
+        assertThrows(IllegalArgumentException.class, () -> acl.update().addMac("60:a0:10"));
+        assertThrows(NullPointerException.class, () -> new AclMatcher(null, new MacSet()));
+        assertThrows(NullPointerException.class, () -> new AclMatcher(IpRangeSet.of(), null));
+    }
+
+    @Test
+    void reloadAsync() {
+        AclMatcher acl = new AclMatcher();
+        assertFalse(acl.containsIp("10.0.0.1"));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            AclMatcher.Snapshot snapshot = acl.reloadAsync(Arrays.asList("10.0.0.0/24", "::1"),
+                Collections.singletonList("60a0.1050.d030"), executor).join();
+            assertSame(snapshot, acl.snapshot());
+            assertTrue(acl.containsIp("10.0.0.1"));
+            assertTrue(acl.containsIp("::1"));
+            assertTrue(acl.containsMac("60:a0:10:50:d0:30"));
+
+            CompletionException e = assertThrows(CompletionException.class, () -> acl.reloadAsync(
+                Collections.singletonList("a.b.c.d"), Collections.emptyList(), executor).join());
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+            assertSame(snapshot, acl.snapshot());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void concurrentDeltas() throws Exception {
+        AclMatcher acl = new AclMatcher();
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        AtomicBoolean done = new AtomicBoolean();
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int t = 0; t < 2; t++) {
+                readers.add(executor.submit(() -> {
+                    while (!done.get()) {
+                        // every delta adds both, a snapshot never has one without the other
+                        AclMatcher.Snapshot snapshot = acl.snapshot();
+                        for (int i = 0; i < 100; i++) {
+                            boolean ip = snapshot.containsIp("10.0." + i + ".1");
+                            boolean mac = snapshot.containsMac(i);
+                            assertEquals(ip, mac);
+                        }
+                    }
+                }));
+            }
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int first = t * 25;
+                writers.add(executor.submit(() -> {
+                    for (int i = first; i < first + 25; i++) {
+                        acl.update().addIp("10.0." + i + ".0/24").addMac(IpMacUtils.longToMac(i)).apply();
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            done.set(true);
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(100L, acl.snapshot().getVersion());
+        assertEquals(100, acl.snapshot().sizeMac());
+        assertEquals(1, acl.snapshot().getIps().sizeIpV4());
+        assertEquals(Arrays.asList("10.0.0.0/18", "10.0.64.0/19", "10.0.96.0/22"),
+            acl.snapshot().getIps().toMinimalCidrs());
+    }
+}
@@ -0,0 +1,113 @@
+package com.nxest.grapes.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AddressBloomFilter Test
+ */
+class AddressBloomFilterTest {
+
+    @Test
+    void mightContain() {
+        AddressBloomFilter filter = new AddressBloomFilter(1000, 0.01);
+        assertTrue(filter.addIp("192.168.0.1"));
+        assertFalse(filter.addIpV4(3232235521L));
+        assertTrue(filter.addIp("ff06::c3"));
+        assertTrue(filter.addMac("60:a0:10:50:d0:30"));
+        assertTrue(filter.mightContainIpV4(3232235521L));
+        assertTrue(filter.mightContainIp("::ffff:192.168.0.1"));
+        assertTrue(filter.mightContainIpV6(0xff06000000000000L, 0xc3L));
+        assertTrue(filter.mightContainMac(106240584765488L));
+        assertTrue(filter.mightContainMac("60-A0-10-50-D0-30"));
+        // a MAC and an IPV4 of the same value are different keys
+        assertFalse(filter.mightContainMac(3232235521L));
+        assertFalse(filter.mightContainIp("a.b.c.d"));
+        assertFalse(filter.mightContainMac((CharSequence) null));
+        assertThrows(IllegalArgumentException.class, () -> filter.addIp("a.b.c.d"));
+        assertThrows(IllegalArgumentException.class, () -> filter.addIpV4(1L << 32));
+        assertThrows(IllegalArgumentException.class, () -> filter.addMac(-1L));
+        assertThrows(IllegalArgumentException.class, () -> new AddressBloomFilter(10, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> new AddressBloomFilter(-1, 0.1));
+    }
+
+    @Test
+    void falsePositiveRate() {
+        assertFalsePositiveRate(0.01);
+        assertFalsePositiveRate(0.001);
+    }
+
+    private static void assertFalsePositiveRate(double fpp) {
+        int count = 200_000;
+        AddressBloomFilter filter = new AddressBloomFilter(count, fpp);
+        Random random = new Random(21);
+        for (int i = 0; i < count; i++) {
+            filter.addIpV4(random.nextInt() & 0xFFFFFFFFL);
+        }
+        random = new Random(21);
+        for (int i = 0; i < count; i++) {
+            assertTrue(filter.mightContainIpV4(random.nextInt() & 0xFFFFFFFFL));
+        }
+        int hits = 0;
+        int probes = 1_000_000;
+        for (long mac = 0; mac < probes; mac++) {
+            hits += filter.mightContainMac(mac) ? 1 : 0;
+        }
+        assertTrue(hits < probes * fpp * 1.2, "false positives " + hits + " at " + fpp);
+    }
+
+    @Test
+    void concurrentAdds() throws Exception {
+        AddressBloomFilter filter = new AddressBloomFilter(400_000, 0.01);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] futures = IntStream.range(0, 4).mapToObj(t -> executor.submit(() -> {
+                for (long ip = t; ip < 400_000; ip += 4) {
+                    filter.addIpV4(ip);
+                }
+            })).toArray(Future[]::new);
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        for (long ip = 0; ip < 400_000; ip++) {
+            assertTrue(filter.mightContainIpV4(ip));
+        }
+    }
+
+    @Test
+    void readFrom() throws IOException {
+        AddressBloomFilter filter = new AddressBloomFilter(10_000, 0.001);
+        for (long mac = 0; mac < 10_000; mac++) {
+            filter.addMac(mac * 7);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.writeTo(new DataOutputStream(bytes));
+        assertEquals(filter.serializedSize(), bytes.size());
+        AddressBloomFilter read = AddressBloomFilter.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(filter.bitSize(), read.bitSize());
+        assertEquals(filter.hashCount(), read.hashCount());
+        for (long mac = 0; mac < 10_000; mac++) {
+            assertTrue(read.mightContainMac(mac * 7));
+        }
+
+        SerializationAssertions.assertRejectsCorrupt(bytes.toByteArray(), AddressBloomFilter::readFrom);
+        byte[] hashes = bytes.toByteArray();
+        hashes[15] = 0;
+        SerializationAssertions.assertRejects(hashes, AddressBloomFilter::readFrom);
+    }
+}
@@ -0,0 +1,98 @@
+package com.nxest.grapes.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.nxest.grapes.lang.IpMacUtils.INVALID_VALUE;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AddressCache Test
+ */
+class AddressCacheTest {
+
+    @Test
+    void conversions() {
+        AddressCache cache = new AddressCache(64);
+        assertEquals(3232235521L, cache.ipV4ToLong("192.168.0.1"));
+        assertEquals(3232235521L, cache.ipV4ToLong(new String("192.168.0.1")));
+        assertEquals(INVALID_VALUE, cache.ipV4ToLong("256.1.2.3"));
+        assertEquals(INVALID_VALUE, cache.ipV4ToLong("256.1.2.3"));
+        assertEquals(INVALID_VALUE, cache.ipV4ToLong(null));
+        assertEquals(new BigInteger("338984292706304756556241983349463187651"), cache.ipV6toBigInteger("ff06::c3"));
+        assertEquals(new BigInteger("338984292706304756556241983349463187651"), cache.ipV6toBigInteger("ff06::c3"));
+        assertEquals("192.168.0.1", cache.longToIpV4(3232235521L));
+        assertEquals("192.168.0.1", cache.longToIpV4(3232235521L));
+        assertThrows(IllegalArgumentException.class, () -> cache.longToIpV4(-1L));
+
+        assertEquals(4L, cache.hitCount());
+        assertEquals(5L, cache.missCount());
+        assertEquals(4.0 / 9, cache.hitRate(), 1e-9);
+        cache.clear();
+        assertEquals(0L, cache.hitCount());
+        assertEquals(0.0, cache.hitRate());
+        assertEquals("192.168.0.1", cache.longToIpV4(3232235521L));
+        assertEquals(1L, cache.missCount());
+    }
+
+    @Test
+    void capacity() {
+        assertEquals(8, new AddressCache(1).capacity());
+        assertEquals(16, new AddressCache(9).capacity());
+        assertEquals(4096, new AddressCache(4096).capacity());
+        assertEquals(8192, new AddressCache(4097).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new AddressCache(0));
+    }
+
+    @Test
+    void eviction() {
+        // one set of 8 ways, 7 hot addresses and a stream of addresses seen once
+        AddressCache cache = new AddressCache(8);
+        for (long ip = 0; ip < 7; ip++) {
+            cache.longToIpV4(ip);
+        }
+        for (long once = 1000; once < 2000; once++) {
+            for (long ip = 0; ip < 7; ip++) {
+                assertEquals(IpMacUtils.longToIpV4(ip), cache.longToIpV4(ip));
+            }
+            assertEquals(IpMacUtils.longToIpV4(once), cache.longToIpV4(once));
+        }
+        assertEquals(7L * 1000, cache.hitCount());
+        assertEquals(7L + 1000, cache.missCount());
+    }
+
+    @Test
+    void concurrent() throws Exception {
+        AddressCache cache = new AddressCache(128);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                long seed = t;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 100000; i++) {
+                        long ip = random.nextInt(512);
+                        String str = IpMacUtils.longToIpV4(ip);
+                        assertEquals(str, cache.longToIpV4(ip));
+                        assertEquals(ip, cache.ipV4ToLong(str));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(800000L, cache.hitCount() + cache.missCount());
+        assertTrue(cache.hitCount() > 0);
+    }
+}
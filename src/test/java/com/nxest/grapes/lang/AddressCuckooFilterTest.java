@@ -0,0 +1,152 @@
+package com.nxest.grapes.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AddressCuckooFilter Test
+ */
+class AddressCuckooFilterTest {
+
+    @Test
+    void addAndRemove() {
+        AddressCuckooFilter filter = new AddressCuckooFilter(1000, 0.001);
+        assertTrue(filter.isEmpty());
+        assertTrue(filter.addIp("192.168.0.1"));
+        assertTrue(filter.addIp("ff06::c3"));
+        assertTrue(filter.addMac("60:a0:10:50:d0:30"));
+        assertEquals(3L, filter.size());
+        assertTrue(filter.mightContainIp("::ffff:192.168.0.1"));
+        assertTrue(filter.mightContainIpV6(0xff06000000000000L, 0xc3L));
+        assertTrue(filter.mightContainMac(106240584765488L));
+        assertFalse(filter.mightContainMac(3232235521L));
+
+        // twice in, twice out
+        assertTrue(filter.addIpV4(3232235521L));
+        assertTrue(filter.removeIpV4(3232235521L));
+        assertTrue(filter.mightContainIpV4(3232235521L));
+        assertTrue(filter.removeIp("192.168.0.1"));
+        assertFalse(filter.mightContainIpV4(3232235521L));
+        assertTrue(filter.removeMac("60-A0-10-50-D0-30"));
+        assertFalse(filter.removeMac("60-A0-10-50-D0-30"));
+        assertFalse(filter.removeIp("a.b.c.d"));
+        assertEquals(1L, filter.size());
+        assertThrows(IllegalArgumentException.class, () -> filter.addMac("60:a0"));
+        assertThrows(IllegalArgumentException.class, () -> new AddressCuckooFilter(10, 0.0));
+    }
+
+    @Test
+    void fill() {
+        int count = 100_000;
+        AddressCuckooFilter filter = new AddressCuckooFilter(count, 0.001);
+        Random random = new Random(21);
+        for (int i = 0; i < count; i++) {
+            assertTrue(filter.addIpV6(random.nextLong(), random.nextLong()));
+        }
+        int hits = 0;
+        for (long ip = 0; ip < 100_000; ip++) {
+            hits += filter.mightContainIpV4(ip) ? 1 : 0;
+        }
+        assertTrue(hits < 200, "false positives " + hits);
+
+        // adds fail when full, and a failed add loses no key
+        long added = count;
+        while (filter.addMac(added)) {
+            added++;
+        }
+        assertEquals(added, filter.size());
+        assertTrue(filter.size() > filter.capacity() * 0.9, filter.toString());
+        random = new Random(21);
+        for (int i = 0; i < count; i++) {
+            assertTrue(filter.mightContainIpV6(random.nextLong(), random.nextLong()));
+        }
+        for (long mac = count; mac < added; mac++) {
+            assertTrue(filter.mightContainMac(mac));
+        }
+        random = new Random(21);
+        for (int i = 0; i < count; i++) {
+            assertTrue(filter.removeIpV6(random.nextLong(), random.nextLong()));
+        }
+        assertEquals(added - count, filter.size());
+    }
+
+    @Test
+    void bitsPerKey() {
+        int count = 1_000_000;
+        AddressCuckooFilter filter = new AddressCuckooFilter(count, 0.01);
+        assertEquals(10, filter.fingerprintBits());
+        // 10 bits per slot, no power-of-two rounding
+        assertTrue(filter.bitSize() < count * 10.6, filter.bitSize() + " bits");
+        for (long mac = 0; mac < count; mac++) {
+            assertTrue(filter.addMac(mac));
+        }
+        int hits = 0;
+        int probes = 1_000_000;
+        for (long ip = 0; ip < probes; ip++) {
+            hits += filter.mightContainIpV4(ip) ? 1 : 0;
+        }
+        assertTrue(hits < probes * 0.01, "false positives " + hits);
+        for (long mac = 0; mac < count; mac++) {
+            assertTrue(filter.mightContainMac(mac));
+        }
+    }
+
+    @Test
+    void concurrent() throws Exception {
+        AddressCuckooFilter filter = new AddressCuckooFilter(200_000, 0.01);
+        for (long ip = 0; ip < 100_000; ip++) {
+            filter.addIpV4(ip);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            // readers never miss a present key while writers move fingerprints
+            Future<?>[] futures = IntStream.range(0, 4).mapToObj(t -> executor.submit(() -> {
+                for (long ip = 100_000 + t; ip < 200_000; ip += 4) {
+                    assertTrue(filter.addIpV4(ip));
+                    assertTrue(filter.mightContainIpV4(ip - 100_000));
+                }
+            })).toArray(Future[]::new);
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(200_000L, filter.size());
+    }
+
+    @Test
+    void readFrom() throws IOException {
+        AddressCuckooFilter filter = new AddressCuckooFilter(10_000, 0.01);
+        for (long mac = 0; mac < 10_000; mac++) {
+            filter.addMac(mac * 7);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.writeTo(new DataOutputStream(bytes));
+        assertEquals(filter.serializedSize(), bytes.size());
+        AddressCuckooFilter read = AddressCuckooFilter.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(filter.size(), read.size());
+        assertEquals(filter.fingerprintBits(), read.fingerprintBits());
+        for (long mac = 0; mac < 10_000; mac++) {
+            assertTrue(read.removeMac(mac * 7));
+        }
+        assertTrue(read.isEmpty());
+
+        SerializationAssertions.assertRejectsCorrupt(bytes.toByteArray(), AddressCuckooFilter::readFrom);
+        byte[] size = bytes.toByteArray();
+        size[23]++;
+        SerializationAssertions.assertRejects(size, AddressCuckooFilter::readFrom);
+    }
+}
@@ -0,0 +1,116 @@
+package com.nxest.grapes.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AddressHeavyHitters Test
+ */
+class AddressHeavyHittersTest {
+
+    @Test
+    void topK() {
+        AddressHeavyHitters top = new AddressHeavyHitters(1024);
+        top.addIp("192.168.0.1", 10);
+        top.addIp("192.168.0.2", 5);
+        top.addIp("::ffff:10.0.0.1", 1);
+        top.addIp("2001:db8::1", 7);
+        top.addIpV6(0x20010db800000000L, 0xffffL, 2);
+        assertFalse(top.addIp("a.b.c.d", 1));
+        List<AddressHeavyHitters.Entry> entries = top.topK(5);
+        assertEquals(3, entries.size());
+        assertEquals("192.168.0.0/24", entries.get(0).toString());
+        assertEquals(15L, entries.get(0).getCount());
+        assertEquals(0L, entries.get(0).getError());
+        assertTrue(entries.get(0).isIpV4());
+        assertEquals(3232235520L, entries.get(0).getIpV4());
+        assertEquals("2001:db8::/64", entries.get(1).toString());
+        assertEquals(9L, entries.get(1).getCount());
+        assertEquals("10.0.0.0/24", entries.get(2).toString());
+        assertEquals(25L, top.total());
+        assertEquals(15L, top.estimateIpV4(3232235777L - 257));
+        assertEquals(0L, top.estimateIpV4(1L));
+        assertThrows(IllegalArgumentException.class, () -> top.addIpV4(1L, 0L));
+        assertThrows(IllegalArgumentException.class, () -> new AddressHeavyHitters(0));
+    }
+
+    @Test
+    void spaceSaving() {
+        // zipf-like prefixes, the guarantees against an exact count
+        int capacity = 64;
+        AddressHeavyHitters top = new AddressHeavyHitters(capacity, 32, 128);
+        Map<Long, Long> exact = new HashMap<>();
+        Random random = new Random(22);
+        long total = 200_000;
+        for (int i = 0; i < total; i++) {
+            long ip = (long) (1000 / (random.nextDouble() * 1000 + 1));
+            ip = ip > 20 ? random.nextInt(100_000) : ip;
+            top.addIpV4(ip);
+            exact.merge(ip, 1L, Long::sum);
+        }
+        assertEquals(total, top.total());
+        assertEquals(capacity, top.size());
+        for (AddressHeavyHitters.Entry entry : top.topK(capacity)) {
+            long count = exact.get(entry.getIpV4());
+            assertTrue(entry.getCount() >= count);
+            assertTrue(entry.getCount() - entry.getError() <= count);
+            assertTrue(entry.getError() <= total / capacity);
+        }
+        exact.forEach((ip, count) -> {
+            if (count > total / capacity) {
+                assertTrue(top.estimateIpV4(ip) >= count, String.valueOf(ip));
+            }
+        });
+        assertEquals(1L, top.topK(1).get(0).getIpV4());
+    }
+
+    @Test
+    void merge() throws IOException {
+        int capacity = 32;
+        AddressHeavyHitters left = new AddressHeavyHitters(capacity);
+        AddressHeavyHitters right = new AddressHeavyHitters(capacity);
+        Map<Long, Long> exact = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            long network = random.nextInt(10) == 0 ? random.nextInt(5) : 5 + random.nextInt(5000);
+            (i % 3 == 0 ? left : right).addIpV4(network << 8 | random.nextInt(256));
+            exact.merge(network, 1L, Long::sum);
+        }
+        left.merge(right);
+        assertEquals(100_000L, left.total());
+        for (AddressHeavyHitters.Entry entry : left.topK(capacity)) {
+            long count = exact.get(entry.getIpV4() >>> 8);
+            assertTrue(entry.getCount() >= count);
+            assertTrue(entry.getCount() - entry.getError() <= count);
+        }
+        for (long network = 0; network < 5; network++) {
+            assertTrue(left.estimateIpV4(network << 8) >= exact.get(network));
+        }
+        assertThrows(IllegalArgumentException.class, () -> left.merge(new AddressHeavyHitters(capacity, 16, 64)));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        left.writeTo(new DataOutputStream(bytes));
+        assertEquals(left.serializedSize(), bytes.size());
+        AddressHeavyHitters read = AddressHeavyHitters.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(left.toString(), read.toString());
+        byte[] corrupted = bytes.toByteArray();
+        corrupted[0] = 0;
+        assertThrows(IOException.class, () -> AddressHeavyHitters.readFrom(new DataInputStream(new ByteArrayInputStream(corrupted))));
+        byte[] duplicated = bytes.toByteArray();
+        System.arraycopy(duplicated, 26, duplicated, 58, 16);
+        assertThrows(IOException.class, () -> AddressHeavyHitters.readFrom(new DataInputStream(new ByteArrayInputStream(duplicated))));
+        read.clear();
+        assertTrue(read.isEmpty());
+    }
+}
@@ -0,0 +1,96 @@
+package com.nxest.grapes.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AddressHyperLogLog Test
+ */
+class AddressHyperLogLogTest {
+
+    @Test
+    void cardinality() {
+        AddressHyperLogLog counter = new AddressHyperLogLog();
+        assertTrue(counter.isEmpty());
+        assertEquals(0L, counter.cardinality());
+        assertTrue(counter.addIp("192.168.0.1"));
+        assertTrue(counter.addIp("::ffff:192.168.0.1"));
+        assertTrue(counter.addIp("ff06::c3"));
+        assertTrue(counter.addMac("60:a0:10:50:d0:30"));
+        assertFalse(counter.addIp("a.b.c.d"));
+        assertFalse(counter.addMac("60:a0"));
+        assertEquals(3L, counter.cardinality());
+
+        // small counts are near exact, large ones within a few standard errors of 0.8%
+        for (int precision : new int[]{10, 14}) {
+            AddressHyperLogLog hll = new AddressHyperLogLog(precision);
+            double error = 1.04 / Math.sqrt(1 << precision);
+            long added = 0;
+            for (long n : new long[]{100, 1_000, 10_000, 100_000, 1_000_000}) {
+                for (; added < n; added++) {
+                    hll.addIpV4(added * 2654435761L & 0xFFFFFFFFL);
+                }
+                long estimate = hll.cardinality();
+                assertEquals(n, estimate, Math.max(2, 4 * error * n), precision + " " + n);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> new AddressHyperLogLog(3));
+        assertThrows(IllegalArgumentException.class, () -> new AddressHyperLogLog(14, 33, 64));
+        assertThrows(IllegalArgumentException.class, () -> counter.addIpV4(-1L));
+    }
+
+    @Test
+    void prefix() {
+        AddressHyperLogLog networks = new AddressHyperLogLog(14, 24, 64);
+        for (long ip = 0; ip < 1 << 16; ip++) {
+            networks.addIpV4(3232235520L + ip);
+        }
+        assertEquals(256L, networks.cardinality(), 2);
+        networks.addIp("2001:db8::1");
+        networks.addIp("2001:db8::ffff");
+        networks.addIp("2001:db8:0:1::1");
+        assertEquals(258L, networks.cardinality(), 2);
+        assertEquals(24, networks.getIpV4PrefixLength());
+    }
+
+    @Test
+    void merge() throws IOException {
+        AddressHyperLogLog left = new AddressHyperLogLog(12);
+        AddressHyperLogLog right = new AddressHyperLogLog(12);
+        Random random = new Random(22);
+        for (int i = 0; i < 50_000; i++) {
+            long high = random.nextLong();
+            long low = random.nextLong();
+            left.addIpV6(high, low);
+            (i % 2 == 0 ? right : left).addIpV6(~high, low);
+        }
+        AddressHyperLogLog union = new AddressHyperLogLog(left);
+        union.merge(right);
+        assertEquals(100_000L, union.cardinality(), 100_000 * 4 * 1.04 / 64);
+        AddressHyperLogLog again = new AddressHyperLogLog(union);
+        again.merge(left);
+        assertEquals(union, again);
+        assertThrows(IllegalArgumentException.class, () -> union.merge(new AddressHyperLogLog(13)));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        union.writeTo(new DataOutputStream(bytes));
+        assertEquals(union.serializedSize(), bytes.size());
+        assertEquals(union, AddressHyperLogLog.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+        byte[] corrupted = bytes.toByteArray();
+        corrupted[8] = 30;
+        assertThrows(IOException.class, () -> AddressHyperLogLog.readFrom(new DataInputStream(new ByteArrayInputStream(corrupted))));
+        byte[] register = bytes.toByteArray();
+        register[20] = 60;
+        assertThrows(IOException.class, () -> AddressHyperLogLog.readFrom(new DataInputStream(new ByteArrayInputStream(register))));
+        union.clear();
+        assertTrue(union.isEmpty());
+    }
+}
@@ -0,0 +1,141 @@
+package com.nxest.grapes.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AddressScanner Test
+ */
+class AddressScannerTest {
+
+    private static final String LOG = "2018-11-20 12:30:45.123 src=192.168.0.1:8080 dst=[ff06::c3]:443 "
+        + "mac 60-a0-10-50-d0-30 range 10.0.0.1-10.0.0.9. std::vector v1.2.3.4 a_10.0.0.1 "
+        + "fe80::1%eth0, 60:A0:10:50:D0:31\n256.1.2.3 1.2.3.4.5 :: 201811201230 60a0.1050.d032";
+
+    private static final String EXPECTED = "ipv4 192.168.0.1 @28/11, ipv6 ff06::c3 @50/8, "
+        + "mac 60-a0-10-50-d0-30 @68/17, ipv4 10.0.0.1 @92/8, ipv4 10.0.0.9 @101/8, "
+        + "ipv6 fe80::1 @143/7, mac 60-a0-10-50-d0-31 @157/17, mac 60-a0-10-50-d0-32 @211/14";
+
+    private static final class Recorder implements AddressScanner.Handler {
+
+        private final List<String> found = new ArrayList<>();
+
+        @Override
+        public void onIpV4(long ip, long offset, int length) {
+            found.add("ipv4 " + IpMacUtils.longToIpV4(ip) + " @" + offset + "/" + length);
+        }
+
+        @Override
+        public void onIpV6(long high, long low, long offset, int length) {
+            found.add("ipv6 " + IpV6Address.of(high, low) + " @" + offset + "/" + length);
+        }
+
+        @Override
+        public void onMac(long mac, long offset, int length) {
+            found.add("mac " + IpMacUtils.longToMac(mac) + " @" + offset + "/" + length);
+        }
+
+        @Override
+        public String toString() {
+            return String.join(", ", found);
+        }
+    }
+
+    @Test
+    void scan() {
+        Recorder recorder = new Recorder();
+        AddressScanner scanner = new AddressScanner(recorder);
+        scanner.scan(LOG.getBytes(StandardCharsets.US_ASCII));
+        scanner.finish();
+        assertEquals(EXPECTED, recorder.toString());
+        assertEquals(LOG.length(), scanner.position());
+    }
+
+    @Test
+    void scanChunks() {
+        byte[] bytes = LOG.getBytes(StandardCharsets.US_ASCII);
+        for (int chunk = 1; chunk < 8; chunk++) {
+            Recorder recorder = new Recorder();
+            AddressScanner scanner = new AddressScanner(recorder);
+            for (int i = 0; i < bytes.length; i += chunk) {
+                scanner.scan(ByteBuffer.wrap(bytes, i, Math.min(chunk, bytes.length - i)));
+            }
+            scanner.finish();
+            assertEquals(EXPECTED, recorder.toString(), "chunk " + chunk);
+        }
+    }
+
+    @Test
+    void scanStreamAndFile() throws IOException {
+        byte[] bytes = LOG.getBytes(StandardCharsets.US_ASCII);
+        Recorder recorder = new Recorder();
+        AddressScanner scanner = new AddressScanner(recorder);
+        assertEquals(bytes.length, scanner.scan(new ByteArrayInputStream(bytes)));
+        assertEquals(EXPECTED, recorder.toString());
+
+        Path file = Files.createTempFile("grapes", ".log");
+        try {
+            Files.write(file, bytes);
+            recorder = new Recorder();
+            assertEquals(bytes.length, new AddressScanner(recorder).scan(file));
+            assertEquals(EXPECTED, recorder.toString());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void scanIpV4Mapped() {
+        Recorder recorder = new Recorder();
+        AddressScanner scanner = new AddressScanner(recorder);
+        scanner.scan("a ::ffff:10.0.0.1 b ::ffff:a00:1 c [::ffff:1.2.3.4]:80 d ::fffe:a00:1"
+            .getBytes(StandardCharsets.US_ASCII));
+        scanner.finish();
+        assertEquals("ipv4 10.0.0.1 @2/15, ipv4 10.0.0.1 @20/12, ipv4 1.2.3.4 @36/14, ipv6 ::fffe:a00:1 @57/12",
+            recorder.toString());
+    }
+
+    @Test
+    void scanEdges() {
+        Recorder recorder = new Recorder();
+        AddressScanner scanner = new AddressScanner(recorder);
+        // at the very end, no separator after it
+        scanner.scan("1.1.1.1".getBytes(StandardCharsets.US_ASCII));
+        scanner.finish();
+        assertEquals("ipv4 1.1.1.1 @0/7", recorder.toString());
+
+        // a run longer than any address, ends with something that looks like one
+        StringBuilder run = new StringBuilder();
+        for (int i = 0; i < AddressScanner.MAX_TOKEN; i++) {
+            run.append('1');
+        }
+        scanner.reset();
+        recorder.found.clear();
+        scanner.scan((run + ".1.1.1.1 2.2.2.2").getBytes(StandardCharsets.US_ASCII));
+        scanner.finish();
+        assertEquals("ipv4 2.2.2.2 @73/7", recorder.toString());
+
+        // a short token after a longer one, the parsers must not see the rest of the longer one
+        scanner.reset();
+        recorder.found.clear();
+        scanner.scan("60-a0-10-50-d0-30 1.2.3.4 ff06::c3".getBytes(StandardCharsets.US_ASCII));
+        scanner.finish();
+        assertEquals("mac 60-a0-10-50-d0-30 @0/17, ipv4 1.2.3.4 @18/7, ipv6 ff06::c3 @26/8", recorder.toString());
+        AsciiCharSequence view = new AsciiCharSequence("1.2.3.4 5".getBytes(StandardCharsets.US_ASCII), 0, 7);
+        assertEquals("1.2.3.4", view.toString());
+        assertThrows(IndexOutOfBoundsException.class, () -> view.charAt(7));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> scanner.scan(new byte[4], 2, 3));
+        assertThrows(NullPointerException.class, () -> new AddressScanner(null));
+    }
+}
@@ -0,0 +1,189 @@
+package com.nxest.grapes.lang;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * AddressSnapshot Test
+ */
+class AddressSnapshotTest {
+
+    private Path file;
+
+    @BeforeEach
+    void createFile() throws IOException {
+        file = Files.createTempFile("grapes", ".snapshot");
+    }
+
+    @AfterEach
+    void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void ipRangeSet() throws IOException {
+        IpRangeSet set = IpRangeSet.of("192.168.1.2-192.168.1.5", "10.0.0.1", "ff06::c3 - ff06::1:c3",
+            "172.16.0.0/12", "2001:db8::/32");
+        AddressSnapshot.write(file, set);
+        IpRangeSet read = AddressSnapshot.readIpRangeSet(file);
+        assertEquals(set, read);
+        assertTrue(read.contains("192.168.1.3"));
+        assertTrue(read.contains("ff06::ff"));
+        assertFalse(read.contains("10.0.0.2"));
+
+        IpRangeSet empty = IpRangeSet.builder().build();
+        AddressSnapshot.write(file, empty);
+        assertEquals(empty, AddressSnapshot.readIpRangeSet(file));
+    }
+
+    @Test
+    void macSet() throws IOException {
+        MacSet set = new MacSet();
+        Random random = new Random(7);
+        for (int i = 0; i < 1000; i++) {
+            set.add(random.nextLong() & 0xFFFFFFFFFFFFL);
+        }
+        set.add("60:a0:10:50:d0:30");
+        set.remove("60:a0:10:50:d0:30");
+        set.add("50-A0-10-50-D0-30");
+        AddressSnapshot.write(file, set);
+        MacSet read = AddressSnapshot.readMacSet(file);
+        assertEquals(set.size(), read.size());
+        for (long mac : set.toArray()) {
+            assertTrue(read.contains(mac));
+        }
+        assertFalse(read.contains("60:a0:10:50:d0:30"));
+        assertTrue(read.add("60:a0:10:50:d0:30"));
+        assertTrue(read.remove("50-A0-10-50-D0-30"));
+        assertEquals(set.size(), read.size());
+    }
+
+    @Test
+    void cidrTrie() throws IOException {
+        CidrTrie<String> trie = new CidrTrie<>();
+        trie.put("10.0.0.0/8", "intranet");
+        trie.put("10.1.0.0/16", "office");
+        trie.put("10.2.0.0/16", "office");
+        trie.put("192.168.0.0/24", "lab");
+        trie.put("2001:db8::/32", "documentation");
+        trie.put("2001:db8:1::/48", "lab");
+        trie.remove("192.168.0.0/24");
+        AddressSnapshot.write(file, trie, AddressSnapshot.STRING_CODEC);
+        CidrTrie<String> read = AddressSnapshot.readCidrTrie(file, AddressSnapshot.STRING_CODEC);
+        assertEquals(5, read.size());
+        assertEquals("office", read.longestMatch("10.1.2.3"));
+        assertEquals("intranet", read.longestMatch("10.3.2.3"));
+        assertEquals("lab", read.longestMatch("2001:db8:1::1"));
+        assertEquals("documentation", read.longestMatch("2001:db8::1"));
+        assertNull(read.longestMatch("192.168.0.1"));
+        // equal values are stored once
+        assertSame(read.longestMatch("10.1.2.3"), read.longestMatch("10.2.2.3"));
+
+        // the free list is kept
+        read.put("192.168.1.0/24", "lab");
+        read.put("172.16.0.0/12", "private");
+        assertEquals("lab", read.longestMatch("192.168.1.1"));
+        assertEquals("private", read.longestMatch("172.16.1.1"));
+        assertEquals("office", read.longestMatch("10.1.2.3"));
+    }
+
+    @Test
+    void cidrTrieIntegers() throws IOException {
+        CidrTrie<Integer> trie = new CidrTrie<>();
+        for (int i = 0; i < 1000; i++) {
+            trie.putIpV4((long) i << 8, 24, i % 10);
+        }
+        AddressSnapshot.write(file, trie, AddressSnapshot.INTEGER_CODEC);
+        CidrTrie<Integer> read = AddressSnapshot.readCidrTrie(file, AddressSnapshot.INTEGER_CODEC);
+        assertEquals(1000, read.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Integer.valueOf(i % 10), read.longestMatchIpV4(((long) i << 8) + 1));
+        }
+    }
+
+    @Test
+    void replace() throws IOException {
+        AddressSnapshot.write(file, IpRangeSet.of("10.0.0.1"));
+        AddressSnapshot.write(file, IpRangeSet.of("10.0.0.2"));
+        assertEquals(IpRangeSet.of("10.0.0.2"), AddressSnapshot.readIpRangeSet(file));
+        try (Stream<Path> files = Files.list(file.getParent())) {
+            assertEquals(0L, files.filter(f -> f.getFileName().toString().startsWith("snapshot")
+                && f.getFileName().toString().endsWith(".tmp")).count());
+        }
+    }
+
+    @Test
+    void keepPermissions() throws IOException {
+        assumeTrue(Files.getFileStore(file).supportsFileAttributeView(PosixFileAttributeView.class));
+        AddressSnapshot.write(file, IpRangeSet.of("10.0.0.1"));
+        Set<PosixFilePermission> shared = PosixFilePermissions.fromString("rw-r--r--");
+        Files.setPosixFilePermissions(file, shared);
+        AddressSnapshot.write(file, IpRangeSet.of("10.0.0.2"));
+        assertEquals(shared, Files.getPosixFilePermissions(file));
+        assertEquals(IpRangeSet.of("10.0.0.2"), AddressSnapshot.readIpRangeSet(file));
+    }
+
+    @Test
+    void corrupted() throws IOException {
+        AddressSnapshot.write(file, IpRangeSet.of("192.168.1.2-192.168.1.5", "ff06::c3"));
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(AddressSnapshot.HEADER_SIZE + 10);
+            int b = raf.read();
+            raf.seek(AddressSnapshot.HEADER_SIZE + 10);
+            raf.write(b ^ 1);
+        }
+        IOException e = assertThrows(IOException.class, () -> AddressSnapshot.readIpRangeSet(file));
+        assertTrue(e.getMessage().startsWith("Corrupted"));
+    }
+
+    @Test
+    void truncated() throws IOException {
+        AddressSnapshot.write(file, IpRangeSet.of("192.168.1.2-192.168.1.5", "ff06::c3"));
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(raf.length() - 8);
+        }
+        assertThrows(IOException.class, () -> AddressSnapshot.readIpRangeSet(file));
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(10);
+        }
+        assertThrows(IOException.class, () -> AddressSnapshot.readIpRangeSet(file));
+    }
+
+    @Test
+    void wrongType() throws IOException {
+        AddressSnapshot.write(file, MacSet.of("60:a0:10:50:d0:30"));
+        assertThrows(IOException.class, () -> AddressSnapshot.readIpRangeSet(file));
+        assertThrows(IOException.class, () -> AddressSnapshot.readCidrTrie(file, AddressSnapshot.STRING_CODEC));
+        assertEquals(1, AddressSnapshot.readMacSet(file).size());
+    }
+
+    @Test
+    void notSnapshot() throws IOException {
+        Files.write(file, "192.168.1.2-192.168.1.5\n10.0.0.1\n".getBytes());
+        IOException e = assertThrows(IOException.class, () -> AddressSnapshot.readIpRangeSet(file));
+        assertTrue(e.getMessage().startsWith("Not an address snapshot"));
+
+        AddressSnapshot.write(file, IpRangeSet.of("10.0.0.1"));
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(4);
+            raf.writeInt(AddressSnapshot.VERSION + 1);
+        }
+        e = assertThrows(IOException.class, () -> AddressSnapshot.readIpRangeSet(file));
+        assertTrue(e.getMessage().startsWith("Unsupported"));
+    }
+}
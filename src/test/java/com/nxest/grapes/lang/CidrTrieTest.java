@@ -0,0 +1,126 @@
+package com.nxest.grapes.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CidrTrie Test
+ */
+class CidrTrieTest {
+
+    @Test
+    void longestMatch() {
+        CidrTrie<String> trie = new CidrTrie<>();
+        assertNull(trie.put("10.0.0.0/8", "intranet"));
+        assertNull(trie.put("10.1.0.0/16", "office"));
+        assertNull(trie.put("10.1.2.3", "host"));
+        assertNull(trie.put("2001:db8::/32", "documentation"));
+        assertNull(trie.put("::/0", "default"));
+        assertEquals(5, trie.size());
+
+        assertEquals("host", trie.longestMatch("10.1.2.3"));
+        assertEquals("office", trie.longestMatch("10.1.2.4"));
+        assertEquals("intranet", trie.longestMatch("10.2.2.3"));
+        assertNull(trie.longestMatch("192.168.0.1"));
+        assertEquals("documentation", trie.longestMatch("2001:db8::1"));
+        assertEquals("default", trie.longestMatch("2001:db9::1"));
+        assertEquals("documentation", trie.longestMatch(IpV6Address.valueOf("2001:db8:ffff::")));
+        assertNull(trie.longestMatch("a.b.c.d"));
+        assertNull(trie.longestMatch(""));
+
+        assertEquals(Arrays.asList("intranet", "office", "host"), trie.allMatches("10.1.2.3"));
+        assertEquals(Arrays.asList("default", "documentation"), trie.allMatches("2001:db8::1"));
+    }
+
+    @Test
+    void putRemove() {
+        CidrTrie<String> trie = new CidrTrie<>();
+        trie.put("10.0.0.0/8", "a");
+        assertEquals("a", trie.put("10.255.0.0/8", "b"));
+        assertEquals("b", trie.get("10.0.0.0/8"));
+        assertNull(trie.get("10.0.0.0/9"));
+        trie.put("10.0.0.0/9", "c");
+        trie.put("10.128.0.0/9", "d");
+        assertEquals("b", trie.remove("10.0.0.0/8"));
+        assertNull(trie.remove("10.0.0.0/8"));
+        assertEquals(2, trie.size());
+        assertNull(trie.longestMatch("11.0.0.0"));
+        assertEquals("d", trie.longestMatch("10.200.0.0"));
+        assertEquals("c", trie.remove("10.0.0.0/9"));
+        assertEquals("d", trie.remove("10.128.0.0/9"));
+        assertTrue(trie.isEmpty());
+        assertNull(trie.longestMatch("10.200.0.0"));
+        assertThrows(IllegalArgumentException.class, () -> trie.put("10.0.0.0/33", "x"));
+        assertThrows(IllegalArgumentException.class, () -> trie.put("ff06::/129", "x"));
+        assertThrows(NullPointerException.class, () -> trie.put("10.0.0.0/8", null));
+    }
+
+    @Test
+    void blanksAndRange() {
+        CidrTrie<String> trie = new CidrTrie<>();
+        trie.put("0.0.0.0/0", "default");
+        trie.put(" 10.0.0.0/8 ", "v4");
+        trie.put(" 2001:db8::/32\t", "v6");
+        assertEquals("v4", trie.get("10.0.0.0/8"));
+        assertEquals("v6", trie.get("2001:db8::/32 "));
+        assertEquals("v6", trie.longestMatch("2001:db8::1"));
+        assertThrows(IllegalArgumentException.class, () -> trie.put("2001:db8:: /32", "x"));
+        assertThrows(IllegalArgumentException.class, () -> trie.put("2001:db8::/ 32", "x"));
+        assertThrows(IllegalArgumentException.class, () -> trie.put(" ", "x"));
+        assertEquals("v6", trie.remove(" 2001:db8::/32 "));
+        assertNull(trie.longestMatch("2001:db8::1"));
+
+        assertEquals("default", trie.longestMatchIpV4(0xFFFFFFFFL));
+        assertNull(trie.longestMatchIpV4(IpMacUtils.INVALID_VALUE));
+        assertNull(trie.longestMatchIpV4(0x100000000L));
+    }
+
+    @Test
+    void sameAsLinearScan() {
+        Random random = new Random(7);
+        CidrTrie<Integer> trie = new CidrTrie<>();
+        List<long[]> cidrs = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            int length = random.nextInt(33);
+            long ip = (random.nextInt() & 0xFFFFFFFFL) & (0xFFFFFFFFL << (32 - length)) & 0xFFFFFFFFL;
+            trie.putIpV4(ip, length, i);
+            cidrs.removeIf(c -> c[0] == ip && c[1] == length);
+            cidrs.add(new long[]{ip, length, i});
+        }
+        for (int i = 0; i < 1000; i++) {
+            long[] removed = cidrs.remove(random.nextInt(cidrs.size()));
+            assertEquals(Integer.valueOf((int) removed[2]), trie.removeIpV4(removed[0], (int) removed[1]));
+        }
+        assertEquals(cidrs.size(), trie.size());
+        for (int i = 0; i < 20000; i++) {
+            long ip = random.nextInt() & 0xFFFFFFFFL;
+            Integer expected = null;
+            long best = -1;
+            for (long[] c : cidrs) {
+                long mask = (0xFFFFFFFFL << (32 - c[1])) & 0xFFFFFFFFL;
+                if ((ip & mask) == c[0] && c[1] > best) {
+                    best = c[1];
+                    expected = (int) c[2];
+                }
+            }
+            assertEquals(expected, trie.longestMatchIpV4(ip));
+            assertNull(trie.longestMatchIpV6(ip << 32, 0L));
+        }
+    }
+
+    @Test
+    void isLegalIpV4Prefix() {
+        assertTrue(IpMacUtils.isLegalIpV4Prefix("192.168.0.0/16"));
+        assertTrue(IpMacUtils.isLegalIpV4Prefix("0.0.0.0/0"));
+        assertFalse(IpMacUtils.isLegalIpV4Prefix("192.168.0.0/33"));
+        assertFalse(IpMacUtils.isLegalIpV4Prefix("192.168.0.0"));
+        assertFalse(IpMacUtils.isLegalIpV4Prefix("192.168.0.0/"));
+        assertFalse(IpMacUtils.isLegalIpV4Prefix("ff06::/16"));
+    }
+}
@@ -0,0 +1,132 @@
+package com.nxest.grapes.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IpBatchUtils Test
+ */
+class IpBatchUtilsTest {
+
+    private static final String[] IPS = {"192.168.0.1", "a.b.c.d", null, "255.255.255.255", " 10.0.0.1 ", "0.0.0.0"};
+
+    @Test
+    void ipV4ToInt() {
+        int[] values = new int[IPS.length];
+        long[] validity = IpBatchUtils.newValidity(IPS.length);
+        assertEquals(4, IpBatchUtils.ipV4ToInt(IPS, values, validity));
+        assertArrayEquals(new int[]{(int) 3232235521L, 0, 0, -1, 167772161, 0}, values);
+        assertArrayEquals(new long[]{0b111001L}, validity);
+        assertTrue(IpBatchUtils.isValid(validity, 0));
+        assertFalse(IpBatchUtils.isValid(validity, 1));
+        assertTrue(IpBatchUtils.isValid(null, 1));
+
+        long[] longs = new long[IPS.length + 64];
+        long[] wide = IpBatchUtils.newValidity(longs.length);
+        wide[1] = -1L;
+        assertEquals(4, IpBatchUtils.ipV4ToLong(IPS, 0, longs, 62, wide, IPS.length));
+        assertEquals(3232235521L, longs[62]);
+        assertEquals(IpMacUtils.INVALID_VALUE, longs[63]);
+        assertTrue(IpBatchUtils.isValid(wide, 62));
+        assertFalse(IpBatchUtils.isValid(wide, 63));
+        assertFalse(IpBatchUtils.isValid(wide, 64));
+        assertTrue(IpBatchUtils.isValid(wide, 65));
+        assertThrows(IndexOutOfBoundsException.class, () -> IpBatchUtils.ipV4ToInt(IPS, 1, new int[IPS.length], 0, validity, IPS.length));
+    }
+
+    @Test
+    void ipV4ToIntBytes() {
+        StringBuilder column = new StringBuilder();
+        int[] offsets = new int[IPS.length + 1];
+        for (int i = 0; i < IPS.length; i++) {
+            column.append(IPS[i] == null ? "" : IPS[i]);
+            offsets[i + 1] = column.length();
+        }
+        int[] expected = new int[IPS.length];
+        long[] expectedValidity = IpBatchUtils.newValidity(IPS.length);
+        IpBatchUtils.ipV4ToInt(IPS, expected, expectedValidity);
+
+        int[] values = new int[IPS.length];
+        long[] validity = IpBatchUtils.newValidity(IPS.length);
+        assertEquals(4, IpBatchUtils.ipV4ToInt(column.toString().getBytes(StandardCharsets.US_ASCII), offsets, values, validity));
+        assertArrayEquals(expected, values);
+        assertArrayEquals(expectedValidity, validity);
+    }
+
+    @Test
+    void ipV6AndMac() {
+        String[] ips = {"ff06::c3", "192.168.0.1", "::1"};
+        long[] highs = new long[3];
+        long[] lows = new long[3];
+        long[] validity = IpBatchUtils.newValidity(3);
+        assertEquals(2, IpBatchUtils.ipV6ToLongs(ips, highs, lows, validity));
+        assertArrayEquals(new long[]{0xff06000000000000L, 0L, 0L}, highs);
+        assertArrayEquals(new long[]{0xc3L, 0L, 1L}, lows);
+        assertArrayEquals(new long[]{0b101L}, validity);
+
+        String[] macs = {"60:a0:10:50:d0:30", "GG:a0:10:50:d0:30"};
+        long[] values = new long[2];
+        // bits after macs.length are kept
+        assertEquals(1, IpBatchUtils.macToLong(macs, values, validity));
+        assertArrayEquals(new long[]{106240584765488L, IpMacUtils.INVALID_VALUE}, values);
+        assertArrayEquals(new long[]{0b101L}, validity);
+    }
+
+    @Test
+    void intToIpV4() {
+        int[] values = {(int) 3232235521L, 0, -1, 167772161};
+        long[] validity = {0b1101L};
+        assertArrayEquals(new String[]{"192.168.0.1", null, "255.255.255.255", "10.0.0.1"}, IpBatchUtils.intToIpV4(values, validity));
+
+        char[] chars = new char[15 * values.length];
+        int[] offsets = new int[values.length + 1];
+        int written = IpBatchUtils.intToIpV4(values, 0, values.length, chars, offsets);
+        assertEquals("192.168.0.10.0.0.0255.255.255.25510.0.0.1", new String(chars, 0, written));
+        assertArrayEquals(new int[]{0, 11, 18, 33, 41}, offsets);
+    }
+
+    @Test
+    void longsToIpV6AndMac() {
+        long[] highs = {0xff06000000000000L, 0L, 0L};
+        long[] lows = {0xc3L, 0L, 1L};
+        long[] validity = {0b101L};
+        assertArrayEquals(new String[]{"ff06::c3", null, "::1"}, IpBatchUtils.longsToIpV6(highs, lows, validity));
+
+        char[] chars = new char[39 * highs.length];
+        int[] offsets = new int[highs.length + 1];
+        int written = IpBatchUtils.longsToIpV6(highs, lows, 0, highs.length, chars, offsets);
+        assertEquals("ff06::c3::::1", new String(chars, 0, written));
+        assertArrayEquals(new int[]{0, 8, 10, 13}, offsets);
+        assertThrows(IndexOutOfBoundsException.class, () -> IpBatchUtils.longsToIpV6(highs, new long[2], validity));
+
+        long[] macs = {106240584765488L, IpMacUtils.INVALID_VALUE, 0L};
+        assertArrayEquals(new String[]{"60-a0-10-50-d0-30", null, "00-00-00-00-00-00"}, IpBatchUtils.longToMac(macs, validity));
+
+        char[] macChars = new char[17 * 2];
+        assertEquals(34, IpBatchUtils.longToMac(new long[]{0L, 106240584765488L}, 0, 2, macChars));
+        assertEquals("00-00-00-00-00-0060-a0-10-50-d0-30", new String(macChars));
+        assertThrows(IndexOutOfBoundsException.class, () -> IpBatchUtils.longToMac(macs, 0, 3, macChars));
+    }
+
+    @Test
+    void purposeOfIp() {
+        int[] values = new int[IPS.length];
+        long[] validity = IpBatchUtils.newValidity(IPS.length);
+        IpBatchUtils.ipV4ToInt(IPS, values, validity);
+        IpPurposeEnum[] purposes = new IpPurposeEnum[IPS.length];
+        IpBatchUtils.purposeOfIpV4(values, validity, purposes);
+        assertArrayEquals(new IpPurposeEnum[]{IpPurposeEnum.PRIVATE, null, null, IpPurposeEnum.BROADCAST,
+            IpPurposeEnum.PRIVATE, IpPurposeEnum.UNSPECIFIED}, purposes);
+
+        long[] highs = {0L, 0x20010db800000000L, 0xfe80000000000000L};
+        long[] lows = {1L, 1L, 1L};
+        IpPurposeEnum[] v6 = new IpPurposeEnum[3];
+        IpBatchUtils.purposeOfIpV6(highs, lows, null, v6);
+        assertArrayEquals(new IpPurposeEnum[]{IpPurposeEnum.LOOPBACK, IpPurposeEnum.DOCUMENTATION,
+            IpPurposeEnum.LINK_LOCAL}, v6);
+        assertThrows(IndexOutOfBoundsException.class, () -> IpBatchUtils.purposeOfIpV6(highs, lows, null, new IpPurposeEnum[2]));
+    }
+}
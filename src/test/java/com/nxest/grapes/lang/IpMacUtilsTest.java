@@ -3,6 +3,11 @@ package com.nxest.grapes.lang;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
 
 import static com.nxest.grapes.lang.IpMacUtils.INVALID_VALUE;
 import static org.junit.jupiter.api.Assertions.*;
@@ -26,12 +31,73 @@ class IpMacUtilsTest {
     void ipV4ToLong() {
         assertEquals(IP_TEST_LONG, IpMacUtils.ipV4ToLong(IP_TEST_STR));
         assertEquals(INVALID_VALUE, IpMacUtils.ipV4ToLong("256.168.0.1"));
+        assertEquals(IP_TEST_LONG, IpMacUtils.ipV4ToLong(" 192.168.0.1\t"));
+        assertEquals(4294967295L, IpMacUtils.ipV4ToLong("255.255.255.255"));
+        assertEquals(INVALID_VALUE, IpMacUtils.ipV4ToLong((String) null));
+        assertEquals(INVALID_VALUE, IpMacUtils.ipV4ToLong("192.168.00.1"));
+        assertEquals(INVALID_VALUE, IpMacUtils.ipV4ToLong("192.168..1"));
+        assertEquals(INVALID_VALUE, IpMacUtils.ipV4ToLong("192.168.0.1.1"));
+        assertEquals(INVALID_VALUE, IpMacUtils.ipV4ToLong("1921.168.0.1"));
+    }
+
+    @Test
+    void ipV4ToLongCharSequence() {
+        assertEquals(IP_TEST_LONG, IpMacUtils.ipV4ToLong(new StringBuilder(IP_TEST_STR)));
+        assertEquals(IP_TEST_LONG, IpMacUtils.ipV4ToLong("src=192.168.0.1 dst=", 4, 11));
+        assertEquals(INVALID_VALUE, IpMacUtils.ipV4ToLong("src=192.168.0.1 dst=", 4, 10));
+        assertTrue(IpMacUtils.isLegalIpV4("src=192.168.0.1 dst=", 4, 11));
+        assertFalse(IpMacUtils.isLegalIpV4("src=192.168.0.1 dst=", 0, 11));
+        assertThrows(IndexOutOfBoundsException.class, () -> IpMacUtils.ipV4ToLong(IP_TEST_STR, 5, 10));
     }
 
     @Test
     void longToIpV4() {
         assertEquals(IP_TEST_STR, IpMacUtils.longToIpV4(IP_TEST_LONG));
         assertEquals("0.0.0.0", IpMacUtils.longToIpV4(0L));
+        assertEquals("255.255.255.255", IpMacUtils.longToIpV4(4294967295L));
+        assertThrows(IllegalArgumentException.class, () -> IpMacUtils.longToIpV4(-1L));
+    }
+
+    /**
+     * no run of written zero groups as long as the compressed one, or of two when none is compressed
+     */
+    private static boolean isCanonicalZeros(String ip) {
+        String[] groups = ip.replace("::", ":x:").split(":");
+        int compressAt = Arrays.asList(groups).indexOf("x");
+        int written = 0;
+        for (String group : groups) {
+            if (!group.isEmpty() && !"x".equals(group)) {
+                written++;
+            }
+        }
+        int compressed = 8 - written;
+        int run = 0;
+        for (int i = 0; i < groups.length; i++) {
+            run = "0".equals(groups[i]) ? run + 1 : 0;
+            if (compressAt < 0 ? run >= 2 : run > compressed || run == compressed && i < compressAt) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    void longToIpV4Into() {
+        char[] chars = new char[20];
+        assertEquals(11, IpMacUtils.longToIpV4(IP_TEST_LONG, chars, 2));
+        assertEquals(IP_TEST_STR, new String(chars, 2, 11));
+
+        StringBuilder sb = new StringBuilder("ip=");
+        assertEquals(11, IpMacUtils.longToIpV4(IP_TEST_LONG, sb));
+        assertEquals("ip=" + IP_TEST_STR, sb.toString());
+
+        ByteBuffer buffer = ByteBuffer.allocate(12);
+        assertEquals(11, IpMacUtils.longToIpV4(IP_TEST_LONG, buffer));
+        assertEquals(11, buffer.position());
+        assertEquals(IP_TEST_STR, new String(buffer.array(), 0, 11, StandardCharsets.US_ASCII));
+        assertThrows(BufferOverflowException.class, () -> IpMacUtils.longToIpV4(IP_TEST_LONG, buffer));
+        assertEquals(11, buffer.position());
+        assertThrows(IndexOutOfBoundsException.class, () -> IpMacUtils.longToIpV4(IP_TEST_LONG, chars, 12));
     }
 
     @Test
@@ -43,6 +109,29 @@ class IpMacUtilsTest {
         assertFalse(IpMacUtils.isLegalIpV4("192.0."));
         assertFalse(IpMacUtils.isLegalIpV4("256.1.2.3"));
         assertFalse(IpMacUtils.isLegalIpV4("fe80::6942:2fda:2942:24d2%10"));
+        assertTrue(IpMacUtils.isLegalIpV4(" 1.2.3.4"));
+        assertTrue(IpMacUtils.isLegalIpV4("1.2.3.4 "));
+        assertFalse(IpMacUtils.isLegalIpV4("1.2 .3.4"));
+    }
+
+    @Test
+    void isLegalIpV4Prefix() {
+        assertTrue(IpMacUtils.isLegalIpV4Prefix("10.0.0.0/8"));
+        assertTrue(IpMacUtils.isLegalIpV4Prefix("0.0.0.0/0"));
+        assertTrue(IpMacUtils.isLegalIpV4Prefix("10.0.0.1/32"));
+        // blanks around the whole are skipped, as isLegalIpV4
+        assertTrue(IpMacUtils.isLegalIpV4Prefix(" 10.0.0.0/8"));
+        assertTrue(IpMacUtils.isLegalIpV4Prefix("10.0.0.0/8 "));
+        assertTrue(IpMacUtils.isLegalIpV4Prefix("\t10.0.0.0/8\r\n"));
+        // blanks next to the '/' are not
+        assertFalse(IpMacUtils.isLegalIpV4Prefix("10.0.0.0 /8"));
+        assertFalse(IpMacUtils.isLegalIpV4Prefix("10.0.0.0/ 8"));
+        assertFalse(IpMacUtils.isLegalIpV4Prefix(" /8"));
+        assertFalse(IpMacUtils.isLegalIpV4Prefix("10.0.0.0/33"));
+        assertFalse(IpMacUtils.isLegalIpV4Prefix("10.0.0.0/08"));
+        assertFalse(IpMacUtils.isLegalIpV4Prefix("10.0.0.0/"));
+        assertFalse(IpMacUtils.isLegalIpV4Prefix("10.0.0.0"));
+        assertFalse(IpMacUtils.isLegalIpV4Prefix(" "));
     }
 
     @Test
@@ -88,11 +177,56 @@ class IpMacUtilsTest {
         assertEquals(IPV6_TEST_NUM, IpMacUtils.ipV6toBigInteger(IPV6_TEST_STR));
         assertEquals(IPV6_TEST_NUM, IpMacUtils.ipV6toBigInteger(IPV6_TEST_STR_SHORT));
         assertEquals(BigInteger.valueOf(INVALID_VALUE), IpMacUtils.ipV6toBigInteger(""));
+        assertEquals(BigInteger.ZERO, IpMacUtils.ipV6toBigInteger("::"));
+        assertEquals(BigInteger.ONE, IpMacUtils.ipV6toBigInteger("::1"));
+        assertEquals(BigInteger.ONE.shiftLeft(112), IpMacUtils.ipV6toBigInteger("1::"));
+        assertEquals(BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE),
+            IpMacUtils.ipV6toBigInteger("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"));
+        assertEquals(new BigInteger("20010db8000000000000000000000001", 16), IpMacUtils.ipV6toBigInteger("2001:db8::0.0.0.1"));
+        assertEquals(new BigInteger("00010002000300040005000600070000", 16), IpMacUtils.ipV6toBigInteger("1:2:3:4:5:6:7::"));
+        assertEquals(new BigInteger("00000002000300040005000600070008", 16), IpMacUtils.ipV6toBigInteger("::2:3:4:5:6:7:8"));
+        assertEquals(IPV6_TEST_NUM, IpMacUtils.ipV6toBigInteger("[ff06::c3]"));
+        assertEquals(IPV6_TEST_NUM, IpMacUtils.ipV6toBigInteger("ff06::c3%eth0"));
     }
 
     @Test
     void bigIntegerToIpV6() {
         assertEquals(IPV6_TEST_STR_SHORT, IpMacUtils.bigIntegerToIpV6(IPV6_TEST_NUM));
+        assertEquals("::", IpMacUtils.bigIntegerToIpV6(BigInteger.ZERO));
+        assertEquals("::1", IpMacUtils.bigIntegerToIpV6(BigInteger.ONE));
+        assertEquals("1::", IpMacUtils.bigIntegerToIpV6(BigInteger.ONE.shiftLeft(112)));
+        assertEquals("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff",
+            IpMacUtils.bigIntegerToIpV6(BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE)));
+    }
+
+    @Test
+    void longsToIpV6() {
+        // RFC 5952: the longest run, the first one on a tie, never a single zero group
+        assertEquals("2001:0:0:1::1", IpMacUtils.longsToIpV6(0x2001000000000001L, 0x0000000000000001L));
+        assertEquals("2001:db8::1:0:0:1", IpMacUtils.longsToIpV6(0x20010db800000000L, 0x0001000000000001L));
+        assertEquals("2001:db8:0:1:1:1:1:1", IpMacUtils.longsToIpV6(0x20010db800000001L, 0x0001000100010001L));
+        assertEquals("2001:db8::abcd:12", IpMacUtils.longsToIpV6(0x20010db800000000L, 0x000000000abcd0012L));
+        assertEquals("::ffff:c0a8:1", IpMacUtils.longsToIpV6(0L, 0x0000ffffc0a80001L));
+
+        Random random = new Random(5952L);
+        for (int i = 0; i < 10000; i++) {
+            // sparse groups give many zero runs
+            long high = random.nextLong() & random.nextLong() & random.nextLong() & 0xFFFF0000FFFF00FFL;
+            long low = random.nextLong() & random.nextLong() & 0x00FF0000FFFFFFFFL;
+            String ip = IpMacUtils.longsToIpV6(high, low);
+            assertEquals(IpV6Address.of(high, low), IpV6Address.valueOf(ip), ip);
+            assertTrue(isCanonicalZeros(ip), ip);
+        }
+
+        char[] chars = new char[39];
+        assertEquals(8, IpMacUtils.longsToIpV6(0xff06000000000000L, 0xc3L, chars, 0));
+        assertEquals(IPV6_TEST_STR_SHORT, new String(chars, 0, 8));
+        StringBuilder sb = new StringBuilder();
+        assertEquals(8, IpMacUtils.longsToIpV6(0xff06000000000000L, 0xc3L, sb));
+        assertEquals(IPV6_TEST_STR_SHORT, sb.toString());
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        assertEquals(8, IpMacUtils.longsToIpV6(0xff06000000000000L, 0xc3L, buffer));
+        assertEquals(IPV6_TEST_STR_SHORT, new String(buffer.array(), StandardCharsets.US_ASCII));
     }
 
     @Test
@@ -109,6 +243,42 @@ class IpMacUtilsTest {
         assertFalse(IpMacUtils.isLegalIpV6(""));
         assertFalse(IpMacUtils.isLegalIpV6("2001:0:3238:DFE1:63:::FEFB"));
         assertFalse(IpMacUtils.isLegalIpV6("GFEA:0:3238:DFE1:63::FEFB"));
+        assertFalse(IpMacUtils.isLegalIpV6("::ffff:c001:380a"));
+        assertFalse(IpMacUtils.isLegalIpV6("192.168.0.1"));
+        assertFalse(IpMacUtils.isLegalIpV6("localhost"));
+        assertFalse(IpMacUtils.isLegalIpV6(":1::2"));
+        assertFalse(IpMacUtils.isLegalIpV6("1:2:3:4:5:6:7:8:9"));
+        assertFalse(IpMacUtils.isLegalIpV6("1:2:3:4:5:6:7:8::"));
+        assertFalse(IpMacUtils.isLegalIpV6("1:2:3:4:5:6:7:"));
+        assertFalse(IpMacUtils.isLegalIpV6("12345::"));
+        assertFalse(IpMacUtils.isLegalIpV6(" ::1"));
+        assertFalse(IpMacUtils.isLegalIpV6("::1.2.3.4 "));
+        assertFalse(IpMacUtils.isLegalIpV6("1:2:3:4:5:6:7:1.2.3.4"));
+        assertFalse(IpMacUtils.isLegalIpV6("ff06::c3%"));
+        assertTrue(IpMacUtils.isLegalIpV6("fe80::6942:2fda:2942:24d2%10"));
+        assertTrue(IpMacUtils.isLegalIpV6("src=[::1]", 4, 5));
+    }
+
+    @Test
+    void isLegalIPV6Compatible() {
+        assertTrue(IpMacUtils.isLegalIPV6Compatible("::192.1.56.10"));
+        assertTrue(IpMacUtils.isLegalIPV6Compatible("1:2:3:4:5:6:192.1.56.10"));
+        assertFalse(IpMacUtils.isLegalIPV6Compatible("::c001:380a"));
+        assertFalse(IpMacUtils.isLegalIPV6Compatible("::192.1.56"));
+    }
+
+    @Test
+    void isLegalIPV6Prefix() {
+        assertTrue(IpMacUtils.isLegalIPV6Prefix("2001:db8::/32"));
+        assertTrue(IpMacUtils.isLegalIPV6Prefix("::/0"));
+        assertTrue(IpMacUtils.isLegalIPV6Prefix("ff06::c3/128"));
+        assertFalse(IpMacUtils.isLegalIPV6Prefix("ff06::c3/129"));
+        assertFalse(IpMacUtils.isLegalIPV6Prefix("ff06::c3/064"));
+        assertFalse(IpMacUtils.isLegalIPV6Prefix("ff06::c3/"));
+        assertFalse(IpMacUtils.isLegalIPV6Prefix("ff06::c3"));
+        assertFalse(IpMacUtils.isLegalIPV6Prefix("/64"));
+        assertTrue(IpMacUtils.isLegalIpV6All("ff06::c3/64"));
+        assertFalse(IpMacUtils.isLegalIpV6All("192.168.0.1/24"));
     }
 
     @Test
@@ -123,11 +293,74 @@ class IpMacUtilsTest {
         assertEquals(MAC_TEST_NUM, IpMacUtils.macToLong(MAC_TEST_STR));
         assertEquals(IpMacUtils.macToLong(MAC_TEST_STR), IpMacUtils.macToLong(MAC_TEST_STR.toUpperCase()));
         assertEquals(MAC_TEST_NUM, IpMacUtils.macToLong(MAC_TEST_STR.replace(':', '-')));
+        assertEquals(MAC_TEST_NUM, IpMacUtils.macToLong("60a0.1050.D030"));
+        assertEquals(MAC_TEST_NUM, IpMacUtils.macToLong(" 60a01050d030 "));
+        // a group of one digit is one byte
+        assertEquals(0x010203040506L, IpMacUtils.macToLong("1:2:3:4:5:6"));
+        assertEquals(INVALID_VALUE, IpMacUtils.macToLong(null));
+        assertEquals(INVALID_VALUE, IpMacUtils.macToLong("60a0.1050.d03"));
+        assertEquals(INVALID_VALUE, IpMacUtils.macToLong("60a0.1050-d030"));
+        assertEquals(INVALID_VALUE, IpMacUtils.macToLong("60a0.1050.d030.0000"));
+        assertEquals(INVALID_VALUE, IpMacUtils.macToLong("60a01050d03"));
+        assertEquals(INVALID_VALUE, IpMacUtils.macToLong("60a01050d0300"));
+        assertEquals(INVALID_VALUE, IpMacUtils.macToLong("60:a0:10:50:d0:30:00"));
+        assertEquals(INVALID_VALUE, IpMacUtils.macToLong("60:a0:10:50:d0:"));
+        assertEquals(INVALID_VALUE, IpMacUtils.macToLong("60a.01050.d030"));
+    }
+
+    @Test
+    void eui64ToLong() {
+        assertEquals(0x60a010fffe50d030L, IpMacUtils.eui64ToLong("60-a0-10-ff-fe-50-d0-30"));
+        assertEquals(0x60a010fffe50d030L, IpMacUtils.eui64ToLong("60a0.10ff.fe50.d030"));
+        assertEquals(0x60a010fffe50d030L, IpMacUtils.eui64ToLong("60A010FFFE50D030"));
+        assertEquals(INVALID_VALUE, IpMacUtils.eui64ToLong(MAC_TEST_STR));
+        assertTrue(IpMacUtils.isLegalEui64("ff:ff:ff:ff:ff:ff:ff:ff"));
+        assertTrue(IpMacUtils.isLegalEui64("60a0.10ff.fe50.d030"));
+        assertFalse(IpMacUtils.isLegalEui64(MAC_TEST_STR));
+        assertFalse(IpMacUtils.isLegalEui64(null));
+
+        long[] out = {0L};
+        assertTrue(IpMacUtils.parseEui64("ff:ff:ff:ff:ff:ff:ff:ff", out));
+        assertEquals(-1L, out[0]);
+        assertEquals(INVALID_VALUE, IpMacUtils.eui64ToLong("ff:ff:ff:ff:ff:ff:ff:ff"));
+        assertTrue(IpMacUtils.parseEui64(new StringBuilder(" 60a0.10ff.fe50.d030 "), out));
+        assertEquals(0x60a010fffe50d030L, out[0]);
+        assertFalse(IpMacUtils.parseEui64("ff:ff:ff:ff:ff:ff:ff", out));
+        assertFalse(IpMacUtils.parseEui64(null, out));
+        assertEquals(0x60a010fffe50d030L, out[0]);
+
+        StringBuilder sb = new StringBuilder();
+        assertEquals(23, IpMacUtils.longToEui64(0x60a010fffe50d030L, MacFormat.COLON, sb));
+        assertEquals("60:a0:10:ff:fe:50:d0:30", sb.toString());
+        sb.setLength(0);
+        assertEquals(19, IpMacUtils.longToEui64(0x60a010fffe50d030L, MacFormat.DOT, sb));
+        assertEquals("60a0.10ff.fe50.d030", sb.toString());
     }
 
     @Test
     void longToMac() {
         assertEquals(MAC_TEST_STR.replace(':', '-'), IpMacUtils.longToMac(MAC_TEST_NUM));
+        assertEquals("00-00-00-00-00-01", IpMacUtils.longToMac(1L));
+        assertEquals("60-a0-10-50-d0-30", IpMacUtils.longToMac(MAC_TEST_NUM, MacFormat.HYPHEN));
+        assertEquals(MAC_TEST_STR, IpMacUtils.longToMac(MAC_TEST_NUM, MacFormat.COLON));
+        assertEquals("60a0.1050.d030", IpMacUtils.longToMac(MAC_TEST_NUM, MacFormat.DOT));
+        assertEquals("60a01050d030", IpMacUtils.longToMac(MAC_TEST_NUM, MacFormat.BARE));
+        for (MacFormat format : MacFormat.values()) {
+            assertEquals(MAC_TEST_NUM, IpMacUtils.macToLong(IpMacUtils.longToMac(MAC_TEST_NUM, format)), format.name());
+        }
+        StringBuilder dotted = new StringBuilder();
+        assertEquals(14, IpMacUtils.longToMac(MAC_TEST_NUM, MacFormat.DOT, dotted));
+        assertEquals("60a0.1050.d030", dotted.toString());
+
+        char[] chars = new char[17];
+        assertEquals(17, IpMacUtils.longToMac(MAC_TEST_NUM, chars, 0));
+        assertEquals(MAC_TEST_STR.replace(':', '-'), new String(chars));
+        StringBuilder sb = new StringBuilder();
+        assertEquals(17, IpMacUtils.longToMac(MAC_TEST_NUM, sb));
+        assertEquals(MAC_TEST_STR.replace(':', '-'), sb.toString());
+        ByteBuffer buffer = ByteBuffer.allocate(17);
+        assertEquals(17, IpMacUtils.longToMac(MAC_TEST_NUM, buffer));
+        assertEquals(MAC_TEST_STR.replace(':', '-'), new String(buffer.array(), StandardCharsets.US_ASCII));
     }
 
     @Test
@@ -139,6 +372,22 @@ class IpMacUtilsTest {
         assertFalse(IpMacUtils.isLegalMac(""));
         assertFalse(IpMacUtils.isLegalMac("12:34::"));
         assertFalse(IpMacUtils.isLegalMac("GG:a0:10:50:d0:30"));
+        assertTrue(IpMacUtils.isLegalMac("60a0.1050.d030"));
+        assertTrue(IpMacUtils.isLegalMac("60a01050d030"));
+        assertFalse(IpMacUtils.isLegalMac("60a0:1050:d030"));
+    }
+
+    @Test
+    void macFlags() {
+        assertTrue(IpMacUtils.isMulticastMac(IpMacUtils.macToLong("01-00-5e-00-00-fb")));
+        assertTrue(IpMacUtils.isMulticastMac(IpMacUtils.macToLong("ff-ff-ff-ff-ff-ff")));
+        assertFalse(IpMacUtils.isMulticastMac(IpMacUtils.macToLong(MAC_TEST_STR)));
+        assertFalse(IpMacUtils.isMulticastMac(IpMacUtils.macToLong("02-42-ac-11-00-02")));
+
+        assertTrue(IpMacUtils.isLocallyAdministeredMac(IpMacUtils.macToLong("02-42-ac-11-00-02")));
+        assertTrue(IpMacUtils.isLocallyAdministeredMac(IpMacUtils.macToLong("da:a1:19:00:00:01")));
+        assertFalse(IpMacUtils.isLocallyAdministeredMac(IpMacUtils.macToLong(MAC_TEST_STR)));
+        assertFalse(IpMacUtils.isLocallyAdministeredMac(IpMacUtils.macToLong("01-00-5e-00-00-fb")));
     }
 
     @Test
@@ -151,6 +400,9 @@ class IpMacUtilsTest {
     void rangeBetweenIpV6() {
         assertEquals(BigInteger.ONE, IpMacUtils.rangeBetweenIpV6("ff06::c3", "ff06::c4"));
         assertEquals(BigInteger.valueOf(65536), IpMacUtils.rangeBetweenIpV6("ff06::c3", "ff06:0:0:0:0:0:1:c3"));
+        assertEquals(65536L, IpMacUtils.rangeBetweenIpV6(0xff06000000000000L, 0xc3L, 0xff06000000000000L, 0x100c3L));
+        assertEquals(-65536L, IpMacUtils.rangeBetweenIpV6(0xff06000000000000L, 0x100c3L, 0xff06000000000000L, 0xc3L));
+        assertEquals(Long.MAX_VALUE, IpMacUtils.rangeBetweenIpV6(0L, 0L, -1L, -1L));
         assertEquals(BigInteger.valueOf(-65536), IpMacUtils.rangeBetweenIpV6("ff06:0:0:0:0:0:1:c3", "ff06::c3"));
     }
 
@@ -178,11 +430,15 @@ class IpMacUtilsTest {
     void macExistsInArray() {
         assertTrue(IpMacUtils.macExistsInArray("60:a0:10:50:d0:30", "60:a0:10:50:d0:30", "50:a0:10:50:d0:30"));
         assertTrue(IpMacUtils.macExistsInArray("60:a0:10:50:d0:30", "60-A0-10-50-D0-30"));
+        assertTrue(IpMacUtils.macExistsInArray("60a0.1050.d030", "60-A0-10-50-D0-30"));
+        assertFalse(IpMacUtils.macExistsInArray("60:a0:10:50:d0:30", (String) null));
         assertFalse(IpMacUtils.macExistsInArray("60:a0:10:50:d0:30", ""));
     }
     @Test
     void macExistsInRange() {
         assertTrue(IpMacUtils.macExistsInRange("60:a0:10:50:d0:30", "60:a0:10:50:d0:30", "70-A0-10-50-D0-30"));
         assertTrue(IpMacUtils.macExistsInRange("60:a0:10:50:d0:30", "50:a0:10:50:d0:30", "70-A0-10-50-D0-30"));
+        assertTrue(IpMacUtils.macExistsInRange("60a0.1050.d030", "60a01050d030", null));
+        assertFalse(IpMacUtils.macExistsInRange("60:a0:10:50:d0:30", "50:a0:10:50:d0:30", "70-A0-10-50-D0"));
     }
 }
@@ -0,0 +1,107 @@
+package com.nxest.grapes.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IpPurposeEnum Test
+ */
+class IpPurposeEnumTest {
+
+    @Test
+    void ofIpV4() {
+        assertPurpose(IpPurposeEnum.GLOBAL, "8.8.8.8", "100.63.255.255", "100.128.0.0", "172.32.0.0", "223.255.255.255");
+        assertPurpose(IpPurposeEnum.UNSPECIFIED, "0.0.0.0", "0.255.255.255");
+        assertPurpose(IpPurposeEnum.PRIVATE, "10.0.0.0", "10.255.255.255", "172.16.0.1", "172.31.255.255", "192.168.1.1");
+        assertPurpose(IpPurposeEnum.SHARED, "100.64.0.0", "100.127.255.255");
+        assertPurpose(IpPurposeEnum.LOOPBACK, "127.0.0.1");
+        assertPurpose(IpPurposeEnum.LINK_LOCAL, "169.254.10.1");
+        assertPurpose(IpPurposeEnum.PROTOCOL, "192.0.0.8");
+        assertPurpose(IpPurposeEnum.DOCUMENTATION, "192.0.2.1", "198.51.100.255", "203.0.113.7", "233.252.0.1");
+        assertPurpose(IpPurposeEnum.BENCHMARKING, "198.18.0.0", "198.19.255.255");
+        assertPurpose(IpPurposeEnum.TRANSITION, "192.88.99.1");
+        assertPurpose(IpPurposeEnum.MULTICAST, "224.0.0.1", "239.255.255.255", "233.252.1.0");
+        assertPurpose(IpPurposeEnum.RESERVED, "240.0.0.0", "255.255.255.254");
+        assertPurpose(IpPurposeEnum.BROADCAST, "255.255.255.255");
+        assertThrows(IllegalArgumentException.class, () -> IpPurposeEnum.ofIpV4(-1L));
+        assertThrows(IllegalArgumentException.class, () -> IpMacUtils.getPurposeOfIp("a.b.c.d"));
+        assertThrows(IllegalArgumentException.class, () -> IpMacUtils.getPurposeOfIp(null));
+    }
+
+    @Test
+    void ofIpV6() {
+        assertPurpose(IpPurposeEnum.GLOBAL, "2400:cb00::1", "::2", "2001:200::1", "2001:db9::");
+        assertPurpose(IpPurposeEnum.UNSPECIFIED, "::");
+        assertPurpose(IpPurposeEnum.LOOPBACK, "::1", "[::1]");
+        assertPurpose(IpPurposeEnum.PRIVATE, "::ffff:10.0.0.1", "::ffff:c0a8:1");
+        assertPurpose(IpPurposeEnum.GLOBAL, "::ffff:8.8.8.8");
+        assertPurpose(IpPurposeEnum.TRANSITION, "64:ff9b::808:808", "64:ff9b:1::1", "2001:0:4136::1", "2002:c000:204::1");
+        assertPurpose(IpPurposeEnum.RESERVED, "100::1");
+        assertPurpose(IpPurposeEnum.PROTOCOL, "2001:1::1", "2001:1ff:ffff::");
+        assertPurpose(IpPurposeEnum.BENCHMARKING, "2001:2::1", "2001:2:0:ffff::1");
+        assertPurpose(IpPurposeEnum.DOCUMENTATION, "2001:db8::1", "3fff:fff::1");
+        assertPurpose(IpPurposeEnum.PRIVATE, "fc00::1", "fdff:ffff::1");
+        assertPurpose(IpPurposeEnum.LINK_LOCAL, "fe80::6942:2fda:2942:24d2%10", "febf::1");
+        assertPurpose(IpPurposeEnum.MULTICAST, "ff02::1", "ff06::c3");
+    }
+
+    @Test
+    void longestMatch() {
+        // the table against a scan of every block
+        Random random = new Random(19);
+        for (int i = 0; i < 200_000; i++) {
+            long ip = random.nextInt() & 0xFFFFFFFFL;
+            assertEquals(scanIpV4(ip), IpPurposeEnum.ofIpV4(ip), IpMacUtils.longToIpV4(ip));
+        }
+        for (IpPurposeEnum purpose : IpPurposeEnum.values()) {
+            for (String cidr : purpose.getRanges()) {
+                if (cidr.indexOf(':') < 0) {
+                    IpStreamUtils.ipV4CidrStream(cidr).limit(1 << 12)
+                        .forEach(ip -> assertEquals(scanIpV4(ip), IpPurposeEnum.ofIpV4(ip)));
+                }
+            }
+        }
+        assertTrue(IpPurposeEnum.GLOBAL.getRanges().isEmpty());
+        assertEquals("Private-Use", IpPurposeEnum.PRIVATE.getDescription());
+    }
+
+    @Test
+    void ofIpV4Class() {
+        assertEquals(IpClassEnum.A, IpClassEnum.ofIpV4(0L));
+        assertEquals(IpClassEnum.A, IpClassEnum.ofIpV4(0x7FFFFFFFL));
+        assertEquals(IpClassEnum.B, IpClassEnum.ofIpV4(0x80000000L));
+        assertEquals(IpClassEnum.C, IpClassEnum.ofIpV4(0xDFFFFFFFL));
+        assertEquals(IpClassEnum.D, IpClassEnum.ofIpV4(0xE0000000L));
+        assertEquals(IpClassEnum.E, IpClassEnum.ofIpV4(0xFFFFFFFFL));
+        assertThrows(IllegalArgumentException.class, () -> IpClassEnum.ofIpV4(1L << 32));
+    }
+
+    private static void assertPurpose(IpPurposeEnum expected, String... ips) {
+        for (String ip : ips) {
+            assertEquals(expected, IpMacUtils.getPurposeOfIp(ip), ip);
+        }
+    }
+
+    private static IpPurposeEnum scanIpV4(long ip) {
+        IpPurposeEnum best = IpPurposeEnum.GLOBAL;
+        int bestLength = -1;
+        for (IpPurposeEnum purpose : IpPurposeEnum.values()) {
+            for (String cidr : purpose.getRanges()) {
+                int slash = cidr.indexOf('/');
+                if (cidr.indexOf(':') >= 0) {
+                    continue;
+                }
+                int length = Integer.parseInt(cidr.substring(slash + 1));
+                long mask = length == 0 ? 0L : 0xFFFFFFFFL << (32 - length) & 0xFFFFFFFFL;
+                if ((ip & mask) == IpMacUtils.ipV4ToLong(cidr.substring(0, slash)) && length > bestLength) {
+                    best = purpose;
+                    bestLength = length;
+                }
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,133 @@
+package com.nxest.grapes.lang;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * IpRangeDatabase Test
+ */
+class IpRangeDatabaseTest {
+
+    private Path file;
+
+    @BeforeEach
+    void createFile() throws IOException {
+        file = Files.createTempFile("grapes", ".db");
+    }
+
+    @AfterEach
+    void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void lookup() throws IOException {
+        IpRangeDatabase.writer()
+            .add("192.168.1.0-192.168.1.255", 1)
+            .add("10.0.0.1", 2)
+            .add("255.255.255.0 - 255.255.255.255", 3)
+            .add("ff06::c3-ff06::1:c3", 4)
+            .add("::1", 5)
+            .write(file);
+        IpRangeDatabase db = IpRangeDatabase.open(file);
+        assertEquals(3, db.sizeIpV4());
+        assertEquals(2, db.sizeIpV6());
+        assertEquals(1, db.lookup("192.168.1.0"));
+        assertEquals(1, db.lookup("192.168.1.255"));
+        assertEquals(2, db.lookup("10.0.0.1"));
+        assertEquals(3, db.lookup("255.255.255.255"));
+        assertEquals(4, db.lookup("ff06::1:0"));
+        assertEquals(5, db.lookup("::1"));
+        assertEquals(5, db.lookup(IpV6Address.valueOf("::1")));
+        assertEquals(IpRangeDatabase.NOT_FOUND, db.lookup("192.168.2.0"));
+        assertEquals(IpRangeDatabase.NOT_FOUND, db.lookup("0.0.0.0"));
+        assertEquals(IpRangeDatabase.NOT_FOUND, db.lookup("::2"));
+        assertEquals(IpRangeDatabase.NOT_FOUND, db.lookup("::"));
+        assertEquals(IpRangeDatabase.NOT_FOUND, db.lookup("bad"));
+        assertEquals(IpRangeDatabase.NOT_FOUND, db.lookup((String) null));
+    }
+
+    @Test
+    void sameAsRanges() throws IOException {
+        Random random = new Random(11);
+        IpRangeDatabase.Writer writer = IpRangeDatabase.writer();
+        long[] starts = new long[1000];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = i * 100L + random.nextInt(50);
+        }
+        for (int i = starts.length - 1; i >= 0; i--) {
+            writer.addIpV4(starts[i], starts[i] + 40, i);
+            writer.addIpV6(1L, starts[i], 1L, starts[i] + 40, i);
+        }
+        writer.write(file);
+        IpRangeDatabase db = IpRangeDatabase.wrap(ByteBuffer.wrap(Files.readAllBytes(file)));
+        for (long ip = 0; ip < 100000; ip += 7) {
+            int i = (int) (ip / 100);
+            int expected = ip >= starts[i] && ip <= starts[i] + 40 ? i : IpRangeDatabase.NOT_FOUND;
+            assertEquals(expected, db.lookupIpV4(ip));
+            assertEquals(expected, db.lookupIpV6(1L, ip));
+            assertEquals(IpRangeDatabase.NOT_FOUND, db.lookupIpV6(0L, ip));
+        }
+    }
+
+    @Test
+    void rewriteWhileOpen() throws IOException {
+        IpRangeDatabase.writer().add("10.0.0.0-10.0.0.255", 1).add("ff06::c3", 2).write(file);
+        IpRangeDatabase old = IpRangeDatabase.open(file);
+        IpRangeDatabase.Writer writer = IpRangeDatabase.writer();
+        for (int i = 0; i < 10000; i++) {
+            writer.addIpV4(i * 256L, i * 256L + 255, 100 + i);
+        }
+        writer.write(file);
+        // the mapped old file is not touched
+        assertEquals(1, old.lookup("10.0.0.7"));
+        assertEquals(2, old.lookup("ff06::c3"));
+        assertEquals(1, old.sizeIpV4());
+
+        IpRangeDatabase db = IpRangeDatabase.open(file);
+        assertEquals(10000, db.sizeIpV4());
+        assertEquals(0, db.sizeIpV6());
+        assertEquals(107, db.lookup("0.0.7.9"));
+        assertEquals(IpRangeDatabase.NOT_FOUND, db.lookup("ff06::c3"));
+        try (Stream<Path> files = Files.list(file.getParent())) {
+            assertEquals(0L, files.filter(f -> f.getFileName().toString().startsWith("database")
+                && f.getFileName().toString().endsWith(".tmp")).count());
+        }
+    }
+
+    @Test
+    void rewriteKeepsPermissions() throws IOException {
+        assumeTrue(Files.getFileStore(file).supportsFileAttributeView(PosixFileAttributeView.class));
+        IpRangeDatabase.writer().add("10.0.0.1", 1).write(file);
+        Set<PosixFilePermission> shared = PosixFilePermissions.fromString("rw-r--r--");
+        Files.setPosixFilePermissions(file, shared);
+        IpRangeDatabase.writer().add("10.0.0.2", 2).write(file);
+        assertEquals(shared, Files.getPosixFilePermissions(file));
+        assertEquals(2, IpRangeDatabase.open(file).lookup("10.0.0.2"));
+    }
+
+    @Test
+    void illegal() throws IOException {
+        assertThrows(IllegalArgumentException.class,
+            () -> IpRangeDatabase.writer().add("10.0.0.1-10.0.0.5", 1).add("10.0.0.5-10.0.0.9", 2).write(file));
+        assertThrows(IllegalArgumentException.class, () -> IpRangeDatabase.writer().add("10.0.0.5-10.0.0.1", 1));
+        assertThrows(IllegalArgumentException.class, () -> IpRangeDatabase.writer().add("10.0.0.1-ff06::c3", 1));
+        Files.write(file, new byte[64]);
+        assertThrows(IOException.class, () -> IpRangeDatabase.open(file));
+    }
+}
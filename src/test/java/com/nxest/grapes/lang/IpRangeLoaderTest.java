@@ -0,0 +1,120 @@
+package com.nxest.grapes.lang;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IpRangeLoader Test
+ */
+class IpRangeLoaderTest {
+
+    private Path file;
+
+    @BeforeEach
+    void createFile() throws IOException {
+        file = Files.createTempFile("grapes", ".txt");
+    }
+
+    @AfterEach
+    void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void load() throws IOException {
+        List<String> lines = Arrays.asList(
+            "# blocklist",
+            "192.168.1.2-192.168.1.5",
+            "",
+            "  10.0.0.1  ",
+            "ff06::c3 - ff06::1:c3\r",
+            "172.16.0.0/12",
+            "2001:db8::/32",
+            "a.b.c.d",
+            "10.0.0.9-10.0.0.8",
+            "10.0.0.1-ff06::c3",
+            "10.0.0.0/33",
+            "1.1.1.1-1.1.1.2-1.1.1.3");
+        Files.write(file, lines, StandardCharsets.UTF_8);
+        IpRangeLoader.Result result = IpRangeLoader.load(file);
+        IpRangeSet expected = IpRangeSet.of("192.168.1.2-192.168.1.5", "10.0.0.1", "ff06::c3 - ff06::1:c3",
+            "172.16.0.0/12", "2001:db8::/32");
+        assertEquals(expected, result.getRanges());
+        assertEquals(12L, result.getLineCount());
+        assertEquals(5L, result.getBadLineCount());
+        List<Long> numbers = new ArrayList<>();
+        result.getBadLines().forEach(bad -> numbers.add(bad.getLineNumber()));
+        assertEquals(Arrays.asList(8L, 9L, 10L, 11L, 12L), numbers);
+        assertEquals("a.b.c.d", result.getBadLines().get(0).getLine());
+    }
+
+    @Test
+    void chunks() throws IOException {
+        // small chunks, so lines and bad lines are counted across many of them
+        Random random = new Random(23);
+        StringBuilder text = new StringBuilder();
+        IpRangeSet.Builder expected = IpRangeSet.builder();
+        List<Long> bad = new ArrayList<>();
+        int count = 20_000;
+        for (int line = 1; line <= count; line++) {
+            long ip = random.nextInt() & 0xFFFFFFFFL;
+            if (random.nextInt(100) == 0) {
+                text.append("bad ").append(line);
+                bad.add((long) line);
+            } else if (random.nextBoolean()) {
+                String cidr = IpMacUtils.longToIpV4(ip) + "/" + (16 + random.nextInt(17));
+                text.append(cidr);
+                expected.addCidr(cidr);
+            } else {
+                String range = IpMacUtils.longToIpV4(ip) + "-" + IpMacUtils.longToIpV4(Math.min(ip + 99, 0xFFFFFFFFL));
+                text.append(range);
+                expected.add(range);
+            }
+            text.append('\n');
+        }
+        // the last line without a newline
+        text.append("2001:db8::1");
+        expected.addCidr("2001:db8::1/128");
+        Files.write(file, text.toString().getBytes(StandardCharsets.US_ASCII));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int chunkSize : new int[]{1, 17, 4096, 1 << 20}) {
+                IpRangeLoader.Result result = IpRangeLoader.load(file, pool, chunkSize);
+                assertEquals(expected.build(), result.getRanges(), String.valueOf(chunkSize));
+                assertEquals(count + 1L, result.getLineCount());
+                assertEquals(bad.size(), result.getBadLineCount());
+                for (int i = 0; i < bad.size(); i++) {
+                    IpRangeLoader.BadLine line = result.getBadLines().get(i);
+                    assertEquals(bad.get(i).longValue(), line.getLineNumber());
+                    assertEquals("bad " + bad.get(i), line.getLine());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void empty() throws IOException {
+        IpRangeLoader.Result result = IpRangeLoader.load(file);
+        assertTrue(result.getRanges().isEmpty());
+        assertEquals(0L, result.getLineCount());
+        Files.write(file, "\n\n".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(2L, IpRangeLoader.load(file).getLineCount());
+        assertThrows(IOException.class, () -> IpRangeLoader.load(file.resolveSibling("not-exists.txt")));
+    }
+}
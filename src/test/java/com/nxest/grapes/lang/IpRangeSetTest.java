@@ -0,0 +1,191 @@
+package com.nxest.grapes.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IpRangeSet Test
+ */
+class IpRangeSetTest {
+
+    @Test
+    void contains() {
+        IpRangeSet set = IpRangeSet.of("192.168.1.2-192.168.1.5", "10.0.0.1", "ff06::c3 - ff06::1:c3");
+        assertTrue(set.contains("192.168.1.2"));
+        assertTrue(set.contains("192.168.1.5"));
+        assertTrue(set.contains(" 192.168.1.3 "));
+        assertTrue(set.contains("10.0.0.1"));
+        assertTrue(set.contains("ff06::ff"));
+        assertTrue(set.contains("ff06::1:c3"));
+        assertFalse(set.contains("192.168.1.6"));
+        assertFalse(set.contains("10.0.0.2"));
+        assertFalse(set.contains("ff06::1:c4"));
+        assertFalse(set.contains("ff06::c2"));
+        assertFalse(set.contains(""));
+        assertFalse(set.contains((String) null));
+        assertFalse(set.contains("a.b.c.d"));
+        assertTrue(set.contains(IpV6Address.valueOf("ff06::1:0")));
+        assertTrue(set.containsIpV4(IpMacUtils.ipV4ToLong("192.168.1.4")));
+    }
+
+    @Test
+    void merge() {
+        IpRangeSet set = IpRangeSet.of("10.0.0.5-10.0.0.9", "10.0.0.1-10.0.0.4", "10.0.0.8-10.0.0.20",
+            "10.0.1.0-10.0.0.0", "::2-::5", "::6", "::1:0-::2:0", "::1:1");
+        assertEquals(1, set.sizeIpV4());
+        assertEquals(2, set.sizeIpV6());
+        assertTrue(set.contains("10.0.0.20"));
+        assertFalse(set.contains("10.0.0.21"));
+        assertFalse(set.contains("10.0.0.200"));
+        assertEquals("IpRangeSet{10.0.0.1-10.0.0.20, ::2-::6, ::1:0-::2:0}", set.toString());
+        assertTrue(IpRangeSet.of().isEmpty());
+    }
+
+    @Test
+    void split() {
+        IpRangeSet set = IpRangeSet.of(Arrays.asList("192.168.1.2 ~ 192.168.1.5"), "~");
+        assertTrue(set.contains("192.168.1.3"));
+        assertThrows(IllegalArgumentException.class, () -> IpRangeSet.of("192.168.1.3-ff06::c3"));
+        assertThrows(IllegalArgumentException.class, () -> IpRangeSet.of("192.168.1.3-a.b.c.d"));
+        assertTrue(IpRangeSet.of("192.168.1.3-").contains("192.168.1.3"));
+    }
+
+    @Test
+    void sameAsIpExistsInRange() {
+        Random random = new Random(42);
+        List<String> sectionsV4 = new ArrayList<>();
+        List<String> sectionsV6 = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            long begin = random.nextInt(1 << 16);
+            long end = begin + random.nextInt(64);
+            sectionsV4.add(IpMacUtils.longToIpV4(begin) + "-" + IpMacUtils.longToIpV4(end));
+            sectionsV6.add(IpV6Address.of(0L, begin) + "-" + IpV6Address.of(0L, end));
+        }
+        List<String> sections = new ArrayList<>(sectionsV4);
+        sections.addAll(sectionsV6);
+        IpRangeSet set = IpRangeSet.of(sections);
+        for (int i = 0; i < 2000; i++) {
+            long ip = random.nextInt(1 << 16);
+            String ipV4 = IpMacUtils.longToIpV4(ip);
+            String ipV6 = IpV6Address.of(0L, ip).toString();
+            assertEquals(sectionsV4.stream().anyMatch(s -> IpMacUtils.ipExistsInRange(ipV4, s)), set.contains(ipV4));
+            assertEquals(sectionsV6.stream().anyMatch(s -> IpMacUtils.ipExistsInRange(ipV6, s)), set.contains(ipV6));
+        }
+    }
+    @Test
+    void cidrs() {
+        IpRangeSet set = IpRangeSet.of("192.168.1.77/24", "10.0.0.1/32", "ff06::c3/120", "::/0");
+        assertTrue(set.contains("192.168.1.0"));
+        assertTrue(set.contains("192.168.1.255"));
+        assertFalse(set.contains("192.168.2.0"));
+        assertTrue(set.contains("10.0.0.1"));
+        assertTrue(set.contains("1::"));
+        assertEquals(1, set.sizeIpV6());
+        assertEquals(Arrays.asList("0.0.0.0/0", "::/0"), IpRangeSet.of("0.0.0.0/0", "::/0").toMinimalCidrs());
+        assertThrows(IllegalArgumentException.class, () -> IpRangeSet.of("192.168.1.0/33"));
+        assertThrows(IllegalArgumentException.class, () -> IpRangeSet.builder().addCidr("ff06::/129"));
+    }
+
+    @Test
+    void toMinimalCidrs() {
+        assertEquals(Arrays.asList("10.0.0.0/23", "10.0.2.0/30", "10.0.2.4/32"),
+            IpRangeSet.of("10.0.0.0-10.0.1.255", "10.0.2.0-10.0.2.4").toMinimalCidrs());
+        assertEquals(Arrays.asList("192.168.0.1/32", "192.168.0.2/31", "192.168.0.4/30", "192.168.0.8/32"),
+            IpRangeSet.of("192.168.0.1-192.168.0.8").toMinimalCidrs());
+        assertEquals(Arrays.asList("255.255.255.255/32"), IpRangeSet.of("255.255.255.255").toMinimalCidrs());
+        assertEquals(Arrays.asList("ff06::c3/128", "ff06::c4/126", "ff06::c8/125"),
+            IpRangeSet.of("ff06::c3-ff06::cf").toMinimalCidrs());
+        assertEquals(Arrays.asList("8000::/1"), IpRangeSet.of("8000::-ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff").toMinimalCidrs());
+        assertEquals(Arrays.asList("::/64", "0:0:0:1::/128"), IpRangeSet.of("::-0:0:0:1::").toMinimalCidrs());
+
+        Random random = new Random(14L);
+        for (int round = 0; round < 200; round++) {
+            IpRangeSet set = randomSet(random);
+            List<String> cidrs = set.toMinimalCidrs();
+            assertEquals(set, IpRangeSet.of(cidrs), cidrs.toString());
+        }
+    }
+
+    @Test
+    void algebra() {
+        Random random = new Random(2018L);
+        for (int round = 0; round < 500; round++) {
+            IpRangeSet a = randomSet(random);
+            IpRangeSet b = randomSet(random);
+            BitSet bitsA = toBits(a);
+            BitSet bitsB = toBits(b);
+
+            BitSet union = (BitSet) bitsA.clone();
+            union.or(bitsB);
+            assertEquals(union, toBits(a.union(b)));
+            assertEquals(a.union(b), b.union(a));
+
+            BitSet intersect = (BitSet) bitsA.clone();
+            intersect.and(bitsB);
+            assertEquals(intersect, toBits(a.intersect(b)));
+            assertEquals(a.intersect(b), b.intersect(a));
+
+            BitSet subtract = (BitSet) bitsA.clone();
+            subtract.andNot(bitsB);
+            assertEquals(subtract, toBits(a.subtract(b)));
+
+            assertEquals(a, a.complement().complement());
+            assertTrue(a.intersect(a.complement()).isEmpty());
+            assertEquals(IpRangeSet.of("0.0.0.0/0", "::/0"), a.union(a.complement()));
+            assertEquals(a.union(b), IpRangeSet.builder().addAll(a).addAll(b).build());
+        }
+    }
+
+    @Test
+    void complement() {
+        assertEquals(IpRangeSet.of("0.0.0.0-192.168.0.0", "192.168.0.2-255.255.255.255", "::/0"),
+            IpRangeSet.of("192.168.0.1").complement());
+        assertEquals(IpRangeSet.of("0.0.0.0/0", "::-ff06::c2", "ff06::c4-ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"),
+            IpRangeSet.of("ff06::c3").complement());
+        assertEquals(IpRangeSet.of("0.0.0.0/0", "::/0"), IpRangeSet.of().complement());
+        assertTrue(IpRangeSet.of("0.0.0.0/0", "::/0").complement().isEmpty());
+    }
+
+    /**
+     * ranges in a small window at the bottom and at the top of each space, the same ones in both spaces
+     */
+    private static IpRangeSet randomSet(Random random) {
+        IpRangeSet.Builder builder = IpRangeSet.builder();
+        for (int i = random.nextInt(6); i > 0; i--) {
+            int begin = random.nextInt(WINDOW);
+            int end = Math.min(WINDOW - 1, begin + random.nextInt(64));
+            long offset = random.nextBoolean() ? 0L : 0xFFFFFFFFL - WINDOW + 1;
+            builder.addIpV4(offset + begin, offset + end);
+            if (offset == 0L) {
+                builder.addIpV6(0L, begin, 0L, end);
+            } else {
+                builder.addIpV6(-1L, -WINDOW + begin, -1L, -WINDOW + end);
+            }
+        }
+        return builder.build();
+    }
+
+    private static final int WINDOW = 256;
+
+    /**
+     * bit i for the IPV4 window, bit 2 * WINDOW + i for the same IPV6, also checks both spaces agree
+     */
+    private static BitSet toBits(IpRangeSet set) {
+        BitSet bits = new BitSet();
+        for (int i = 0; i < WINDOW; i++) {
+            long top = 0xFFFFFFFFL - WINDOW + 1 + i;
+            bits.set(i, set.containsIpV4(i));
+            bits.set(WINDOW + i, set.containsIpV4(top));
+            bits.set(2 * WINDOW + i, set.containsIpV6(0L, i));
+            bits.set(3 * WINDOW + i, set.containsIpV6(-1L, -WINDOW + i));
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,178 @@
+package com.nxest.grapes.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IpSortUtils Test
+ */
+class IpSortUtilsTest {
+
+    @Test
+    void sortIpV4() {
+        int[] ips = {0xC0A80001, 0x0A000001, 0xFFFFFFFF, 0, 0xC0A80001, 0x80000000};
+        IpSortUtils.sortIpV4(ips);
+        assertArrayEquals(new int[]{0, 0x0A000001, 0x80000000, 0xC0A80001, 0xC0A80001, 0xFFFFFFFF}, ips);
+        assertEquals(5, IpSortUtils.distinct(ips, 0, ips.length));
+        assertEquals(0xFFFFFFFF, ips[4]);
+
+        long[] longs = {3232235521L, 167772161L, 4294967295L, 0L, 167772161L};
+        IpSortUtils.sortIpV4(longs, 1, 5);
+        assertArrayEquals(new long[]{3232235521L, 0L, 167772161L, 167772161L, 4294967295L}, longs);
+        assertEquals(4, IpSortUtils.distinct(longs, 1, 5));
+        assertThrows(IllegalArgumentException.class, () -> IpSortUtils.sortIpV4(new long[]{1L, -1L}));
+        assertThrows(IllegalArgumentException.class, () -> IpSortUtils.sortIpV4(new long[]{1L << 32}));
+        assertThrows(IndexOutOfBoundsException.class, () -> IpSortUtils.sortIpV4(new int[2], 1, 3));
+    }
+
+    @Test
+    void randomIpV4() {
+        Random random = new Random(16);
+        for (int n : new int[]{0, 1, 100, IpSortUtils.PARALLEL_THRESHOLD * 3}) {
+            int[] ips = new int[n];
+            for (int i = 0; i < n; i++) {
+                // half in one /16, to check the split below the shared bytes
+                ips[i] = random.nextBoolean() ? random.nextInt() : 0x0A0B0000 | random.nextInt(1 << 16);
+            }
+            long[] longs = Arrays.stream(ips).mapToLong(Integer::toUnsignedLong).toArray();
+            long[] expected = longs.clone();
+            Arrays.sort(expected);
+
+            int[] sorted = ips.clone();
+            IpSortUtils.sortIpV4(sorted);
+            assertArrayEquals(expected, Arrays.stream(sorted).mapToLong(Integer::toUnsignedLong).toArray());
+            sorted = ips.clone();
+            IpSortUtils.parallelSortIpV4(sorted);
+            assertArrayEquals(expected, Arrays.stream(sorted).mapToLong(Integer::toUnsignedLong).toArray());
+
+            long[] sortedLongs = longs.clone();
+            IpSortUtils.sortIpV4(sortedLongs);
+            assertArrayEquals(expected, sortedLongs);
+            sortedLongs = longs.clone();
+            IpSortUtils.parallelSortIpV4(sortedLongs);
+            assertArrayEquals(expected, sortedLongs);
+
+            int end = IpSortUtils.distinct(sortedLongs, 0, n);
+            assertArrayEquals(Arrays.stream(expected).distinct().toArray(), Arrays.copyOf(sortedLongs, end));
+        }
+    }
+
+    @Test
+    void randomIpV6() {
+        Random random = new Random(6);
+        for (int n : new int[]{0, 1, 100, IpSortUtils.PARALLEL_THRESHOLD * 2}) {
+            long[] highs = new long[n];
+            long[] lows = new long[n];
+            for (int i = 0; i < n; i++) {
+                // one /64 with repeats, or anywhere
+                highs[i] = random.nextBoolean() ? 0x20010db800000000L : random.nextLong();
+                lows[i] = random.nextInt(4) == 0 ? random.nextInt(8) : random.nextLong();
+            }
+            IpV6Address[] expected = new IpV6Address[n];
+            for (int i = 0; i < n; i++) {
+                expected[i] = IpV6Address.of(highs[i], lows[i]);
+            }
+            Arrays.sort(expected);
+
+            long[] sortedHighs = highs.clone();
+            long[] sortedLows = lows.clone();
+            IpSortUtils.sortIpV6(sortedHighs, sortedLows);
+            assertSorted(expected, sortedHighs, sortedLows, n);
+            sortedHighs = highs.clone();
+            sortedLows = lows.clone();
+            IpSortUtils.parallelSortIpV6(sortedHighs, sortedLows);
+            assertSorted(expected, sortedHighs, sortedLows, n);
+
+            int end = IpSortUtils.distinctIpV6(sortedHighs, sortedLows, 0, n);
+            IpV6Address[] distinct = Arrays.stream(expected).distinct().toArray(IpV6Address[]::new);
+            assertSorted(distinct, sortedHighs, sortedLows, end);
+        }
+    }
+
+    @Test
+    void externalSort() throws IOException {
+        Path dir = Files.createTempDirectory("ip-sort");
+        try {
+            Random random = new Random(4);
+            int n = 10_000;
+            long[] expected = new long[n];
+            Path input = dir.resolve("v4.bin");
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(input))) {
+                for (int i = 0; i < n; i++) {
+                    int ip = random.nextInt(5000) * 0x10001;
+                    expected[i] = Integer.toUnsignedLong(ip);
+                    out.writeInt(ip);
+                }
+            }
+            Arrays.sort(expected);
+            Path output = dir.resolve("v4.sorted");
+            assertEquals(n, IpSortUtils.externalSortIpV4(input, output, 999, false));
+            assertArrayEquals(expected, readIpV4(output));
+            long[] distinct = Arrays.stream(expected).distinct().toArray();
+            assertEquals(distinct.length, IpSortUtils.externalSortIpV4(input, output, 999, true));
+            assertArrayEquals(distinct, readIpV4(output));
+            // one run
+            assertEquals(distinct.length, IpSortUtils.externalSortIpV4(input, output, n, true));
+            assertArrayEquals(distinct, readIpV4(output));
+
+            IpV6Address[] ips = new IpV6Address[n];
+            input = dir.resolve("v6.bin");
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(input))) {
+                for (int i = 0; i < n; i++) {
+                    ips[i] = IpV6Address.of(random.nextInt(3) - 1L, random.nextInt(3000));
+                    out.writeLong(ips[i].getHigh());
+                    out.writeLong(ips[i].getLow());
+                }
+            }
+            IpV6Address[] sorted = Arrays.stream(ips).sorted().distinct().toArray(IpV6Address[]::new);
+            output = dir.resolve("v6.sorted");
+            assertEquals(sorted.length, IpSortUtils.externalSortIpV6(input, output, 777, true));
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(output))) {
+                for (IpV6Address ip : sorted) {
+                    assertEquals(ip, IpV6Address.of(in.readLong(), in.readLong()));
+                }
+                assertEquals(-1, in.read());
+            }
+
+            Path empty = Files.createFile(dir.resolve("empty.bin"));
+            assertEquals(0L, IpSortUtils.externalSortIpV4(empty, output, 10, true));
+            assertEquals(0L, Files.size(output));
+            Files.write(empty, new byte[5]);
+            assertThrows(IOException.class, () -> IpSortUtils.externalSortIpV4(empty, dir.resolve("bad"), 10, false));
+            assertThrows(IllegalArgumentException.class, () -> IpSortUtils.externalSortIpV4(empty, dir.resolve("bad"), 0, false));
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                // no run file left behind
+                assertEquals(5, files.peek(file -> file.toFile().delete()).count());
+            }
+            Files.delete(dir);
+        }
+    }
+
+    private static void assertSorted(IpV6Address[] expected, long[] highs, long[] lows, int n) {
+        assertEquals(expected.length, n);
+        for (int i = 0; i < n; i++) {
+            assertEquals(expected[i], IpV6Address.of(highs[i], lows[i]));
+        }
+    }
+
+    private static long[] readIpV4(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            long[] ips = new long[(int) (Files.size(file) / 4)];
+            for (int i = 0; i < ips.length; i++) {
+                ips[i] = Integer.toUnsignedLong(in.readInt());
+            }
+            return ips;
+        }
+    }
+}
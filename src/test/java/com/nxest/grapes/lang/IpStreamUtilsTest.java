@@ -0,0 +1,126 @@
+package com.nxest.grapes.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IpStreamUtils and IpV6Cursor Test
+ */
+class IpStreamUtilsTest {
+
+    @Test
+    void ipV4Stream() {
+        assertArrayEquals(new long[]{3232235774L, 3232235775L, 3232235776L},
+            IpStreamUtils.ipV4Stream("192.168.0.254", "192.168.1.0").toArray());
+        assertEquals(Arrays.asList("192.168.1.4", "192.168.1.5", "192.168.1.6", "192.168.1.7"),
+            IpStreamUtils.ipV4CidrStream("192.168.1.5/30").mapToObj(IpMacUtils::longToIpV4).collect(Collectors.toList()));
+        assertEquals(1L << 32, IpStreamUtils.ipV4CidrStream("0.0.0.0/0").spliterator().getExactSizeIfKnown());
+        assertEquals(1L, IpStreamUtils.ipV4CidrStream("10.0.0.1").count());
+
+        // a /8 splits evenly across cores, and sums like a loop
+        long sum = IpStreamUtils.ipV4CidrStream("10.0.0.0/8").parallel().sum();
+        assertEquals((167772160L + 184549375L) * (1L << 24) / 2, sum);
+        Spliterator.OfLong right = IpStreamUtils.ipV4Spliterator(167772160L, 184549375L);
+        Spliterator.OfLong left = right.trySplit();
+        assertEquals(1L << 23, left.estimateSize());
+        assertEquals(1L << 23, right.estimateSize());
+
+        assertThrows(IllegalArgumentException.class, () -> IpStreamUtils.ipV4Stream("10.0.0.2", "10.0.0.1"));
+        assertThrows(IllegalArgumentException.class, () -> IpStreamUtils.ipV4Stream("10.0.0.1", null));
+        assertThrows(IllegalArgumentException.class, () -> IpStreamUtils.ipV4Stream(0L, 1L << 32));
+        assertThrows(IllegalArgumentException.class, () -> IpStreamUtils.ipV4CidrStream("10.0.0.0/33"));
+    }
+
+    @Test
+    void ipV6Cursor() {
+        IpV6Cursor cursor = IpStreamUtils.ipV6Cursor("ff06::fffe:ffff:ffff:fffe", "ff06::ffff:0:0:1");
+        assertEquals(4L, cursor.estimateSize());
+        List<String> ips = new ArrayList<>();
+        cursor.forEachRemaining((high, low) -> ips.add(IpMacUtils.longsToIpV6(high, low)));
+        assertEquals(Arrays.asList("ff06::fffe:ffff:ffff:fffe", "ff06::fffe:ffff:ffff:ffff",
+            "ff06::ffff:0:0:0", "ff06::ffff:0:0:1"), ips);
+        assertFalse(cursor.next());
+        assertEquals(0L, cursor.estimateSize());
+        assertNull(cursor.trySplit());
+
+        // the carry into the high long
+        cursor = new IpV6Cursor(0L, -1L, 1L, 0L);
+        assertTrue(cursor.next());
+        assertEquals(0L, cursor.getHigh());
+        assertEquals(-1L, cursor.getLow());
+        assertTrue(cursor.next());
+        assertEquals(1L, cursor.getHigh());
+        assertEquals(0L, cursor.getLow());
+        assertFalse(cursor.next());
+
+        assertThrows(IllegalArgumentException.class, () -> IpStreamUtils.ipV6Cursor("::2", "::1"));
+        assertThrows(IllegalArgumentException.class, () -> IpStreamUtils.ipV6Cursor("::1", "a.b.c.d"));
+        assertThrows(IllegalArgumentException.class, () -> IpStreamUtils.ipV6CidrCursor("ff06::/129"));
+        assertThrows(IllegalArgumentException.class, () -> IpStreamUtils.ipV6CidrCursor(null));
+
+        // the IPV4-mapped block and blocks in it are legal 128-bit CIDRs
+        IpV6Cursor mapped = IpStreamUtils.ipV6CidrCursor("::ffff:0:0/96");
+        assertEquals(BigInteger.ONE.shiftLeft(32), mapped.size());
+        assertTrue(mapped.next());
+        assertEquals("::ffff:0:0", IpMacUtils.longsToIpV6(mapped.getHigh(), mapped.getLow()));
+        IpV6Cursor inMapped = IpStreamUtils.ipV6CidrCursor("::ffff:10.0.0.0/126");
+        assertEquals(4L, inMapped.estimateSize());
+        assertTrue(inMapped.next());
+        assertEquals(0xFFFF0A000000L, inMapped.getLow());
+    }
+
+    @Test
+    void trySplit() {
+        IpV6Cursor all = IpStreamUtils.ipV6CidrCursor("::/0");
+        assertEquals(Long.MAX_VALUE, all.estimateSize());
+        assertEquals(BigInteger.ONE.shiftLeft(128), all.size());
+        IpV6Cursor first = all.trySplit();
+        assertEquals(BigInteger.ONE.shiftLeft(127), first.size());
+        assertEquals(BigInteger.ONE.shiftLeft(127), all.size());
+        assertTrue(all.next());
+        assertEquals(Long.MIN_VALUE, all.getHigh());
+        assertEquals(0L, all.getLow());
+
+        // the halves of a /126 cover it once, in order
+        IpV6Cursor block = IpStreamUtils.ipV6CidrCursor("2001:db8::1/126");
+        IpV6Cursor low = block.trySplit();
+        IpV6Cursor lowest = low.trySplit();
+        assertEquals(1L, lowest.estimateSize());
+        assertNull(lowest.trySplit());
+        assertTrue(lowest.next());
+        assertEquals("2001:db8::", IpMacUtils.longsToIpV6(lowest.getHigh(), lowest.getLow()));
+        assertTrue(low.next());
+        assertEquals("2001:db8::1", IpMacUtils.longsToIpV6(low.getHigh(), low.getLow()));
+        assertEquals(2L, block.estimateSize());
+
+        // an odd count, after a partial walk
+        IpV6Cursor odd = IpStreamUtils.ipV6Cursor("::1", "::7");
+        assertTrue(odd.next());
+        IpV6Cursor half = odd.trySplit();
+        assertEquals(3L, half.estimateSize());
+        assertEquals(3L, odd.estimateSize());
+        assertTrue(odd.next());
+        assertEquals(5L, odd.getLow());
+    }
+
+    @Test
+    void ipV6Stream() {
+        assertEquals(1L << 16, IpStreamUtils.ipV6Stream("2001:db8::", "2001:db8::ffff").parallel().distinct().count());
+        List<IpV6Address> ips = IpStreamUtils.ipV6Stream("2001:db8::ffff:ffff:fffe", "2001:db8::1:0:0:1")
+            .parallel().collect(Collectors.toList());
+        assertEquals(4, ips.size());
+        assertEquals(IpV6Address.valueOf("2001:db8::1:0:0:0"), ips.get(2));
+        assertTrue(ips.get(0).compareTo(ips.get(1)) < 0);
+        Spliterator<IpV6Address> spliterator = IpStreamUtils.ipV6CidrCursor("::/0").spliterator();
+        assertFalse(spliterator.hasCharacteristics(Spliterator.SIZED));
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED));
+    }
+}
@@ -0,0 +1,182 @@
+package com.nxest.grapes.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IpV4Bitmap Test
+ */
+class IpV4BitmapTest {
+
+    /**
+     * four containers, ips are BASE + a bit index of the oracle
+     */
+    private static final long BASE = 0xC0A80000L - (1 << 16);
+    private static final int WINDOW = 4 << 16;
+
+    @Test
+    void addContains() {
+        IpV4Bitmap bitmap = new IpV4Bitmap();
+        assertTrue(bitmap.isEmpty());
+        assertTrue(bitmap.add("192.168.0.1"));
+        assertFalse(bitmap.add(3232235521L));
+        assertTrue(bitmap.add(0L));
+        assertTrue(bitmap.add(0xFFFFFFFFL));
+        assertEquals(3L, bitmap.cardinality());
+        assertTrue(bitmap.contains("192.168.0.1"));
+        assertTrue(bitmap.contains("255.255.255.255"));
+        assertFalse(bitmap.contains("192.168.0.2"));
+        assertFalse(bitmap.contains((CharSequence) null));
+        assertFalse(bitmap.contains(-1L));
+        assertFalse(bitmap.contains(1L << 32));
+        assertThrows(IllegalArgumentException.class, () -> bitmap.add("a.b.c.d"));
+        assertThrows(IllegalArgumentException.class, () -> bitmap.add(1L << 32));
+        assertThrows(IllegalArgumentException.class, () -> bitmap.addRange(2L, 1L));
+
+        // an array container grows into a bitmap
+        for (long ip = 0; ip < 10000; ip += 2) {
+            bitmap.add(ip);
+        }
+        assertEquals(5002L, bitmap.cardinality());
+        assertTrue(bitmap.contains(9998L));
+        assertFalse(bitmap.contains(9999L));
+    }
+
+    @Test
+    void addRange() throws IOException {
+        IpV4Bitmap all = new IpV4Bitmap();
+        all.addRange(0L, 0xFFFFFFFFL);
+        assertEquals(1L << 32, all.cardinality());
+        assertTrue(all.contains("8.8.8.8"));
+        // one run of each container
+        assertEquals(12L + (7 + 4) * 65536L, all.serializedSize());
+        assertEquals(all, roundTrip(all));
+
+        IpV4Bitmap ten = new IpV4Bitmap();
+        ten.add("10.0.0.5");
+        ten.addRange(IpMacUtils.ipV4ToLong("10.0.0.0"), IpMacUtils.ipV4ToLong("10.255.255.255"));
+        ten.addRange(IpMacUtils.ipV4ToLong("11.0.0.0"), IpMacUtils.ipV4ToLong("11.0.0.9"));
+        assertEquals(16777226L, ten.cardinality());
+        assertFalse(ten.contains("11.0.0.10"));
+        assertEquals(all.andNot(ten).cardinality(), (1L << 32) - ten.cardinality());
+        assertEquals(ten, all.and(ten));
+        assertEquals(all, all.or(ten));
+    }
+
+    @Test
+    void algebra() throws IOException {
+        Random random = new Random(17);
+        for (int round = 0; round < 50; round++) {
+            BitSet aBits = new BitSet(WINDOW);
+            BitSet bBits = new BitSet(WINDOW);
+            IpV4Bitmap a = randomBitmap(random, aBits);
+            IpV4Bitmap b = randomBitmap(random, bBits);
+            assertMatches(aBits, a);
+
+            BitSet expected = (BitSet) aBits.clone();
+            expected.and(bBits);
+            assertMatches(expected, a.and(b));
+            expected = (BitSet) aBits.clone();
+            expected.or(bBits);
+            assertMatches(expected, a.or(b));
+            expected = (BitSet) aBits.clone();
+            expected.andNot(bBits);
+            assertMatches(expected, a.andNot(b));
+            // inputs are not changed
+            assertMatches(aBits, a);
+            assertMatches(bBits, b);
+
+            IpV4Bitmap optimized = new IpV4Bitmap(a);
+            optimized.runOptimize();
+            assertEquals(a, optimized);
+            assertEquals(a.hashCode(), optimized.hashCode());
+            assertTrue(optimized.serializedSize() <= a.serializedSize());
+            assertEquals(a, roundTrip(a));
+            assertEquals(optimized, roundTrip(optimized));
+        }
+    }
+
+    @Test
+    void readFrom() throws IOException {
+        IpV4Bitmap bitmap = new IpV4Bitmap();
+        bitmap.add("192.168.0.1");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bitmap.writeTo(new DataOutputStream(bytes));
+        assertEquals(bitmap.serializedSize(), bytes.size());
+
+        byte[] corrupted = bytes.toByteArray();
+        corrupted[0] = 0;
+        assertThrows(IOException.class, () -> IpV4Bitmap.readFrom(new DataInputStream(new ByteArrayInputStream(corrupted))));
+        byte[] empty = bytes.toByteArray();
+        // an array container of no ips
+        empty[18] = 0;
+        assertThrows(IOException.class, () -> IpV4Bitmap.readFrom(new DataInputStream(new ByteArrayInputStream(empty))));
+        byte[] truncated = new byte[bytes.size() - 1];
+        System.arraycopy(bytes.toByteArray(), 0, truncated, 0, truncated.length);
+        assertThrows(IOException.class, () -> IpV4Bitmap.readFrom(new DataInputStream(new ByteArrayInputStream(truncated))));
+    }
+
+    /**
+     * sparse, dense and ranged containers over the window
+     */
+    private static IpV4Bitmap randomBitmap(Random random, BitSet bits) {
+        IpV4Bitmap bitmap = new IpV4Bitmap();
+        for (int container = 0; container < 4; container++) {
+            int base = container << 16;
+            switch (random.nextInt(4)) {
+                case 0:
+                    for (int i = random.nextInt(3000); i > 0; i--) {
+                        bits.set(base + random.nextInt(1 << 16));
+                    }
+                    break;
+                case 1:
+                    for (int i = 0; i < 1 << 16; i++) {
+                        if (random.nextInt(3) == 0) {
+                            bits.set(base + i);
+                        }
+                    }
+                    break;
+                case 2:
+                    for (int i = random.nextInt(20); i > 0; i--) {
+                        int from = random.nextInt(1 << 16);
+                        int to = Math.min(1 << 16, from + random.nextInt(8000));
+                        bits.set(base + from, base + to);
+                        bitmap.addRange(BASE + base + from, BASE + base + Math.max(from, to - 1));
+                        bits.set(base + Math.max(from, to - 1));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            bitmap.add(BASE + i);
+        }
+        return bitmap;
+    }
+
+    private static void assertMatches(BitSet expected, IpV4Bitmap bitmap) {
+        assertEquals(expected.cardinality(), bitmap.cardinality());
+        for (int i = 0; i < WINDOW; i++) {
+            if (expected.get(i) != bitmap.contains(BASE + i)) {
+                fail("ip " + IpMacUtils.longToIpV4(BASE + i) + " expected " + expected.get(i));
+            }
+        }
+    }
+
+    private static IpV4Bitmap roundTrip(IpV4Bitmap bitmap) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bitmap.writeTo(new DataOutputStream(bytes));
+        assertEquals(bitmap.serializedSize(), bytes.size());
+        return IpV4Bitmap.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+}
@@ -0,0 +1,99 @@
+package com.nxest.grapes.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IpV6Address Test
+ */
+class IpV6AddressTest {
+
+    private static final IpV6Address IPV6_TEST = IpV6Address.valueOf("ff06::c3");
+
+    @Test
+    void valueOf() {
+        assertEquals(0xff06000000000000L, IPV6_TEST.getHigh());
+        assertEquals(0xc3L, IPV6_TEST.getLow());
+        assertEquals(IPV6_TEST, IpV6Address.valueOf(new BigInteger("338984292706304756556241983349463187651")));
+        assertEquals(IPV6_TEST, IpV6Address.valueOf(IPV6_TEST.toBytes()));
+        assertEquals(IpV6Address.MAX_VALUE, IpV6Address.valueOf(IpV6Address.MAX_VALUE.toBigInteger()));
+        assertThrows(IllegalArgumentException.class, () -> IpV6Address.valueOf("192.168.0.1"));
+        assertThrows(IllegalArgumentException.class, () -> IpV6Address.valueOf(BigInteger.ONE.shiftLeft(128)));
+        assertThrows(IllegalArgumentException.class, () -> IpV6Address.valueOf(new byte[4]));
+    }
+
+    @Test
+    void addSubtract() {
+        assertEquals(IpV6Address.valueOf("ff06::c4"), IPV6_TEST.add(1));
+        assertEquals(IpV6Address.valueOf("ff06::c2"), IPV6_TEST.add(-1));
+        assertEquals(IpV6Address.valueOf("::1:0:0:0:0"), IpV6Address.valueOf("::ffff:ffff:ffff:ffff").add(1));
+        assertEquals(IpV6Address.valueOf("::ffff:ffff:ffff:ffff"), IpV6Address.valueOf("::1:0:0:0:0").subtract(1));
+        assertThrows(ArithmeticException.class, () -> IpV6Address.MAX_VALUE.add(1));
+        assertThrows(ArithmeticException.class, () -> IpV6Address.MIN_VALUE.subtract(1));
+    }
+
+    @Test
+    void compare() {
+        assertTrue(IpV6Address.MIN_VALUE.compareTo(IpV6Address.MAX_VALUE) < 0);
+        assertTrue(IpV6Address.valueOf("8000::").compareTo(IpV6Address.valueOf("7fff::")) > 0);
+        assertEquals(0, IPV6_TEST.compareTo(IpV6Address.valueOf("ff06:0:0:0:0:0:0:c3")));
+    }
+
+    @Test
+    void subtractAddress() {
+        assertEquals(BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE), IpV6Address.MAX_VALUE.subtract(IpV6Address.MIN_VALUE));
+        assertEquals(65536L, IpV6Address.valueOf("ff06:0:0:0:0:0:1:c3").subtractExact(IPV6_TEST));
+        assertEquals(-65536L, IPV6_TEST.subtractExact(IpV6Address.valueOf("ff06:0:0:0:0:0:1:c3")));
+        assertThrows(ArithmeticException.class, () -> IpV6Address.MAX_VALUE.subtractExact(IpV6Address.MIN_VALUE));
+        assertEquals(Long.MIN_VALUE, IpV6Address.MIN_VALUE.subtractExact(IpV6Address.of(0L, Long.MIN_VALUE)));
+        assertEquals(BigInteger.valueOf(2), IPV6_TEST.rangeSize(IPV6_TEST.add(1)));
+        assertEquals(BigInteger.ZERO, IPV6_TEST.rangeSize(IPV6_TEST.add(-1)));
+        assertEquals(BigInteger.ONE.shiftLeft(128), IpV6Address.MIN_VALUE.rangeSize(IpV6Address.MAX_VALUE));
+        assertEquals(BigInteger.valueOf(-65536), IPV6_TEST.subtract(IpV6Address.valueOf("ff06:0:0:0:0:0:1:c3")));
+    }
+
+    @Test
+    void subtractWithoutAllocating() {
+        IpV6Address end = IpV6Address.valueOf("ff06:0:0:0:0:0:1:c3");
+        assertEquals(65536L, end.difference(IPV6_TEST));
+        assertEquals(-65536L, IPV6_TEST.difference(end));
+        assertEquals(Long.MAX_VALUE, IpV6Address.MAX_VALUE.difference(IpV6Address.MIN_VALUE));
+        assertEquals(Long.MIN_VALUE, IpV6Address.MIN_VALUE.difference(IpV6Address.MAX_VALUE));
+
+        long[] result = new long[2];
+        IpV6Address.subtract(1L, 0L, 0L, 1L, result);
+        assertArrayEquals(new long[]{0L, -1L}, result);
+        IpV6Address.subtract(-1L, -1L, 0L, 0L, result);
+        assertArrayEquals(new long[]{-1L, -1L}, result);
+        IpV6Address.subtract(end.getHigh(), end.getLow(), IPV6_TEST.getHigh(), IPV6_TEST.getLow(), result);
+        assertArrayEquals(new long[]{0L, 65536L}, result);
+
+        assertEquals(65537L, IpV6Address.rangeSize(IPV6_TEST.getHigh(), IPV6_TEST.getLow(), end.getHigh(), end.getLow()));
+        assertEquals(1L, IpV6Address.rangeSize(0L, 0L, 0L, 0L));
+        assertEquals(0L, IpV6Address.rangeSize(0L, 1L, 0L, 0L));
+        assertEquals(Long.MAX_VALUE, IpV6Address.rangeSize(0L, 0L, 0L, Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, IpV6Address.rangeSize(0L, 0L, -1L, -1L));
+    }
+
+    @Test
+    void mask() {
+        IpV6Address ip = IpV6Address.valueOf("2001:db8::1");
+        assertEquals(IpV6Address.valueOf("2001:db8::"), ip.mask(32));
+        assertEquals(IpV6Address.valueOf("2001:db8:ffff:ffff:ffff:ffff:ffff:ffff"), ip.lastInNetwork(32));
+        assertEquals(IpV6Address.MIN_VALUE, ip.mask(0));
+        assertEquals(ip, ip.mask(128));
+        assertEquals(IpV6Address.valueOf("2001:db8::ff"), ip.lastInNetwork(120));
+        assertThrows(IllegalArgumentException.class, () -> ip.mask(129));
+    }
+
+    @Test
+    void compareIp() {
+        assertTrue(IpMacUtils.compareIp("::", "ffff::") < 0);
+        assertTrue(IpMacUtils.compareIp("ffff::", "::1") > 0);
+        assertEquals(Long.MAX_VALUE, IpMacUtils.compareIpV6(IpV6Address.MAX_VALUE, IpV6Address.MIN_VALUE));
+        assertEquals(BigInteger.ONE, IpMacUtils.rangeBetweenIpV6(IPV6_TEST, IPV6_TEST.add(1)));
+    }
+}
@@ -0,0 +1,91 @@
+package com.nxest.grapes.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MacSet Test
+ */
+class MacSetTest {
+
+    private static final String MAC_TEST_STR = "60:a0:10:50:d0:30";
+    private static final long MAC_TEST_NUM = 106240584765488L;
+
+    @Test
+    void contains() {
+        MacSet set = MacSet.of(MAC_TEST_STR, "50-A0-10-50-D0-30");
+        assertEquals(2, set.size());
+        assertTrue(set.contains(MAC_TEST_STR));
+        assertTrue(set.contains("60-A0-10-50-D0-30"));
+        assertTrue(set.contains(" 60:a0:10:50:d0:30 "));
+        assertTrue(set.contains(new StringBuilder("50:a0:10:50:d0:30")));
+        assertTrue(set.contains(MAC_TEST_NUM));
+        assertFalse(set.contains("70:a0:10:50:d0:30"));
+        assertFalse(set.contains("60:a0:10:50:d0"));
+        assertFalse(set.contains("GG:a0:10:50:d0:30"));
+        assertFalse(set.contains((String) null));
+        assertFalse(set.contains(-1L));
+        assertThrows(IllegalArgumentException.class, () -> set.add("12:34::"));
+        assertThrows(IllegalArgumentException.class, () -> set.add(1L << 48));
+    }
+
+    @Test
+    void addRemove() {
+        MacSet set = new MacSet();
+        assertTrue(set.add(MAC_TEST_STR));
+        assertFalse(set.add(MAC_TEST_NUM));
+        assertEquals(2, set.addAll(Arrays.asList("50:a0:10:50:d0:30", "40:a0:10:50:d0:30", MAC_TEST_STR)));
+        assertTrue(set.remove("50-a0-10-50-d0-30"));
+        assertFalse(set.remove("50-a0-10-50-d0-30"));
+        assertFalse(set.remove("bad"));
+        assertEquals(1, set.removeAll(MAC_TEST_NUM, 1L));
+        assertEquals(1, set.size());
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(MAC_TEST_NUM));
+    }
+
+    @Test
+    void copy() {
+        MacSet set = MacSet.of("60:a0:10:50:d0:30", "60:a0:10:50:d0:31");
+        MacSet copy = new MacSet(set);
+        copy.remove("60:a0:10:50:d0:30");
+        copy.add("60:a0:10:50:d0:32");
+        assertTrue(set.contains("60:a0:10:50:d0:30"));
+        assertFalse(set.contains("60:a0:10:50:d0:32"));
+        assertFalse(copy.contains("60:a0:10:50:d0:30"));
+        assertTrue(copy.contains("60:a0:10:50:d0:31"));
+        assertEquals(2, copy.size());
+    }
+
+    @Test
+    void sameAsHashSet() {
+        Random random = new Random(3);
+        MacSet set = new MacSet();
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 200000; i++) {
+            // a small key space, so adds and removes collide a lot
+            long mac = 0x60a010000000L + random.nextInt(5000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(mac), set.add(mac));
+            } else {
+                assertEquals(expected.remove(mac), set.remove(mac));
+            }
+        }
+        assertEquals(expected.size(), set.size());
+        for (long mac = 0x60a010000000L; mac < 0x60a010000000L + 5000; mac++) {
+            assertEquals(expected.contains(mac), set.contains(mac));
+        }
+        long[] macs = set.toArray();
+        assertEquals(expected.size(), macs.length);
+        for (long mac : macs) {
+            assertTrue(expected.contains(mac));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.nxest.grapes.lang;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MacVendorIndex Test
+ */
+class MacVendorIndexTest {
+
+    private Path oui;
+    private Path mam;
+    private Path oui36;
+
+    @BeforeEach
+    void createFiles() throws IOException {
+        oui = Files.createTempFile("oui", ".csv");
+        mam = Files.createTempFile("mam", ".csv");
+        oui36 = Files.createTempFile("oui36", ".csv");
+        Files.write(oui, Arrays.asList(
+            "Registry,Assignment,Organization Name,Organization Address",
+            "MA-L,F01898,\"Apple, Inc.\",1 Infinite Loop Cupertino CA US 95014",
+            "MA-L,3C0754,\"Apple, Inc.\",1 Infinite Loop Cupertino CA US 95014",
+            "MA-L,002272,American Micro-Fuel Device Corp.,2181 Buchanan Loop Ferndale WA US 98248",
+            "MA-L,70B3D5,IEEE Registration Authority,\"445 Hoes Lane",
+            "Piscataway NJ US 08554\"",
+            "MA-L,8C1F64,IEEE Registration Authority,445 Hoes Lane Piscataway NJ US 08554"),
+            StandardCharsets.UTF_8);
+        Files.write(mam, Arrays.asList(
+            "Registry,Assignment,Organization Name,Organization Address",
+            "MA-M,8C1F64F,\"Quoted \"\"Vendor\"\" GmbH\",Somewhere DE"),
+            StandardCharsets.UTF_8);
+        Files.write(oui36, Arrays.asList(
+            "Registry,Assignment,Organization Name,Organization Address",
+            "MA-S,70B3D5F2F,Small Vendor Ltd,Somewhere GB",
+            "MA-S,8C1F64F51,Apple, Inc.,1 Infinite Loop"),
+            StandardCharsets.UTF_8);
+    }
+
+    @AfterEach
+    void deleteFiles() throws IOException {
+        Files.deleteIfExists(oui);
+        Files.deleteIfExists(mam);
+        Files.deleteIfExists(oui36);
+    }
+
+    @Test
+    void load() throws IOException {
+        MacVendorIndex index = MacVendorIndex.load(oui, mam, oui36);
+        assertEquals(8, index.size());
+        assertEquals(6, index.vendorCount());
+
+        assertEquals("Apple, Inc.", index.longestMatch("f0-18-98-12-34-56"));
+        assertEquals("Apple, Inc.", index.longestMatch("3c:07:54:00:00:01"));
+        assertSame(index.longestMatch("f0-18-98-12-34-56"), index.longestMatch("3c:07:54:00:00:01"));
+        assertEquals(MacVendorIndex.MA_L, index.matchLength(IpMacUtils.macToLong("f0-18-98-12-34-56")));
+
+        assertEquals("IEEE Registration Authority", index.longestMatch("70-b3-d5-00-00-01"));
+        assertEquals("Small Vendor Ltd", index.longestMatch("70-b3-d5-f2-f1-23"));
+        assertEquals(MacVendorIndex.MA_S, index.matchLength(IpMacUtils.macToLong("70-b3-d5-f2-f1-23")));
+
+        assertEquals("Quoted \"Vendor\" GmbH", index.longestMatch("8c-1f-64-f0-00-01"));
+        assertEquals(MacVendorIndex.MA_M, index.matchLength(IpMacUtils.macToLong("8c-1f-64-f0-00-01")));
+        // an unquoted comma splits the name
+        assertEquals("Apple", index.longestMatch("8c-1f-64-f5-10-01"));
+        assertEquals("IEEE Registration Authority", index.longestMatch("8c-1f-64-e0-00-01"));
+
+        assertNull(index.longestMatch("60-a0-10-50-d0-30"));
+        assertEquals(0, index.matchLength(IpMacUtils.macToLong("60-a0-10-50-d0-30")));
+        assertNull(index.longestMatch("not a mac"));
+        assertNull(index.longestMatch((CharSequence) null));
+        assertNull(index.longestMatch(-1L));
+        assertNull(index.longestMatch(1L << 48));
+    }
+
+    @Test
+    void builder() {
+        MacVendorIndex index = MacVendorIndex.builder()
+            .add("00-22-72", "First")
+            .add("00:22:72", " Second ")
+            .add(0x0022727L, MacVendorIndex.MA_M, "Third")
+            .build();
+        assertEquals(2, index.size());
+        assertEquals("Second", index.longestMatch("00-22-72-00-00-00"));
+        assertEquals("Third", index.longestMatch("00-22-72-70-00-00"));
+        assertEquals("Second", index.longestMatch(IpMacUtils.macToLong("00-22-72-80-00-00")));
+
+        MacVendorIndex empty = MacVendorIndex.builder().build();
+        assertEquals(0, empty.size());
+        assertNull(empty.longestMatch("00-22-72-00-00-00"));
+
+        assertThrows(IllegalArgumentException.class, () -> MacVendorIndex.builder().add("0022", "Short"));
+        assertThrows(IllegalArgumentException.class, () -> MacVendorIndex.builder().add("00227G", "Hex"));
+        assertThrows(IllegalArgumentException.class, () -> MacVendorIndex.builder().add("002272", " "));
+        assertThrows(IllegalArgumentException.class, () -> MacVendorIndex.builder().add(0x1000000L, 24, "Long"));
+        assertThrows(IllegalArgumentException.class, () -> MacVendorIndex.builder().add(0x002272L, 32, "Length"));
+    }
+
+    @Test
+    void badRecords() {
+        IOException e = assertThrows(IOException.class, () -> MacVendorIndex.builder()
+            .addCsv(new StringReader("MA-L,002272,Vendor\nMA-L,0022,Short\n")));
+        assertTrue(e.getMessage().contains("line 2"));
+        assertThrows(IOException.class, () -> MacVendorIndex.builder()
+            .addCsv(new StringReader("MA-L,002272\n")));
+        assertThrows(IOException.class, () -> MacVendorIndex.builder()
+            .addCsv(new StringReader("MA-L,002272,\"Vendor\n")));
+    }
+
+    @Test
+    void many() {
+        MacVendorIndex.Builder builder = MacVendorIndex.builder();
+        for (int i = 0; i < 30000; i++) {
+            builder.add(i, MacVendorIndex.MA_L, "Vendor " + i % 100);
+        }
+        MacVendorIndex index = builder.build();
+        assertEquals(30000, index.size());
+        assertEquals(100, index.vendorCount());
+        for (long i = 0; i < 30000; i++) {
+            assertEquals("Vendor " + i % 100, index.longestMatch(i << 24 | 0xABCDEF));
+        }
+        assertNull(index.longestMatch(30000L << 24));
+    }
+}
@@ -0,0 +1,118 @@
+package com.nxest.grapes.lang;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ParsedIp Test
+ */
+class ParsedIpTest {
+
+    @Test
+    void parse() {
+        ParsedIp ip = new ParsedIp();
+        assertFalse(ip.isValid());
+        assertTrue(ip.parse(" 192.168.0.1 "));
+        assertTrue(ip.isIpV4());
+        assertEquals(ParsedIp.FAMILY_IPV4, ip.getFamily());
+        assertEquals(3232235521L, ip.getLow());
+        assertEquals(0L, ip.getHigh());
+        assertEquals(32, ip.getPrefix());
+
+        assertTrue(ip.parse("ff06::c3"));
+        assertTrue(ip.isIpV6());
+        assertEquals(0xff06000000000000L, ip.getHigh());
+        assertEquals(0xc3L, ip.getLow());
+        assertEquals(128, ip.getPrefix());
+        assertEquals("ParsedIp{ip=ff06::c3, prefix=128}", ip.toString());
+
+        // a mapped IPV6 is parsed, but is not a legal IPV6
+        assertTrue(ip.parse("::ffff:10.0.0.1"));
+        assertTrue(ip.isIpV4Mapped());
+        assertFalse(ip.isIpV6());
+        assertFalse(ip.isIpV4());
+        assertEquals(0xffff0a000001L, ip.getLow());
+
+        assertTrue(ip.parse("src=10.0.0.1;", 4, 8));
+        assertEquals(167772161L, ip.getLow());
+        assertThrows(IndexOutOfBoundsException.class, () -> ip.parse("10.0.0.1", 4, 8));
+    }
+
+    @Test
+    void parseWithPrefix() {
+        ParsedIp ip = new ParsedIp();
+        assertTrue(ip.parseWithPrefix("192.168.0.0/16"));
+        assertEquals(16, ip.getPrefix());
+        assertEquals(3232235520L, ip.getLow());
+        assertTrue(ip.parseWithPrefix("10.0.0.1"));
+        assertEquals(32, ip.getPrefix());
+        assertTrue(ip.parseWithPrefix("2001:db8::/32"));
+        assertEquals(32, ip.getPrefix());
+        assertTrue(ip.isIpV6());
+        assertFalse(ip.parse("2001:db8::/32"));
+        assertFalse(ip.parseWithPrefix("10.0.0.0/33"));
+        assertFalse(ip.parseWithPrefix("2001:db8::/129"));
+    }
+
+    @Test
+    void failure() {
+        ParsedIp ip = new ParsedIp();
+        assertTrue(ip.parse("10.0.0.1"));
+        assertFalse(ip.parse(null));
+        assertEquals(ParsedIp.ERROR_BLANK, ip.getError());
+        assertFalse(ip.parse(" \t"));
+        assertEquals(ParsedIp.ERROR_BLANK, ip.getError());
+        for (String bad : new String[]{"a.b.c.d", "256.1.2.3", "192.0.", "1234.1.1.1", "01.1.1.1", "ff06::c3::1", ".", ":"}) {
+            assertFalse(ip.parse(bad), bad);
+            assertEquals(ParsedIp.ERROR_ILLEGAL, ip.getError(), bad);
+            assertEquals(ParsedIp.FAMILY_NONE, ip.getFamily());
+            assertEquals(-1, ip.getPrefix());
+            assertEquals(0L, ip.getLow());
+        }
+        assertEquals("ParsedIp{error=2}", ip.toString());
+    }
+
+    @Test
+    void difference() {
+        ParsedIp left = new ParsedIp();
+        ParsedIp right = new ParsedIp();
+        left.parse("192.168.1.0");
+        right.parse("192.168.2.0");
+        assertTrue(left.isSameFamily(right));
+        assertEquals(-256L, left.difference(right));
+        right.parse("::");
+        left.parse("ffff::");
+        assertEquals(Long.MAX_VALUE, left.difference(right));
+        assertEquals(Long.MIN_VALUE, right.difference(left));
+        left.parse("10.0.0.1");
+        assertFalse(left.isSameFamily(right));
+        assertThrows(IllegalArgumentException.class, () -> left.difference(right));
+        right.parse("::ffff:10.0.0.1");
+        assertFalse(left.isSameFamily(right));
+    }
+
+    @Test
+    void compound() {
+        // rebuilt on one parse per string, same answers as before
+        assertTrue(IpMacUtils.isSameIpType("10.0.0.1", "192.168.0.1"));
+        assertTrue(IpMacUtils.isSameIpType("::1", "ff06::c3"));
+        assertFalse(IpMacUtils.isSameIpType("::1", "10.0.0.1"));
+        assertFalse(IpMacUtils.isSameIpType("::ffff:10.0.0.1", "::1"));
+        assertFalse(IpMacUtils.isSameIpType(null, null));
+        assertEquals(-1L, IpMacUtils.compareIp("10.0.0.1", "10.0.0.2"));
+        assertThrows(NumberFormatException.class, () -> IpMacUtils.compareIp("10.0.0.1", "::1"));
+        assertThrows(NumberFormatException.class, () -> IpMacUtils.compareIp("10.0.0.1", null));
+
+        // not legal or not the same type is out of range, no exception
+        assertFalse(IpMacUtils.ipExistsInRange("10.0.0.1", "10.0.0.0", "ff06::c3"));
+        assertFalse(IpMacUtils.ipExistsInRange("a.b.c.d", "10.0.0.0", "10.0.0.2"));
+        assertTrue(IpMacUtils.ipExistsInRange("ff06::c4", " ff06::c3 - ff06::c5 "));
+        assertTrue(IpMacUtils.ipExistsInRange("10.0.0.1", "10.0.0.1-"));
+        assertFalse(IpMacUtils.ipExistsInRange("10.0.0.2", "10.0.0.1-"));
+        assertFalse(IpMacUtils.ipExistsInRange("10.0.0.1", "-10.0.0.1"));
+        assertFalse(IpMacUtils.ipExistsInRange("10.0.0.1", "10.0.0.0--10.0.0.2"));
+        assertTrue(IpMacUtils.ipExistsInRange("10.0.0.1", "10.0.0.0-10.0.0.2-10.0.0.0"));
+        assertTrue(IpMacUtils.ipExistsInRangeBySplit("10.0.0.1", "10.0.0.0 ~ 10.0.0.2", "~"));
+    }
+}
@@ -0,0 +1,48 @@
+package com.nxest.grapes.lang;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Assertions shared by the readFrom tests of {@link AddressBloomFilter} and {@link AddressCuckooFilter}.
+ */
+final class SerializationAssertions {
+
+    private SerializationAssertions() {
+    }
+
+    /**
+     * a readFrom method, such as {@code AddressBloomFilter::readFrom}
+     */
+    @FunctionalInterface
+    interface ThrowingFunction<T, R> {
+        R apply(T t) throws IOException;
+    }
+
+    /**
+     * Asserts reader rejects bytes with a changed magic, and bytes missing the last byte.
+     *
+     * @param bytes  what writeTo wrote, not changed
+     * @param reader the readFrom method
+     */
+    static void assertRejectsCorrupt(final byte[] bytes, final ThrowingFunction<DataInputStream, ?> reader) {
+        byte[] corrupted = bytes.clone();
+        corrupted[0] ^= 1;
+        assertRejects(corrupted, reader);
+        assertRejects(Arrays.copyOf(bytes, bytes.length - 1), reader);
+    }
+
+    /**
+     * Asserts reader throws IOException on bytes.
+     *
+     * @param bytes  bytes to read
+     * @param reader the readFrom method
+     */
+    static void assertRejects(final byte[] bytes, final ThrowingFunction<DataInputStream, ?> reader) {
+        assertThrows(IOException.class, () -> reader.apply(new DataInputStream(new ByteArrayInputStream(bytes))));
+    }
+}